@@ -4,12 +4,26 @@ import io.quarkus.logging.Log;
 import jakarta.annotation.Nonnull;
 import jakarta.enterprise.context.ApplicationScoped;
 import xyz.mijaljevic.Website;
+import xyz.mijaljevic.domain.dto.ContentSnapshot;
+import xyz.mijaljevic.domain.dto.FileStamp;
+import xyz.mijaljevic.domain.dto.TagLink;
 import xyz.mijaljevic.domain.entity.Blog;
+import xyz.mijaljevic.lifecycle.RequestContext;
+import xyz.mijaljevic.utils.Slugs;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Application scoped in-memory index of {@link Blog} models; this cache
@@ -18,87 +32,314 @@ import java.util.concurrent.ConcurrentHashMap;
  * <p>
  * Maintains two consistent indexes: a primary one keyed by file name (the unit
  * the scheduler works in) and a secondary one keyed by slug (the unit requests
- * look up), so blog lookups are O(1) instead of an O(n) scan.
+ * look up), so blog lookups are O(1) instead of an O(n) scan. Every file
+ * sharing a slug is queued as a candidate for it, so when the owner of a
+ * colliding slug goes away the next one takes over in O(1) as well. An
+ * inverted tag index maps each normalized tag to its blogs, and is kept up to
+ * date on every store and removal.
+ * </p>
+ *
+ * <p>
+ * Writers and readers see two different states. The scheduler stages its
+ * changes through {@link #put(Blog)} and {@link #removeByFileName(String)}
+ * under the cache lock, then calls {@link #publish()} once per batch, which
+ * derives an immutable {@link ContentSnapshot} (the indexes, the pre-sorted
+ * listings, including one per tag, and a fresh ETag) and swaps it in with a single
+ * {@link AtomicReference} write. Request handlers take one
+ * {@link #snapshot()} and read everything from it, without locks and without
+ * sorting or allocating, and never see a half-applied batch.
+ * </p>
+ *
+ * <p>
+ * Publishing is not free of the number of blogs: a batch that changed any
+ * file copies both indexes and the sorted listing, so even a one-file edit
+ * costs O(n) reference copies, though no re-sorting; only the tag listings
+ * are rebuilt just for the tags the batch touched. Batches are coalesced by
+ * the scheduler, so this is paid per burst of edits rather than per file,
+ * which is what buys the request handlers their lock-free reads. A publish
+ * with nothing staged keeps the published snapshot, and with it the ETag
+ * every client and page cache is validated against.
  * </p>
  */
 @ApplicationScoped
 public class BlogCache {
     /**
-     * Primary index keyed by blog file name.
+     * Staged primary index keyed by blog file name. Concurrent because the
+     * startup ingest looks blogs up from several threads at once.
      */
     private final Map<String, Blog> byFileName = new ConcurrentHashMap<>();
 
     /**
-     * Secondary index keyed by blog slug.
+     * The current stamps of the files whose stamp changed while their content
+     * did not, keyed by file name, overriding the stamp of their published
+     * {@link Blog}, which is never mutated. Concurrent because the startup
+     * ingest restamps from several threads at once.
+     */
+    private final Map<String, FileStamp> stamps = new ConcurrentHashMap<>();
+
+    /**
+     * Staged secondary index keyed by blog slug, guarded by the cache lock.
+     */
+    private final Map<String, Blog> bySlug = new HashMap<>();
+
+    /**
+     * The file names using each slug, in the order they were stored; the
+     * first one owns the slug in {@link #bySlug}. Guarded by the cache lock.
+     */
+    private final Map<String, Set<String>> slugCandidates = new HashMap<>();
+
+    /**
+     * Inverted tag index: the file names carrying each normalized tag, see
+     * {@link #normalizeTag(String)}. Guarded by the cache lock.
+     */
+    private final Map<String, Set<String>> filesByTag = new HashMap<>();
+
+    /**
+     * The normalized tags each file was last stored with, so a file's stale
+     * tags can be dropped even when its {@link Blog} was mutated in place.
+     * Guarded by the cache lock.
+     */
+    private final Map<String, Set<String>> tagsByFile = new HashMap<>();
+
+    /**
+     * File names stored or removed since the last {@link #publish()}, guarded
+     * by the cache lock.
+     */
+    private final Set<String> changed = new HashSet<>();
+
+    /**
+     * Normalized tags whose blogs were stored or removed since the last
+     * {@link #publish()}, guarded by the cache lock.
+     */
+    private final Set<String> changedTags = new HashSet<>();
+
+    /**
+     * The published snapshot read by the request handlers.
      */
-    private final Map<String, Blog> bySlug = new ConcurrentHashMap<>();
+    private final AtomicReference<ContentSnapshot> snapshot = new AtomicReference<>(
+            newSnapshot(0, Map.of(), Map.of(), List.of(), Map.of(), List.of())
+    );
 
     /**
-     * Inserts or updates the provided blog in both indexes, keeping them
-     * consistent. If the blog's title (and therefore slug) changed, the stale
-     * slug mapping is removed first. On a slug collision with a different file
-     * the first blog is kept and a warning is logged.
+     * Stages the provided blog in both indexes, keeping them consistent. If
+     * the blog's title (and therefore slug) changed, the file is unlinked from
+     * its stale slug first, see {@link #unlinkSlug(Blog)}. On a slug collision
+     * with a different file the first blog is kept, the new one is queued as a
+     * candidate for the slug and a warning is logged. The file is indexed
+     * under each of its normalized tags in place of the tags it was last
+     * stored with. Readers see the blog once the next {@link #publish()}
+     * returns.
      *
      * @param blog The {@link Blog} to store.
      */
-    public void put(@Nonnull final Blog blog) {
-        final Blog previous = byFileName.get(blog.getFileName());
+    public synchronized void put(@Nonnull final Blog blog) {
+        stamps.remove(blog.getFileName());
+
+        final Blog previous = byFileName.put(blog.getFileName(), blog);
 
         if (previous != null && !previous.getSlug().equals(blog.getSlug())) {
-            bySlug.remove(previous.getSlug(), previous);
+            unlinkSlug(previous);
         }
 
-        byFileName.put(blog.getFileName(), blog);
+        final Set<String> candidates = slugCandidates.computeIfAbsent(
+                blog.getSlug(),
+                slug -> new LinkedHashSet<>()
+        );
 
-        final Blog slugOwner = bySlug.get(blog.getSlug());
+        candidates.add(blog.getFileName());
 
-        if (slugOwner == null || slugOwner.getFileName().equals(blog.getFileName())) {
+        final String slugOwner = candidates.iterator().next();
+
+        if (slugOwner.equals(blog.getFileName())) {
             bySlug.put(blog.getSlug(), blog);
         } else {
             Log.warnf(
                     "Slug collision: '%s' already used by file '%s', ignoring file '%s'",
                     blog.getSlug(),
-                    slugOwner.getFileName(),
+                    slugOwner,
                     blog.getFileName()
             );
         }
+
+        unlinkTags(blog.getFileName());
+
+        final Set<String> tags = new HashSet<>();
+
+        for (String tag : blog.getTags()) {
+            final String normalized = normalizeTag(tag);
+
+            if (!normalized.isEmpty()) {
+                tags.add(normalized);
+            }
+        }
+
+        for (String tag : tags) {
+            filesByTag.computeIfAbsent(tag, key -> new HashSet<>()).add(blog.getFileName());
+        }
+
+        tagsByFile.put(blog.getFileName(), tags);
+        changedTags.addAll(tags);
+        changed.add(blog.getFileName());
     }
 
     /**
-     * Removes the blog with the provided file name from both indexes. If the
-     * removed blog owned its slug mapping, the slug is reassigned to another
-     * remaining blog with the same slug, if any.
+     * Stages the removal of the blog with the provided file name from both
+     * indexes. If the removed blog owned its slug mapping, the slug is
+     * reassigned to the next remaining blog with the same slug, if any, see
+     * {@link #unlinkSlug(Blog)}, and the file is dropped from the tag index.
+     * Readers stop seeing the blog once the next {@link #publish()} returns.
      *
      * @param fileName The file name of the blog to remove.
      */
-    public void removeByFileName(final String fileName) {
+    public synchronized void removeByFileName(final String fileName) {
+        stamps.remove(fileName);
+
         final Blog removed = byFileName.remove(fileName);
 
         if (removed == null) {
             return;
         }
 
-        if (bySlug.remove(removed.getSlug(), removed)) {
-            byFileName.values()
-                    .stream()
-                    .filter(blog -> blog.getSlug().equals(removed.getSlug()))
-                    .findFirst()
-                    .ifPresent(blog -> bySlug.put(blog.getSlug(), blog));
+        unlinkSlug(removed);
+        unlinkTags(fileName);
+
+        changed.add(fileName);
+    }
+
+    /**
+     * Publishes the staged state as a new {@link ContentSnapshot} with the
+     * next version and a fresh <i>ETag</i> and <i>Last-Modified</i>, replacing
+     * the current one in a single atomic write. Called by the scheduler once
+     * per batch, so the ETag rotates once per batch rather than once per
+     * changed blog. Costs O(n) in the number of blogs when any file changed,
+     * see the class documentation. Does nothing when nothing was staged
+     * since the last publish.
+     *
+     * @return The published {@link ContentSnapshot}, the current one if
+     * nothing was staged.
+     */
+    public synchronized ContentSnapshot publish() {
+        final ContentSnapshot previous = snapshot.get();
+
+        if (changed.isEmpty() && changedTags.isEmpty()) {
+            return previous;
         }
+
+        final Map<String, List<Blog>> byTag = changedTags.isEmpty()
+                ? previous.byTag()
+                : rebuildByTag(previous.byTag());
+
+        final List<TagLink> tags = changedTags.isEmpty()
+                ? previous.tags()
+                : byTag.entrySet()
+                        .stream()
+                        .map(entry -> new TagLink(entry.getKey(), entry.getValue().size()))
+                        .sorted(Comparator.comparing(TagLink::tag))
+                        .toList();
+
+        final ContentSnapshot next = newSnapshot(
+                previous.version() + 1,
+                Map.copyOf(byFileName),
+                Map.copyOf(bySlug),
+                rebuildSorted(previous.sorted()),
+                byTag,
+                tags
+        );
+
+        changed.clear();
+        changedTags.clear();
+        snapshot.set(next);
+
+        return next;
     }
 
     /**
-     * Finds a blog by its slug.
+     * @return The currently published {@link ContentSnapshot}. Read it once
+     * per request and take every value from it.
+     */
+    public ContentSnapshot snapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Finds a published blog by its slug.
      *
      * @param slug The slug to search for.
      * @return The matching {@link Blog}, or {@code null} if none exists.
      */
     public Blog bySlug(final String slug) {
-        return bySlug.get(slug);
+        return snapshot.get().bySlug().get(slug);
+    }
+
+    /**
+     * Finds the published blogs carrying the provided tag, in O(1) however
+     * many blogs there are.
+     *
+     * @param tag The tag to search for, normalized or as written in a blog.
+     * @return The matching blogs ordered newest first, or {@code null} if no
+     * blog carries the tag.
+     */
+    public List<Blog> byTag(final String tag) {
+        return snapshot.get().byTag().get(normalizeTag(tag));
+    }
+
+    /**
+     * @return Every published normalized tag with its blog count, ordered by
+     * name.
+     */
+    public List<TagLink> tags() {
+        return snapshot.get().tags();
+    }
+
+    /**
+     * Finds the position of the provided blog in a listing ordered newest
+     * first, such as {@link ContentSnapshot#sorted()}, by a binary search on
+     * its <i>created</i> timestamp followed by a scan of the blogs created at
+     * the same time. Lets a cursor resume a listing without walking it.
+     *
+     * @param sorted A listing ordered newest first.
+     * @param blog   The blog to find.
+     * @return The index of the blog, or -1 if it is not in the listing.
+     */
+    public static int positionOf(final List<Blog> sorted, final Blog blog) {
+        int low = 0;
+        int high = sorted.size();
+
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+
+            if (sorted.get(middle).compareTo(blog) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        for (int i = low; i < sorted.size() && sorted.get(i).compareTo(blog) == 0; i++) {
+            if (sorted.get(i).getFileName().equals(blog.getFileName())) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Normalizes a tag the way the tag index keys it: as a slug, see
+     * {@link Slugs#slugify(String)}, so {@code Java} and {@code java} are the
+     * same tag and a tag is safe to use in a URL.
+     *
+     * @param tag A tag as written in a blog or requested in a URL.
+     * @return The normalized tag, empty if the tag has no alphanumeric
+     * content.
+     */
+    public static String normalizeTag(final String tag) {
+        return Slugs.slugify(tag);
     }
 
     /**
-     * Finds a blog by its file name.
+     * Finds a blog by its file name in the staged state, so the scheduler sees
+     * its own changes before they are published.
      *
      * @param fileName The file name to search for.
      * @return The matching {@link Blog}, or {@code null} if none exists.
@@ -108,29 +349,45 @@ public class BlogCache {
     }
 
     /**
-     * @return The most recent blogs (ordered newest first), limited to
-     * {@link Website#NUMBER_OF_BLOGS_TO_DISPLAY}.
+     * Records a new stamp for the file of a cached blog whose content did not
+     * change, without staging a change: nothing is published, and the blog
+     * itself, which requests may be reading, is left untouched.
+     *
+     * @param fileName The file name of the blog.
+     * @param stamp    The new stamp of its file.
+     */
+    public void restamp(@Nonnull final String fileName, @Nonnull final FileStamp stamp) {
+        stamps.put(fileName, stamp);
+    }
+
+    /**
+     * Returns the current stamp of the file of the provided blog: the one
+     * recorded by {@link #restamp}, if any, otherwise the blog's own.
+     *
+     * @param blog A cached blog.
+     * @return The stamp of its file.
+     */
+    public FileStamp stampOf(@Nonnull final Blog blog) {
+        return stamps.getOrDefault(blog.getFileName(), blog.getStamp());
+    }
+
+    /**
+     * @return The most recent published blogs (ordered newest first), limited
+     * to {@link Website#NUMBER_OF_BLOGS_TO_DISPLAY}.
      */
     public List<Blog> recent() {
-        return byFileName.values()
-                .stream()
-                .sorted()
-                .limit(Website.NUMBER_OF_BLOGS_TO_DISPLAY)
-                .toList();
+        return snapshot.get().recent();
     }
 
     /**
-     * @return All cached blogs, ordered newest first.
+     * @return All published blogs, ordered newest first.
      */
     public List<Blog> all() {
-        return byFileName.values()
-                .stream()
-                .sorted()
-                .toList();
+        return snapshot.get().sorted();
     }
 
     /**
-     * Returns all cached blogs whose file names are not contained in the
+     * Returns all staged blogs whose file names are not contained in the
      * provided collection. Used by the scheduler to detect blogs whose backing
      * file was removed.
      *
@@ -144,4 +401,181 @@ public class BlogCache {
                 .filter(blog -> !fileNames.contains(blog.getFileName()))
                 .toList();
     }
+
+    /**
+     * Drops the file of the provided blog from the candidates of its slug. If
+     * the file owned the slug, the slug passes to the oldest remaining
+     * candidate, in the order the candidates were stored. Both the removal
+     * and the promotion are constant time, however many titles collide.
+     *
+     * @param blog The {@link Blog} whose file no longer uses its slug.
+     */
+    private void unlinkSlug(final Blog blog) {
+        final Set<String> candidates = slugCandidates.get(blog.getSlug());
+
+        if (candidates == null || !candidates.remove(blog.getFileName())) {
+            return;
+        }
+
+        final Blog owner = bySlug.get(blog.getSlug());
+
+        if (owner != null && !owner.getFileName().equals(blog.getFileName())) {
+            return;
+        }
+
+        if (candidates.isEmpty()) {
+            slugCandidates.remove(blog.getSlug());
+            bySlug.remove(blog.getSlug());
+        } else {
+            bySlug.put(blog.getSlug(), byFileName.get(candidates.iterator().next()));
+        }
+    }
+
+    /**
+     * Drops the provided file from the tag index entries of the tags it was
+     * last stored with, removing the tags no other file carries.
+     *
+     * @param fileName The file name of the stored or removed blog.
+     */
+    private void unlinkTags(final String fileName) {
+        final Set<String> tags = tagsByFile.remove(fileName);
+
+        if (tags == null) {
+            return;
+        }
+
+        for (String tag : tags) {
+            final Set<String> files = filesByTag.get(tag);
+
+            files.remove(fileName);
+
+            if (files.isEmpty()) {
+                filesByTag.remove(tag);
+            }
+        }
+
+        changedTags.addAll(tags);
+    }
+
+    /**
+     * Rebuilds the sorted listing from the previous one after the files in
+     * {@link #changed} were stored or removed, see {@link #merge}.
+     *
+     * @param previous The previously published sorted listing.
+     * @return The new sorted listing.
+     */
+    private List<Blog> rebuildSorted(final List<Blog> previous) {
+        final List<Blog> additions = new ArrayList<>(changed.size());
+
+        for (String fileName : changed) {
+            final Blog blog = byFileName.get(fileName);
+
+            if (blog != null) {
+                additions.add(blog);
+            }
+        }
+
+        return merge(previous, additions);
+    }
+
+    /**
+     * Rebuilds the listings of the tags in {@link #changedTags} from their
+     * previous ones, see {@link #merge}, and reuses the listings of every
+     * other tag as they are. A batch therefore costs time in proportion to
+     * the blogs of the tags it touched rather than to every blog.
+     *
+     * @param previous The previously published tag listings.
+     * @return The new, immutable tag listings.
+     */
+    private Map<String, List<Blog>> rebuildByTag(final Map<String, List<Blog>> previous) {
+        final Map<String, List<Blog>> additions = new HashMap<>();
+
+        for (String fileName : changed) {
+            final Blog blog = byFileName.get(fileName);
+
+            if (blog == null) {
+                continue;
+            }
+
+            for (String tag : tagsByFile.get(fileName)) {
+                additions.computeIfAbsent(tag, key -> new ArrayList<>()).add(blog);
+            }
+        }
+
+        final Map<String, List<Blog>> next = new HashMap<>(previous);
+
+        for (String tag : changedTags) {
+            if (filesByTag.containsKey(tag)) {
+                next.put(tag, merge(
+                        previous.getOrDefault(tag, List.of()),
+                        additions.getOrDefault(tag, List.of())
+                ));
+            } else {
+                next.remove(tag);
+            }
+        }
+
+        return Map.copyOf(next);
+    }
+
+    /**
+     * Merges the stored blogs of a batch into a previously published listing.
+     * The previous listing is already sorted, so the copy holds a single
+     * sorted run plus the few appended blogs of the batch, which
+     * {@link List#sort} (TimSort) orders in close to linear time. The entries
+     * of changed files are always dropped from the copy, because a stored
+     * file's {@link Blog} was replaced by a new one, to be re-added from
+     * {@code additions}, and a removed file's belongs in no listing.
+     *
+     * @param previous  The previously published listing.
+     * @param additions The stored blogs of the batch that belong in it.
+     * @return The new, immutable listing ordered newest first.
+     */
+    private List<Blog> merge(final List<Blog> previous, final List<Blog> additions) {
+        final List<Blog> next = new ArrayList<>(previous.size() + additions.size());
+
+        for (Blog cached : previous) {
+            if (!changed.contains(cached.getFileName())) {
+                next.add(cached);
+            }
+        }
+
+        next.addAll(additions);
+        next.sort(null);
+
+        return List.copyOf(next);
+    }
+
+    /**
+     * Creates a snapshot of the provided state, stamped with a new ETag and
+     * the current time as its <i>Last-Modified</i>.
+     *
+     * @param version    The version of the snapshot.
+     * @param byFileName The immutable blogs keyed by file name.
+     * @param bySlug     The immutable blogs keyed by slug.
+     * @param sorted     The immutable listing of every blog, newest first.
+     * @param byTag      The immutable listings of the blogs of each tag.
+     * @param tags       The immutable listing of every tag, by name.
+     * @return The new {@link ContentSnapshot}.
+     */
+    private static ContentSnapshot newSnapshot(
+            final long version,
+            final Map<String, Blog> byFileName,
+            final Map<String, Blog> bySlug,
+            final List<Blog> sorted,
+            final Map<String, List<Blog>> byTag,
+            final List<TagLink> tags
+    ) {
+        return new ContentSnapshot(
+                version,
+                byFileName,
+                bySlug,
+                sorted,
+                sorted.subList(0, Math.min(sorted.size(), Website.NUMBER_OF_BLOGS_TO_DISPLAY)),
+                byTag,
+                tags,
+                RequestContext.generateEtagHash(version + ":" + Instant.now()),
+                RequestContext.parseLastModifiedTime(LocalDateTime.now())
+        );
+    }
 }
@@ -1,19 +1,25 @@
 package xyz.mijaljevic.cache;
 
+import io.quarkus.cache.Cache;
 import io.quarkus.cache.CacheInvalidate;
 import io.quarkus.cache.CacheKey;
+import io.quarkus.cache.CacheName;
 import io.quarkus.cache.CacheResult;
+import io.quarkus.cache.CaffeineCache;
+import jakarta.annotation.Nullable;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import xyz.mijaljevic.utils.MarkdownParser;
 
 import java.io.File;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Renders a blog Markdown file to HTML, caching the result so each file is
  * parsed at most once until it changes. Backed by Quarkus Cache (Caffeine),
- * keyed by the blog file name.
+ * keyed by the blog file name. The blog scheduler may also pre-render a blog
+ * it just parsed straight into the cache, see {@link #prerender}.
  */
 @ApplicationScoped
 public class BlogRenderer {
@@ -22,19 +28,27 @@ public class BlogRenderer {
      */
     private final String blogsDirectoryPath;
 
+    /**
+     * The {@code blog-html} cache backing {@link #render(String)}.
+     */
+    private final Cache cache;
+
     /**
      * Creates the renderer with the configured blogs directory path.
      *
      * @param blogsDirectoryPath The path to the blogs' directory.
+     * @param cache              The {@code blog-html} cache.
      */
     @Inject
     public BlogRenderer(
             @ConfigProperty(
                     name = "application.blogs-directory",
                     defaultValue = "blogs"
-            ) final String blogsDirectoryPath
+            ) final String blogsDirectoryPath,
+            @CacheName("blog-html") final Cache cache
     ) {
         this.blogsDirectoryPath = blogsDirectoryPath;
+        this.cache = cache;
     }
 
     /**
@@ -51,6 +65,38 @@ public class BlogRenderer {
         return MarkdownParser.renderMarkdownToHtml(file);
     }
 
+    /**
+     * Stores HTML rendered elsewhere as the cached HTML of the provided file
+     * name, replacing the previous entry. Lets the blog scheduler hand over a
+     * blog it already read and parsed, so the first request does not read and
+     * parse the file again.
+     *
+     * @param fileName The blog file name the HTML was rendered from.
+     * @param html     The rendered HTML.
+     */
+    public void prerender(final String fileName, final String html) {
+        cache.as(CaffeineCache.class).put(fileName, CompletableFuture.completedFuture(html));
+    }
+
+    /**
+     * Returns the cached HTML of the provided file name without rendering it,
+     * so it can be kept in the content index across restarts.
+     *
+     * @param fileName The blog file name the HTML was rendered from.
+     * @return The cached HTML, or {@code null} if it is not cached or still
+     * being rendered.
+     */
+    @Nullable
+    public String cached(final String fileName) {
+        final CompletableFuture<String> html = cache.as(CaffeineCache.class).getIfPresent(fileName);
+
+        if (html == null || !html.isDone() || html.isCompletedExceptionally()) {
+            return null;
+        }
+
+        return html.getNow(null);
+    }
+
     /**
      * Evicts the cached HTML for the provided file name. Called by the blog
      * scheduler when a blog file is modified or deleted so stale HTML is not
@@ -0,0 +1,156 @@
+package xyz.mijaljevic.cache;
+
+import jakarta.annotation.Nonnull;
+import jakarta.enterprise.context.ApplicationScoped;
+import xyz.mijaljevic.Website;
+import xyz.mijaljevic.domain.dto.RenderedFeed;
+import xyz.mijaljevic.domain.entity.Blog;
+import xyz.mijaljevic.domain.entity.FeedFormat;
+import xyz.mijaljevic.utils.Compression;
+import xyz.mijaljevic.utils.FileUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Application scoped cache of fully rendered feeds. Feed readers poll far more
+ * often than the blogs change, so each feed is rendered once per published
+ * blog snapshot and every poll in between is served, or answered with a 304,
+ * from the cached bytes.
+ *
+ * <p>
+ * Unlike the {@link PageCache} the entries carry no visitor counts, so the
+ * snapshot version is all that decides whether an entry may still be served.
+ * Concurrent requests for a stale feed render it once; the others wait for
+ * and share that render.
+ * </p>
+ *
+ * <p>
+ * A feed is assembled from the XML fragments of its items, each rendered once
+ * per blog content hash and shared by every feed listing the blog. A changed
+ * blog therefore costs one new fragment; the rest of a feed, however long, is
+ * spliced together from the fragments already rendered. The blog scheduler
+ * evicts the fragments of a blog as soon as its file gets a new hash.
+ * </p>
+ */
+@ApplicationScoped
+public class FeedCache {
+    /**
+     * Rendered feeds keyed by route.
+     */
+    private final Map<String, RenderedFeed> feeds = new ConcurrentHashMap<>();
+
+    /**
+     * Rendered item fragments keyed by feed format and blog content hash.
+     */
+    private final Map<String, String> items = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the rendered feed for the provided route, rendering and caching
+     * it first if there is no entry for the provided snapshot version.
+     *
+     * @param route    The cache key of the feed, unique per rendered variant.
+     * @param version  The version of the blog snapshot the feed is served
+     *                 from.
+     * @param renderer Renders the feed; only invoked on a cache miss.
+     * @return The {@link RenderedFeed}.
+     */
+    @Nonnull
+    public RenderedFeed feed(
+            @Nonnull final String route,
+            final long version,
+            @Nonnull final Supplier<RenderedFeed> renderer
+    ) {
+        final RenderedFeed cached = feeds.get(route);
+
+        if (cached != null && cached.version() == version) {
+            return cached;
+        }
+
+        return feeds.compute(route, (key, current) -> current != null && current.version() == version
+                ? current
+                : renderer.get());
+    }
+
+    /**
+     * Returns the XML fragment of the provided blog as an item of a feed in
+     * the provided format, rendering and caching it first if it is not cached
+     * for the blog's content hash.
+     *
+     * @param format   The {@link FeedFormat} of the feed.
+     * @param blog     The blog to render as a feed item.
+     * @param renderer Renders the fragment; only invoked on a cache miss.
+     * @return The item fragment.
+     */
+    @Nonnull
+    public String item(
+            @Nonnull final FeedFormat format,
+            @Nonnull final Blog blog,
+            @Nonnull final Function<Blog, String> renderer
+    ) {
+        return items.computeIfAbsent(itemKey(format, blog.getHash()), key -> renderer.apply(blog));
+    }
+
+    /**
+     * Evicts the item fragments of the blog with the provided content hash,
+     * in every format. Called by the blog scheduler when a blog file gets a
+     * new hash or is deleted.
+     *
+     * @param hash The content hash of the blog, may be {@code null} for a
+     *             blog that was never hashed.
+     */
+    public void invalidateItems(final String hash) {
+        if (hash == null) {
+            return;
+        }
+
+        for (FeedFormat format : FeedFormat.values()) {
+            items.remove(itemKey(format, hash));
+        }
+    }
+
+    /**
+     * Builds a {@link RenderedFeed} from the provided rendered feed: encodes
+     * it as UTF-8 with its compressed variants and hashes the bytes into its
+     * <i>ETag</i>, so the ETag only changes when the feed does.
+     *
+     * @param version      The version of the blog snapshot the feed was
+     *                     rendered from.
+     * @param feed         The rendered feed.
+     * @param lastModified The HTTP <i>Last-Modified</i> of the feed.
+     * @return The {@link RenderedFeed}.
+     */
+    @Nonnull
+    public static RenderedFeed build(
+            final long version,
+            @Nonnull final String feed,
+            @Nonnull final String lastModified
+    ) {
+        final byte[] body = feed.getBytes(StandardCharsets.UTF_8);
+
+        final String eTag;
+
+        try {
+            eTag = FileUtils.hashBytes(body);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Missing hashing algorithm: " + Website.HASH_ALGORITHM, e);
+        }
+
+        return new RenderedFeed(version, eTag, lastModified, Compression.encode(body));
+    }
+
+    /**
+     * Builds the key of an item fragment.
+     *
+     * @param format The {@link FeedFormat} of the fragment.
+     * @param hash   The content hash of the blog.
+     * @return The key of the fragment in {@link #items}.
+     */
+    private static String itemKey(final FeedFormat format, final String hash) {
+        return format.name() + ':' + hash;
+    }
+}
@@ -0,0 +1,292 @@
+package xyz.mijaljevic.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.annotation.Nonnull;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import xyz.mijaljevic.domain.dto.EncodedContent;
+import xyz.mijaljevic.domain.dto.RenderedPage;
+import xyz.mijaljevic.domain.dto.VisitorCount;
+import xyz.mijaljevic.lifecycle.VisitorCounter;
+import xyz.mijaljevic.utils.Compression;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Application scoped cache of fully rendered HTML pages. Each entry holds the
+ * final UTF-8 bytes of the page and their gzip/brotli variants, together with
+ * the <i>ETag</i> it was rendered for, so a cache hit is a plain buffer write
+ * with no template evaluation and no compression.
+ *
+ * <p>
+ * The pages are requested from {@code @NonBlocking} handlers, on the event
+ * loop, so a miss only renders the page and caches it uncompressed; its
+ * variants are built on a worker thread and swapped into the entry once
+ * ready, unless the entry was replaced meanwhile. Until then the page is
+ * served uncompressed.
+ * </p>
+ *
+ * <p>
+ * It holds two layers: the pages that share the site wide ETag, keyed by
+ * route, and the blog pages, keyed by the blog content hash (from which the
+ * blog page ETag is derived). There is one of the former per route, but one of
+ * the latter per blog, so blog pages live in a size bounded Caffeine cache and
+ * are evicted by the blog scheduler as soon as a blog file gets a new hash.
+ * </p>
+ *
+ * <p>
+ * An entry is only served while the resource still serves the same ETag; the
+ * blog scheduler's change signal ({@code BlogCache.publish()}) rotates the
+ * ETag and with it invalidates every entry rendered for the old one. So does
+ * a change of the assets the pages link, whose version every page ETag
+ * carries (see {@code StaticUrls.version()}). Because
+ * every page footer carries the running visitor counts, an entry is also
+ * re-rendered once the counts moved on, but at most once per
+ * {@code application.page-cache.visitors-refresh} window so a burst of new
+ * visitors does not turn every request into a cache miss.
+ * </p>
+ */
+@ApplicationScoped
+public class PageCache {
+    /**
+     * Rendered pages keyed by route.
+     */
+    private final Map<String, RenderedPage> pages = new ConcurrentHashMap<>();
+
+    /**
+     * Rendered blog pages keyed by blog content hash.
+     */
+    private final Cache<String, RenderedPage> blogPages;
+
+    /**
+     * Supplier of the current visitor counts rendered into the page footer.
+     */
+    private final Supplier<VisitorCount> visitors;
+
+    /**
+     * Minimum age in milliseconds of an entry before changed visitor counts
+     * make it stale.
+     */
+    private final long visitorsRefreshMillis;
+
+    /**
+     * Source of the current time, in epoch milliseconds. Indirected so tests
+     * can drive the clock deterministically.
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Runs the compression of the rendered pages, off the event loop.
+     */
+    private final Executor compressor;
+
+    /**
+     * Creates the cache with its configured visitor counts refresh window,
+     * using the system clock.
+     *
+     * @param visitorCounter  The {@link VisitorCounter} whose counts are
+     *                        rendered into the page footer.
+     * @param visitorsRefresh How long a page may show outdated visitor counts.
+     * @param blogPagesSize   Maximum number of cached blog pages.
+     * @param blogPagesExpiry How long an unused blog page stays cached.
+     */
+    @Inject
+    @SuppressWarnings("unused")
+    PageCache(
+            final VisitorCounter visitorCounter,
+            @ConfigProperty(
+                    name = "application.page-cache.visitors-refresh",
+                    defaultValue = "10s"
+            ) final Duration visitorsRefresh,
+            @ConfigProperty(
+                    name = "application.page-cache.blog-pages.maximum-size",
+                    defaultValue = "100"
+            ) final long blogPagesSize,
+            @ConfigProperty(
+                    name = "application.page-cache.blog-pages.expire-after-access",
+                    defaultValue = "4h"
+            ) final Duration blogPagesExpiry
+    ) {
+        this(
+                visitorCounter::snapshot,
+                visitorsRefresh,
+                System::currentTimeMillis,
+                Infrastructure.getDefaultWorkerPool(),
+                blogPagesSize,
+                blogPagesExpiry
+        );
+    }
+
+    /**
+     * Creates the cache with an explicit visitor counts source and clock.
+     * Intended for tests.
+     *
+     * @param visitors        Supplier of the current visitor counts.
+     * @param visitorsRefresh How long a page may show outdated visitor counts.
+     * @param clock           Supplier of the current time in epoch
+     *                        milliseconds.
+     * @param compressor      Runs the compression of the rendered pages.
+     * @param blogPagesSize   Maximum number of cached blog pages.
+     * @param blogPagesExpiry How long an unused blog page stays cached.
+     */
+    PageCache(
+            @Nonnull final Supplier<VisitorCount> visitors,
+            @Nonnull final Duration visitorsRefresh,
+            @Nonnull final LongSupplier clock,
+            @Nonnull final Executor compressor,
+            final long blogPagesSize,
+            @Nonnull final Duration blogPagesExpiry
+    ) {
+        this.visitors = visitors;
+        this.visitorsRefreshMillis = visitorsRefresh.toMillis();
+        this.clock = clock;
+        this.compressor = compressor;
+        this.blogPages = Caffeine.newBuilder()
+                .maximumSize(blogPagesSize)
+                .expireAfterAccess(blogPagesExpiry)
+                .build();
+    }
+
+    /**
+     * Returns the rendered page for the provided route, rendering and caching
+     * it first if there is no entry for the current <i>ETag</i> or the entry
+     * went stale.
+     *
+     * @param route    The cache key of the page, unique per rendered variant.
+     * @param etag     The <i>ETag</i> the resource currently serves.
+     * @param renderer Renders the page; only invoked on a cache miss.
+     * @return The rendered page as UTF-8 bytes with its compressed variants,
+     * if they were built yet. Must not be mutated.
+     */
+    @Nonnull
+    public EncodedContent page(
+            @Nonnull final String route,
+            @Nonnull final String etag,
+            @Nonnull final Supplier<String> renderer
+    ) {
+        final RenderedPage cached = pages.get(route);
+
+        if (cached != null && isFresh(cached, etag)) {
+            return cached.content();
+        }
+
+        final RenderedPage page = render(etag, renderer);
+
+        pages.put(route, page);
+        compress(page, compressed -> pages.replace(route, page, compressed));
+
+        return page.content();
+    }
+
+    /**
+     * Returns the rendered page of the blog with the provided content hash,
+     * rendering and caching it first if there is no entry for the current
+     * <i>ETag</i> or the entry went stale.
+     *
+     * @param hash     The blog content hash.
+     * @param etag     The <i>ETag</i> the blog page currently serves.
+     * @param renderer Renders the blog page; only invoked on a cache miss.
+     * @return The rendered blog page as UTF-8 bytes with its compressed
+     * variants, if they were built yet. Must not be mutated.
+     */
+    @Nonnull
+    public EncodedContent blogPage(
+            @Nonnull final String hash,
+            @Nonnull final String etag,
+            @Nonnull final Supplier<String> renderer
+    ) {
+        final RenderedPage cached = blogPages.getIfPresent(hash);
+
+        if (cached != null && isFresh(cached, etag)) {
+            return cached.content();
+        }
+
+        final RenderedPage page = render(etag, renderer);
+
+        blogPages.put(hash, page);
+        compress(page, compressed -> blogPages.asMap().replace(hash, page, compressed));
+
+        return page.content();
+    }
+
+    /**
+     * Evicts the cached page of the blog with the provided content hash. Called
+     * by the blog scheduler when a blog file gets a new hash or is deleted.
+     *
+     * @param hash The content hash of the blog page to evict, may be
+     *             {@code null} for a blog that was never hashed.
+     */
+    public void invalidateBlogPage(final String hash) {
+        if (hash != null) {
+            blogPages.invalidate(hash);
+        }
+    }
+
+    /**
+     * Drops every cached page that shares the site wide <i>ETag</i>.
+     */
+    public void invalidateAll() {
+        pages.clear();
+    }
+
+    /**
+     * Renders a page for the provided <i>ETag</i>, without its compressed
+     * variants, recording the visitor counts and time it was rendered with.
+     *
+     * @param etag     The <i>ETag</i> the page is rendered for.
+     * @param renderer Renders the page.
+     * @return The {@link RenderedPage}.
+     */
+    private RenderedPage render(final String etag, final Supplier<String> renderer) {
+        final VisitorCount current = visitors.get();
+        final long now = clock.getAsLong();
+
+        final byte[] body = renderer.get().getBytes(StandardCharsets.UTF_8);
+
+        return new RenderedPage(etag, current, now, new EncodedContent(body, null, null));
+    }
+
+    /**
+     * Builds the compressed variants of a rendered page on the
+     * {@link #compressor} and hands the page carrying them to the provided
+     * consumer, which swaps it into the cache.
+     *
+     * @param page  The page rendered without its compressed variants.
+     * @param store Stores the compressed page in place of {@code page}.
+     */
+    private void compress(final RenderedPage page, final Consumer<RenderedPage> store) {
+        compressor.execute(() -> store.accept(new RenderedPage(
+                page.etag(),
+                page.visitors(),
+                page.renderedAt(),
+                Compression.encode(page.content().identity())
+        )));
+    }
+
+    /**
+     * Checks whether the provided entry may still be served.
+     *
+     * @param cached The cached page.
+     * @param etag   The <i>ETag</i> the resource currently serves.
+     * @return True if the entry was rendered for the current ETag and its
+     * visitor counts are either current or within the refresh window.
+     */
+    private boolean isFresh(final RenderedPage cached, final String etag) {
+        if (!cached.etag().equals(etag)) {
+            return false;
+        }
+
+        return clock.getAsLong() - cached.renderedAt() < visitorsRefreshMillis
+                || cached.visitors().equals(visitors.get());
+    }
+}
@@ -0,0 +1,721 @@
+package xyz.mijaljevic.cache;
+
+import jakarta.annotation.Nonnull;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+/**
+ * Application scoped in-process full-text index over the blogs, ranking
+ * matches with BM25.
+ *
+ * <p>
+ * Every indexed file gets a dense integer document id, and every term maps to
+ * its postings: the ids of the documents containing it, ascending, and the
+ * term frequency in each, held in two parallel {@code int} arrays. A query
+ * only walks the postings of its own terms, accumulating scores in a flat
+ * array indexed by document id, and only ranks the documents it matched, so
+ * apart from clearing that array its cost is bounded by how common its terms
+ * are rather than by the number of blogs.
+ * </p>
+ *
+ * <p>
+ * It follows the publishing model of the {@link BlogCache}. The blog
+ * scheduler stages changes through {@link #put(String, String)} and
+ * {@link #remove(String)} under the index lock, into a growable buffer per
+ * term that a new document with a fresh id is appended to. Tokenizing happens
+ * before the lock is taken, so the lock is only held for work proportional to
+ * the distinct terms of the document. The scheduler then calls
+ * {@link #publish()} once per batch, which freezes the buffers of the terms
+ * changed since the last publish into immutable postings, leaving every other
+ * term untouched, and swaps in a new view for {@link #search} to read without
+ * locks.
+ * </p>
+ *
+ * <p>
+ * The published postings are shared between views, so each carries the
+ * generation of the view that published it and keeps the postings it
+ * replaced. A search reads the newest postings of a term no newer than its
+ * view, and in the rare case it overlapped two publishes, which may have
+ * dropped those, it runs again against the newer view.
+ * </p>
+ */
+@ApplicationScoped
+public class SearchIndex {
+    /**
+     * BM25 term frequency saturation parameter.
+     */
+    private static final double K1 = 1.2;
+
+    /**
+     * BM25 document length normalization parameter.
+     */
+    private static final double B = 0.75;
+
+    /**
+     * Maximum number of distinct terms of a query that are looked up; the
+     * rest are ignored, bounding the cost of a query.
+     */
+    private static final int MAX_QUERY_TERMS = 16;
+
+    /**
+     * Maximum length of an indexed term; longer runs of characters are not
+     * words anyone searches for.
+     */
+    private static final int MAX_TERM_LENGTH = 64;
+
+    /**
+     * Matches combining diacritical marks left after Unicode decomposition.
+     */
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    /**
+     * Matches any run of characters that are neither letters nor digits; the
+     * text is split into terms on them.
+     */
+    private static final Pattern NON_TERM = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * Postings of a term no document contains anymore.
+     */
+    private static final int[] NO_DOCUMENTS = new int[0];
+
+    /**
+     * Staged postings keyed by term, guarded by the index lock. A term no
+     * document contains is dropped.
+     */
+    private final Map<String, TermBuffer> postings = new HashMap<>();
+
+    /**
+     * Terms whose staged postings changed since the last publish, guarded by
+     * the index lock.
+     */
+    private final Set<String> changedTerms = new HashSet<>();
+
+    /**
+     * Terms the last publish left without documents, guarded by the index
+     * lock. They are dropped from {@link #published} by the next publish,
+     * once no search can need their earlier postings.
+     */
+    private final List<String> emptiedTerms = new ArrayList<>();
+
+    /**
+     * Published postings keyed by term, shared by every view. Only written by
+     * {@link #publish()}, under the index lock.
+     */
+    private final Map<String, Postings> published = new ConcurrentHashMap<>();
+
+    /**
+     * Staged document ids keyed by file name, guarded by the index lock.
+     */
+    private final Map<String, Integer> documentIds = new HashMap<>();
+
+    /**
+     * Staged file names indexed by document id; {@code null} for a free id.
+     * Guarded by the index lock.
+     */
+    private String[] fileNames = new String[16];
+
+    /**
+     * Staged document lengths, in terms, indexed by document id. Guarded by
+     * the index lock.
+     */
+    private int[] lengths = new int[16];
+
+    /**
+     * Staged distinct terms of each document, indexed by document id, so a
+     * document's postings can be pruned without scanning every term. Guarded
+     * by the index lock.
+     */
+    private String[][] documentTerms = new String[16][];
+
+    /**
+     * Ids freed by removed documents, reused before new ones are allocated.
+     * Guarded by the index lock.
+     */
+    private int[] freeIds = new int[16];
+
+    /**
+     * Number of ids in {@link #freeIds}, guarded by the index lock.
+     */
+    private int freeCount;
+
+    /**
+     * The next never used document id, guarded by the index lock.
+     */
+    private int nextId;
+
+    /**
+     * Sum of the lengths of every staged document, guarded by the index lock.
+     */
+    private long totalLength;
+
+    /**
+     * True when staged changes have not been published yet, guarded by the
+     * index lock.
+     */
+    private boolean dirty;
+
+    /**
+     * The generation of the latest publish, written before it touches
+     * {@link #published}, so a search can tell it overlapped two publishes.
+     */
+    private volatile long publishing;
+
+    /**
+     * The published view read by {@link #search}.
+     */
+    private final AtomicReference<View> view = new AtomicReference<>(
+            new View(0, new String[0], new float[0], 0)
+    );
+
+    /**
+     * Indexes the provided text as the document of the provided file,
+     * replacing the previous document of the file. The text is split into
+     * terms before the index lock is taken, see {@link #tokenize(String)}.
+     * Searches see the document once the next {@link #publish()} returns.
+     *
+     * @param fileName The file name of the blog.
+     * @param text     The searchable text of the blog.
+     */
+    public void put(@Nonnull final String fileName, @Nonnull final String text) {
+        final Map<String, int[]> frequencies = new HashMap<>();
+
+        int length = 0;
+
+        for (String term : tokenize(text)) {
+            frequencies.computeIfAbsent(term, key -> new int[1])[0]++;
+            length++;
+        }
+
+        stage(fileName, frequencies, length);
+    }
+
+    /**
+     * Indexes the provided term frequencies, as returned by
+     * {@link #terms(String)}, as the document of the provided file, replacing
+     * the previous document of the file. Lets a blog restored from the content
+     * index skip reading and tokenizing its file.
+     *
+     * @param fileName The file name of the blog.
+     * @param terms    The frequency of each distinct term of the document.
+     */
+    public void putTerms(@Nonnull final String fileName, @Nonnull final Map<String, Integer> terms) {
+        final Map<String, int[]> frequencies = new HashMap<>();
+
+        int length = 0;
+
+        for (Map.Entry<String, Integer> entry : terms.entrySet()) {
+            frequencies.put(entry.getKey(), new int[]{entry.getValue()});
+            length += entry.getValue();
+        }
+
+        stage(fileName, frequencies, length);
+    }
+
+    /**
+     * Returns the staged term frequencies of the document of the provided
+     * file, read back from the postings of its terms.
+     *
+     * @param fileName The file name of the blog.
+     * @return The frequency of each distinct term of the document, empty if
+     * the file is not indexed.
+     */
+    @Nonnull
+    public synchronized Map<String, Integer> terms(final String fileName) {
+        final Integer id = documentIds.get(fileName);
+
+        if (id == null) {
+            return Map.of();
+        }
+
+        final Map<String, Integer> terms = new HashMap<>();
+
+        for (String term : documentTerms[id]) {
+            terms.put(term, postings.get(term).frequency(id));
+        }
+
+        return terms;
+    }
+
+    /**
+     * Drops the document of the provided file from the index, pruning it from
+     * the postings of its terms. Searches stop seeing the document once the
+     * next {@link #publish()} returns.
+     *
+     * @param fileName The file name of the blog.
+     */
+    public synchronized void remove(final String fileName) {
+        final Integer id = documentIds.remove(fileName);
+
+        if (id == null) {
+            return;
+        }
+
+        for (String term : documentTerms[id]) {
+            final TermBuffer buffer = postings.get(term);
+
+            buffer.remove(id);
+
+            if (buffer.size == 0) {
+                postings.remove(term);
+            }
+
+            changedTerms.add(term);
+        }
+
+        totalLength -= lengths[id];
+        fileNames[id] = null;
+        lengths[id] = 0;
+        documentTerms[id] = null;
+
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+
+        freeIds[freeCount++] = id;
+        dirty = true;
+    }
+
+    /**
+     * Publishes the staged index as the view searched from now on, replacing
+     * the current one in a single atomic write. Does nothing when nothing
+     * changed since the last publish. Only the postings of the terms changed
+     * since then are frozen; every other term keeps sharing its postings with
+     * the previous view.
+     */
+    public synchronized void publish() {
+        if (!dirty) {
+            return;
+        }
+
+        final View current = view.get();
+        final long generation = current.generation() + 1;
+
+        publishing = generation;
+
+        for (String term : emptiedTerms) {
+            if (!postings.containsKey(term) && published.get(term).documents().length == 0) {
+                published.remove(term);
+            }
+        }
+
+        emptiedTerms.clear();
+
+        for (String term : changedTerms) {
+            final TermBuffer buffer = postings.get(term);
+            final Postings previous = published.get(term);
+
+            if (buffer != null) {
+                published.put(term, buffer.freeze(generation, previous));
+            } else if (previous != null) {
+                published.put(term, new Postings(generation, NO_DOCUMENTS, NO_DOCUMENTS, previous.latest()));
+                emptiedTerms.add(term);
+            }
+        }
+
+        changedTerms.clear();
+
+        final float[] norms = new float[nextId];
+        final double averageLength = documentIds.isEmpty() ? 1 : (double) totalLength / documentIds.size();
+
+        for (int document = 0; document < nextId; document++) {
+            norms[document] = (float) (K1 * (1 - B + B * lengths[document] / averageLength));
+        }
+
+        view.set(new View(generation, Arrays.copyOf(fileNames, nextId), norms, documentIds.size()));
+
+        dirty = false;
+    }
+
+    /**
+     * Searches the published view for the provided query and ranks the
+     * documents containing any of its terms by their BM25 score.
+     *
+     * @param query The query text, split into terms like the documents.
+     * @param limit The maximum number of results.
+     * @return The file names of the best matching documents, best first, ties
+     * ordered by file name.
+     */
+    @Nonnull
+    public List<String> search(@Nonnull final String query, final int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+
+        final Set<String> terms = new LinkedHashSet<>();
+
+        for (String term : tokenize(query)) {
+            if (terms.size() == MAX_QUERY_TERMS) {
+                break;
+            }
+
+            terms.add(term);
+        }
+
+        while (true) {
+            final View index = view.get();
+
+            if (index.documentCount() == 0) {
+                return List.of();
+            }
+
+            final List<String> results = rank(index, terms, limit);
+
+            if (publishing <= index.generation() + 1) {
+                return results;
+            }
+        }
+    }
+
+    /**
+     * Splits the provided text into index terms: the text is stripped of
+     * diacritics and lowercased, then split on every run of characters that
+     * are neither letters nor digits. Terms longer than
+     * {@value #MAX_TERM_LENGTH} characters are dropped.
+     *
+     * @param text The text to split.
+     * @return The terms of the text, in order and with repetitions.
+     */
+    @Nonnull
+    public static List<String> tokenize(@Nonnull final String text) {
+        final String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        final String lower = DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+
+        final List<String> terms = new ArrayList<>();
+
+        for (String term : NON_TERM.split(lower)) {
+            if (!term.isEmpty() && term.length() <= MAX_TERM_LENGTH) {
+                terms.add(term);
+            }
+        }
+
+        return terms;
+    }
+
+    /**
+     * Stores the provided term frequencies as the document of the provided
+     * file, replacing its previous document.
+     *
+     * @param fileName    The file name of the blog.
+     * @param frequencies The frequency of each distinct term of the document.
+     * @param length      The length of the document, in terms.
+     */
+    private synchronized void stage(
+            final String fileName,
+            final Map<String, int[]> frequencies,
+            final int length
+    ) {
+        remove(fileName);
+
+        final int id = allocateId();
+
+        documentIds.put(fileName, id);
+        fileNames[id] = fileName;
+        lengths[id] = length;
+        documentTerms[id] = frequencies.keySet().toArray(String[]::new);
+        totalLength += length;
+
+        for (Map.Entry<String, int[]> entry : frequencies.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), term -> new TermBuffer()).add(id, entry.getValue()[0]);
+            changedTerms.add(entry.getKey());
+        }
+
+        dirty = true;
+    }
+
+    /**
+     * Takes a free document id, or the next never used one, growing the
+     * per-document arrays as needed.
+     *
+     * @return The allocated document id.
+     */
+    private int allocateId() {
+        if (freeCount > 0) {
+            return freeIds[--freeCount];
+        }
+
+        if (nextId == fileNames.length) {
+            final int capacity = nextId * 2;
+
+            fileNames = Arrays.copyOf(fileNames, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            documentTerms = Arrays.copyOf(documentTerms, capacity);
+        }
+
+        return nextId++;
+    }
+
+    /**
+     * Scores the documents of the provided view containing any of the query
+     * terms by BM25 and selects the best of them. Only the postings of the
+     * query terms are walked, each at the generation of the view.
+     *
+     * @param index The view to search.
+     * @param terms The distinct query terms.
+     * @param limit The maximum number of results.
+     * @return The file names of the best matching documents, best first.
+     */
+    private List<String> rank(final View index, final Set<String> terms, final int limit) {
+        final Postings[] matches = new Postings[terms.size()];
+
+        int matchCount = 0;
+        int postingCount = 0;
+
+        for (String term : terms) {
+            final Postings latest = published.get(term);
+            final Postings termPostings = latest == null ? null : latest.at(index.generation());
+
+            if (termPostings != null && termPostings.documents().length > 0) {
+                matches[matchCount++] = termPostings;
+                postingCount += termPostings.documents().length;
+            }
+        }
+
+        final double documentCount = index.documentCount();
+
+        final float[] scores = new float[index.fileNames().length];
+        final float[] norms = index.norms();
+        final int[] matched = new int[Math.min(postingCount, scores.length)];
+
+        int matchedCount = 0;
+
+        for (int match = 0; match < matchCount; match++) {
+            final int[] documents = matches[match].documents();
+            final int[] frequencies = matches[match].frequencies();
+
+            final float weight = (float) (Math.log(1 + (documentCount - documents.length + 0.5)
+                    / (documents.length + 0.5)) * (K1 + 1));
+
+            for (int i = 0; i < documents.length; i++) {
+                final int document = documents[i];
+                final float frequency = frequencies[i];
+
+                if (scores[document] == 0) {
+                    matched[matchedCount++] = document;
+                }
+
+                scores[document] += weight * frequency / (frequency + norms[document]);
+            }
+        }
+
+        return top(index.fileNames(), scores, matched, matchedCount, limit);
+    }
+
+    /**
+     * Selects the best scored of the matched documents, keeping a small
+     * sorted window of the best ones seen rather than sorting every match.
+     *
+     * @param fileNames    The file names indexed by document id.
+     * @param scores       The scores indexed by document id.
+     * @param matched      The ids of the matched documents, each once.
+     * @param matchedCount The number of ids in {@code matched}.
+     * @param limit        The maximum number of results.
+     * @return The file names of the best documents, best first.
+     */
+    private static List<String> top(
+            final String[] fileNames,
+            final float[] scores,
+            final int[] matched,
+            final int matchedCount,
+            final int limit
+    ) {
+        final int[] best = new int[Math.min(limit, matchedCount)];
+
+        int bestCount = 0;
+
+        for (int i = 0; i < matchedCount; i++) {
+            final int document = matched[i];
+
+            if (bestCount == best.length && !ranksBefore(document, best[bestCount - 1], scores, fileNames)) {
+                continue;
+            }
+
+            int position = bestCount == best.length ? bestCount - 1 : bestCount++;
+
+            while (position > 0 && ranksBefore(document, best[position - 1], scores, fileNames)) {
+                best[position] = best[position - 1];
+                position--;
+            }
+
+            best[position] = document;
+        }
+
+        final List<String> results = new ArrayList<>(bestCount);
+
+        for (int i = 0; i < bestCount; i++) {
+            results.add(fileNames[best[i]]);
+        }
+
+        return results;
+    }
+
+    /**
+     * Checks whether a document ranks before another: by a higher score, then
+     * by file name.
+     *
+     * @param document  The id of the document to check.
+     * @param other     The id of the document to check against.
+     * @param scores    The scores indexed by document id.
+     * @param fileNames The file names indexed by document id.
+     * @return True if {@code document} ranks before {@code other}.
+     */
+    private static boolean ranksBefore(
+            final int document,
+            final int other,
+            final float[] scores,
+            final String[] fileNames
+    ) {
+        final int byScore = Double.compare(scores[document], scores[other]);
+
+        return byScore > 0 || byScore == 0 && fileNames[document].compareTo(fileNames[other]) < 0;
+    }
+
+    /**
+     * The published postings of a term: the ids of the documents containing
+     * it, ascending, and the frequency of the term in each. Immutable, and
+     * linked to the postings it replaced so a search of the previous view can
+     * still read them.
+     *
+     * @param generation  The generation of the view that published them.
+     * @param documents   The document ids, ascending; empty once no document
+     *                    contains the term.
+     * @param frequencies The term frequency in each document.
+     * @param previous    The postings they replaced, without further history,
+     *                    or {@code null} if the term was new.
+     */
+    private record Postings(long generation, int[] documents, int[] frequencies, Postings previous) {
+        /**
+         * @param viewGeneration The generation of the searched view.
+         * @return The newest of these postings published no later than the
+         * view, or {@code null} if the term was not in it or its postings are
+         * no longer kept.
+         */
+        Postings at(final long viewGeneration) {
+            Postings postings = this;
+
+            while (postings != null && postings.generation > viewGeneration) {
+                postings = postings.previous;
+            }
+
+            return postings;
+        }
+
+        /**
+         * @return These postings without the ones they replaced.
+         */
+        Postings latest() {
+            return previous == null ? this : new Postings(generation, documents, frequencies, null);
+        }
+    }
+
+    /**
+     * The staged postings of a term, in growable parallel arrays. A document
+     * with a fresh id, the common case, is appended; only a reused id is
+     * inserted in order.
+     */
+    private static final class TermBuffer {
+        /**
+         * The document ids, ascending, in the first {@link #size} slots.
+         */
+        private int[] documents = new int[4];
+
+        /**
+         * The term frequency in each document.
+         */
+        private int[] frequencies = new int[4];
+
+        /**
+         * The number of documents containing the term.
+         */
+        private int size;
+
+        /**
+         * @param document  The id of the document to add; not yet present.
+         * @param frequency The term frequency in the document.
+         */
+        void add(final int document, final int frequency) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+
+            final int insertion = size == 0 || documents[size - 1] < document
+                    ? size
+                    : -Arrays.binarySearch(documents, 0, size, document) - 1;
+
+            System.arraycopy(documents, insertion, documents, insertion + 1, size - insertion);
+            System.arraycopy(frequencies, insertion, frequencies, insertion + 1, size - insertion);
+
+            documents[insertion] = document;
+            frequencies[insertion] = frequency;
+            size++;
+        }
+
+        /**
+         * @param document The id of the document to remove; present.
+         */
+        void remove(final int document) {
+            final int index = Arrays.binarySearch(documents, 0, size, document);
+
+            System.arraycopy(documents, index + 1, documents, index, size - index - 1);
+            System.arraycopy(frequencies, index + 1, frequencies, index, size - index - 1);
+            size--;
+        }
+
+        /**
+         * @param document The id of a document containing the term.
+         * @return The term frequency in the document.
+         */
+        int frequency(final int document) {
+            return frequencies[Arrays.binarySearch(documents, 0, size, document)];
+        }
+
+        /**
+         * @param generation The generation of the view being published.
+         * @param previous   The postings currently published for the term, or
+         *                   {@code null} if there are none.
+         * @return An immutable copy of the buffer, replacing {@code previous}.
+         */
+        Postings freeze(final long generation, final Postings previous) {
+            return new Postings(
+                    generation,
+                    Arrays.copyOf(documents, size),
+                    Arrays.copyOf(frequencies, size),
+                    previous == null ? null : previous.latest()
+            );
+        }
+    }
+
+    /**
+     * An immutable published view of the index, whose postings are those of
+     * {@link #published} at its generation.
+     *
+     * @param generation    The generation of the view, counting publishes.
+     * @param fileNames     The file names indexed by document id; {@code null}
+     *                      for a free id.
+     * @param norms         The BM25 length normalization of every document,
+     *                      {@code k1 * (1 - b + b * length / averageLength)},
+     *                      indexed by document id.
+     * @param documentCount The number of indexed documents.
+     */
+    private record View(
+            long generation,
+            String[] fileNames,
+            float[] norms,
+            int documentCount
+    ) {
+    }
+}
@@ -1,17 +1,52 @@
 package xyz.mijaljevic.cache;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.configuration.MemorySize;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import xyz.mijaljevic.domain.dto.ByteCacheStats;
 import xyz.mijaljevic.domain.entity.StaticFile;
 import xyz.mijaljevic.domain.entity.StaticFileType;
+import xyz.mijaljevic.utils.FileUtils;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Application scoped in-memory index of {@link StaticFile} models; this cache
  * is the single source of truth for static files. Lookups by name are O(1).
+ * Models are published whole and never mutated afterwards, so a reader always
+ * sees a consistent one.
+ *
+ * <p>
+ * Files below the resident threshold ({@code application.static.resident-threshold})
+ * are held in memory, larger ones are served from disk, see
+ * {@link #isResident(long)}.
+ * </p>
+ *
+ * <p>
+ * Optionally ({@code application.static.byte-cache.enabled}) it also holds the
+ * bodies of small static files in off-heap direct buffers, bounded by a total
+ * byte budget and evicted by Caffeine's W-TinyLFU policy, so frequently served
+ * files stay in memory while the long tail is reloaded from disk on demand.
+ * Bodies are keyed by content hash, never by name, and a body reloaded from
+ * disk is hashed again before it is cached, so a body can only ever be served
+ * under the <i>ETag</i> of the content it holds.
+ * </p>
  */
 @ApplicationScoped
 public class StaticFileCache {
@@ -21,21 +56,105 @@ public class StaticFileCache {
     private final Map<String, StaticFile> byName = new ConcurrentHashMap<>();
 
     /**
-     * Inserts or updates the provided static file in the index.
+     * Bodies of small static files keyed by content hash, weighed by size in
+     * bytes; {@code null} when the byte cache is disabled.
+     */
+    private final Cache<String, ByteBuffer> bodies;
+
+    /**
+     * The byte budget of {@link #bodies}.
+     */
+    private final long budget;
+
+    /**
+     * Size in bytes from which a file is served from disk rather than held
+     * in memory.
+     */
+    private final long residentThreshold;
+
+    /**
+     * Creates the cache, with a byte cache of the configured budget if it is
+     * enabled.
+     *
+     * @param byteCacheEnabled  True to hold small file bodies in the byte
+     *                          cache.
+     * @param byteCacheBudget   Maximum total size of the held bodies.
+     * @param residentThreshold Size from which a file is served from disk.
+     */
+    @Inject
+    StaticFileCache(
+            @ConfigProperty(
+                    name = "application.static.byte-cache.enabled",
+                    defaultValue = "false"
+            ) final boolean byteCacheEnabled,
+            @ConfigProperty(
+                    name = "application.static.byte-cache.maximum-bytes",
+                    defaultValue = "16M"
+            ) final MemorySize byteCacheBudget,
+            @ConfigProperty(
+                    name = "application.static.resident-threshold",
+                    defaultValue = "64K"
+            ) final MemorySize residentThreshold
+    ) {
+        this(byteCacheEnabled ? byteCacheBudget.asLongValue() : 0L, residentThreshold.asLongValue());
+    }
+
+    /**
+     * Creates the cache with an explicit byte budget and resident threshold.
+     * Intended for tests.
+     *
+     * @param budget            The byte budget, or {@code 0} to disable the
+     *                          byte cache.
+     * @param residentThreshold Size from which a file is served from disk.
+     */
+    StaticFileCache(final long budget, final long residentThreshold) {
+        this.budget = budget;
+        this.residentThreshold = residentThreshold;
+        this.bodies = budget <= 0L ? null : Caffeine.newBuilder()
+                .maximumWeight(budget)
+                .weigher((final String name, final ByteBuffer body) -> body.capacity())
+                .executor(Runnable::run)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Inserts or updates the provided static file in the index, dropping the
+     * body of the content it replaces.
      *
      * @param staticFile The {@link StaticFile} to store.
      */
     public void put(final StaticFile staticFile) {
-        byName.put(staticFile.getName(), staticFile);
+        final StaticFile previous = byName.put(staticFile.getName(), staticFile);
+
+        if (previous != null && !Objects.equals(previous.getHash(), staticFile.getHash())) {
+            invalidateBody(previous.getHash());
+        }
     }
 
     /**
-     * Removes the static file with the provided name from the index.
+     * Removes the static file with the provided name from the index, together
+     * with its body.
      *
      * @param name The name of the static file to remove.
      */
     public void removeByName(final String name) {
-        byName.remove(name);
+        final StaticFile removed = byName.remove(name);
+
+        if (removed != null) {
+            invalidateBody(removed.getHash());
+        }
+    }
+
+    /**
+     * Drops the body held for the provided content hash, if any.
+     *
+     * @param hash The content hash, may be {@code null}.
+     */
+    private void invalidateBody(final String hash) {
+        if (bodies != null && hash != null) {
+            bodies.invalidate(hash);
+        }
     }
 
     /**
@@ -48,6 +167,19 @@ public class StaticFileCache {
         return byName.get(name);
     }
 
+    /**
+     * Returns all cached static files of the provided type.
+     *
+     * @param type The {@link StaticFileType} to filter by.
+     * @return The cached {@link StaticFile} models of the provided type.
+     */
+    public List<StaticFile> all(final StaticFileType type) {
+        return byName.values()
+                .stream()
+                .filter(staticFile -> staticFile.getType() == type)
+                .toList();
+    }
+
     /**
      * Returns all cached static files of the provided type whose names are not
      * contained in the provided collection. Used by the scheduler to detect
@@ -67,4 +199,128 @@ public class StaticFileCache {
                 .filter(staticFile -> staticFile.getType() == type && !names.contains(staticFile.getName()))
                 .toList();
     }
+
+    /**
+     * Checks whether a file of the provided size is held in memory: as a
+     * resident body, or in the byte cache when it is enabled. Larger files are
+     * served from disk, where a file rewritten in place cannot change the
+     * bytes of a body already handed out, and each costs no memory at all.
+     *
+     * @param size The file size in bytes.
+     * @return True if the file is held in memory.
+     */
+    public boolean isResident(final long size) {
+        return size < residentThreshold;
+    }
+
+    /**
+     * @return True when small file bodies are held in the byte cache.
+     */
+    public boolean holdsBodies() {
+        return bodies != null;
+    }
+
+    /**
+     * Stores the body of a static file in the byte cache. Called by the
+     * scheduler whenever it reads a new version of a file, before publishing
+     * the model carrying its hash. Does nothing when the byte cache is
+     * disabled.
+     *
+     * @param hash The content hash of the body.
+     * @param body The read-only body.
+     */
+    public void putBody(@Nonnull final String hash, @Nonnull final ByteBuffer body) {
+        if (bodies != null) {
+            bodies.put(hash, body);
+        }
+    }
+
+    /**
+     * Returns the cached body with the provided content hash, if it is held.
+     * Never touches the filesystem, so it may be called on the event loop.
+     * This is the lookup the byte cache hits and misses are counted by.
+     *
+     * @param hash The content hash of the static file, may be {@code null}.
+     * @return The read-only body, or {@code null} when the byte cache is
+     * disabled or does not hold it.
+     */
+    @Nullable
+    public ByteBuffer cachedBody(final String hash) {
+        if (bodies == null || hash == null) {
+            return null;
+        }
+
+        return bodies.getIfPresent(hash);
+    }
+
+    /**
+     * Returns the cached body with the provided content hash, loading it from
+     * the provided path into a direct buffer if it was evicted. A loaded body
+     * is only cached if it still has the provided hash; a file changed since
+     * it was hashed is left to the scheduler. Reads the file on a miss, so it
+     * must not be called on the event loop. Meant to follow a
+     * {@link #cachedBody} miss, so it does not count the lookup again.
+     *
+     * @param hash The content hash of the static file.
+     * @param path The backing file, read on a cache miss.
+     * @return The read-only body, or {@code null} when the byte cache is
+     * disabled, the file could not be read or no longer has the provided
+     * hash.
+     */
+    @Nullable
+    public ByteBuffer body(@Nonnull final String hash, @Nonnull final Path path) {
+        if (bodies == null) {
+            return null;
+        }
+
+        final ByteBuffer cached = bodies.policy().getIfPresentQuietly(hash);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        final ByteBuffer body;
+
+        try {
+            body = FileUtils.readDirect(path);
+
+            if (!hash.equals(FileUtils.hashBuffer(body))) {
+                Log.debugf("Static file %s changed since it was hashed, not caching its body", path);
+                return null;
+            }
+        } catch (IOException | NoSuchAlgorithmException e) {
+            Log.errorf(e, "Failed to load the body of static file %s", path);
+            return null;
+        }
+
+        bodies.put(hash, body);
+
+        return body;
+    }
+
+    /**
+     * @return A snapshot of the byte cache metrics, empty when the byte cache
+     * is disabled.
+     */
+    @Nonnull
+    public Optional<ByteCacheStats> byteCacheStats() {
+        if (bodies == null) {
+            return Optional.empty();
+        }
+
+        final CacheStats stats = bodies.stats();
+
+        final long bytes = bodies.policy()
+                .eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+
+        return Optional.of(new ByteCacheStats(
+                stats.hitCount(),
+                stats.missCount(),
+                stats.evictionCount(),
+                bytes,
+                budget
+        ));
+    }
 }
@@ -0,0 +1,24 @@
+package xyz.mijaljevic.domain.dto;
+
+/**
+ * An immutable carrier for a single Atom feed entry, rendered by the
+ * {@code atomEntry.xml} Qute template. The {@code content} holds the
+ * CommonMark-rendered blog HTML and is emitted raw inside a CDATA section by the
+ * template; every other field is XML-escaped by Qute.
+ *
+ * @param title     The blog title.
+ * @param link      The public {@code /blog/{slug}} URL of the blog, also the
+ *                  entry id.
+ * @param published The RFC-3339 formatted publication date.
+ * @param updated   The RFC-3339 formatted update date, the publication date
+ *                  when the blog was never updated.
+ * @param content   The CommonMark-rendered blog HTML.
+ */
+public record AtomEntry(
+        String title,
+        String link,
+        String published,
+        String updated,
+        String content
+) {
+}
@@ -0,0 +1,13 @@
+package xyz.mijaljevic.domain.dto;
+
+/**
+ * A point in time snapshot of the static file byte cache metrics.
+ *
+ * @param hits      Number of requests served from a cached body.
+ * @param misses    Number of requests that had to load the body from disk.
+ * @param evictions Number of bodies evicted to stay within the budget.
+ * @param bytes     Total size in bytes of the cached bodies.
+ * @param budget    The configured byte budget.
+ */
+public record ByteCacheStats(long hits, long misses, long evictions, long bytes, long budget) {
+}
@@ -0,0 +1,30 @@
+package xyz.mijaljevic.domain.dto;
+
+/**
+ * A satisfiable byte range of a representation, resolved from a request's
+ * <i>Range</i> header against the length of the representation. Both
+ * positions are inclusive, as in the <i>Content-Range</i> header. This is an
+ * immutable carrier.
+ *
+ * @param start The position of the first byte of the range.
+ * @param end   The position of the last byte of the range, never past the
+ *              end of the representation.
+ */
+public record ByteRange(long start, long end) {
+    /**
+     * @return The number of bytes in the range.
+     */
+    public long length() {
+        return end - start + 1;
+    }
+
+    /**
+     * Formats the range as the value of a <i>Content-Range</i> header.
+     *
+     * @param completeLength The length of the whole representation.
+     * @return The <i>Content-Range</i> value, e.g. {@code bytes 0-499/1234}.
+     */
+    public String contentRange(final long completeLength) {
+        return "bytes " + start + '-' + end + '/' + completeLength;
+    }
+}
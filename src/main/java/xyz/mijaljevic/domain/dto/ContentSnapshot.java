@@ -0,0 +1,40 @@
+package xyz.mijaljevic.domain.dto;
+
+import xyz.mijaljevic.domain.entity.Blog;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A consistent, versioned view of every cached blog as published by the blog
+ * cache after a scheduler batch. A request handler reads one snapshot and
+ * takes the blogs, the slug and tag lookups, the ordered listings and the
+ * caching headers from it, so it never sees one half of a batch alongside the
+ * other or a listing that does not match its ETag. This is an immutable
+ * carrier; the collections are unmodifiable.
+ *
+ * @param version      The publish count, starting at zero for the empty
+ *                     snapshot.
+ * @param byFileName   The blogs keyed by file name.
+ * @param bySlug       The blogs keyed by slug.
+ * @param sorted       Every blog, ordered newest first.
+ * @param recent       The head of {@code sorted} shown on the home page.
+ * @param byTag        The blogs carrying each normalized tag, ordered newest
+ *                     first.
+ * @param tags         Every normalized tag in use, ordered by name.
+ * @param eTag         The HTTP <i>ETag</i> of the pages listing the blogs.
+ * @param lastModified The HTTP <i>Last-Modified</i> of the pages listing the
+ *                     blogs.
+ */
+public record ContentSnapshot(
+        long version,
+        Map<String, Blog> byFileName,
+        Map<String, Blog> bySlug,
+        List<Blog> sorted,
+        List<Blog> recent,
+        Map<String, List<Blog>> byTag,
+        List<TagLink> tags,
+        String eTag,
+        String lastModified
+) {
+}
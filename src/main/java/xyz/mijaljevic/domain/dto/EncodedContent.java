@@ -0,0 +1,41 @@
+package xyz.mijaljevic.domain.dto;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import xyz.mijaljevic.domain.entity.ContentEncoding;
+
+/**
+ * An immutable carrier for a response body together with its precompressed
+ * variants. The variants are built once, when the content is first seen, so
+ * serving a compressed response is a plain buffer write.
+ *
+ * <p>
+ * A variant is {@code null} when it could not be built or would not be smaller
+ * than the uncompressed body; the body is then served uncompressed instead.
+ * </p>
+ *
+ * @param identity The uncompressed body. Shared with every response; must
+ *                 never be mutated.
+ * @param gzip     The gzip compressed body, or {@code null}.
+ * @param brotli   The brotli compressed body, or {@code null}.
+ */
+public record EncodedContent(
+        @Nonnull byte[] identity,
+        @Nullable byte[] gzip,
+        @Nullable byte[] brotli
+) {
+    /**
+     * Returns the body variant for the provided content coding.
+     *
+     * @param encoding The requested {@link ContentEncoding}.
+     * @return The variant, or {@code null} if there is none for the coding.
+     */
+    @Nullable
+    public byte[] variant(@Nonnull final ContentEncoding encoding) {
+        return switch (encoding) {
+            case BROTLI -> brotli;
+            case GZIP -> gzip;
+            case IDENTITY -> identity;
+        };
+    }
+}
@@ -0,0 +1,17 @@
+package xyz.mijaljevic.domain.dto;
+
+import xyz.mijaljevic.domain.entity.FileChangeType;
+
+import java.nio.file.Path;
+
+/**
+ * A change to a file in a watched content directory, as dispatched by the
+ * watch engine to the handler of that directory. This is an immutable carrier.
+ *
+ * @param name The name the file is cached and addressed by: its path relative
+ *             to the content directory, with {@code /} separators.
+ * @param path The path of the file, resolved against the content directory.
+ * @param type Whether the file was modified or deleted.
+ */
+public record FileChange(String name, Path path, FileChangeType type) {
+}
@@ -0,0 +1,67 @@
+package xyz.mijaljevic.domain.dto;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cheap fingerprint of a file taken from its filesystem attributes. When the
+ * stamp of a file is unchanged the schedulers assume its content is unchanged
+ * too and skip reading and hashing it; only a differing stamp costs a full
+ * hash. This is an immutable carrier.
+ *
+ * @param size          The file size in bytes.
+ * @param modifiedNanos The last-modified time in nanoseconds since the epoch,
+ *                      at the precision the filesystem records.
+ * @param fileKey       The filesystem's unique file key (device and inode on
+ *                      POSIX), which changes when a file is replaced by a
+ *                      rename; {@code null} where the filesystem has none.
+ */
+public record FileStamp(long size, long modifiedNanos, @Nullable Object fileKey) {
+    /**
+     * Takes the stamp of the provided file attributes.
+     *
+     * @param attributes The {@link BasicFileAttributes} of a file.
+     * @return The {@link FileStamp} of the file.
+     */
+    @Nonnull
+    public static FileStamp of(@Nonnull final BasicFileAttributes attributes) {
+        return new FileStamp(
+                attributes.size(),
+                attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                attributes.fileKey()
+        );
+    }
+
+    /**
+     * Reads the attributes of the provided file and takes their stamp.
+     *
+     * @param path The file to stamp.
+     * @return The {@link FileStamp} of the file.
+     * @throws IOException in case it failed to read the file attributes.
+     */
+    @Nonnull
+    public static FileStamp read(@Nonnull final Path path) throws IOException {
+        return of(Files.readAttributes(path, BasicFileAttributes.class));
+    }
+
+    /**
+     * Checks whether the provided stamp, read back from the content index
+     * where the file key is kept in its string form, was taken of the same
+     * version of the file as this one.
+     *
+     * @param stored A stamp restored from the content index.
+     * @return True if the size, the modified time and the file key match.
+     */
+    public boolean matches(@Nonnull final FileStamp stored) {
+        return size == stored.size
+                && modifiedNanos == stored.modifiedNanos
+                && Objects.equals(Objects.toString(fileKey, null), Objects.toString(stored.fileKey, null));
+    }
+}
@@ -0,0 +1,18 @@
+package xyz.mijaljevic.domain.dto;
+
+import org.commonmark.node.Node;
+
+/**
+ * The result of parsing a blog Markdown file in a single pass: its
+ * front-matter metadata, its resolved title and the document tree of its body,
+ * ready to be rendered without parsing the file again.
+ *
+ * @param metadata The parsed {@link BlogMetadata}, {@link BlogMetadata#EMPTY}
+ *                 when the file carries no metadata block.
+ * @param title    The {@code Title} metadata tag, falling back to the first
+ *                 heading of the body, or "Untitled".
+ * @param document The document tree of the body, without the metadata block.
+ *                 Mutable; must not be shared across threads.
+ */
+public record ParsedMarkdown(BlogMetadata metadata, String title, Node document) {
+}
@@ -0,0 +1,24 @@
+package xyz.mijaljevic.domain.dto;
+
+/**
+ * An immutable carrier for a fully rendered feed held by the feed cache. The
+ * feed is valid for as long as the blog cache keeps publishing the snapshot
+ * it was rendered from, so a conditional request is answered from its
+ * <i>ETag</i> and <i>Last-Modified</i> without rendering anything.
+ *
+ * @param version      The version of the blog snapshot the feed was rendered
+ *                     from.
+ * @param eTag         The HTTP <i>ETag</i> of the feed, the SHA-256 hash of its
+ *                     bytes.
+ * @param lastModified The HTTP <i>Last-Modified</i> of the feed.
+ * @param content      The rendered feed as UTF-8 bytes, with its precompressed
+ *                     variants. Shared with every response; must never be
+ *                     mutated.
+ */
+public record RenderedFeed(
+        long version,
+        String eTag,
+        String lastModified,
+        EncodedContent content
+) {
+}
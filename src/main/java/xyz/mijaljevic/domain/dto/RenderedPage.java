@@ -0,0 +1,23 @@
+package xyz.mijaljevic.domain.dto;
+
+/**
+ * An immutable carrier for a fully rendered HTML page held by the page cache.
+ * The page is valid for as long as the resource keeps serving the same
+ * <i>ETag</i>; the visitor counts shown in the footer are recorded alongside so
+ * the cache can tell when the page went stale for a reason the ETag does not
+ * cover.
+ *
+ * @param etag       The <i>ETag</i> the page was rendered for.
+ * @param visitors   The {@link VisitorCount} rendered into the page footer.
+ * @param renderedAt The time the page was rendered, in epoch milliseconds.
+ * @param content    The rendered page as UTF-8 bytes, with its precompressed
+ *                   variants. Shared with every response; must never be
+ *                   mutated.
+ */
+public record RenderedPage(
+        String etag,
+        VisitorCount visitors,
+        long renderedAt,
+        EncodedContent content
+) {
+}
@@ -0,0 +1,26 @@
+package xyz.mijaljevic.domain.dto;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import xyz.mijaljevic.domain.entity.Blog;
+
+import java.util.Map;
+
+/**
+ * A blog as kept in the content index across restarts: everything the blog
+ * scheduler derives from a blog file, so a file whose stamp still matches is
+ * restored without being read, hashed or parsed again. This is an immutable
+ * carrier; the {@link Blog} must not be mutated once stored.
+ *
+ * @param blog  The blog, its stamp taken when the index was written.
+ * @param terms The frequency of each distinct term of the blog's search
+ *              document.
+ * @param html  The rendered HTML of the blog, or {@code null} when it was not
+ *              rendered yet.
+ */
+public record StoredBlog(
+        @Nonnull Blog blog,
+        @Nonnull Map<String, Integer> terms,
+        @Nullable String html
+) {
+}
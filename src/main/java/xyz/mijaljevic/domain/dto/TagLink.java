@@ -0,0 +1,11 @@
+package xyz.mijaljevic.domain.dto;
+
+/**
+ * A tag link model. Used by the website to list the tags in use, each linking
+ * to the page of the blogs carrying it. This is a simple immutable carrier.
+ *
+ * @param tag   The normalized tag, used as the public identifier in URLs.
+ * @param count The number of blogs carrying the tag.
+ */
+public record TagLink(String tag, int count) {
+}
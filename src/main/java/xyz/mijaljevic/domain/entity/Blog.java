@@ -2,6 +2,7 @@ package xyz.mijaljevic.domain.entity;
 
 import jakarta.annotation.Nonnull;
 import lombok.Data;
+import xyz.mijaljevic.domain.dto.FileStamp;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -64,6 +65,12 @@ public class Blog implements Comparable<Blog> {
      */
     private String hash;
 
+    /**
+     * Stamp of the source file the {@link #hash} was computed for; the file is
+     * only re-hashed once its stamp differs.
+     */
+    private FileStamp stamp;
+
     /**
      * Creation timestamp, derived from the {@code Date} front-matter metadata
      * tag (at start of day). A blog without a parseable {@code Date} is
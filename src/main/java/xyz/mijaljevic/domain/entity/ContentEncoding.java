@@ -0,0 +1,44 @@
+package xyz.mijaljevic.domain.entity;
+
+/**
+ * Defines the HTTP content codings the website can serve a response body in.
+ * Compressed variants are built once per content hash and picked per request
+ * from the <i>Accept-Encoding</i> header:
+ * <ul>
+ *      <li>BROTLI</li>
+ *      <li>GZIP</li>
+ *      <li>IDENTITY</li>
+ * </ul>
+ */
+public enum ContentEncoding {
+    /**
+     * Brotli compressed body.
+     */
+    BROTLI("br"),
+    /**
+     * Gzip compressed body.
+     */
+    GZIP("gzip"),
+    /**
+     * Uncompressed body.
+     */
+    IDENTITY("identity");
+
+    /**
+     * The content coding token used in the <i>Accept-Encoding</i> and
+     * <i>Content-Encoding</i> headers.
+     */
+    private final String token;
+
+    ContentEncoding(final String token) {
+        this.token = token;
+    }
+
+    /**
+     * @return The content coding token used in the <i>Accept-Encoding</i> and
+     * <i>Content-Encoding</i> headers.
+     */
+    public String token() {
+        return token;
+    }
+}
@@ -0,0 +1,36 @@
+package xyz.mijaljevic.domain.entity;
+
+/**
+ * Defines the syndication formats the website serves its feeds in. Each feed
+ * is assembled from per-blog item fragments rendered in its format:
+ * <ul>
+ *      <li>RSS</li>
+ *      <li>ATOM</li>
+ * </ul>
+ */
+public enum FeedFormat {
+    /**
+     * RSS 2.0 feed.
+     */
+    RSS("text/xml"),
+    /**
+     * Atom (RFC 4287) feed.
+     */
+    ATOM("application/atom+xml");
+
+    /**
+     * The media type the feed is served as.
+     */
+    private final String mediaType;
+
+    FeedFormat(final String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    /**
+     * @return The media type the feed is served as.
+     */
+    public String mediaType() {
+        return mediaType;
+    }
+}
@@ -0,0 +1,18 @@
+package xyz.mijaljevic.domain.entity;
+
+/**
+ * Defines the kinds of change the watch engine reports for a file in a
+ * watched content directory. A file created and then modified, or modified
+ * several times, within one batch is reported once; only its final state
+ * matters, so creation and modification are not told apart.
+ */
+public enum FileChangeType {
+    /**
+     * The file was created or its content changed.
+     */
+    MODIFIED,
+    /**
+     * The file was deleted or moved out of the directory.
+     */
+    DELETED
+}
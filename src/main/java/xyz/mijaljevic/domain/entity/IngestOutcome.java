@@ -0,0 +1,27 @@
+package xyz.mijaljevic.domain.entity;
+
+/**
+ * Defines the outcomes of ingesting a content file into the caches:
+ * <ul>
+ *      <li>CHANGED</li>
+ *      <li>UNCHANGED</li>
+ *      <li>FAILED</li>
+ * </ul>
+ */
+public enum IngestOutcome {
+    /**
+     * The cached model of the file was created or replaced; the batch has to
+     * be published.
+     */
+    CHANGED,
+    /**
+     * The file is ingested but its cached model stayed as it was, e.g. only
+     * its stamp changed; nothing has to be published.
+     */
+    UNCHANGED,
+    /**
+     * The file could not be ingested; its cached model, if any, is left as it
+     * was.
+     */
+    FAILED
+}
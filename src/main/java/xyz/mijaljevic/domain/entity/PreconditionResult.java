@@ -0,0 +1,27 @@
+package xyz.mijaljevic.domain.entity;
+
+/**
+ * Defines the outcomes of evaluating the conditional headers of a request
+ * against the current <i>ETag</i> and <i>Last-Modified</i> of a resource:
+ * <ul>
+ *      <li>PASSED</li>
+ *      <li>NOT_MODIFIED</li>
+ *      <li>FAILED</li>
+ * </ul>
+ */
+public enum PreconditionResult {
+    /**
+     * Every condition holds; the resource is served as usual.
+     */
+    PASSED,
+    /**
+     * The client already holds the current representation; answered with a
+     * 304.
+     */
+    NOT_MODIFIED,
+    /**
+     * An <i>If-Match</i> or <i>If-Unmodified-Since</i> condition does not
+     * hold; answered with a 412.
+     */
+    FAILED
+}
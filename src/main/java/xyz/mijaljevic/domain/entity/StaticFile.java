@@ -1,7 +1,10 @@
 package xyz.mijaljevic.domain.entity;
 
 import lombok.Data;
+import xyz.mijaljevic.domain.dto.EncodedContent;
+import xyz.mijaljevic.domain.dto.FileStamp;
 
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
 
 /**
@@ -21,6 +24,13 @@ public class StaticFile {
      */
     private String hash;
 
+    /**
+     * Stamp of the backing file the {@link #hash} was computed for; the file
+     * is only re-hashed once its stamp differs. A file served from disk is
+     * only served under the hash while it still has this stamp.
+     */
+    private FileStamp stamp;
+
     /**
      * Last-modified timestamp, derived from the backing file.
      */
@@ -30,4 +40,19 @@ public class StaticFile {
      * The {@link StaticFileType} of static file (CSS or image).
      */
     private StaticFileType type;
+
+    /**
+     * Body of the static file with its precompressed variants, built once per
+     * content hash. Only held for compressible formats (CSS, JS, icons);
+     * {@code null} for the rest.
+     */
+    private EncodedContent content;
+
+    /**
+     * Resident, read-only heap body of a small static file that is not
+     * compressible, holding the very bytes the {@link #hash} was computed
+     * from. {@code null} when the file is served from its {@link #content},
+     * from the byte cache or, for a large file, straight from disk.
+     */
+    private ByteBuffer body;
 }
@@ -0,0 +1,48 @@
+package xyz.mijaljevic.lifecycle;
+
+import io.quarkus.arc.Arc;
+import io.quarkus.arc.InstanceHandle;
+import io.quarkus.qute.TemplateExtension;
+import xyz.mijaljevic.web.StaticUrls;
+
+/**
+ * Template extensions resolving the URLs of static files in the
+ * {@code asset} namespace, e.g. {@code {asset:css}}. Only the files covered
+ * by {@link StaticUrls#version()} are exposed, so a page's <i>ETag</i> always
+ * changes with the URLs it links. See {@link StaticUrls}.
+ */
+@TemplateExtension(namespace = "asset")
+public final class AssetTemplateExtensions {
+    private AssetTemplateExtensions() {
+    }
+
+    /**
+     * @return The fingerprinted URL of the CSS file.
+     */
+    @SuppressWarnings("unused")
+    static String css() {
+        try (final InstanceHandle<StaticUrls> instance = Arc.container().instance(StaticUrls.class)) {
+            return instance.get().css();
+        }
+    }
+
+    /**
+     * @return The fingerprinted URL of the JavaScript file.
+     */
+    @SuppressWarnings("unused")
+    static String script() {
+        try (final InstanceHandle<StaticUrls> instance = Arc.container().instance(StaticUrls.class)) {
+            return instance.get().script();
+        }
+    }
+
+    /**
+     * @return The fingerprinted URL of the icon.
+     */
+    @SuppressWarnings("unused")
+    static String favicon() {
+        try (final InstanceHandle<StaticUrls> instance = Arc.container().instance(StaticUrls.class)) {
+            return instance.get().favicon();
+        }
+    }
+}
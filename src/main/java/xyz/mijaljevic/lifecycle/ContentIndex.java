@@ -0,0 +1,657 @@
+package xyz.mijaljevic.lifecycle;
+
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.Shutdown;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import xyz.mijaljevic.cache.BlogCache;
+import xyz.mijaljevic.cache.BlogRenderer;
+import xyz.mijaljevic.cache.SearchIndex;
+import xyz.mijaljevic.cache.StaticFileCache;
+import xyz.mijaljevic.domain.dto.EncodedContent;
+import xyz.mijaljevic.domain.dto.FileStamp;
+import xyz.mijaljevic.domain.dto.StoredBlog;
+import xyz.mijaljevic.domain.entity.Blog;
+import xyz.mijaljevic.domain.entity.StaticFile;
+import xyz.mijaljevic.domain.entity.StaticFileType;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Application scoped binary index of the ingested content, kept across
+ * restarts so the schedulers only read the files that changed while the
+ * application was down.
+ *
+ * <p>
+ * At {@link #persist() shutdown} every cached blog, with its search terms and
+ * rendered HTML, and the hash of every cached image, with the precompressed
+ * variants of the compressible ones, are written to the file
+ * configured via {@code application.content-index-file}, next to the visitor
+ * counts by default. At startup the file is memory-mapped and only its
+ * table of entries is read: the name and offset of every blog, and the small
+ * image entries. The blog and image schedulers then {@link #takeBlog take}
+ * the entry of each file they ingest and reuse it when its stamp still
+ * matches the file, see {@link FileStamp#matches(FileStamp)}; a blog's tags,
+ * terms and HTML are only decoded then, and only when the stamp matches.
+ * </p>
+ *
+ * <p>
+ * Once a scheduler finished its startup ingestion it {@link #releaseBlogs()
+ * releases} its entries: those not taken belong to files deleted while the
+ * application was down. When both have, the mapping itself is dropped, so
+ * the index costs nothing after startup.
+ * </p>
+ */
+@ApplicationScoped
+public class ContentIndex {
+    /**
+     * Leading bytes of the index file, {@code CIDX}.
+     */
+    private static final int MAGIC = 0x43494458;
+
+    /**
+     * Version of the index file layout; a file of any other version is
+     * ignored.
+     */
+    private static final int FORMAT_VERSION = 3;
+
+    /**
+     * Resolved path of the index file.
+     */
+    private final Path indexFile;
+
+    /**
+     * The cache of the blogs written at shutdown.
+     */
+    private final BlogCache blogCache;
+
+    /**
+     * The full-text index the search terms of each blog are read from.
+     */
+    private final SearchIndex searchIndex;
+
+    /**
+     * The renderer the cached HTML of each blog is read from.
+     */
+    private final BlogRenderer blogRenderer;
+
+    /**
+     * The cache of the images written at shutdown.
+     */
+    private final StaticFileCache staticFileCache;
+
+    /**
+     * Offsets of the blog entries in {@link #contents} keyed by file name,
+     * each removed once taken.
+     */
+    private final Map<String, Integer> blogs = new ConcurrentHashMap<>();
+
+    /**
+     * Images read from the index file keyed by name, each removed once taken.
+     */
+    private final Map<String, StaticFile> images = new ConcurrentHashMap<>();
+
+    /**
+     * The mapped index file, or {@code null} once both schedulers released
+     * their entries or when there is no usable file.
+     */
+    private volatile ByteBuffer contents;
+
+    /**
+     * True once the blog scheduler released its entries.
+     */
+    private boolean blogsReleased;
+
+    /**
+     * True once the image scheduler released its entries.
+     */
+    private boolean imagesReleased;
+
+    @Inject
+    ContentIndex(
+            @ConfigProperty(
+                    name = "application.content-index-file",
+                    defaultValue = "data/content-index.bin"
+            ) final String indexFilePath,
+            final BlogCache blogCache,
+            final SearchIndex searchIndex,
+            final BlogRenderer blogRenderer,
+            final StaticFileCache staticFileCache
+    ) {
+        this.indexFile = Path.of(indexFilePath);
+        this.blogCache = blogCache;
+        this.searchIndex = searchIndex;
+        this.blogRenderer = blogRenderer;
+        this.staticFileCache = staticFileCache;
+    }
+
+    /**
+     * Maps the index file into memory and reads its table of entries. A
+     * missing file is not fatal, nor is an unreadable or outdated one: every
+     * file is then simply ingested from scratch.
+     */
+    @PostConstruct
+    void load() {
+        if (!Files.exists(indexFile)) {
+            Log.infof("Content index '%s' does not exist yet; ingesting every file.", indexFile);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            final ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            read(mapped, blogs, images);
+
+            contents = mapped;
+        } catch (IOException | RuntimeException e) {
+            Log.errorf(e, "Failed to read content index '%s'; ingesting every file.", indexFile);
+
+            blogs.clear();
+            images.clear();
+            return;
+        }
+
+        Log.infof("Loaded content index: blogs=%d images=%d", blogs.size(), images.size());
+    }
+
+    /**
+     * Writes the cached blogs and images to {@link #indexFile}, through a
+     * temporary file moved over the previous one. Runs once, at application
+     * shutdown. A failure to write is logged but not propagated, so it cannot
+     * block shutdown.
+     */
+    @Shutdown
+    @SuppressWarnings("unused")
+    void persist() {
+        final List<StoredBlog> storedBlogs = new ArrayList<>();
+
+        for (Blog blog : blogCache.snapshot().sorted()) {
+            final FileStamp stamp = blogCache.stampOf(blog);
+
+            storedBlogs.add(new StoredBlog(
+                    stamp.equals(blog.getStamp()) ? blog : restamped(blog, stamp),
+                    searchIndex.terms(blog.getFileName()),
+                    blogRenderer.cached(blog.getFileName())
+            ));
+        }
+
+        final List<StaticFile> storedImages = staticFileCache.all(StaticFileType.IMAGE);
+
+        try {
+            write(indexFile, storedBlogs, storedImages);
+
+            Log.infof("Persisted content index: blogs=%d images=%d", storedBlogs.size(), storedImages.size());
+        } catch (IOException e) {
+            Log.errorf(e, "Failed to persist content index to '%s'.", indexFile);
+        }
+    }
+
+    /**
+     * Copies a published blog whose file was restamped since, so the index
+     * records the current stamp without mutating the model requests may be
+     * reading, see {@link BlogCache#restamp}.
+     *
+     * @param blog  The published blog.
+     * @param stamp The current stamp of its file.
+     * @return A copy of the blog carrying the current stamp.
+     */
+    private static Blog restamped(final Blog blog, final FileStamp stamp) {
+        final Blog copy = new Blog();
+
+        copy.setFileName(blog.getFileName());
+        copy.setTitle(blog.getTitle());
+        copy.setSlug(blog.getSlug());
+        copy.setAuthor(blog.getAuthor());
+        copy.setTags(blog.getTags());
+        copy.setHash(blog.getHash());
+        copy.setCreated(blog.getCreated());
+        copy.setUpdated(blog.getUpdated());
+        copy.setStamp(stamp);
+
+        return copy;
+    }
+
+    /**
+     * Takes the stored blog of the provided file if the file is unchanged
+     * since the index was written.
+     *
+     * @param fileName The file name of the blog.
+     * @param stamp    The current stamp of the file.
+     * @return The stored blog, or {@code null} if there is none or the file
+     * changed.
+     */
+    @Nullable
+    public StoredBlog takeBlog(@Nonnull final String fileName, @Nonnull final FileStamp stamp) {
+        final Integer offset = blogs.remove(fileName);
+        final ByteBuffer buffer = contents;
+
+        if (offset == null || buffer == null) {
+            return null;
+        }
+
+        try {
+            return readBlog(buffer, offset, fileName, stamp);
+        } catch (RuntimeException e) {
+            Log.errorf(e, "Failed to read the entry of blog %s from content index '%s'.", fileName, indexFile);
+            return null;
+        }
+    }
+
+    /**
+     * Takes the stored image of the provided file if the file is unchanged
+     * since the index was written.
+     *
+     * @param name  The name of the image.
+     * @param stamp The current stamp of the file.
+     * @return The stored image, carrying its hash and, for a compressible
+     * image, its precompressed content, or {@code null} if there is none or
+     * the file changed.
+     */
+    @Nullable
+    public StaticFile takeImage(@Nonnull final String name, @Nonnull final FileStamp stamp) {
+        final StaticFile stored = images.remove(name);
+
+        return stored != null && stamp.matches(stored.getStamp()) ? stored : null;
+    }
+
+    /**
+     * Drops the blog entries that were not taken, called by the blog
+     * scheduler once its startup ingestion finished; their files were
+     * deleted while the application was down.
+     */
+    public void releaseBlogs() {
+        Log.debugf("Released content index: untaken blogs=%d", blogs.size());
+
+        blogs.clear();
+
+        synchronized (this) {
+            blogsReleased = true;
+            releaseContents();
+        }
+    }
+
+    /**
+     * Drops the image entries that were not taken, called by the image
+     * scheduler once its startup ingestion finished; their files were
+     * deleted while the application was down.
+     */
+    public void releaseImages() {
+        Log.debugf("Released content index: untaken images=%d", images.size());
+
+        images.clear();
+
+        synchronized (this) {
+            imagesReleased = true;
+            releaseContents();
+        }
+    }
+
+    /**
+     * Drops the mapped index file once both schedulers released their
+     * entries; the mapping is unmapped when it is garbage collected.
+     */
+    private void releaseContents() {
+        if (blogsReleased && imagesReleased) {
+            contents = null;
+        }
+    }
+
+    /**
+     * Writes the provided blogs and images to the provided index file.
+     *
+     * @param file   The index file, replaced as a whole.
+     * @param blogs  The blogs to store.
+     * @param images The images to store; those not stamped yet are skipped.
+     * @throws IOException in case it failed to write the file.
+     */
+    static void write(
+            @Nonnull final Path file,
+            @Nonnull final Collection<StoredBlog> blogs,
+            @Nonnull final Collection<StaticFile> images
+    ) throws IOException {
+        final Path parent = file.toAbsolutePath().getParent();
+
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        final List<StaticFile> stamped = images.stream()
+                .filter(image -> image.getStamp() != null && image.getHash() != null)
+                .toList();
+
+        final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(blogs.size());
+
+            final ByteArrayOutputStream entry = new ByteArrayOutputStream();
+
+            for (StoredBlog stored : blogs) {
+                entry.reset();
+
+                writeBlog(new DataOutputStream(entry), stored);
+
+                writeString(out, stored.blog().getFileName());
+                out.writeInt(entry.size());
+                entry.writeTo(out);
+            }
+
+            out.writeInt(stamped.size());
+
+            for (StaticFile image : stamped) {
+                writeString(out, image.getName());
+                writeString(out, image.getHash());
+                writeStamp(out, image.getStamp());
+                writeContent(out, image.getContent());
+            }
+        }
+
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the entry of a blog, its stamp first so a changed file is told
+     * apart without decoding the rest.
+     *
+     * @param out    The stream to write to.
+     * @param stored The blog to write.
+     * @throws IOException in case it failed to write.
+     */
+    private static void writeBlog(final DataOutputStream out, final StoredBlog stored) throws IOException {
+        final Blog blog = stored.blog();
+
+        writeStamp(out, blog.getStamp());
+        writeString(out, blog.getTitle());
+        writeString(out, blog.getSlug());
+        writeString(out, blog.getAuthor());
+        writeString(out, blog.getHash());
+        writeString(out, blog.getCreated().toString());
+        writeString(out, blog.getUpdated() == null ? null : blog.getUpdated().toString());
+
+        out.writeInt(blog.getTags().size());
+
+        for (String tag : blog.getTags()) {
+            writeString(out, tag);
+        }
+
+        out.writeInt(stored.terms().size());
+
+        for (Map.Entry<String, Integer> term : stored.terms().entrySet()) {
+            writeString(out, term.getKey());
+            out.writeInt(term.getValue());
+        }
+
+        writeString(out, stored.html());
+    }
+
+    /**
+     * Reads the table of entries of the provided index file contents: the
+     * offset of every blog entry, skipped rather than decoded, and every
+     * image entry. The stamps of the decoded images carry their file key in
+     * its string form.
+     *
+     * @param buffer The index file contents.
+     * @param blogs  Receives the offsets of the blog entries keyed by file
+     *               name, see {@link #readBlog}.
+     * @param images Receives the stored images keyed by name.
+     * @throws IOException in case the contents are not an index file of the
+     *                     current version.
+     */
+    static void read(
+            @Nonnull final ByteBuffer buffer,
+            @Nonnull final Map<String, Integer> blogs,
+            @Nonnull final Map<String, StaticFile> images
+    ) throws IOException {
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+            throw new IOException("Not a content index of version " + FORMAT_VERSION);
+        }
+
+        final int blogCount = buffer.getInt();
+
+        for (int i = 0; i < blogCount; i++) {
+            final String fileName = readString(buffer);
+            final int length = buffer.getInt();
+
+            blogs.put(fileName, buffer.position());
+            buffer.position(buffer.position() + length);
+        }
+
+        final int imageCount = buffer.getInt();
+
+        for (int i = 0; i < imageCount; i++) {
+            final StaticFile image = new StaticFile();
+
+            image.setName(readString(buffer));
+            image.setHash(readString(buffer));
+            image.setStamp(readStamp(buffer));
+            image.setContent(readContent(buffer));
+            image.setType(StaticFileType.IMAGE);
+
+            images.put(image.getName(), image);
+        }
+    }
+
+    /**
+     * Decodes the blog entry at the provided offset, if its stamp matches the
+     * provided one. The stamp of the decoded blog carries its file key in its
+     * string form.
+     *
+     * @param buffer   The index file contents; its position is left as is.
+     * @param offset   The offset of the entry, as read by {@link #read}.
+     * @param fileName The file name of the blog.
+     * @param stamp    The current stamp of the file.
+     * @return The stored blog, or {@code null} if the file changed.
+     */
+    @Nullable
+    static StoredBlog readBlog(
+            @Nonnull final ByteBuffer buffer,
+            final int offset,
+            @Nonnull final String fileName,
+            @Nonnull final FileStamp stamp
+    ) {
+        final ByteBuffer entry = buffer.duplicate().position(offset);
+
+        final FileStamp storedStamp = readStamp(entry);
+
+        if (!stamp.matches(storedStamp)) {
+            return null;
+        }
+
+        final Blog blog = new Blog();
+
+        blog.setFileName(fileName);
+        blog.setStamp(storedStamp);
+        blog.setTitle(readString(entry));
+        blog.setSlug(readString(entry));
+        blog.setAuthor(readString(entry));
+        blog.setHash(readString(entry));
+        blog.setCreated(LocalDateTime.parse(readString(entry)));
+
+        final String updated = readString(entry);
+
+        blog.setUpdated(updated == null ? null : LocalDateTime.parse(updated));
+
+        final int tagCount = entry.getInt();
+        final List<String> tags = new ArrayList<>(tagCount);
+
+        for (int j = 0; j < tagCount; j++) {
+            tags.add(readString(entry));
+        }
+
+        blog.setTags(List.copyOf(tags));
+
+        final int termCount = entry.getInt();
+        final Map<String, Integer> terms = HashMap.newHashMap(termCount);
+
+        for (int j = 0; j < termCount; j++) {
+            terms.put(readString(entry), entry.getInt());
+        }
+
+        return new StoredBlog(blog, terms, readString(entry));
+    }
+
+    /**
+     * Writes the precompressed content of an image, or a single {@code false}
+     * for an image held without one.
+     *
+     * @param out     The stream to write to.
+     * @param content The content to write, or {@code null}.
+     * @throws IOException in case it failed to write.
+     */
+    private static void writeContent(
+            final DataOutputStream out,
+            @Nullable final EncodedContent content
+    ) throws IOException {
+        out.writeBoolean(content != null);
+
+        if (content != null) {
+            writeBytes(out, content.identity());
+            writeBytes(out, content.gzip());
+            writeBytes(out, content.brotli());
+        }
+    }
+
+    /**
+     * Reads content written by {@link #writeContent}.
+     *
+     * @param buffer The buffer to read from.
+     * @return The content, or {@code null}.
+     */
+    @Nullable
+    private static EncodedContent readContent(final ByteBuffer buffer) {
+        if (buffer.get() == 0) {
+            return null;
+        }
+
+        return new EncodedContent(readBytes(buffer), readBytes(buffer), readBytes(buffer));
+    }
+
+    /**
+     * Writes a length prefixed byte array, or a length of {@code -1} for
+     * {@code null}.
+     *
+     * @param out   The stream to write to.
+     * @param bytes The bytes to write, or {@code null}.
+     * @throws IOException in case it failed to write.
+     */
+    private static void writeBytes(final DataOutputStream out, @Nullable final byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a byte array written by {@link #writeBytes}.
+     *
+     * @param buffer The buffer to read from.
+     * @return The bytes, or {@code null}.
+     */
+    @Nullable
+    private static byte[] readBytes(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+
+        if (length < 0) {
+            return null;
+        }
+
+        final byte[] bytes = new byte[length];
+
+        buffer.get(bytes);
+
+        return bytes;
+    }
+
+    /**
+     * Writes a length prefixed UTF-8 string, or a length of {@code -1} for
+     * {@code null}.
+     *
+     * @param out   The stream to write to.
+     * @param value The string to write, or {@code null}.
+     * @throws IOException in case it failed to write.
+     */
+    private static void writeString(final DataOutputStream out, @Nullable final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString}.
+     *
+     * @param buffer The buffer to read from.
+     * @return The string, or {@code null}.
+     */
+    @Nullable
+    private static String readString(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+
+        if (length < 0) {
+            return null;
+        }
+
+        final byte[] bytes = new byte[length];
+
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a file stamp, its file key in string form.
+     *
+     * @param out   The stream to write to.
+     * @param stamp The stamp to write.
+     * @throws IOException in case it failed to write.
+     */
+    private static void writeStamp(final DataOutputStream out, final FileStamp stamp) throws IOException {
+        out.writeLong(stamp.size());
+        out.writeLong(stamp.modifiedNanos());
+        writeString(out, stamp.fileKey() == null ? null : stamp.fileKey().toString());
+    }
+
+    /**
+     * Reads a stamp written by {@link #writeStamp}.
+     *
+     * @param buffer The buffer to read from.
+     * @return The stamp, its file key in string form.
+     */
+    private static FileStamp readStamp(final ByteBuffer buffer) {
+        final long size = buffer.getLong();
+        final long modifiedNanos = buffer.getLong();
+
+        return new FileStamp(size, modifiedNanos, readString(buffer));
+    }
+}
@@ -6,23 +6,33 @@ import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.Response;
 import xyz.mijaljevic.Website;
+import xyz.mijaljevic.domain.dto.ByteRange;
+import xyz.mijaljevic.domain.dto.EncodedContent;
+import xyz.mijaljevic.domain.entity.ContentEncoding;
+import xyz.mijaljevic.domain.entity.PreconditionResult;
+import xyz.mijaljevic.utils.ByteRanges;
+import xyz.mijaljevic.utils.Compression;
+import xyz.mijaljevic.utils.Preconditions;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 
 /**
  * Request scoped bean that captures the incoming request {@link HttpHeaders}
  * and exposes the HTTP caching utilities shared by the web resources
  * ({@code WebPage}, {@code StaticFileServer}, {@code RssFeed}): generating
- * <i>ETag</i>/<i>Last-Modified</i> values and resolving conditional requests
- * against them.
+ * <i>ETag</i>/<i>Last-Modified</i> values, evaluating conditional requests
+ * against them and picking the precompressed body variant to serve.
  */
 @RequestScoped
 public final class RequestContext {
@@ -32,6 +42,36 @@ public final class RequestContext {
      */
     private final HttpHeaders httpHeaders;
 
+    /**
+     * Whether the conditional headers of the captured request were read into
+     * the fields below. They are read once, on the first evaluation, and
+     * reused by any later one within the same request.
+     */
+    private boolean conditionalHeadersRead;
+
+    /**
+     * The <i>If-Match</i> header of the captured request, or {@code null}.
+     */
+    private String ifMatch;
+
+    /**
+     * The <i>If-None-Match</i> header of the captured request, or
+     * {@code null}.
+     */
+    private String ifNoneMatch;
+
+    /**
+     * The <i>If-Modified-Since</i> date of the captured request in epoch
+     * seconds, or {@link Preconditions#NO_DATE}.
+     */
+    private long ifModifiedSince;
+
+    /**
+     * The <i>If-Unmodified-Since</i> date of the captured request in epoch
+     * seconds, or {@link Preconditions#NO_DATE}.
+     */
+    private long ifUnmodifiedSince;
+
     /**
      * Creates the context with the incoming request headers.
      *
@@ -43,9 +83,11 @@ public final class RequestContext {
     }
 
     /**
-     * HTTP <i>Last-Modified</i> date format.
+     * HTTP <i>Last-Modified</i> date format, the IMF-fixdate of RFC 9110.
      */
-    private static final DateTimeFormatter LM_FORMAT = DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss zzz");
+    private static final DateTimeFormatter LM_FORMAT = DateTimeFormatter
+            .ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.ENGLISH)
+            .withZone(Website.TIME_ZONE);
 
     /**
      * Converts the provided {@link LocalDateTime} into an HTTP
@@ -102,37 +144,160 @@ public final class RequestContext {
     }
 
     /**
-     * Compares the provided <i>ETag</i> with the <i>If-None-Match</i> header
-     * and the provided <i>Last-Modified</i> with the <i>If-Modified-Since</i>
-     * header of the captured request.
+     * Evaluates the conditional headers of the captured request against the
+     * provided <i>ETag</i> and <i>Last-Modified</i> of the resource, as
+     * specified by RFC 9110: <i>If-Match</i>, <i>If-Unmodified-Since</i>,
+     * <i>If-None-Match</i> and <i>If-Modified-Since</i>, entity-tag lists,
+     * weak tags and {@code *} included. See {@link Preconditions}.
      *
      * <p>
-     * Priority is given to the <i>ETag</i> and <i>If-None-Match</i>
-     * comparison.
+     * A 304 stands in for the 200 the client already holds, so it carries the
+     * headers that 200 would: the <i>ETag</i>, the <i>Cache-Control</i> and,
+     * for a resource served through {@link #ok(EncodedContent)}, the
+     * <i>Vary</i> header (RFC 9110, section 15.4.5). Without them a cache
+     * refreshing its stored response would drop its freshness lifetime.
      * </p>
      *
-     * @param etag         The HTTP ETag header that the resource is currently
-     *                     serving.
+     * @param etag         The HTTP ETag that the resource is currently
+     *                     serving, unquoted.
      * @param lastModified The HTTP Last-Modified header that the resource is
      *                     currently serving.
-     * @return A {@link Response.Status#NOT_MODIFIED} response if the resource
-     * was not modified since the last visit, or {@code null} otherwise.
+     * @param cacheControl The HTTP Cache-Control header that the resource is
+     *                     served with.
+     * @param negotiated   Whether the resource is served through
+     *                     {@link #ok(EncodedContent)}, so its responses vary
+     *                     on <i>Accept-Encoding</i>.
+     * @return A {@link Response.Status#NOT_MODIFIED} response carrying the
+     * ETag, Cache-Control and Vary headers of the resource if the client's
+     * copy is current, a {@link Response.Status#PRECONDITION_FAILED} response
+     * if the request's preconditions do not hold, or {@code null} if the
+     * resource should be served.
      */
     @Nullable
-    public Response notModified(final String etag, final String lastModified) {
-        final String ifNoneMatch = httpHeaders.getHeaderString(HttpHeaders.IF_NONE_MATCH);
-        final String ifModifiedSince = httpHeaders.getHeaderString(HttpHeaders.IF_MODIFIED_SINCE);
-
-        final boolean same;
-
-        if (ifNoneMatch != null) {
-            same = ifNoneMatch.equals(etag);
-        } else if (ifModifiedSince != null) {
-            same = ifModifiedSince.equals(lastModified);
-        } else {
-            same = false;
+    public Response evaluatePreconditions(
+            @Nonnull final String etag,
+            @Nullable final String lastModified,
+            @Nonnull final String cacheControl,
+            final boolean negotiated
+    ) {
+        readConditionalHeaders();
+
+        final PreconditionResult result = Preconditions.evaluate(
+                ifMatch,
+                ifUnmodifiedSince,
+                ifNoneMatch,
+                ifModifiedSince,
+                etag,
+                Preconditions.parseHttpDate(lastModified)
+        );
+
+        return switch (result) {
+            case NOT_MODIFIED -> notModified(etag, cacheControl, negotiated);
+            case FAILED -> Response.status(Response.Status.PRECONDITION_FAILED).build();
+            case PASSED -> null;
+        };
+    }
+
+    /**
+     * Builds the 304 response of a resource, carrying the headers its 200
+     * would.
+     *
+     * @param etag         The HTTP ETag of the resource, unquoted.
+     * @param cacheControl The HTTP Cache-Control header of the resource.
+     * @param negotiated   Whether the responses of the resource vary on
+     *                     <i>Accept-Encoding</i>.
+     * @return A {@link Response.Status#NOT_MODIFIED} response.
+     */
+    private static Response notModified(final String etag, final String cacheControl, final boolean negotiated) {
+        final Response.ResponseBuilder builder = Response.notModified(new EntityTag(etag))
+                .header(HttpHeaders.CACHE_CONTROL, cacheControl);
+
+        if (negotiated) {
+            builder.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Resolves the <i>Range</i> header of the captured request against a
+     * representation of the provided length, provided its <i>If-Range</i>
+     * validator, if any, still holds for the provided <i>ETag</i> and
+     * <i>Last-Modified</i>. See {@link ByteRanges}.
+     *
+     * @param etag         The HTTP ETag that the resource is currently
+     *                     serving, unquoted.
+     * @param lastModified The HTTP Last-Modified header that the resource is
+     *                     currently serving.
+     * @param length       The length of the representation in bytes.
+     * @return The satisfiable ranges to serve with a 206, an empty list if
+     * none is satisfiable (a 416), or {@code null} if the whole
+     * representation should be served.
+     */
+    @Nullable
+    public List<ByteRange> ranges(
+            @Nonnull final String etag,
+            @Nullable final String lastModified,
+            final long length
+    ) {
+        final String range = httpHeaders.getHeaderString(ByteRanges.RANGE);
+
+        if (range == null) {
+            return null;
+        }
+
+        final String ifRange = httpHeaders.getHeaderString(ByteRanges.IF_RANGE);
+
+        if (!ByteRanges.ifRangeHolds(ifRange, etag, Preconditions.parseHttpDate(lastModified))) {
+            return null;
+        }
+
+        return ByteRanges.parse(range, length);
+    }
+
+    /**
+     * Reads the conditional headers of the captured request, unless they were
+     * already read.
+     */
+    private void readConditionalHeaders() {
+        if (conditionalHeadersRead) {
+            return;
+        }
+
+        ifMatch = httpHeaders.getHeaderString(HttpHeaders.IF_MATCH);
+        ifNoneMatch = httpHeaders.getHeaderString(HttpHeaders.IF_NONE_MATCH);
+        ifModifiedSince = Preconditions.parseHttpDate(httpHeaders.getHeaderString(HttpHeaders.IF_MODIFIED_SINCE));
+        ifUnmodifiedSince = Preconditions.parseHttpDate(
+                httpHeaders.getHeaderString(HttpHeaders.IF_UNMODIFIED_SINCE)
+        );
+        conditionalHeadersRead = true;
+    }
+
+    /**
+     * Starts a 200 response carrying the variant of the provided content that
+     * best matches the <i>Accept-Encoding</i> header of the captured request.
+     * The <i>Content-Encoding</i> header is set for a compressed variant and
+     * <i>Vary: Accept-Encoding</i> always, so shared caches keep the variants
+     * apart and a 304 of the same resource can carry the same <i>Vary</i>
+     * without knowing which variants the content has.
+     *
+     * @param content The {@link EncodedContent} to serve.
+     * @return A {@link Response.ResponseBuilder} with the chosen body variant.
+     */
+    @Nonnull
+    public Response.ResponseBuilder ok(@Nonnull final EncodedContent content) {
+        final ContentEncoding encoding = Compression.negotiate(
+                httpHeaders.getHeaderString(HttpHeaders.ACCEPT_ENCODING),
+                content
+        );
+
+        final Response.ResponseBuilder builder = Response.ok(content.variant(encoding))
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        if (encoding != ContentEncoding.IDENTITY) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, encoding.token());
         }
 
-        return same ? Response.status(Response.Status.NOT_MODIFIED).build() : null;
+        return builder;
     }
 }
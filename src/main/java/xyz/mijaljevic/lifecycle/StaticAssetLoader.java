@@ -0,0 +1,121 @@
+package xyz.mijaljevic.lifecycle;
+
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import xyz.mijaljevic.Website;
+import xyz.mijaljevic.cache.StaticFileCache;
+import xyz.mijaljevic.domain.entity.StaticFile;
+import xyz.mijaljevic.domain.entity.StaticFileType;
+import xyz.mijaljevic.utils.Compression;
+import xyz.mijaljevic.utils.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+
+/**
+ * Loads the site wide CSS and JavaScript assets into the
+ * {@link StaticFileCache} at application startup, together with their
+ * precompressed gzip/brotli variants, so they are served from memory and never
+ * compressed on the request path. The assets are keyed by their file name.
+ *
+ * <p>
+ * The assets are not watched: they only change with a deployment, which
+ * restarts the application. An asset that fails to load is left out of the
+ * cache and the static file server falls back to serving it from disk.
+ * </p>
+ */
+@Startup
+@ApplicationScoped
+public final class StaticAssetLoader {
+    /**
+     * The configured path to the CSS file.
+     */
+    private final String cssPath;
+
+    /**
+     * The configured path to the JavaScript file.
+     */
+    private final String scriptPath;
+
+    /**
+     * The in-memory cache that is the single source of truth for static files.
+     */
+    private final StaticFileCache staticFileCache;
+
+    /**
+     * Creates the loader with its configured asset paths.
+     *
+     * @param cssPath         The path to the CSS file.
+     * @param scriptPath      The path to the JavaScript file.
+     * @param staticFileCache The in-memory static file cache.
+     */
+    @Inject
+    StaticAssetLoader(
+            @ConfigProperty(
+                    name = "application.css",
+                    defaultValue = "style.min.css"
+            ) final String cssPath,
+            @ConfigProperty(
+                    name = "application.javascript",
+                    defaultValue = "script.min.js"
+            ) final String scriptPath,
+            final StaticFileCache staticFileCache
+    ) {
+        this.cssPath = cssPath;
+        this.scriptPath = scriptPath;
+        this.staticFileCache = staticFileCache;
+    }
+
+    /**
+     * Loads the CSS and JavaScript assets into the cache. Runs once, eagerly,
+     * at application startup.
+     */
+    @PostConstruct
+    void load() {
+        loadAsset(Path.of(cssPath), StaticFileType.CSS);
+        loadAsset(Path.of(scriptPath), StaticFileType.JS);
+    }
+
+    /**
+     * Reads, hashes and compresses the provided asset and stores it in the
+     * cache under its file name. A failure is logged and the asset left out.
+     *
+     * @param path The path to the asset.
+     * @param type The {@link StaticFileType} of the asset.
+     */
+    private void loadAsset(final Path path, final StaticFileType type) {
+        final String name = path.getFileName().toString();
+
+        final StaticFile staticFile = new StaticFile();
+        staticFile.setName(name);
+        staticFile.setType(type);
+
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+
+            final byte[] data = Files.readAllBytes(path);
+
+            staticFile.setHash(FileUtils.hashBytes(data));
+            staticFile.setModified(LocalDateTime.ofInstant(
+                    attributes.lastModifiedTime().toInstant(),
+                    Website.TIME_ZONE
+            ));
+            staticFile.setContent(Compression.encode(data));
+        } catch (NoSuchAlgorithmException | IOException e) {
+            Log.errorf(e, "Failed to load static asset %s; serving it from disk", path);
+            return;
+        }
+
+        staticFileCache.put(staticFile);
+
+        Log.infof("Successfully loaded static asset: %s", name);
+    }
+}
@@ -2,45 +2,54 @@ package xyz.mijaljevic.scheduler;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.FileSystems;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardWatchEventKinds;
-import java.nio.file.WatchEvent;
-import java.nio.file.WatchKey;
-import java.nio.file.WatchService;
 import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import io.quarkus.logging.Log;
 import io.quarkus.runtime.Quarkus;
 import io.quarkus.runtime.Startup;
-import io.quarkus.scheduler.Scheduled;
 import xyz.mijaljevic.Website;
 import xyz.mijaljevic.cache.BlogCache;
 import xyz.mijaljevic.cache.BlogRenderer;
+import xyz.mijaljevic.cache.FeedCache;
+import xyz.mijaljevic.cache.PageCache;
+import xyz.mijaljevic.cache.SearchIndex;
 import xyz.mijaljevic.domain.dto.BlogMetadata;
+import xyz.mijaljevic.domain.dto.FileChange;
+import xyz.mijaljevic.domain.dto.FileStamp;
+import xyz.mijaljevic.domain.dto.ParsedMarkdown;
+import xyz.mijaljevic.domain.dto.StoredBlog;
 import xyz.mijaljevic.domain.entity.Blog;
+import xyz.mijaljevic.domain.entity.FileChangeType;
+import xyz.mijaljevic.domain.entity.IngestOutcome;
+import xyz.mijaljevic.lifecycle.ContentIndex;
 import xyz.mijaljevic.lifecycle.DirectoryProvisioner;
 import xyz.mijaljevic.utils.FileUtils;
 import xyz.mijaljevic.utils.MarkdownParser;
 import xyz.mijaljevic.utils.Slugs;
-import xyz.mijaljevic.web.WebPage;
+import xyz.mijaljevic.utils.TaskUtils;
 
 /**
- * Scheduler that contains a scheduled method that runs every 5 minutes and
- * checks the {@link WatchKey} that was initialized during class creation. The
- * key monitors the creation/update/deletion of the blogs directory and
- * creates/updates/deletes entries in the {@link BlogCache} accordingly.
+ * Keeps the {@link BlogCache} in sync with the blogs directory. The directory
+ * is ingested once at startup and then watched by the {@link WatchEngine},
+ * which reports each creation/update/deletion of a blog file within the
+ * debounce window, so a published blog is visible in well under a second.
  */
 @Startup
 @ApplicationScoped
-final class BlogScheduler {
+final class BlogScheduler implements ContentHandler {
     /**
      * The in-memory cache that is the single source of truth for blogs.
      */
@@ -51,226 +60,357 @@ final class BlogScheduler {
      */
     private final BlogRenderer blogRenderer;
 
+    /**
+     * Holds the rendered pages; cleared whenever the blogs change, with blog
+     * pages evicted by their old hash.
+     */
+    private final PageCache pageCache;
+
+    /**
+     * Holds the rendered feeds and their item fragments; fragments are
+     * evicted by their old hash whenever a blog changes.
+     */
+    private final FeedCache feedCache;
+
+    /**
+     * The full-text index over the blogs, fed from the parsed blog documents.
+     */
+    private final SearchIndex searchIndex;
+
+    /**
+     * The blogs kept across restarts, restored in place of the files that did
+     * not change while the application was down.
+     */
+    private final ContentIndex contentIndex;
+
     /**
      * Provisions and exposes the watched blogs directory. Injecting it makes
      * directory creation a CDI dependency of this scheduler, so the directory
      * is guaranteed to exist before {@link #initBlogScheduler()} registers the
-     * {@link WatchService} on it.
+     * {@link WatchEngine} on it.
      */
     private final DirectoryProvisioner directoryProvisioner;
 
+    /**
+     * Watches the blogs directory, along with the other content directories,
+     * and dispatches its changes to this scheduler.
+     */
+    private final WatchEngine watchEngine;
+
     /**
      * The blogs' directory, resolved from the provisioner in
      * {@link #initBlogScheduler()}.
      */
     private Path blogsDirectory;
 
+    /**
+     * Maximum number of blog files ingested at once at startup.
+     */
+    private final int ingestParallelism;
+
+    /**
+     * True to render the HTML of a new or changed blog while it is ingested,
+     * rather than on its first request.
+     */
+    private final boolean prerender;
+
     @Inject
     BlogScheduler(
             final BlogCache blogCache,
             final BlogRenderer blogRenderer,
-            final DirectoryProvisioner directoryProvisioner) {
+            final PageCache pageCache,
+            final FeedCache feedCache,
+            final SearchIndex searchIndex,
+            final ContentIndex contentIndex,
+            final DirectoryProvisioner directoryProvisioner,
+            final WatchEngine watchEngine,
+            @ConfigProperty(
+                    name = "application.ingest.parallelism",
+                    defaultValue = "0"
+            ) final int ingestParallelism,
+            @ConfigProperty(
+                    name = "application.blogs.prerender",
+                    defaultValue = "false"
+            ) final boolean prerender) {
         this.blogCache = blogCache;
         this.blogRenderer = blogRenderer;
+        this.pageCache = pageCache;
+        this.feedCache = feedCache;
+        this.searchIndex = searchIndex;
+        this.contentIndex = contentIndex;
         this.directoryProvisioner = directoryProvisioner;
+        this.watchEngine = watchEngine;
+        this.ingestParallelism = ingestParallelism;
+        this.prerender = prerender;
     }
 
     /**
-     * Holds the reference to the blogs directory {@link WatchKey}.
-     */
-    private static WatchKey watchKey = null;
-
-    /**
-     * True when the {@link WatchKey} is valid and false otherwise.
+     * The registration of the blogs directory with the {@link WatchEngine}.
      */
-    private static boolean watchKeyValid = false;
+    private WatchEngine.Registration registration;
 
     /**
-     * Initializes the class {@link WatchKey} variable <i>watchKey</i> and
-     * performs the initial blogs directory check up for new or updated files.
-     *
-     * <p>
-     * Furthermore, it also compares the cached blogs against the files to
-     * check which cached blog has lost its file if any and then removes it
-     * from the cache.
-     * </p>
+     * Registers the blogs directory with the {@link WatchEngine} and performs
+     * the initial blogs directory check up, see {@link #reconcile}. The watch
+     * is registered before the check up, so a file changed during it is
+     * picked up once the registration starts afterward. The entries of the
+     * {@link ContentIndex} the check up did not take are released in between.
      */
     @PostConstruct
     void initBlogScheduler() {
         blogsDirectory = directoryProvisioner.blogsDirectory();
 
-        WatchService watcher = null;
-
         try {
-            watcher = FileSystems.getDefault().newWatchService();
+            registration = watchEngine.watch("BLOG", blogsDirectory, this);
         } catch (IOException e) {
-            Log.fatal("Blog scheduler failed to initialize WatchService!", e);
+            Log.fatalf(e, "Blog scheduler failed to register a watch on '%s'!", blogsDirectory);
             Quarkus.asyncExit();
         }
 
-        if (watcher == null) {
-            throw new RuntimeException("Watcher not available!");
-        }
+        reconcile("BLOG - Startup ingestion");
 
-        try {
-            watchKey = blogsDirectory.register(
-                    watcher,
-                    StandardWatchEventKinds.ENTRY_CREATE,
-                    StandardWatchEventKinds.ENTRY_DELETE,
-                    StandardWatchEventKinds.ENTRY_MODIFY);
+        contentIndex.releaseBlogs();
 
-            watchKeyValid = watchKey.isValid();
-        } catch (IOException e) {
-            Log.fatalf(e, "Blog scheduler failed to register a watch on '%s'!", blogsDirectory);
-            Quarkus.asyncExit();
+        if (registration != null) {
+            registration.start();
         }
+    }
+
+    /**
+     * Recovers from a watch overflow or a removed subdirectory, after which
+     * the cache can no longer be trusted to match the directory, by
+     * reconciling the two again. Only the files whose {@link FileStamp}
+     * changed are read, so the rescan costs a directory listing plus one
+     * attribute read per file beyond the changes themselves.
+     */
+    @Override
+    public void rescan() {
+        Log.warn("BLOG - Rescanning the blogs directory");
+
+        reconcile("BLOG - Rescan");
+    }
 
-        final File[] files = blogsDirectory.toFile().listFiles();
+    /**
+     * Brings the {@link BlogCache} in line with the blogs directory tree:
+     * every Markdown file is consumed, in parallel (see {@link TaskUtils#runInParallel}),
+     * which creates or updates the blogs of new or changed files and skips
+     * unchanged ones. The cached blogs are then compared against the files
+     * and a blog that has lost its file is removed from the cache. The result
+     * is published as a single {@link BlogCache} snapshot, and the rendered
+     * pages invalidated, only if a blog was created, updated or removed; a
+     * pass that found nothing new keeps every client and page cache valid.
+     *
+     * @param label A label identifying the pass in the logs.
+     */
+    private void reconcile(final String label) {
+        final List<File> files;
 
-        if (files == null) {
-            throw new RuntimeException("File list not available!");
+        try {
+            files = FileUtils.listFiles(blogsDirectory).stream()
+                    .map(Path::toFile)
+                    .filter(BlogScheduler::isMarkdownFile)
+                    .toList();
+        } catch (IOException e) {
+            throw new RuntimeException("File list not available!", e);
         }
 
-        final List<String> fileNames = new ArrayList<>();
+        final Set<String> fileNames = new HashSet<>();
 
         for (File file : files) {
-            consumeBlogFile(file);
-            fileNames.add(file.getName());
+            fileNames.add(nameOf(file));
         }
 
+        final AtomicBoolean changeOccurred = new AtomicBoolean();
+
+        TaskUtils.runInParallel(label, files, ingestParallelism, file -> {
+            if (consumeBlogFile(file) == IngestOutcome.CHANGED) {
+                changeOccurred.set(true);
+            }
+        });
+
         for (Blog blog : blogCache.missing(fileNames)) {
             Log.warnf("Found blog without file. Deleting blog: %s", blog.getFileName());
 
             blogCache.removeByFileName(blog.getFileName());
+            searchIndex.remove(blog.getFileName());
             blogRenderer.invalidate(blog.getFileName());
+            pageCache.invalidateBlogPage(blog.getHash());
+            feedCache.invalidateItems(blog.getHash());
+            changeOccurred.set(true);
         }
 
-        WebPage.updateCacheControlHeaders();
+        if (changeOccurred.get()) {
+            blogCache.publish();
+            searchIndex.publish();
+            pageCache.invalidateAll();
+        }
     }
 
     /**
-     * Runs every 5 minutes and checks the {@link WatchKey} that was
-     * initialized during class creation. The key monitors the blogs directory
-     * and this method creates/updates/deletes entries in the
-     * {@link BlogCache} accordingly.
+     * Applies a coalesced batch of changes to the blogs directory, delivered
+     * by the {@link WatchEngine} as soon as the directory settles, and
+     * creates/updates/deletes entries in the {@link BlogCache} accordingly.
+     * The batch is published, and the rendered pages invalidated, once, and
+     * only if a blog was actually created, updated or removed.
+     *
+     * @param changes The changed files.
      */
-    @Scheduled(identity = "blog_scheduler", every = "5m", delayed = "5s")
-    void runBlogScheduler() {
-        if (!watchKeyValid) {
-            Log.fatal("BLOG - WatchKey NOT valid! Stopping scheduler!");
-
-            return;
-        }
-
+    @Override
+    public void apply(final List<FileChange> changes) {
         boolean changeOccurred = false;
 
-        for (final WatchEvent<?> event : watchKey.pollEvents()) {
-            final WatchEvent.Kind<?> kind = event.kind();
-
-            if (kind == StandardWatchEventKinds.OVERFLOW) {
-                Log.error("BLOG - OVERFLOW event occurred!");
-                continue;
-            }
-
-            @SuppressWarnings("unchecked")
-            final WatchEvent<Path> ev = (WatchEvent<Path>) event;
-
-            final Path filename = ev.context();
-
-            final File file = blogsDirectory.resolve(filename).toFile();
+        for (final FileChange change : changes) {
+            final File file = change.path().toFile();
+            final String name = change.name();
 
-            if (!isMarkdownFile(file)) {
-                Log.warnf("BLOG - Not a markdown file: %s", file.getName());
-                continue;
-            }
+            if (change.type() == FileChangeType.MODIFIED) {
+                if (!isMarkdownFile(file)) {
+                    Log.warnf("BLOG - Not a markdown file: %s", name);
+                    continue;
+                }
 
-            if (kind == StandardWatchEventKinds.ENTRY_CREATE || kind == StandardWatchEventKinds.ENTRY_MODIFY) {
-                if (!consumeBlogFile(file)) {
+                if (consumeBlogFile(file) != IngestOutcome.CHANGED) {
                     continue;
                 }
             } else {
-                final Blog blog = blogCache.byFileName(file.getName());
+                final Blog blog = blogCache.byFileName(name);
 
-                if (blog != null) {
-                    blogCache.removeByFileName(blog.getFileName());
-                    blogRenderer.invalidate(blog.getFileName());
-                    Log.infof("Successfully deleted blog of file: %s", file.getName());
+                if (blog == null) {
+                    continue;
                 }
+
+                blogCache.removeByFileName(blog.getFileName());
+                searchIndex.remove(blog.getFileName());
+                blogRenderer.invalidate(blog.getFileName());
+                pageCache.invalidateBlogPage(blog.getHash());
+                feedCache.invalidateItems(blog.getHash());
+                Log.infof("Successfully deleted blog of file: %s", name);
             }
 
             changeOccurred = true;
         }
 
         if (changeOccurred) {
-            WebPage.updateCacheControlHeaders();
+            blogCache.publish();
+            searchIndex.publish();
+            pageCache.invalidateAll();
         }
-
-        watchKeyValid = watchKey.reset();
     }
 
     /**
      * Consumes the provided {@link Blog} {@link File} and either updates or
      * creates a blog model depending on the state of the blog file against the
-     * model in the cache. The title is derived from the file's front-matter
-     * metadata when present, falling back to the first heading. The created and
-     * updated timestamps come solely from the {@code Date}/{@code Updated}
-     * metadata; a file without a parseable {@code Date} is rejected.
+     * model in the cache. A file whose {@link FileStamp} is unchanged is
+     * skipped without being read, as is a file not cached yet whose stamp
+     * matches its entry in the {@link ContentIndex}; otherwise it is read
+     * once, and that one buffer is hashed and, when the hash changed, parsed
+     * for its metadata, title and (with {@code application.blogs.prerender}) HTML, and its
+     * document tree is fed to the {@link SearchIndex}. The title is
+     * derived from the file's front-matter metadata when present, falling back
+     * to the first heading. The created and updated timestamps come solely from the {@code Date}/{@code Updated}
+     * metadata; a file without a parseable {@code Date} is rejected. A changed
+     * blog is stored as a new {@link Blog}, leaving the published one intact
+     * for the requests reading it until the batch is published; a file whose
+     * stamp changed but whose hash did not is only
+     * {@link BlogCache#restamp restamped}, so its blog is not touched at all.
      *
      * @param file A blog file to consume.
-     * @return False in case it failed to parse the file or the file carries no
-     *         parseable {@code Date} metadata, and true if the process was
-     *         successful.
+     * @return {@link IngestOutcome#FAILED} in case it failed to parse the file
+     *         or the file carries no parseable {@code Date} metadata,
+     *         {@link IngestOutcome#UNCHANGED} if its content is the cached
+     *         one, and {@link IngestOutcome#CHANGED} if its blog was created
+     *         or replaced.
      */
-    private boolean consumeBlogFile(@Nonnull final File file) {
-        final String fileName = file.getName();
+    private IngestOutcome consumeBlogFile(@Nonnull final File file) {
+        final String fileName = nameOf(file);
 
-        Blog blog = blogCache.byFileName(fileName);
+        final Blog cached = blogCache.byFileName(fileName);
 
-        final boolean isNew = blog == null;
+        final boolean isNew = cached == null;
+
+        final String oldHash = isNew ? null : cached.getHash();
+
+        final FileStamp stamp;
+
+        try {
+            stamp = FileStamp.read(file.toPath());
+        } catch (IOException e) {
+            Log.errorf(e, "Failed to read file attributes for %s", fileName);
+            return IngestOutcome.FAILED;
+        }
+
+        if (!isNew && stamp.equals(blogCache.stampOf(cached))) {
+            return IngestOutcome.UNCHANGED;
+        }
 
         if (isNew) {
-            blog = new Blog();
-            blog.setFileName(fileName);
+            final StoredBlog stored = contentIndex.takeBlog(fileName, stamp);
+
+            if (stored != null) {
+                restore(stored, stamp);
+                return IngestOutcome.CHANGED;
+            }
         }
 
-        final String oldHash = blog.getHash();
+        final byte[] data;
+
+        try {
+            data = Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            Log.errorf(e, "Failed to read file %s", fileName);
+            return IngestOutcome.FAILED;
+        }
 
         final String hash;
 
         try {
-            hash = FileUtils.hashFile(file);
-        } catch (NoSuchAlgorithmException | IOException e) {
+            hash = FileUtils.hashBytes(data);
+        } catch (NoSuchAlgorithmException e) {
             Log.errorf(e, "Failed to hash file %s with algorithm %s", fileName, Website.HASH_ALGORITHM);
-            return false;
+            return IngestOutcome.FAILED;
         }
 
         if (!isNew && hash.equals(oldHash)) {
-            return true;
+            blogCache.restamp(fileName, stamp);
+            return IngestOutcome.UNCHANGED;
         }
 
-        final BlogMetadata metadata = MarkdownParser.parseMetadata(file);
+        final ParsedMarkdown parsed = MarkdownParser.parse(new String(data, StandardCharsets.UTF_8));
+        final BlogMetadata metadata = parsed.metadata();
+        final String title = parsed.title();
 
-        final String title = metadata.title() != null && !metadata.title().isBlank()
-                ? metadata.title()
-                : MarkdownParser.getTitleFromFile(file);
+        final Blog blog = new Blog();
 
+        blog.setFileName(fileName);
         blog.setTitle(title);
         blog.setSlug(Slugs.slugify(title));
         blog.setAuthor(metadata.author());
         blog.setTags(metadata.tags());
         blog.setHash(hash);
+        blog.setStamp(stamp);
 
         if (metadata.date() == null) {
             Log.errorf("Blog file %s has no parseable Date metadata; skipping.", fileName);
-            return false;
+            return IngestOutcome.FAILED;
         }
 
         blog.setCreated(metadata.date().atStartOfDay());
         blog.setUpdated(metadata.updated() != null ? metadata.updated().atStartOfDay() : null);
 
+        final String html = prerender ? MarkdownParser.render(parsed.document()) : null;
+
         blogCache.put(blog);
+        searchIndex.put(fileName, title + ' ' + String.join(" ", blog.getTags()) + ' '
+                + MarkdownParser.plainText(parsed.document()));
+
+        if (html != null) {
+            blogRenderer.prerender(fileName, html);
+        } else {
+            blogRenderer.invalidate(fileName);
+        }
 
-        blogRenderer.invalidate(fileName);
+        pageCache.invalidateBlogPage(oldHash);
+        feedCache.invalidateItems(oldHash);
 
         if (isNew) {
             Log.infof("Successfully created blog for file: %s", fileName);
@@ -278,7 +418,30 @@ final class BlogScheduler {
             Log.infof("Successfully updated blog for file: %s", fileName);
         }
 
-        return true;
+        return IngestOutcome.CHANGED;
+    }
+
+    /**
+     * Restores a blog kept in the {@link ContentIndex} into the caches, as if
+     * its unchanged file had been parsed again.
+     *
+     * @param stored The stored blog.
+     * @param stamp  The current stamp of its file.
+     */
+    private void restore(@Nonnull final StoredBlog stored, @Nonnull final FileStamp stamp) {
+        final Blog blog = stored.blog();
+        final String fileName = blog.getFileName();
+
+        blog.setStamp(stamp);
+
+        blogCache.put(blog);
+        searchIndex.putTerms(fileName, stored.terms());
+
+        if (stored.html() != null) {
+            blogRenderer.prerender(fileName, stored.html());
+        }
+
+        Log.debugf("Restored blog of file %s from the content index", fileName);
     }
 
     /**
@@ -297,4 +460,15 @@ final class BlogScheduler {
 
         return fileName.endsWith(".md");
     }
+
+    /**
+     * Resolves the name the provided blog file is cached by: its path
+     * relative to the blogs directory, see {@link FileUtils#relativeName}.
+     *
+     * @param file A file in the blogs directory tree.
+     * @return The name of the file.
+     */
+    private String nameOf(final File file) {
+        return FileUtils.relativeName(blogsDirectory.relativize(file.toPath()));
+    }
 }
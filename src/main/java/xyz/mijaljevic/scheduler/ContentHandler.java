@@ -0,0 +1,30 @@
+package xyz.mijaljevic.scheduler;
+
+import xyz.mijaljevic.domain.dto.FileChange;
+
+import java.util.List;
+
+/**
+ * Keeps the cached model of one content directory in sync with its files.
+ * Registered with the {@link WatchEngine}, which calls it with the changes to
+ * the directory. Calls to one handler never overlap and arrive in the order
+ * the changes happened, so an implementation needs no locking of its own
+ * beyond what its startup scan requires.
+ */
+interface ContentHandler {
+    /**
+     * Applies a coalesced batch of changes to the content directory.
+     *
+     * @param changes The changed files, each listed once, in the order of
+     *                their last change.
+     */
+    void apply(List<FileChange> changes);
+
+    /**
+     * Reconciles the cached model with the whole content directory. Called
+     * in place of {@link #apply(List)} when changes could not be reported
+     * file by file: events were lost, a subdirectory was removed, or the
+     * handler fell too far behind.
+     */
+    void rescan();
+}
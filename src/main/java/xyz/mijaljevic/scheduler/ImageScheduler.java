@@ -3,56 +3,76 @@ package xyz.mijaljevic.scheduler;
 import io.quarkus.logging.Log;
 import io.quarkus.runtime.Quarkus;
 import io.quarkus.runtime.Startup;
-import io.quarkus.scheduler.Scheduled;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import xyz.mijaljevic.Website;
 import xyz.mijaljevic.cache.StaticFileCache;
+import xyz.mijaljevic.domain.dto.EncodedContent;
+import xyz.mijaljevic.domain.dto.FileChange;
+import xyz.mijaljevic.domain.dto.FileStamp;
+import xyz.mijaljevic.domain.entity.FileChangeType;
 import xyz.mijaljevic.domain.entity.StaticFile;
 import xyz.mijaljevic.domain.entity.StaticFileType;
+import xyz.mijaljevic.lifecycle.ContentIndex;
 import xyz.mijaljevic.lifecycle.DirectoryProvisioner;
+import xyz.mijaljevic.utils.Compression;
 import xyz.mijaljevic.utils.FileUtils;
+import xyz.mijaljevic.utils.TaskUtils;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.FileSystems;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardWatchEventKinds;
-import java.nio.file.WatchEvent;
-import java.nio.file.WatchKey;
-import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
- * Scheduler that contains a scheduled method that runs every 5 minutes and
- * checks the
- * {@link WatchKey} that was initialized during class creation. The key
- * monitors the images directory and creates/updates/deletes entries in the
- * {@link StaticFileCache} accordingly.
+ * Keeps the {@link StaticFileCache} in sync with the images directory. The
+ * directory is ingested once at startup and then watched by the
+ * {@link WatchEngine}, and entries in the cache are created, updated and
+ * deleted as soon as the files change.
  */
 @Startup
 @ApplicationScoped
-final class ImageScheduler {
+final class ImageScheduler implements ContentHandler {
     /**
      * The in-memory cache that is the single source of truth for static files.
      */
     private final StaticFileCache staticFileCache;
 
+    /**
+     * The image hashes kept across restarts, reused in place of hashing the
+     * files that did not change while the application was down.
+     */
+    private final ContentIndex contentIndex;
+
     /**
      * Provisions and exposes the watched images directory. Injecting it makes
      * directory creation a CDI dependency of this scheduler, so the directory
      * is guaranteed to exist before {@link #initImageScheduler()} registers the
-     * {@link WatchService} on it.
+     * {@link WatchEngine} on it.
      */
     private final DirectoryProvisioner directoryProvisioner;
 
+    /**
+     * Watches the images directory, along with the other content directories,
+     * and dispatches its changes to this scheduler.
+     */
+    private final WatchEngine watchEngine;
+
+    /**
+     * Maximum number of image files ingested at once at startup.
+     */
+    private final int ingestParallelism;
+
     /**
      * The images' directory, resolved from the provisioner in
      * {@link #initImageScheduler()}.
@@ -62,72 +82,93 @@ final class ImageScheduler {
     @Inject
     ImageScheduler(
             final StaticFileCache staticFileCache,
-            final DirectoryProvisioner directoryProvisioner
+            final ContentIndex contentIndex,
+            final DirectoryProvisioner directoryProvisioner,
+            final WatchEngine watchEngine,
+            @ConfigProperty(
+                    name = "application.ingest.parallelism",
+                    defaultValue = "0"
+            ) final int ingestParallelism
     ) {
         this.staticFileCache = staticFileCache;
+        this.contentIndex = contentIndex;
         this.directoryProvisioner = directoryProvisioner;
+        this.watchEngine = watchEngine;
+        this.ingestParallelism = ingestParallelism;
     }
 
     /**
-     * Holds the reference to the images directory {@link WatchKey}.
+     * The registration of the images directory with the {@link WatchEngine}.
      */
-    private static WatchKey watchKey = null;
+    private WatchEngine.Registration registration;
 
     /**
-     * True when the {@link WatchKey} is valid and false otherwise.
-     */
-    private static boolean watchKeyValid = false;
-
-    /**
-     * Initializes the class {@link WatchKey} variable <i>watchKey</i> and
-     * performs the initial images directory check up for new or updated files.
-     * It also compares the cached images against the files to check which
-     * cached image has lost its file if any and then removes it from the cache.
+     * Registers the images directory with the {@link WatchEngine} and
+     * performs the initial images directory check up, see {@link #reconcile}.
+     * The entries of the {@link ContentIndex} it did not take are released
+     * then, and the registration starts delivering changes.
      */
     @PostConstruct
     void initImageScheduler() {
         imagesDirectory = directoryProvisioner.imagesDirectory();
 
-        WatchService watcher = null;
-
         try {
-            watcher = FileSystems.getDefault().newWatchService();
+            registration = watchEngine.watch("IMAGE", imagesDirectory, this);
         } catch (IOException e) {
-            Log.fatal("Failed to initialize WatchService for images directory", e);
+            Log.fatal("Failed to register images directory with WatchService", e);
             Quarkus.asyncExit();
         }
 
-        if (watcher == null) {
-            throw new RuntimeException("Watcher service not available");
-        }
+        reconcile("IMAGE - Startup ingestion");
 
-        try {
-            watchKey = imagesDirectory.register(
-                    watcher,
-                    StandardWatchEventKinds.ENTRY_CREATE,
-                    StandardWatchEventKinds.ENTRY_DELETE,
-                    StandardWatchEventKinds.ENTRY_MODIFY
-            );
-
-            watchKeyValid = watchKey.isValid();
-        } catch (IOException e) {
-            Log.fatal("Failed to register images directory with WatchService", e);
-            Quarkus.asyncExit();
+        contentIndex.releaseImages();
+
+        if (registration != null) {
+            registration.start();
         }
+    }
 
-        final File[] files = imagesDirectory.toFile().listFiles();
+    /**
+     * Recovers from a watch overflow or a removed subdirectory by reconciling
+     * the cache with the images directory again. Only the files whose
+     * {@link FileStamp} changed are read.
+     */
+    @Override
+    public void rescan() {
+        Log.warn("IMAGE - Rescanning the images directory");
+
+        reconcile("IMAGE - Rescan");
+    }
+
+    /**
+     * Brings the {@link StaticFileCache} in line with the images directory
+     * tree: every file is consumed, in parallel (see
+     * {@link TaskUtils#runInParallel}), which creates or updates the images of
+     * new or changed files and skips unchanged ones. It also compares the
+     * cached images against the files to check which cached image has lost
+     * its file if any and then removes it from the cache.
+     *
+     * @param label A label identifying the pass in the logs.
+     */
+    private void reconcile(final String label) {
+        final List<File> files;
 
-        if (files == null) {
-            throw new RuntimeException("File list not available!");
+        try {
+            files = FileUtils.listFiles(imagesDirectory).stream()
+                    .map(Path::toFile)
+                    .toList();
+        } catch (IOException e) {
+            throw new RuntimeException("File list not available!", e);
         }
 
-        final List<String> fileNames = new ArrayList<>();
+        final Set<String> fileNames = new HashSet<>();
 
         for (File file : files) {
-            consumeImageFile(file);
-            fileNames.add(file.getName());
+            fileNames.add(nameOf(file));
         }
 
+        TaskUtils.runInParallel(label, files, ingestParallelism, this::consumeImageFile);
+
         for (StaticFile file : staticFileCache.missing(fileNames, StaticFileType.IMAGE)) {
             staticFileCache.removeByName(file.getName());
 
@@ -136,104 +177,155 @@ final class ImageScheduler {
     }
 
     /**
-     * Runs every 5 minutes and checks the {@link WatchKey} that was
-     * initialized during class creation. The key monitors the images directory
-     * and this method creates/updates/deletes entries in the
-     * {@link StaticFileCache} accordingly.
+     * Applies a coalesced batch of changes to the images directory, delivered
+     * by the {@link WatchEngine} as soon as the directory settles, and
+     * creates/updates/deletes entries in the {@link StaticFileCache}
+     * accordingly.
+     *
+     * @param changes The changed files.
      */
-    @Scheduled(
-            identity = "image_scheduler",
-            every = "5m",
-            delayed = "5s"
-    )
-    void runImageScheduler() {
-        if (!watchKeyValid) {
-            Log.fatal("IMAGE - WatchKey NOT valid. Stopping scheduler!");
-            return;
-        }
-
-        for (final WatchEvent<?> event : watchKey.pollEvents()) {
-            final WatchEvent.Kind<?> kind = event.kind();
-
-            if (kind == StandardWatchEventKinds.OVERFLOW) {
-                Log.error("IMAGE - OVERFLOW event occurred!");
-                continue;
-            }
-
-            @SuppressWarnings("unchecked") final WatchEvent<Path> ev = (WatchEvent<Path>) event;
-
-            final Path filename = ev.context();
-
-            final File file = imagesDirectory.resolve(filename).toFile();
-
-            if (kind == StandardWatchEventKinds.ENTRY_CREATE || kind == StandardWatchEventKinds.ENTRY_MODIFY) {
-                consumeImageFile(file);
+    @Override
+    public void apply(final List<FileChange> changes) {
+        for (final FileChange change : changes) {
+            final File file = change.path().toFile();
+            final String name = change.name();
+
+            if (change.type() == FileChangeType.MODIFIED) {
+                if (file.isFile()) {
+                    consumeImageFile(file);
+                }
             } else {
-                final StaticFile staticFile = staticFileCache.byName(file.getName());
+                final StaticFile staticFile = staticFileCache.byName(name);
 
                 if (staticFile != null) {
                     staticFileCache.removeByName(staticFile.getName());
-                    Log.infof("Successfully deleted image of file: %s", file.getName());
+                    Log.infof("Successfully deleted image of file: %s", name);
                 }
             }
         }
 
-        watchKeyValid = watchKey.reset();
+        staticFileCache.byteCacheStats().ifPresent(stats -> Log.infof(
+                "IMAGE - Byte cache: %d hits, %d misses, %d evictions, %d of %d bytes",
+                stats.hits(),
+                stats.misses(),
+                stats.evictions(),
+                stats.bytes(),
+                stats.budget()
+        ));
     }
 
     /**
      * Consumes the provided {@link StaticFile} {@link File} and either updates
      * or creates an image model depending on the state of the image file
-     * against the model in the cache. If hashing the file fails the model is
-     * left untouched and the method returns without storing a partially
-     * updated model. The modified timestamp is derived from the file's
+     * against the model in the cache. A file whose {@link FileStamp} is
+     * unchanged is skipped without being read, and a file not cached yet whose
+     * stamp matches its entry in the {@link ContentIndex} takes its hash, and
+     * for a compressible image its precompressed content, from there instead
+     * of being read and hashed; with the byte cache enabled, its body is left
+     * for {@link StaticFileCache#body} to load on the first request. If reading or hashing the file fails the
+     * model is left untouched and the method returns without storing a
+     * partially updated model. The modified timestamp is derived from the file's
      * filesystem attributes.
      *
+     * <p>
+     * Compressible images (icons) are held in memory together with their
+     * precompressed variants, and images below the resident threshold (see
+     * {@link StaticFileCache#isResident(long)}) as a body, in the byte cache
+     * when it is enabled. Either way the hash is computed from the very bytes
+     * held. Larger images are only hashed and then served from disk. The
+     * stamp is read again once the file was read; if it moved the file is
+     * being written, and it is left for the change the {@link WatchEngine}
+     * delivers next, so a hash is never published for bytes it does not
+     * describe.
+     * </p>
+     *
+     * <p>
+     * A published model is never mutated: every change builds a new one and
+     * publishes it with a single {@link StaticFileCache#put}, so a concurrent
+     * request sees either the old image or the new one, never the new hash
+     * with the old body.
+     * </p>
+     *
      * @param file Image file to consume.
      */
     private void consumeImageFile(@Nonnull final File file) {
-        final String fileName = file.getName();
+        final String fileName = nameOf(file);
+        final Path path = file.toPath();
 
-        StaticFile staticFile = staticFileCache.byName(fileName);
+        final StaticFile cached = staticFileCache.byName(fileName);
 
-        final boolean isNew = staticFile == null;
+        final boolean isNew = cached == null;
 
-        if (isNew) {
-            staticFile = new StaticFile();
-            staticFile.setName(fileName);
-            staticFile.setType(StaticFileType.IMAGE);
+        final BasicFileAttributes attributes;
+
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            Log.errorf(e, "Failed to read file attributes for %s", fileName);
+            return;
         }
 
-        final String oldHash = staticFile.getHash();
+        final FileStamp stamp = FileStamp.of(attributes);
 
-        final String hash;
+        if (!isNew && stamp.equals(cached.getStamp())) {
+            return;
+        }
+
+        final boolean compressible = Compression.isCompressible(fileName);
+
+        final StaticFile stored = isNew ? contentIndex.takeImage(fileName, stamp) : null;
+
+        String hash = stored == null ? null : stored.getHash();
+
+        final EncodedContent storedContent = stored == null ? null : stored.getContent();
+
+        final boolean needsBytes = compressible
+                ? storedContent == null
+                : staticFileCache.isResident(attributes.size()) && (hash == null || !staticFileCache.holdsBodies());
+
+        final byte[] data;
 
         try {
-            hash = FileUtils.hashFile(file);
-        } catch (NoSuchAlgorithmException | IOException e) {
+            data = needsBytes ? Files.readAllBytes(path) : null;
+
+            if (hash == null) {
+                hash = data != null ? FileUtils.hashBytes(data) : FileUtils.hashFile(file);
+            }
+
+            if (!stamp.equals(FileStamp.read(path))) {
+                Log.infof("Image file %s changed while it was read, awaiting its next change", fileName);
+                return;
+            }
+        } catch (IOException e) {
+            Log.errorf(e, "Failed to read file %s", fileName);
+            return;
+        } catch (NoSuchAlgorithmException e) {
             Log.errorf(e, "Failed to hash file %s with algorithm %s", fileName, Website.HASH_ALGORITHM);
             return;
         }
 
-        if (!isNew && hash.equals(oldHash)) {
+        if (!isNew && hash.equals(cached.getHash())) {
+            staticFileCache.put(restamped(cached, stamp));
             return;
         }
 
-        staticFile.setHash(hash);
+        final StaticFile staticFile = new StaticFile();
 
-        try {
-            final BasicFileAttributes attributes = Files.readAttributes(
-                    file.toPath(),
-                    BasicFileAttributes.class
-            );
-
-            staticFile.setModified(LocalDateTime.ofInstant(
-                    attributes.lastModifiedTime().toInstant(),
-                    Website.TIME_ZONE
-            ));
-        } catch (IOException e) {
-            Log.errorf(e, "Failed to read file attributes for %s", fileName);
-            return;
+        staticFile.setName(fileName);
+        staticFile.setType(StaticFileType.IMAGE);
+        staticFile.setHash(hash);
+        staticFile.setStamp(stamp);
+        staticFile.setModified(LocalDateTime.ofInstant(
+                attributes.lastModifiedTime().toInstant(),
+                Website.TIME_ZONE
+        ));
+
+        if (compressible) {
+            staticFile.setContent(storedContent != null ? storedContent : Compression.encode(data));
+        } else if (data != null && staticFileCache.holdsBodies()) {
+            staticFileCache.putBody(hash, ByteBuffer.allocateDirect(data.length).put(data).flip().asReadOnlyBuffer());
+        } else if (data != null) {
+            staticFile.setBody(ByteBuffer.wrap(data).asReadOnlyBuffer());
         }
 
         staticFileCache.put(staticFile);
@@ -244,4 +336,38 @@ final class ImageScheduler {
             Log.infof("Successfully updated image for file: %s", fileName);
         }
     }
+
+    /**
+     * Copies a cached image whose file got a new {@link FileStamp} but kept
+     * its content, so the new stamp is published without mutating the model
+     * requests may be reading.
+     *
+     * @param staticFile The cached image.
+     * @param stamp      The new stamp of its file.
+     * @return A copy of the image carrying the new stamp.
+     */
+    private static StaticFile restamped(final StaticFile staticFile, final FileStamp stamp) {
+        final StaticFile copy = new StaticFile();
+
+        copy.setName(staticFile.getName());
+        copy.setType(staticFile.getType());
+        copy.setHash(staticFile.getHash());
+        copy.setModified(staticFile.getModified());
+        copy.setContent(staticFile.getContent());
+        copy.setBody(staticFile.getBody());
+        copy.setStamp(stamp);
+
+        return copy;
+    }
+
+    /**
+     * Resolves the name the provided image file is cached by: its path
+     * relative to the images directory, see {@link FileUtils#relativeName}.
+     *
+     * @param file A file in the images directory tree.
+     * @return The name of the file.
+     */
+    private String nameOf(final File file) {
+        return FileUtils.relativeName(imagesDirectory.relativize(file.toPath()));
+    }
 }
@@ -0,0 +1,734 @@
+package xyz.mijaljevic.scheduler;
+
+import io.quarkus.logging.Log;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import xyz.mijaljevic.domain.dto.FileChange;
+import xyz.mijaljevic.domain.entity.FileChangeType;
+import xyz.mijaljevic.utils.FileUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches every content directory (blogs, images, and any future content
+ * type) for created, modified and deleted files and dispatches the changes to
+ * the {@link ContentHandler} of each directory as they happen. All
+ * directories share one {@link WatchService} and one virtual thread blocked on
+ * {@link WatchService#take()}, so an idle site costs no CPU and adding a
+ * content type costs neither a thread nor a polling job.
+ *
+ * <p>
+ * A {@link WatchKey} only covers the entries of one directory, so one is
+ * registered per subdirectory of every content directory, up to a maximum
+ * number of directories across all of them that bounds the memory (and the OS
+ * watches) held. A directory created or moved into a tree is registered as it
+ * appears, and the files already in it are reported as created.
+ * </p>
+ *
+ * <p>
+ * Editors and copy tools usually emit a burst of events for one save (a
+ * create followed by several modifies). Events are therefore collected until
+ * the directories have been quiet for the debounce window, or for at most
+ * {@link #MAX_DELAY_FACTOR} windows while they keep changing, and coalesced per
+ * file: a handler receives each changed file once, in the state of its last
+ * event.
+ * </p>
+ *
+ * <p>
+ * Some changes cannot be reported file by file: the platform signals
+ * {@link StandardWatchEventKinds#OVERFLOW} when it dropped events because too
+ * many queued up, e.g. while a deploy copies hundreds of files at once, and a
+ * deleted subdirectory takes its files with it without an event for each.
+ * The affected handler is then asked to {@link ContentHandler#rescan()}
+ * instead.
+ * </p>
+ *
+ * <p>
+ * Each handler runs on its own lane: a bounded queue of batches drained in
+ * order by a virtual thread that only exists while there is work, so a slow
+ * handler never holds up the watch or the other handlers. When a lane is full
+ * its queued batches are replaced by a single rescan, which keeps the memory
+ * bounded while the handler catches up without losing a change.
+ * </p>
+ */
+@ApplicationScoped
+final class WatchEngine implements AutoCloseable {
+    /**
+     * Upper bound on how long a batch is held back while events keep coming,
+     * as a multiple of the debounce window.
+     */
+    private static final int MAX_DELAY_FACTOR = 10;
+
+    /**
+     * The relative path of a content directory itself.
+     */
+    private static final Path ROOT = Path.of("");
+
+    /**
+     * How long {@link #close()} waits for the watching thread, and then for
+     * the lanes to apply their queued batches.
+     */
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(5);
+
+    /**
+     * The quiet period that ends a batch, in nanoseconds.
+     */
+    private final long debounceNanos;
+
+    /**
+     * Maximum number of directories, across all content directories and
+     * their subdirectories, registered at once.
+     */
+    private final int maxDirectories;
+
+    /**
+     * Maximum number of batches queued for a handler.
+     */
+    private final int queueCapacity;
+
+    /**
+     * The registered keys mapped to the content directory and subdirectory
+     * they cover. Guarded by {@code this}.
+     */
+    private final Map<WatchKey, Watched> directories = new HashMap<>();
+
+    /**
+     * The values of {@link #directories}, so a directory is looked up without
+     * scanning every key. Guarded by {@code this}.
+     */
+    private final Set<Watched> watchedDirectories = new HashSet<>();
+
+    /**
+     * The registered content directories. Guarded by {@code this}.
+     */
+    private final List<Registration> registrations = new ArrayList<>();
+
+    /**
+     * The service delivering the events of every watched directory; created
+     * with the first {@link #watch}.
+     */
+    private WatchService watchService;
+
+    /**
+     * The virtual thread running {@link #run()}; started with the first
+     * {@link #watch}.
+     */
+    private Thread thread;
+
+    /**
+     * Creates the engine with its configured limits.
+     *
+     * @param debounce       The quiet period that ends a batch of events.
+     * @param maxDirectories Maximum number of directories to watch.
+     * @param queueCapacity  Maximum number of batches queued for a handler.
+     */
+    @Inject
+    WatchEngine(
+            @ConfigProperty(
+                    name = "application.watch.debounce",
+                    defaultValue = "200ms"
+            ) final Duration debounce,
+            @ConfigProperty(
+                    name = "application.watch.max-directories",
+                    defaultValue = "1024"
+            ) final int maxDirectories,
+            @ConfigProperty(
+                    name = "application.watch.queue-capacity",
+                    defaultValue = "64"
+            ) final int queueCapacity
+    ) {
+        this.debounceNanos = Math.max(1L, Objects.requireNonNull(debounce, "debounce must not be null").toNanos());
+        this.maxDirectories = Math.max(1, maxDirectories);
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    /**
+     * Registers a watch on the provided content directory and its
+     * subdirectories. Changes are collected from this point on, but only
+     * dispatched to the handler once the returned {@link Registration} is
+     * started, so a caller can register before its initial scan without
+     * missing changes made during it.
+     *
+     * @param label     A label identifying the directory in the logs.
+     * @param directory The content directory to watch.
+     * @param handler   Receives the changes to the directory.
+     * @return The registration, to be started once the handler is ready.
+     * @throws IOException if the watch on the directory could not be
+     *                     registered.
+     */
+    @Nonnull
+    synchronized Registration watch(
+            @Nonnull final String label,
+            @Nonnull final Path directory,
+            @Nonnull final ContentHandler handler
+    ) throws IOException {
+        Objects.requireNonNull(label, "label must not be null");
+        Objects.requireNonNull(directory, "directory must not be null");
+        Objects.requireNonNull(handler, "handler must not be null");
+
+        if (watchService == null) {
+            watchService = FileSystems.getDefault().newWatchService();
+        }
+
+        final Registration registration = new Registration(label, directory, handler, queueCapacity);
+
+        track(register(directory), new Watched(registration, ROOT));
+
+        try {
+            registerTree(registration, ROOT, null);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        registrations.add(registration);
+
+        if (thread == null) {
+            thread = Thread.ofVirtual().name("watch-engine").start(this::run);
+        }
+
+        return registration;
+    }
+
+    /**
+     * Stops the engine at shutdown: closes the {@link WatchService}, which
+     * wakes the watching thread, and waits briefly for that thread to finish.
+     * It then waits for the lanes to apply the batches already queued, up to
+     * {@link #CLOSE_TIMEOUT} in total; the lanes run on daemon threads, so
+     * whatever is still queued after that is abandoned, and picked up by the
+     * startup ingestion of the next run.
+     */
+    @Override
+    @PreDestroy
+    public void close() {
+        final Thread running;
+        final List<Registration> lanes;
+
+        synchronized (this) {
+            if (watchService == null) {
+                return;
+            }
+
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                Log.warn("WATCH - Failed to close WatchService", e);
+            }
+
+            running = thread;
+            lanes = List.copyOf(registrations);
+        }
+
+        final long deadline = System.nanoTime() + CLOSE_TIMEOUT.toNanos();
+
+        try {
+            if (running != null) {
+                running.join(CLOSE_TIMEOUT);
+            }
+
+            for (final Registration registration : lanes) {
+                registration.awaitLane(deadline);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Blocks for the first event of a batch, collects the rest of the batch
+     * and hands each content directory's share to its handler, until the
+     * service is closed.
+     */
+    private void run() {
+        try {
+            while (true) {
+                drain(watchService.take());
+
+                final long deadline = System.nanoTime() + debounceNanos * MAX_DELAY_FACTOR;
+                long wait = debounceNanos;
+
+                while (wait > 0) {
+                    final WatchKey key = watchService.poll(wait, TimeUnit.NANOSECONDS);
+
+                    if (key == null) {
+                        break;
+                    }
+
+                    drain(key);
+
+                    wait = Math.min(debounceNanos, deadline - System.nanoTime());
+                }
+
+                synchronized (this) {
+                    registrations.forEach(Registration::dispatch);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            Log.debug("WATCH - WatchService closed, stopping watch engine");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Moves the events of the provided key into the pending batch of its
+     * content directory, keeping the last event kind per file, and re-arms
+     * the key. A created directory is registered and its files added to the
+     * batch; a deleted one is forgotten and flags the batch for a rescan.
+     *
+     * @param key A signalled key.
+     */
+    private synchronized void drain(final WatchKey key) {
+        final Watched watched = directories.get(key);
+
+        if (watched == null) {
+            // NOTE: A key forgotten while it was already queued.
+            return;
+        }
+
+        final Registration registration = watched.registration();
+        final Path parent = watched.directory();
+
+        for (final WatchEvent<?> event : key.pollEvents()) {
+            final WatchEvent.Kind<?> kind = event.kind();
+
+            if (kind == StandardWatchEventKinds.OVERFLOW) {
+                Log.warnf("%s - OVERFLOW event occurred, events were lost!", registration.label);
+                registration.rescanNeeded = true;
+                continue;
+            }
+
+            final Path path = parent.resolve((Path) event.context());
+
+            if (kind == StandardWatchEventKinds.ENTRY_CREATE
+                    && Files.isDirectory(registration.root.resolve(path), LinkOption.NOFOLLOW_LINKS)) {
+                registerTree(registration, path, registration.pending);
+                continue;
+            }
+
+            if (kind == StandardWatchEventKinds.ENTRY_DELETE && isWatched(registration, path)) {
+                forget(registration, path);
+                continue;
+            }
+
+            // NOTE: Re-inserted so the batch keeps the order of the last events.
+            registration.pending.remove(path);
+            registration.pending.put(path, kind);
+        }
+
+        if (key.reset()) {
+            return;
+        }
+
+        watchedDirectories.remove(directories.remove(key));
+
+        if (ROOT.equals(parent)) {
+            Log.fatalf(
+                    "%s - WatchKey for '%s' NOT valid! No longer watching it!",
+                    registration.label,
+                    registration.root
+            );
+            forget(registration, ROOT);
+        } else {
+            Log.infof("%s - Directory '%s' is gone, no longer watching it", registration.label, parent);
+            forget(registration, parent);
+        }
+    }
+
+    /**
+     * Registers a watch on the provided directory of a content directory tree
+     * and all of its subdirectories, within {@link #maxDirectories}.
+     *
+     * @param registration The content directory the tree belongs to.
+     * @param start        The directory to register, relative to the content
+     *                     directory.
+     * @param pending      The batch being collected, to which the files found
+     *                     are added as created; null to not report them.
+     * @throws UncheckedIOException if the content directory itself could not
+     *                              be walked.
+     */
+    private void registerTree(
+            final Registration registration,
+            final Path start,
+            @Nullable final Map<Path, WatchEvent.Kind<?>> pending
+    ) {
+        try {
+            Files.walkFileTree(registration.root.resolve(start), new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs)
+                        throws IOException {
+                    final Path relative = registration.root.relativize(dir);
+
+                    if (isWatched(registration, relative)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    if (directories.size() >= maxDirectories) {
+                        Log.warnf(
+                                "%s - Watching the maximum of %d directories, not watching '%s'",
+                                registration.label,
+                                maxDirectories,
+                                relative
+                        );
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+
+                    track(register(dir), new Watched(registration, relative));
+
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                    if (pending != null && attrs.isRegularFile()) {
+                        pending.put(registration.root.relativize(file), StandardWatchEventKinds.ENTRY_CREATE);
+                    }
+
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+                    Log.warnf(e, "%s - Failed to visit '%s'", registration.label, file);
+
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            if (ROOT.equals(start)) {
+                throw new UncheckedIOException(e);
+            }
+
+            Log.errorf(e, "%s - Failed to watch directory '%s'", registration.label, start);
+        }
+    }
+
+    /**
+     * Checks whether the provided directory of a content directory tree is
+     * watched.
+     *
+     * @param registration The content directory the directory belongs to.
+     * @param relative     The directory, relative to the content directory.
+     * @return True if a key is registered for the directory.
+     */
+    private boolean isWatched(final Registration registration, final Path relative) {
+        return watchedDirectories.contains(new Watched(registration, relative));
+    }
+
+    /**
+     * Records the provided key as covering the provided directory, replacing
+     * the directory it covered before, if any.
+     *
+     * @param key       The registered key.
+     * @param directory The directory the key covers.
+     */
+    private void track(final WatchKey key, final Watched directory) {
+        final Watched previous = directories.put(key, directory);
+
+        if (previous != null) {
+            watchedDirectories.remove(previous);
+        }
+
+        watchedDirectories.add(directory);
+    }
+
+    /**
+     * Cancels the keys of the provided directory of a content directory tree
+     * and all of its subdirectories. Their files are gone without an event of
+     * their own, so the batch is flagged for a rescan.
+     *
+     * @param registration The content directory the directory belongs to.
+     * @param gone         The removed directory, relative to the content
+     *                     directory.
+     */
+    private void forget(final Registration registration, final Path gone) {
+        final Iterator<Map.Entry<WatchKey, Watched>> entries = directories.entrySet().iterator();
+
+        while (entries.hasNext()) {
+            final Map.Entry<WatchKey, Watched> entry = entries.next();
+            final Watched directory = entry.getValue();
+
+            if (directory.registration() == registration && directory.directory().startsWith(gone)) {
+                entry.getKey().cancel();
+                entries.remove();
+                watchedDirectories.remove(directory);
+            }
+        }
+
+        registration.rescanNeeded = true;
+    }
+
+    /**
+     * Registers the provided directory with the {@link #watchService}.
+     *
+     * @param dir The directory to register.
+     * @return The key of the registered directory.
+     * @throws IOException if the directory could not be registered.
+     */
+    private WatchKey register(final Path dir) throws IOException {
+        return dir.register(
+                watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY
+        );
+    }
+
+    /**
+     * A directory covered by a {@link WatchKey}.
+     *
+     * @param registration The content directory the directory belongs to.
+     * @param directory    The directory, relative to the content directory.
+     */
+    private record Watched(Registration registration, Path directory) {
+    }
+
+    /**
+     * A content directory registered with the engine, together with the lane
+     * its handler runs on.
+     */
+    static final class Registration {
+        /**
+         * A label identifying the content directory in the logs.
+         */
+        private final String label;
+
+        /**
+         * The content directory.
+         */
+        private final Path root;
+
+        /**
+         * Keeps the cached model of the content directory in sync.
+         */
+        private final ContentHandler handler;
+
+        /**
+         * Maximum number of batches in {@link #queue}.
+         */
+        private final int queueCapacity;
+
+        /**
+         * The batch being collected: file paths relative to {@link #root}
+         * mapped to the kind of their last event. Only accessed by the
+         * watching thread.
+         */
+        private final Map<Path, WatchEvent.Kind<?>> pending = new LinkedHashMap<>();
+
+        /**
+         * True when the batch being collected needs a rescan. Only accessed
+         * by the watching thread.
+         */
+        private boolean rescanNeeded = false;
+
+        /**
+         * The batches waiting for the handler. Guarded by {@code this}.
+         */
+        private final ArrayDeque<List<FileChange>> queue = new ArrayDeque<>();
+
+        /**
+         * True when a rescan is waiting for the handler; it covers the state
+         * of every file, so no batch is queued behind it. Guarded by
+         * {@code this}.
+         */
+        private boolean rescanQueued = false;
+
+        /**
+         * True once the handler is ready for changes. Guarded by
+         * {@code this}.
+         */
+        private boolean started = false;
+
+        /**
+         * True while a thread drains the {@link #queue}. Guarded by
+         * {@code this}.
+         */
+        private boolean draining = false;
+
+        /**
+         * The thread draining the {@link #queue}, or the last one to. Guarded
+         * by {@code this}.
+         */
+        private Thread lane;
+
+        private Registration(
+                final String label,
+                final Path root,
+                final ContentHandler handler,
+                final int queueCapacity
+        ) {
+            this.label = label;
+            this.root = root;
+            this.handler = handler;
+            this.queueCapacity = queueCapacity;
+        }
+
+        /**
+         * Starts dispatching changes to the handler, beginning with those
+         * collected since the directory was registered.
+         */
+        synchronized void start() {
+            started = true;
+
+            drainIfIdle();
+        }
+
+        /**
+         * Queues the collected batch, or a rescan, for the handler and clears
+         * it. Called by the watching thread.
+         */
+        private void dispatch() {
+            if (rescanNeeded) {
+                rescanNeeded = false;
+                pending.clear();
+                enqueue(null);
+            } else if (!pending.isEmpty()) {
+                final List<FileChange> changes = new ArrayList<>(pending.size());
+
+                for (final Map.Entry<Path, WatchEvent.Kind<?>> entry : pending.entrySet()) {
+                    changes.add(new FileChange(
+                            FileUtils.relativeName(entry.getKey()),
+                            root.resolve(entry.getKey()),
+                            entry.getValue() == StandardWatchEventKinds.ENTRY_DELETE
+                                    ? FileChangeType.DELETED
+                                    : FileChangeType.MODIFIED
+                    ));
+                }
+
+                pending.clear();
+                enqueue(List.copyOf(changes));
+            }
+        }
+
+        /**
+         * Queues a batch for the handler. A full queue is replaced by a
+         * single rescan.
+         *
+         * @param changes The batch to queue, or null to queue a rescan.
+         */
+        private synchronized void enqueue(@Nullable final List<FileChange> changes) {
+            if (changes == null) {
+                queue.clear();
+                rescanQueued = true;
+            } else if (rescanQueued) {
+                Log.debugf("%s - Rescan already queued, dropping %d changes", label, changes.size());
+            } else if (queue.size() >= queueCapacity) {
+                Log.warnf("%s - %d batches behind, rescanning instead", label, queue.size());
+                queue.clear();
+                rescanQueued = true;
+            } else {
+                queue.add(changes);
+            }
+
+            drainIfIdle();
+        }
+
+        /**
+         * Starts a virtual thread draining the {@link #queue}, unless the
+         * handler is not started yet, one already runs, or there is no work.
+         */
+        private synchronized void drainIfIdle() {
+            if (!started || draining || (queue.isEmpty() && !rescanQueued)) {
+                return;
+            }
+
+            draining = true;
+
+            lane = Thread.ofVirtual()
+                    .name(label.toLowerCase() + "-handler")
+                    .start(this::runLane);
+        }
+
+        /**
+         * Waits for the lane to apply the batches queued so far, giving up at
+         * the provided deadline.
+         *
+         * @param deadline The {@link System#nanoTime()} to give up at.
+         * @throws InterruptedException in case the waiting thread was
+         *                              interrupted.
+         */
+        private void awaitLane(final long deadline) throws InterruptedException {
+            while (true) {
+                final Thread draining;
+
+                synchronized (this) {
+                    draining = this.draining ? lane : null;
+                }
+
+                if (draining == null) {
+                    return;
+                }
+
+                final long remaining = deadline - System.nanoTime();
+
+                if (remaining <= 0 || !draining.join(Duration.ofNanos(remaining))) {
+                    Log.warnf("%s - Still applying changes at shutdown, abandoning the queued batches", label);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Hands the queued batches and rescans to the handler, in order,
+         * until the queue is empty. A handler that throws is logged and does
+         * not stop the lane.
+         */
+        private void runLane() {
+            while (true) {
+                final List<FileChange> changes;
+
+                synchronized (this) {
+                    if (rescanQueued) {
+                        rescanQueued = false;
+                        changes = null;
+                    } else {
+                        changes = queue.poll();
+
+                        if (changes == null) {
+                            draining = false;
+                            return;
+                        }
+                    }
+                }
+
+                try {
+                    if (changes == null) {
+                        handler.rescan();
+                    } else {
+                        handler.apply(changes);
+                    }
+                } catch (RuntimeException e) {
+                    Log.errorf(e, "%s - Failed to apply changes", label);
+                }
+            }
+        }
+    }
+}
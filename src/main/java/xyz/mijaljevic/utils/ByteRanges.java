@@ -0,0 +1,423 @@
+package xyz.mijaljevic.utils;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import xyz.mijaljevic.domain.dto.ByteRange;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Utility class for the range requests of RFC 9110 (section 14): resolves a
+ * <i>Range</i> header against the length of a representation, evaluates its
+ * <i>If-Range</i> validator and assembles the {@code multipart/byteranges}
+ * body of a request for several ranges.
+ *
+ * <p>
+ * A single range needs none of the assembly below: it is served as a slice
+ * of the resident body or a region of the file, without a copy. Only a
+ * multipart body is copied together, by positional reads of the file when
+ * the body is not resident.
+ * </p>
+ */
+public final class ByteRanges {
+    /**
+     * The HTTP <i>Range</i> request header.
+     */
+    public static final String RANGE = "Range";
+
+    /**
+     * The HTTP <i>If-Range</i> request header.
+     */
+    public static final String IF_RANGE = "If-Range";
+
+    /**
+     * The HTTP <i>Accept-Ranges</i> response header.
+     */
+    public static final String ACCEPT_RANGES = "Accept-Ranges";
+
+    /**
+     * The HTTP <i>Content-Range</i> response header.
+     */
+    public static final String CONTENT_RANGE = "Content-Range";
+
+    /**
+     * The only range unit the website serves.
+     */
+    public static final String UNIT = "bytes";
+
+    /**
+     * The most ranges a <i>Range</i> header may ask for. A header asking for
+     * more is ignored and the whole representation served, so a request
+     * cannot make the server assemble a body of thousands of tiny parts.
+     */
+    public static final int MAX_RANGES = 16;
+
+    /**
+     * The largest {@code multipart/byteranges} body assembled, in bytes of
+     * the representation. A request for more gets the whole representation,
+     * which is served without a copy.
+     */
+    public static final long MAX_MULTIPART_LENGTH = 16L * 1024 * 1024;
+
+    /**
+     * The prefix of a <i>Range</i> header in the {@link #UNIT bytes} unit.
+     */
+    private static final String RANGE_PREFIX = UNIT + '=';
+
+    /**
+     * The line separator of the multipart headers.
+     */
+    private static final String CRLF = "\r\n";
+
+    private ByteRanges() {
+        // NOTE: Utility class, not meant to be instantiated.
+    }
+
+    /**
+     * Resolves a <i>Range</i> header against the length of a representation.
+     * Unsatisfiable ranges are dropped; the rest are sorted and overlapping
+     * or adjacent ones coalesced.
+     *
+     * @param header The <i>Range</i> header value.
+     * @param length The length of the representation in bytes.
+     * @return The satisfiable ranges, an empty list if none of the ranges is
+     * satisfiable (a 416), or {@code null} if the header is not a valid byte
+     * range request or asks for more than {@link #MAX_RANGES} ranges, in
+     * which case it is ignored.
+     */
+    @Nullable
+    public static List<ByteRange> parse(@Nonnull final String header, final long length) {
+        if (!header.regionMatches(true, 0, RANGE_PREFIX, 0, RANGE_PREFIX.length())) {
+            return null;
+        }
+
+        final String[] specs = header.substring(RANGE_PREFIX.length()).split(",");
+
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        final List<ByteRange> ranges = new ArrayList<>(specs.length);
+
+        boolean empty = true;
+
+        for (String spec : specs) {
+            final String trimmed = spec.strip();
+
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+
+            empty = false;
+
+            final int dash = trimmed.indexOf('-');
+
+            if (dash < 0) {
+                return null;
+            }
+
+            final long first = number(trimmed, 0, dash);
+            final long last = number(trimmed, dash + 1, trimmed.length());
+
+            if (dash == 0) {
+                if (last < 0) {
+                    return null;
+                }
+
+                if (last > 0 && length > 0) {
+                    ranges.add(new ByteRange(Math.max(0, length - last), length - 1));
+                }
+
+                continue;
+            }
+
+            if (first < 0 || dash + 1 < trimmed.length() && (last < 0 || last < first)) {
+                return null;
+            }
+
+            if (first < length) {
+                final long end = last < 0 ? length - 1 : Math.min(last, length - 1);
+
+                ranges.add(new ByteRange(first, end));
+            }
+        }
+
+        return empty ? null : coalesce(ranges);
+    }
+
+    /**
+     * Checks whether the <i>If-Range</i> validator of a request still holds,
+     * so its <i>Range</i> may be served. An entity tag must match the current
+     * one under the strong comparison; a date must equal the current
+     * <i>Last-Modified</i>.
+     *
+     * @param ifRange      The <i>If-Range</i> header, or {@code null}.
+     * @param etag         The opaque <i>ETag</i> of the resource, unquoted.
+     * @param lastModified The <i>Last-Modified</i> date of the resource in
+     *                     epoch seconds, or {@link Preconditions#NO_DATE}.
+     * @return True if there is no validator or it holds, false if the whole
+     * representation must be served instead.
+     */
+    public static boolean ifRangeHolds(
+            @Nullable final String ifRange,
+            @Nonnull final String etag,
+            final long lastModified
+    ) {
+        if (ifRange == null) {
+            return true;
+        }
+
+        final String validator = ifRange.strip();
+
+        if (validator.startsWith("\"") || validator.startsWith("W/")) {
+            return Preconditions.matches(validator, etag, false);
+        }
+
+        final long date = Preconditions.parseHttpDate(validator);
+
+        return date != Preconditions.NO_DATE && date == lastModified;
+    }
+
+    /**
+     * Sums the lengths of the provided ranges.
+     *
+     * @param ranges The ranges.
+     * @return Their total length in bytes.
+     */
+    public static long totalLength(@Nonnull final List<ByteRange> ranges) {
+        long total = 0;
+
+        for (ByteRange range : ranges) {
+            total += range.length();
+        }
+
+        return total;
+    }
+
+    /**
+     * Assembles the {@code multipart/byteranges} body of the provided ranges
+     * of a resident body.
+     *
+     * @param body        The whole representation; never repositioned.
+     * @param ranges      The ranges, as resolved by {@link #parse}.
+     * @param contentType The media type of the representation.
+     * @param boundary    The multipart boundary.
+     * @return The multipart body, ready to be written.
+     */
+    @Nonnull
+    public static ByteBuffer multipart(
+            @Nonnull final ByteBuffer body,
+            @Nonnull final List<ByteRange> ranges,
+            @Nonnull final String contentType,
+            @Nonnull final String boundary
+    ) {
+        final ByteBuffer source = body.duplicate();
+        final ByteBuffer target = allocate(ranges, body.remaining(), contentType, boundary);
+
+        for (ByteRange range : ranges) {
+            putHeader(target, range, body.remaining(), contentType, boundary);
+            target.put(target.position(), source, source.position() + (int) range.start(), (int) range.length());
+            target.position(target.position() + (int) range.length());
+        }
+
+        return finish(target, boundary);
+    }
+
+    /**
+     * Assembles the {@code multipart/byteranges} body of the provided ranges
+     * of a file, reading each range by a positional read of its channel.
+     *
+     * @param channel     The open channel of the file.
+     * @param ranges      The ranges, as resolved by {@link #parse}.
+     * @param contentType The media type of the representation.
+     * @param boundary    The multipart boundary.
+     * @return The multipart body, ready to be written.
+     * @throws IOException in case it failed to read the file, or the file
+     *                     shrank below a range meanwhile.
+     */
+    @Nonnull
+    public static ByteBuffer multipart(
+            @Nonnull final FileChannel channel,
+            @Nonnull final List<ByteRange> ranges,
+            @Nonnull final String contentType,
+            @Nonnull final String boundary
+    ) throws IOException {
+        final long length = channel.size();
+        final ByteBuffer target = allocate(ranges, length, contentType, boundary);
+
+        for (ByteRange range : ranges) {
+            putHeader(target, range, length, contentType, boundary);
+
+            final ByteBuffer part = target.slice(target.position(), (int) range.length());
+
+            while (part.hasRemaining()) {
+                if (channel.read(part, range.start() + part.position()) < 0) {
+                    throw new EOFException("File ended before the requested range " + range);
+                }
+            }
+
+            target.position(target.position() + (int) range.length());
+        }
+
+        return finish(target, boundary);
+    }
+
+    /**
+     * Allocates a buffer that exactly fits the multipart body of the provided
+     * ranges.
+     *
+     * @param ranges      The ranges of the body.
+     * @param length      The length of the whole representation.
+     * @param contentType The media type of the representation.
+     * @param boundary    The multipart boundary.
+     * @return The empty buffer.
+     */
+    private static ByteBuffer allocate(
+            final List<ByteRange> ranges,
+            final long length,
+            final String contentType,
+            final String boundary
+    ) {
+        long size = closing(boundary).length();
+
+        for (ByteRange range : ranges) {
+            size += header(range, length, contentType, boundary).length() + range.length();
+        }
+
+        return ByteBuffer.allocate(Math.toIntExact(size));
+    }
+
+    /**
+     * Writes the delimiter and headers of the part of the provided range.
+     *
+     * @param target      The multipart body being assembled.
+     * @param range       The range of the part.
+     * @param length      The length of the whole representation.
+     * @param contentType The media type of the representation.
+     * @param boundary    The multipart boundary.
+     */
+    private static void putHeader(
+            final ByteBuffer target,
+            final ByteRange range,
+            final long length,
+            final String contentType,
+            final String boundary
+    ) {
+        target.put(header(range, length, contentType, boundary).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Writes the closing delimiter and flips the body for reading.
+     *
+     * @param target   The multipart body being assembled.
+     * @param boundary The multipart boundary.
+     * @return The finished body.
+     */
+    private static ByteBuffer finish(final ByteBuffer target, final String boundary) {
+        target.put(closing(boundary).getBytes(StandardCharsets.US_ASCII));
+
+        return target.flip();
+    }
+
+    /**
+     * Builds the delimiter and headers preceding the part of a range.
+     *
+     * @param range       The range of the part.
+     * @param length      The length of the whole representation.
+     * @param contentType The media type of the representation.
+     * @param boundary    The multipart boundary.
+     * @return The delimiter and headers of the part.
+     */
+    private static String header(
+            final ByteRange range,
+            final long length,
+            final String contentType,
+            final String boundary
+    ) {
+        return CRLF + "--" + boundary + CRLF
+                + "Content-Type: " + contentType + CRLF
+                + "Content-Range: " + range.contentRange(length) + CRLF
+                + CRLF;
+    }
+
+    /**
+     * Builds the closing delimiter of a multipart body.
+     *
+     * @param boundary The multipart boundary.
+     * @return The closing delimiter.
+     */
+    private static String closing(final String boundary) {
+        return CRLF + "--" + boundary + "--" + CRLF;
+    }
+
+    /**
+     * Sorts the provided ranges and coalesces the overlapping or adjacent
+     * ones.
+     *
+     * @param ranges The satisfiable ranges, sorted in place.
+     * @return The coalesced ranges.
+     */
+    private static List<ByteRange> coalesce(final List<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+
+        ranges.sort(Comparator.comparingLong(ByteRange::start));
+
+        final List<ByteRange> coalesced = new ArrayList<>(ranges.size());
+
+        ByteRange current = ranges.getFirst();
+
+        for (int i = 1; i < ranges.size(); i++) {
+            final ByteRange next = ranges.get(i);
+
+            if (next.start() <= current.end() + 1) {
+                current = new ByteRange(current.start(), Math.max(current.end(), next.end()));
+            } else {
+                coalesced.add(current);
+                current = next;
+            }
+        }
+
+        coalesced.add(current);
+
+        return coalesced;
+    }
+
+    /**
+     * Reads a non-negative decimal number, saturating at
+     * {@link Long#MAX_VALUE}.
+     *
+     * @param value The value to read from.
+     * @param start The index of the first digit.
+     * @param end   The index after the last digit.
+     * @return The number, or {@code -1} if the region is empty or not all
+     * digits.
+     */
+    private static long number(final String value, final int start, final int end) {
+        if (start >= end) {
+            return -1;
+        }
+
+        long number = 0;
+
+        for (int i = start; i < end; i++) {
+            final char c = value.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+
+            number = number > (Long.MAX_VALUE - 9) / 10 ? Long.MAX_VALUE : number * 10 + (c - '0');
+        }
+
+        return number;
+    }
+}
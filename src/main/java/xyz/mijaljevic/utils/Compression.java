@@ -0,0 +1,244 @@
+package xyz.mijaljevic.utils;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import io.quarkus.logging.Log;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import xyz.mijaljevic.domain.dto.EncodedContent;
+import xyz.mijaljevic.domain.entity.ContentEncoding;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Utility class that builds the precompressed variants of a response body and
+ * negotiates which variant to serve from a request's <i>Accept-Encoding</i>
+ * header. Compression runs once per content: for a static file when the
+ * scheduler first sees it, and for a rendered page on a worker thread once it
+ * is cached (see {@code PageCache}), so a request never waits for it.
+ */
+public final class Compression {
+    /**
+     * Brotli quality used for the precompressed variants. Compression runs
+     * once per content and off the request path, so a high quality is
+     * affordable.
+     */
+    private static final int BROTLI_QUALITY = 9;
+
+    /**
+     * File extensions of static files worth compressing. Formats that are
+     * already compressed (JPEG, PNG, GIF) gain nothing and are left out.
+     */
+    private static final Set<String> COMPRESSIBLE_EXTENSIONS = Set.of(
+            "css", "js", "html", "xml", "txt", "json", "svg", "ico"
+    );
+
+    /**
+     * True when the brotli4j native library could be loaded. Without it only
+     * gzip variants are built.
+     */
+    private static final boolean BROTLI_AVAILABLE = loadBrotli();
+
+    private Compression() {
+        // NOTE: Utility class, not meant to be instantiated.
+    }
+
+    /**
+     * Builds the compressed variants of the provided body. A variant that
+     * fails to build or is not smaller than the body is left out.
+     *
+     * @param identity The uncompressed body.
+     * @return The {@link EncodedContent} holding the body and its variants.
+     * @throws NullPointerException if {@code identity} is null.
+     */
+    @Nonnull
+    public static EncodedContent encode(final byte[] identity) {
+        Objects.requireNonNull(identity, "identity must not be null");
+
+        return new EncodedContent(
+                identity,
+                smallerThan(identity, gzip(identity)),
+                smallerThan(identity, brotli(identity))
+        );
+    }
+
+    /**
+     * Checks whether a static file is worth compressing, judging by the
+     * extension of its name.
+     *
+     * @param fileName The static file name.
+     * @return True if the file format is not already compressed.
+     */
+    public static boolean isCompressible(@Nonnull final String fileName) {
+        final int dot = fileName.lastIndexOf('.');
+
+        if (dot < 0) {
+            return false;
+        }
+
+        return COMPRESSIBLE_EXTENSIONS.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Picks the content coding to serve the provided content in. Among the
+     * variants the content holds, the one with the highest quality value in
+     * the <i>Accept-Encoding</i> header wins, brotli on a tie. Codings not
+     * listed take the quality of the {@code *} wildcard, if present.
+     *
+     * @param acceptEncoding The <i>Accept-Encoding</i> header, may be
+     *                       {@code null}.
+     * @param content        The {@link EncodedContent} to serve.
+     * @return The {@link ContentEncoding} to serve, {@code IDENTITY} when no
+     * accepted variant exists.
+     */
+    @Nonnull
+    public static ContentEncoding negotiate(
+            @Nullable final String acceptEncoding,
+            @Nonnull final EncodedContent content
+    ) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return ContentEncoding.IDENTITY;
+        }
+
+        float brotli = -1f;
+        float gzip = -1f;
+        float wildcard = -1f;
+
+        for (final String element : acceptEncoding.split(",")) {
+            final int semicolon = element.indexOf(';');
+
+            final String coding = (semicolon < 0 ? element : element.substring(0, semicolon))
+                    .trim()
+                    .toLowerCase(Locale.ROOT);
+
+            final float quality = semicolon < 0 ? 1f : parseQuality(element.substring(semicolon + 1));
+
+            switch (coding) {
+                case "br" -> brotli = quality;
+                case "gzip", "x-gzip" -> gzip = quality;
+                case "*" -> wildcard = quality;
+                default -> { /* Unsupported coding, ignored. */ }
+            }
+        }
+
+        if (brotli < 0f) {
+            brotli = wildcard;
+        }
+
+        if (gzip < 0f) {
+            gzip = wildcard;
+        }
+
+        if (content.brotli() != null && brotli > 0f && brotli >= gzip) {
+            return ContentEncoding.BROTLI;
+        }
+
+        if (content.gzip() != null && gzip > 0f) {
+            return ContentEncoding.GZIP;
+        }
+
+        if (content.brotli() != null && brotli > 0f) {
+            return ContentEncoding.BROTLI;
+        }
+
+        return ContentEncoding.IDENTITY;
+    }
+
+    /**
+     * Parses the quality value out of the parameters of an
+     * <i>Accept-Encoding</i> element, e.g. {@code q=0.5}.
+     *
+     * @param parameters The parameters following the coding.
+     * @return The quality value, 1 when absent and 0 when malformed.
+     */
+    private static float parseQuality(final String parameters) {
+        for (final String parameter : parameters.split(";")) {
+            final String trimmed = parameter.trim();
+
+            if (trimmed.regionMatches(true, 0, "q=", 0, 2)) {
+                try {
+                    return Float.parseFloat(trimmed.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0f;
+                }
+            }
+        }
+
+        return 1f;
+    }
+
+    /**
+     * Gzip compresses the provided body.
+     *
+     * @param data The body to compress.
+     * @return The compressed body, or null in case of a failure.
+     */
+    @Nullable
+    private static byte[] gzip(final byte[] data) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            Log.warnf(e, "Failed to gzip a body of %d bytes", data.length);
+            return null;
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Brotli compresses the provided body.
+     *
+     * @param data The body to compress.
+     * @return The compressed body, or null if brotli is unavailable or in case
+     * of a failure.
+     */
+    @Nullable
+    private static byte[] brotli(final byte[] data) {
+        if (!BROTLI_AVAILABLE) {
+            return null;
+        }
+
+        try {
+            return Encoder.compress(data, new Encoder.Parameters().setQuality(BROTLI_QUALITY));
+        } catch (IOException e) {
+            Log.warnf(e, "Failed to brotli compress a body of %d bytes", data.length);
+            return null;
+        }
+    }
+
+    /**
+     * @param identity   The uncompressed body.
+     * @param compressed A compressed variant, may be null.
+     * @return The variant if it is smaller than the uncompressed body, null
+     * otherwise.
+     */
+    @Nullable
+    private static byte[] smallerThan(final byte[] identity, final byte[] compressed) {
+        return compressed != null && compressed.length < identity.length ? compressed : null;
+    }
+
+    /**
+     * Loads the brotli4j native library.
+     *
+     * @return True if brotli compression is available.
+     */
+    private static boolean loadBrotli() {
+        if (Brotli4jLoader.isAvailable()) {
+            return true;
+        }
+
+        Log.warnf(
+                Brotli4jLoader.getUnavailabilityCause(),
+                "Brotli native library not available; serving gzip variants only."
+        );
+
+        return false;
+    }
+}
@@ -5,23 +5,52 @@ import xyz.mijaljevic.Website;
 
 import java.io.File;
 import java.io.IOException;
-import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.stream.Stream;
 
 /**
  * Functional helper class for file related operations.
  */
 public final class FileUtils {
+    /**
+     * Size of the per-thread buffer files are streamed through when hashed.
+     */
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Per-thread direct buffer files are streamed through when hashed, so
+     * hashing a file of any size allocates a fixed amount once per thread
+     * rather than the whole file on the heap on every call.
+     */
+    private static final ThreadLocal<ByteBuffer> HASH_BUFFER = ThreadLocal.withInitial(
+            () -> ByteBuffer.allocateDirect(HASH_BUFFER_SIZE)
+    );
+
+    /**
+     * Lowercase hex encoder for digests. Unlike {@code BigInteger} it keeps
+     * leading zeros, so every hash has the same length.
+     */
+    private static final HexFormat HEX = HexFormat.of();
+
     /**
      * Creates a {@link String} hash from the provided file. Uses the algorithm
-     * specified by the <i>FILE_HASH_ALGO</i> variable.
+     * specified by the <i>FILE_HASH_ALGO</i> variable. The file is streamed
+     * through a reused per-thread buffer, never read into memory whole.
      *
      * @param file A {@link File} to hash
      * @return Returns the {@link String} <i>FILE_HASH_ALGO</i> hash of the
-     * provided file.
+     * provided file, as fixed width lowercase hex.
      * @throws IOException              in case it failed to read the data of
      *                                  the provided file.
      * @throws NoSuchAlgorithmException in case it failed to find the algorithm
@@ -35,11 +64,135 @@ public final class FileUtils {
     ) throws IOException, NoSuchAlgorithmException {
         Objects.requireNonNull(file, "file must not be null");
 
-        byte[] data = Files.readAllBytes(file.toPath());
+        final MessageDigest digest = MessageDigest.getInstance(Website.HASH_ALGORITHM);
+        final ByteBuffer buffer = HASH_BUFFER.get();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer.clear();
+
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        return HEX.formatHex(digest.digest());
+    }
+
+    /**
+     * Creates a {@link String} hash from the provided bytes, with the same
+     * algorithm and format as {@link #hashFile(File)}. Lets a caller that
+     * already holds the file content avoid reading it again.
+     *
+     * @param data The bytes to hash.
+     * @return The hash of the provided bytes, as fixed width lowercase hex.
+     * @throws NoSuchAlgorithmException in case it failed to find the algorithm
+     *                                  specified by the <i>FILE_HASH_ALGO</i>
+     *                                  variable.
+     * @throws NullPointerException     if {@code data} is null.
+     */
+    @Nonnull
+    public static String hashBytes(final byte[] data) throws NoSuchAlgorithmException {
+        Objects.requireNonNull(data, "data must not be null");
+
+        return HEX.formatHex(MessageDigest.getInstance(Website.HASH_ALGORITHM).digest(data));
+    }
+
+    /**
+     * Creates a {@link String} hash from the remaining bytes of the provided
+     * buffer, with the same algorithm and format as {@link #hashFile(File)}.
+     * The buffer itself is left untouched.
+     *
+     * @param buffer The bytes to hash.
+     * @return The hash of the provided bytes, as fixed width lowercase hex.
+     * @throws NoSuchAlgorithmException in case it failed to find the algorithm
+     *                                  specified by the <i>FILE_HASH_ALGO</i>
+     *                                  variable.
+     * @throws NullPointerException     if {@code buffer} is null.
+     */
+    @Nonnull
+    public static String hashBuffer(final ByteBuffer buffer) throws NoSuchAlgorithmException {
+        Objects.requireNonNull(buffer, "buffer must not be null");
+
+        final MessageDigest digest = MessageDigest.getInstance(Website.HASH_ALGORITHM);
+
+        digest.update(buffer.duplicate());
+
+        return HEX.formatHex(digest.digest());
+    }
+
+    /**
+     * Reads the provided file into an off-heap direct buffer, which the
+     * server writes to the socket without a further copy.
+     *
+     * @param path The file to read.
+     * @return A read-only direct {@link ByteBuffer} holding the file content.
+     * Callers must {@link ByteBuffer#duplicate() duplicate} it before reading.
+     * @throws IOException          in case it failed to read the file or the
+     *                              file is larger than a buffer can hold.
+     * @throws NullPointerException if {@code path} is null.
+     */
+    @Nonnull
+    public static ByteBuffer readDirect(final Path path) throws IOException {
+        Objects.requireNonNull(path, "path must not be null");
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large for a buffer: " + path);
+            }
+
+            final ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+
+            return buffer.flip().asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * Lists the regular files in the provided directory and all of its
+     * subdirectories, without following symbolic links.
+     *
+     * @param directory The directory to list.
+     * @return The regular files found, in no particular order.
+     * @throws IOException          in case it failed to walk the directory.
+     * @throws NullPointerException if {@code directory} is null.
+     */
+    @Nonnull
+    public static List<Path> listFiles(final Path directory) throws IOException {
+        Objects.requireNonNull(directory, "directory must not be null");
+
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(path -> Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS)).toList();
+        }
+    }
+
+    /**
+     * Turns a path relative to a watched directory into the name its file is
+     * cached and addressed by: the path elements joined by {@code /}, on every
+     * platform, e.g. {@code 2024/post.md}.
+     *
+     * @param relative A path relative to the watched directory.
+     * @return The name of the file.
+     * @throws NullPointerException if {@code relative} is null.
+     */
+    @Nonnull
+    public static String relativeName(final Path relative) {
+        Objects.requireNonNull(relative, "relative must not be null");
+
+        final StringJoiner name = new StringJoiner("/");
 
-        byte[] hash = MessageDigest.getInstance(Website.HASH_ALGORITHM)
-                .digest(data);
+        for (final Path element : relative) {
+            name.add(element.toString());
+        }
 
-        return new BigInteger(1, hash).toString(16);
+        return name.toString();
     }
 }
@@ -0,0 +1,55 @@
+package xyz.mijaljevic.utils;
+
+import jakarta.annotation.Nonnull;
+
+/**
+ * Utility class for content fingerprinted static file names. A fingerprint is
+ * a prefix of the content hash of a file, inserted into its name after the
+ * base name: {@code style.min.css} becomes {@code style.0123456789abcdef.min.css}.
+ * The name changes whenever the content does, so a fingerprinted URL can be
+ * cached by clients forever.
+ */
+public final class Fingerprints {
+    /**
+     * Number of hex characters of the content hash kept in a fingerprint.
+     */
+    public static final int LENGTH = 16;
+
+    /**
+     * Regular expression matching a fingerprint.
+     */
+    public static final String PATTERN = "[0-9a-f]{" + LENGTH + "}";
+
+    private Fingerprints() {
+        // NOTE: Utility class, not meant to be instantiated.
+    }
+
+    /**
+     * Derives the fingerprint of a file from its content hash.
+     *
+     * @param hash The hex content hash of the file.
+     * @return The fingerprint.
+     */
+    @Nonnull
+    public static String of(@Nonnull final String hash) {
+        return hash.length() <= LENGTH ? hash : hash.substring(0, LENGTH);
+    }
+
+    /**
+     * Inserts the fingerprint of the provided content hash into a file name,
+     * after its base name. A name may be preceded by directories, which are
+     * left untouched.
+     *
+     * @param name The file name, e.g. {@code 2024/cover.png}.
+     * @param hash The hex content hash of the file.
+     * @return The fingerprinted name, e.g. {@code 2024/cover.0123456789abcdef.png}.
+     */
+    @Nonnull
+    public static String insert(@Nonnull final String name, @Nonnull final String hash) {
+        final int start = name.lastIndexOf('/') + 1;
+        final int dot = name.indexOf('.', start);
+        final int end = dot < 0 ? name.length() : dot;
+
+        return name.substring(0, end) + '.' + of(hash) + name.substring(end);
+    }
+}
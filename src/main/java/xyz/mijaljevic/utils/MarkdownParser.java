@@ -3,10 +3,14 @@ package xyz.mijaljevic.utils;
 import io.quarkus.logging.Log;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
+import org.commonmark.node.AbstractVisitor;
+import org.commonmark.node.Code;
 import org.commonmark.node.FencedCodeBlock;
 import org.commonmark.node.Heading;
+import org.commonmark.node.IndentedCodeBlock;
 import org.commonmark.node.Link;
 import org.commonmark.node.Node;
+import org.commonmark.node.Text;
 import org.commonmark.parser.Parser;
 import org.commonmark.renderer.NodeRenderer;
 import org.commonmark.renderer.html.AttributeProvider;
@@ -15,6 +19,7 @@ import org.commonmark.renderer.html.HtmlNodeRendererContext;
 import org.commonmark.renderer.html.HtmlRenderer;
 import org.commonmark.renderer.html.HtmlWriter;
 import xyz.mijaljevic.domain.dto.BlogMetadata;
+import xyz.mijaljevic.domain.dto.ParsedMarkdown;
 
 import java.io.File;
 import java.io.IOException;
@@ -177,6 +182,93 @@ public final class MarkdownParser {
     private static final DateTimeFormatter METADATA_DATE_PATTERN =
             DateTimeFormatter.ofPattern("d-MMM-uuuu", Locale.ENGLISH);
 
+    /**
+     * Parses the full content of a Markdown file in a single pass: the
+     * front-matter metadata block, the resolved title and the document tree of
+     * the body. Lets a caller that already holds the file content avoid
+     * reading and parsing it again for each piece.
+     *
+     * @param content The full file content.
+     * @return The {@link ParsedMarkdown}.
+     * @throws NullPointerException if {@code content} is null.
+     */
+    @Nonnull
+    public static ParsedMarkdown parse(final String content) {
+        Objects.requireNonNull(content, "content must not be null");
+
+        final String[] lines = content.split("\n", -1);
+        final int close = locateClosingFence(lines);
+
+        final BlogMetadata metadata = close < 0 ? BlogMetadata.EMPTY : parseFrontMatter(lines, close);
+        final Node document = MD_PARSER.parse(close < 0 ? content : joinBody(lines, close));
+
+        final String title = metadata.title() != null && !metadata.title().isBlank()
+                ? metadata.title()
+                : extractTitle(document);
+
+        return new ParsedMarkdown(metadata, title, document);
+    }
+
+    /**
+     * Renders a parsed Markdown document to HTML.
+     *
+     * @param document The document tree, e.g. {@link ParsedMarkdown#document()}.
+     * @return The rendered HTML, or null in case of a failure.
+     * @throws NullPointerException if {@code document} is null.
+     */
+    @Nullable
+    public static String render(final Node document) {
+        Objects.requireNonNull(document, "document must not be null");
+
+        try {
+            return MD_RENDERER.render(document);
+        } catch (RuntimeException e) {
+            Log.warn("Failed to render markdown document to HTML", e);
+            return null;
+        }
+    }
+
+    /**
+     * Collects the plain text of a parsed Markdown document: the literal of
+     * every text, inline code and code block node, separated by spaces, with
+     * the markup itself left out. Used to feed the search index from the tree
+     * the blog scheduler already parsed.
+     *
+     * @param document The document tree, e.g. {@link ParsedMarkdown#document()}.
+     * @return The plain text of the document.
+     * @throws NullPointerException if {@code document} is null.
+     */
+    @Nonnull
+    public static String plainText(final Node document) {
+        Objects.requireNonNull(document, "document must not be null");
+
+        final StringBuilder text = new StringBuilder();
+
+        document.accept(new AbstractVisitor() {
+            @Override
+            public void visit(final Text node) {
+                text.append(node.getLiteral()).append(' ');
+            }
+
+            @Override
+            public void visit(final Code node) {
+                text.append(node.getLiteral()).append(' ');
+            }
+
+            @Override
+            public void visit(final FencedCodeBlock node) {
+                text.append(node.getLiteral()).append(' ');
+            }
+
+            @Override
+            public void visit(final IndentedCodeBlock node) {
+                text.append(node.getLiteral()).append(' ');
+            }
+        });
+
+        return text.toString();
+    }
+
     /**
      * Renders a Markdown file to HTML. The optional front-matter metadata block
      * is stripped before rendering so it never leaks into the rendered body.
@@ -248,8 +340,19 @@ public final class MarkdownParser {
             return "Untitled";
         }
 
-        final Node node = MD_PARSER.parse(stripFrontMatter(content));
-        final Node first = node.getFirstChild();
+        return extractTitle(MD_PARSER.parse(stripFrontMatter(content)));
+    }
+
+    /**
+     * Extracts the title from a parsed Markdown body: the text of its first
+     * block, assumed to be a heading.
+     *
+     * @param document The document tree of the body.
+     * @return The title, or "Untitled" if none is found.
+     */
+    @Nonnull
+    private static String extractTitle(final Node document) {
+        final Node first = document.getFirstChild();
 
         if (first == null) {
             return "Untitled";
@@ -295,6 +398,19 @@ public final class MarkdownParser {
             return content;
         }
 
+        return joinBody(lines, close);
+    }
+
+    /**
+     * Joins the lines following the closing fence of a front-matter block
+     * back into the Markdown body.
+     *
+     * @param lines The file content split into lines.
+     * @param close The index of the closing fence line.
+     * @return The Markdown body without the metadata block.
+     */
+    @Nonnull
+    private static String joinBody(final String[] lines, final int close) {
         return String.join("\n", List.of(lines).subList(close + 1, lines.length));
     }
 
@@ -314,6 +430,19 @@ public final class MarkdownParser {
             return BlogMetadata.EMPTY;
         }
 
+        return parseFrontMatter(lines, close);
+    }
+
+    /**
+     * Parses the lines of a located front-matter metadata block into a
+     * {@link BlogMetadata}.
+     *
+     * @param lines The file content split into lines.
+     * @param close The index of the closing fence line.
+     * @return The parsed metadata.
+     */
+    @Nonnull
+    private static BlogMetadata parseFrontMatter(final String[] lines, final int close) {
         String title = null;
         String author = null;
         LocalDate date = null;
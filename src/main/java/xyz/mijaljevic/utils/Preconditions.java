@@ -0,0 +1,325 @@
+package xyz.mijaljevic.utils;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import xyz.mijaljevic.domain.entity.PreconditionResult;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Utility class that evaluates the conditional request headers of RFC 9110
+ * (section 13) against the current <i>ETag</i> and <i>Last-Modified</i> of a
+ * resource: <i>If-Match</i>, <i>If-Unmodified-Since</i>, <i>If-None-Match</i>
+ * and <i>If-Modified-Since</i>, in that order of precedence.
+ *
+ * <p>
+ * Entity-tag lists are scanned in place and IMF-fixdate dates are parsed by
+ * character position, so answering a revalidation allocates nothing. Entity
+ * tags are compared by their opaque value: a list entry may be quoted or, as
+ * the website sent its ETags before they were quoted, bare.
+ * </p>
+ */
+public final class Preconditions {
+    /**
+     * Marks a date that is absent or not a valid HTTP-date.
+     */
+    public static final long NO_DATE = Long.MIN_VALUE;
+
+    /**
+     * Length of an IMF-fixdate, e.g. {@code Sun, 06 Nov 1994 08:49:37 GMT}.
+     */
+    private static final int IMF_FIXDATE_LENGTH = 29;
+
+    /**
+     * The three letter month names of an HTTP-date, in order.
+     */
+    private static final String MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec";
+
+    /**
+     * The obsolete HTTP-date formats a recipient must still accept: RFC 850,
+     * e.g. {@code Sunday, 06-Nov-94 08:49:37 GMT}, and ANSI C asctime, e.g.
+     * {@code Sun Nov  6 08:49:37 1994}.
+     */
+    private static final List<DateTimeFormatter> OBSOLETE_DATE_FORMATS = List.of(
+            new DateTimeFormatterBuilder()
+                    .appendPattern("EEEE, dd-MMM-")
+                    .appendValueReduced(ChronoField.YEAR, 2, 2, 1970)
+                    .appendPattern(" HH:mm:ss 'GMT'")
+                    .toFormatter(Locale.ENGLISH)
+                    .withZone(ZoneOffset.UTC),
+            DateTimeFormatter.ofPattern("EEE MMM ppd HH:mm:ss yyyy", Locale.ENGLISH).withZone(ZoneOffset.UTC)
+    );
+
+    private Preconditions() {
+        // NOTE: Utility class, not meant to be instantiated.
+    }
+
+    /**
+     * Evaluates the conditional headers of a request for a resource that
+     * exists. A failing <i>If-Match</i> (strong comparison) or, without it,
+     * a failing <i>If-Unmodified-Since</i> fails the request. Then a matching
+     * <i>If-None-Match</i> (weak comparison) or, without it, an
+     * <i>If-Modified-Since</i> not older than the resource answers it with
+     * a 304.
+     *
+     * @param ifMatch           The <i>If-Match</i> header, or {@code null}.
+     * @param ifUnmodifiedSince The <i>If-Unmodified-Since</i> date in epoch
+     *                          seconds, or {@link #NO_DATE}.
+     * @param ifNoneMatch       The <i>If-None-Match</i> header, or
+     *                          {@code null}.
+     * @param ifModifiedSince   The <i>If-Modified-Since</i> date in epoch
+     *                          seconds, or {@link #NO_DATE}.
+     * @param etag              The opaque <i>ETag</i> of the resource,
+     *                          unquoted.
+     * @param lastModified      The <i>Last-Modified</i> date of the resource
+     *                          in epoch seconds, or {@link #NO_DATE}.
+     * @return The {@link PreconditionResult}.
+     */
+    @Nonnull
+    public static PreconditionResult evaluate(
+            @Nullable final String ifMatch,
+            final long ifUnmodifiedSince,
+            @Nullable final String ifNoneMatch,
+            final long ifModifiedSince,
+            @Nonnull final String etag,
+            final long lastModified
+    ) {
+        if (ifMatch != null) {
+            if (!matches(ifMatch, etag, false)) {
+                return PreconditionResult.FAILED;
+            }
+        } else if (isAfter(lastModified, ifUnmodifiedSince)) {
+            return PreconditionResult.FAILED;
+        }
+
+        if (ifNoneMatch != null) {
+            return matches(ifNoneMatch, etag, true) ? PreconditionResult.NOT_MODIFIED : PreconditionResult.PASSED;
+        }
+
+        if (ifModifiedSince != NO_DATE && lastModified != NO_DATE && !isAfter(lastModified, ifModifiedSince)) {
+            return PreconditionResult.NOT_MODIFIED;
+        }
+
+        return PreconditionResult.PASSED;
+    }
+
+    /**
+     * Checks whether an <i>If-Match</i> or <i>If-None-Match</i> header
+     * matches the provided entity tag: the header is {@code *} or lists the
+     * tag. Under the strong comparison weak ({@code W/}) list entries never
+     * match.
+     *
+     * @param header The header value, a comma separated list of entity tags.
+     * @param etag   The opaque entity tag of the resource, unquoted.
+     * @param weak   True for the weak comparison, false for the strong one.
+     * @return True if the header matches the entity tag.
+     */
+    public static boolean matches(@Nonnull final String header, @Nonnull final String etag, final boolean weak) {
+        final int length = header.length();
+
+        int position = 0;
+
+        while (position < length) {
+            final char c = header.charAt(position);
+
+            if (c == ',' || c == ' ' || c == '\t') {
+                position++;
+                continue;
+            }
+
+            if (c == '*') {
+                return true;
+            }
+
+            boolean weakTag = false;
+
+            if (c == 'W' && position + 1 < length && header.charAt(position + 1) == '/') {
+                weakTag = true;
+                position += 2;
+            }
+
+            final int start;
+            final int end;
+
+            if (position < length && header.charAt(position) == '"') {
+                start = position + 1;
+                end = header.indexOf('"', start);
+
+                if (end < 0) {
+                    return false;
+                }
+
+                position = end + 1;
+            } else {
+                start = position;
+
+                while (position < length && header.charAt(position) != ',') {
+                    position++;
+                }
+
+                end = trimEnd(header, start, position);
+            }
+
+            if ((weak || !weakTag)
+                    && end - start == etag.length()
+                    && header.regionMatches(start, etag, 0, etag.length())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Parses an HTTP-date: the IMF-fixdate the website sends itself, or one of
+     * the two obsolete formats.
+     *
+     * @param value The header value, may be {@code null}.
+     * @return The date in epoch seconds, or {@link #NO_DATE} if the value is
+     * absent or not a valid HTTP-date.
+     */
+    public static long parseHttpDate(@Nullable final String value) {
+        if (value == null) {
+            return NO_DATE;
+        }
+
+        final long date = parseImfFixdate(value);
+
+        if (date != NO_DATE || value.length() == IMF_FIXDATE_LENGTH) {
+            return date;
+        }
+
+        for (DateTimeFormatter format : OBSOLETE_DATE_FORMATS) {
+            try {
+                return ZonedDateTime.parse(value, format).toEpochSecond();
+            } catch (DateTimeException e) {
+                // NOTE: Not in this format, the next one may fit.
+            }
+        }
+
+        return NO_DATE;
+    }
+
+    /**
+     * Parses an IMF-fixdate by the position of its fields.
+     *
+     * @param value The value to parse.
+     * @return The date in epoch seconds, or {@link #NO_DATE} if the value is
+     * not an IMF-fixdate.
+     */
+    private static long parseImfFixdate(final String value) {
+        if (value.length() != IMF_FIXDATE_LENGTH
+                || value.charAt(3) != ','
+                || value.charAt(4) != ' '
+                || value.charAt(7) != ' '
+                || value.charAt(11) != ' '
+                || value.charAt(16) != ' '
+                || value.charAt(19) != ':'
+                || value.charAt(22) != ':'
+                || !value.startsWith(" GMT", 25)) {
+            return NO_DATE;
+        }
+
+        final int day = digits(value, 5, 2);
+        final int month = month(value, 8);
+        final int year = digits(value, 12, 4);
+        final int hour = digits(value, 17, 2);
+        final int minute = digits(value, 20, 2);
+        final int second = digits(value, 23, 2);
+
+        if (day < 0 || month < 0 || year < 0 || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || second < 0 || second > 60) {
+            return NO_DATE;
+        }
+
+        final long epochDay;
+
+        try {
+            epochDay = LocalDate.of(year, month, day).toEpochDay();
+        } catch (DateTimeException e) {
+            return NO_DATE;
+        }
+
+        return epochDay * 86_400L + hour * 3_600L + minute * 60L + second;
+    }
+
+    /**
+     * Reads a run of decimal digits.
+     *
+     * @param value  The value to read from.
+     * @param start  The index of the first digit.
+     * @param length The number of digits.
+     * @return The number, or {@code -1} if a character is not a digit.
+     */
+    private static int digits(final String value, final int start, final int length) {
+        int number = 0;
+
+        for (int i = start; i < start + length; i++) {
+            final char c = value.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+
+            number = number * 10 + (c - '0');
+        }
+
+        return number;
+    }
+
+    /**
+     * Reads a three letter month name.
+     *
+     * @param value The value to read from.
+     * @param start The index of the month name.
+     * @return The month, from 1 to 12, or {@code -1} if it is not a month
+     * name.
+     */
+    private static int month(final String value, final int start) {
+        for (int month = 0; month < 12; month++) {
+            if (value.regionMatches(start, MONTHS, month * 3, 3)) {
+                return month + 1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Skips the whitespace before the provided end of a region.
+     *
+     * @param value The value holding the region.
+     * @param start The start of the region.
+     * @param end   The end of the region, exclusive.
+     * @return The end of the region without its trailing whitespace.
+     */
+    private static int trimEnd(final String value, final int start, final int end) {
+        int trimmed = end;
+
+        while (trimmed > start && (value.charAt(trimmed - 1) == ' ' || value.charAt(trimmed - 1) == '\t')) {
+            trimmed--;
+        }
+
+        return trimmed;
+    }
+
+    /**
+     * Checks whether a date is known to be after another, at the one second
+     * resolution of HTTP-dates.
+     *
+     * @param date  A date in epoch seconds, or {@link #NO_DATE}.
+     * @param other A date in epoch seconds, or {@link #NO_DATE}.
+     * @return True if both dates are known and {@code date} is the later one.
+     */
+    private static boolean isAfter(final long date, final long other) {
+        return date != NO_DATE && other != NO_DATE && date > other;
+    }
+}
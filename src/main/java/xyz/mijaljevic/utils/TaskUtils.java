@@ -0,0 +1,101 @@
+package xyz.mijaljevic.utils;
+
+import io.quarkus.logging.Log;
+import jakarta.annotation.Nonnull;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Utility class for running batches of independent tasks, such as the startup
+ * ingestion of the blogs and images directories.
+ */
+public final class TaskUtils {
+    /**
+     * Number of progress log lines emitted over a batch, besides the summary.
+     */
+    private static final int PROGRESS_STEPS = 10;
+
+    /**
+     * Smallest batch that logs its progress; smaller ones only log the summary.
+     */
+    private static final int PROGRESS_MIN_ITEMS = 100;
+
+    private TaskUtils() {
+        // NOTE: Utility class, not meant to be instantiated.
+    }
+
+    /**
+     * Applies the provided action to every item on a bounded pool of platform
+     * threads and blocks until all of them completed, logging the progress
+     * along the way. The pool is bounded, rather than a thread per item, so
+     * per-thread resources (e.g. the hashing buffer of
+     * {@link FileUtils#hashFile}) are reused across items. An action that
+     * throws is logged and does not stop the rest of the batch.
+     *
+     * @param label       A label identifying the batch in the logs.
+     * @param items       The items to process; must not change while the
+     *                    batch runs.
+     * @param parallelism The maximum number of items processed at once; a
+     *                    value below 1 uses the number of processors.
+     * @param action      The action to apply to every item; must be safe to
+     *                    run concurrently.
+     * @param <T>         The item type.
+     * @throws NullPointerException if any argument is null.
+     */
+    public static <T> void runInParallel(
+            @Nonnull final String label,
+            @Nonnull final Collection<T> items,
+            final int parallelism,
+            @Nonnull final Consumer<T> action
+    ) {
+        Objects.requireNonNull(label, "label must not be null");
+        Objects.requireNonNull(items, "items must not be null");
+        Objects.requireNonNull(action, "action must not be null");
+
+        final int total = items.size();
+
+        if (total == 0) {
+            return;
+        }
+
+        final int threads = Math.min(
+                total,
+                parallelism < 1 ? Runtime.getRuntime().availableProcessors() : parallelism
+        );
+
+        final int step = total < PROGRESS_MIN_ITEMS ? Integer.MAX_VALUE : Math.ceilDiv(total, PROGRESS_STEPS);
+        final AtomicInteger done = new AtomicInteger();
+        final long start = System.nanoTime();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (final T item : items) {
+                executor.execute(() -> {
+                    try {
+                        action.accept(item);
+                    } catch (RuntimeException e) {
+                        Log.errorf(e, "%s - Failed to process %s", label, item);
+                    }
+
+                    final int count = done.incrementAndGet();
+
+                    if (count % step == 0 && count < total) {
+                        Log.infof("%s - Processed %d of %d", label, count, total);
+                    }
+                });
+            }
+        }
+
+        Log.infof(
+                "%s - Processed %d items on %d threads in %d ms",
+                label,
+                total,
+                threads,
+                (System.nanoTime() - start) / 1_000_000
+        );
+    }
+}
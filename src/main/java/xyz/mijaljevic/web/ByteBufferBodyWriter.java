@@ -0,0 +1,88 @@
+package xyz.mijaljevic.web;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.Provider;
+import org.jboss.resteasy.reactive.server.core.ResteasyReactiveRequestContext;
+import org.jboss.resteasy.reactive.server.spi.ResteasyReactiveResourceInfo;
+import org.jboss.resteasy.reactive.server.spi.ServerMessageBodyWriter;
+import org.jboss.resteasy.reactive.server.spi.ServerRequestContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes {@link ByteBuffer} response entities, the resident bodies of static
+ * files. The stock writers copy a buffer into a {@code byte[]} and then into a
+ * pooled Netty buffer; this one wraps the buffer in a Netty {@code ByteBuf}
+ * instead, so a direct body of the byte cache goes to the socket without a
+ * copy through the heap.
+ *
+ * <p>
+ * Every write works on a {@link ByteBuffer#duplicate() duplicate}, so the
+ * shared buffer held by the cache is never repositioned.
+ * </p>
+ */
+@Provider
+@Produces(MediaType.WILDCARD)
+public final class ByteBufferBodyWriter implements ServerMessageBodyWriter<ByteBuffer> {
+    @Override
+    public boolean isWriteable(
+            final Class<?> type,
+            final Type genericType,
+            final ResteasyReactiveResourceInfo target,
+            final MediaType mediaType
+    ) {
+        return ByteBuffer.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public void writeResponse(
+            final ByteBuffer buffer,
+            final Type genericType,
+            final ServerRequestContext context
+    ) {
+        final HttpServerResponse response = ((ResteasyReactiveRequestContext) context)
+                .serverRequest()
+                .unwrap(HttpServerResponse.class);
+
+        response.end(Buffer.buffer(Unpooled.wrappedBuffer(buffer.duplicate())));
+    }
+
+    @Override
+    public boolean isWriteable(
+            final Class<?> type,
+            final Type genericType,
+            final Annotation[] annotations,
+            final MediaType mediaType
+    ) {
+        return ByteBuffer.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public void writeTo(
+            final ByteBuffer buffer,
+            final Class<?> type,
+            final Type genericType,
+            final Annotation[] annotations,
+            final MediaType mediaType,
+            final MultivaluedMap<String, Object> httpHeaders,
+            final OutputStream entityStream
+    ) throws IOException {
+        final WritableByteChannel channel = Channels.newChannel(entityStream);
+        final ByteBuffer source = buffer.duplicate();
+
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+}
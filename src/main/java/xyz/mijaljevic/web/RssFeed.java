@@ -5,7 +5,9 @@ import io.quarkus.qute.Template;
 import jakarta.annotation.security.PermitAll;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.NotFoundException;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
@@ -14,18 +16,28 @@ import org.eclipse.microprofile.config.inject.ConfigProperty;
 import xyz.mijaljevic.Website;
 import xyz.mijaljevic.cache.BlogCache;
 import xyz.mijaljevic.cache.BlogRenderer;
+import xyz.mijaljevic.cache.FeedCache;
+import xyz.mijaljevic.domain.dto.AtomEntry;
+import xyz.mijaljevic.domain.dto.ContentSnapshot;
+import xyz.mijaljevic.domain.dto.RenderedFeed;
 import xyz.mijaljevic.domain.dto.RssItem;
 import xyz.mijaljevic.domain.entity.Blog;
+import xyz.mijaljevic.domain.entity.FeedFormat;
 import xyz.mijaljevic.lifecycle.RequestContext;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Serves the RSS feed. The feed is rendered on demand from the in-memory
- * {@link BlogCache} through the {@code rss.xml} Qute template.
+ * Serves the RSS and Atom feeds: the recent blogs, every blog and the blogs of
+ * a tag, each in both formats. A feed is spliced together from per-blog item
+ * fragments, rendered from the in-memory {@link BlogCache} through the
+ * {@code rssItem.xml} and {@code atomEntry.xml} Qute templates, and wrapped in
+ * the {@code rss.xml} or {@code atom.xml} template. It is built once per
+ * published blog snapshot and held in the {@link FeedCache}, so polls in
+ * between are answered from the cached bytes and a changed blog costs one new
+ * fragment rather than a full re-render of the archive.
  */
 @PermitAll
 @Path("/rss")
@@ -35,17 +47,38 @@ public final class RssFeed {
      */
     private static final DateTimeFormatter RSS_SPEC_FORMAT = DateTimeFormatter.ofPattern("E, dd MMM yyyy HH:mm:ss z");
 
+    /**
+     * Date time format specified by the Atom specification (RFC 3339).
+     */
+    private static final DateTimeFormatter ATOM_SPEC_FORMAT = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+
     /**
      * Default last build date for the RSS feed. It is set to the UNIX epoch and
      * used when the feed holds no blogs.
      */
     private static final String DEFAULT_LAST_BUILD_DATE = "Thu, 01 Jan 1970 00:00:00 UTC";
 
+    /**
+     * Time a feed holding no blogs was last modified, the UNIX epoch.
+     */
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
     /**
      * URL used by the website, should stay mijaljevic.xyz as long as I live I hope.
      */
     private static final String WEBSITE_URL = "https://mijaljevic.xyz/";
 
+    /**
+     * Media type of the RSS feeds.
+     */
+    private static final MediaType TEXT_XML_UTF_8 = MediaType.TEXT_XML_TYPE.withCharset("UTF-8");
+
+    /**
+     * Media type of the Atom feeds.
+     */
+    private static final MediaType ATOM_XML_UTF_8 = MediaType.valueOf(FeedFormat.ATOM.mediaType())
+            .withCharset("UTF-8");
+
     /**
      * Value of the HTTP <i>Cache-Control</i> header applied to the feed.
      */
@@ -58,10 +91,25 @@ public final class RssFeed {
     private final RequestContext requestContext;
 
     /**
-     * The {@code rss.xml} Qute template that renders the feed.
+     * The {@code rss.xml} Qute template that wraps the RSS items.
      */
     private final Template rss;
 
+    /**
+     * The {@code rssItem.xml} Qute template that renders one RSS item.
+     */
+    private final Template rssItem;
+
+    /**
+     * The {@code atom.xml} Qute template that wraps the Atom entries.
+     */
+    private final Template atom;
+
+    /**
+     * The {@code atomEntry.xml} Qute template that renders one Atom entry.
+     */
+    private final Template atomEntry;
+
     /**
      * The in-memory blog cache, the single source of truth for the feed items.
      */
@@ -73,33 +121,50 @@ public final class RssFeed {
     private final BlogRenderer blogRenderer;
 
     /**
-     * Creates the resource with its configuration, request headers, template
+     * Holds the rendered feeds and their item fragments until the blogs
+     * change.
+     */
+    private final FeedCache feedCache;
+
+    /**
+     * Creates the resource with its configuration, request headers, templates
      * and caches.
      *
-     * @param cacheControl The HTTP <i>Cache-Control</i> header value.
+     * @param cacheControl   The HTTP <i>Cache-Control</i> header value.
      * @param requestContext The shared HTTP caching utilities.
-     * @param rss          The {@code rss.xml} Qute template.
-     * @param blogCache    The in-memory blog cache.
-     * @param blogRenderer The on-demand blog HTML renderer.
+     * @param rss            The {@code rss.xml} Qute template.
+     * @param rssItem        The {@code rssItem.xml} Qute template.
+     * @param atom           The {@code atom.xml} Qute template.
+     * @param atomEntry      The {@code atomEntry.xml} Qute template.
+     * @param blogCache      The in-memory blog cache.
+     * @param blogRenderer   The on-demand blog HTML renderer.
+     * @param feedCache      The rendered feed cache.
      */
     @Inject
     public RssFeed(
             @ConfigProperty(name = "application.cache-control") final String cacheControl,
             final RequestContext requestContext,
             @Location("rss.xml") final Template rss,
+            @Location("rssItem.xml") final Template rssItem,
+            @Location("atom.xml") final Template atom,
+            @Location("atomEntry.xml") final Template atomEntry,
             final BlogCache blogCache,
-            final BlogRenderer blogRenderer
+            final BlogRenderer blogRenderer,
+            final FeedCache feedCache
     ) {
         this.cacheControl = cacheControl;
         this.requestContext = requestContext;
         this.rss = rss;
+        this.rssItem = rssItem;
+        this.atom = atom;
+        this.atomEntry = atomEntry;
         this.blogCache = blogCache;
         this.blogRenderer = blogRenderer;
+        this.feedCache = feedCache;
     }
 
     /**
-     * Serves the RSS feed XML with conditional-request caching headers. The feed
-     * is rendered from the current {@link BlogCache} contents on every call.
+     * Serves the RSS feed of the recent blogs.
      *
      * @return The RSS feed {@link Response}, or a 304 if the client cache is
      * current.
@@ -107,53 +172,275 @@ public final class RssFeed {
     @GET
     @Produces(MediaType.TEXT_XML)
     public Response getRss() {
-        final List<Blog> recent = blogCache.recent();
+        final ContentSnapshot snapshot = blogCache.snapshot();
+
+        return serve(FeedFormat.RSS, "", "Recent blogs", snapshot, snapshot.recent());
+    }
+
+    /**
+     * Serves the RSS feed of every blog.
+     *
+     * @return The RSS feed {@link Response}, or a 304 if the client cache is
+     * current.
+     */
+    @GET
+    @Path("/all")
+    @Produces(MediaType.TEXT_XML)
+    public Response getRssAll() {
+        final ContentSnapshot snapshot = blogCache.snapshot();
+
+        return serve(FeedFormat.RSS, "/all", "Every blog", snapshot, snapshot.sorted());
+    }
+
+    /**
+     * Serves the RSS feed of the blogs of the requested tag. The tag is
+     * normalized first, so it may be requested as written in a blog.
+     *
+     * @param tag The tag whose blogs to list.
+     * @return The RSS feed {@link Response}, or a 304 if the client cache is
+     * current.
+     */
+    @GET
+    @Path("/tag/{tag}")
+    @Produces(MediaType.TEXT_XML)
+    public Response getRssTag(@PathParam("tag") final String tag) {
+        return serveTag(FeedFormat.RSS, tag);
+    }
 
-        final List<RssItem> items = new ArrayList<>();
+    /**
+     * Serves the Atom feed of the recent blogs.
+     *
+     * @return The Atom feed {@link Response}, or a 304 if the client cache is
+     * current.
+     */
+    @GET
+    @Path("/atom")
+    @Produces(MediaType.APPLICATION_ATOM_XML)
+    public Response getAtom() {
+        final ContentSnapshot snapshot = blogCache.snapshot();
 
-        for (Blog blog : recent) {
-            final String link = WEBSITE_URL + "blog/" + blog.getSlug();
+        return serve(FeedFormat.ATOM, "", "Recent blogs", snapshot, snapshot.recent());
+    }
 
-            final String pubDate = blog.getCreated()
-                    .atZone(Website.TIME_ZONE)
-                    .format(RSS_SPEC_FORMAT);
+    /**
+     * Serves the Atom feed of every blog.
+     *
+     * @return The Atom feed {@link Response}, or a 304 if the client cache is
+     * current.
+     */
+    @GET
+    @Path("/atom/all")
+    @Produces(MediaType.APPLICATION_ATOM_XML)
+    public Response getAtomAll() {
+        final ContentSnapshot snapshot = blogCache.snapshot();
 
-            items.add(new RssItem(
-                    blog.getTitle(),
-                    link,
-                    link,
-                    blogRenderer.render(blog.getFileName()),
-                    pubDate
-            ));
-        }
+        return serve(FeedFormat.ATOM, "/all", "Every blog", snapshot, snapshot.sorted());
+    }
+
+    /**
+     * Serves the Atom feed of the blogs of the requested tag. The tag is
+     * normalized first, so it may be requested as written in a blog.
+     *
+     * @param tag The tag whose blogs to list.
+     * @return The Atom feed {@link Response}, or a 304 if the client cache is
+     * current.
+     */
+    @GET
+    @Path("/atom/tag/{tag}")
+    @Produces(MediaType.APPLICATION_ATOM_XML)
+    public Response getAtomTag(@PathParam("tag") final String tag) {
+        return serveTag(FeedFormat.ATOM, tag);
+    }
 
-        final String lastBuildDate = recent.stream()
-                .findFirst()
-                .map(blog -> blog.getCreated()
-                        .atZone(Website.TIME_ZONE)
-                        .format(RSS_SPEC_FORMAT))
-                .orElse(DEFAULT_LAST_BUILD_DATE);
+    /**
+     * Serves the feed of the blogs of the provided tag in the provided format.
+     *
+     * @param format The {@link FeedFormat} to serve.
+     * @param tag    The tag whose blogs to list, not normalized yet.
+     * @return The feed {@link Response}, or a 304 if the client cache is
+     * current.
+     * @throws NotFoundException if no blog carries the tag.
+     */
+    private Response serveTag(final FeedFormat format, final String tag) {
+        final ContentSnapshot snapshot = blogCache.snapshot();
+        final String normalized = BlogCache.normalizeTag(tag);
+        final List<Blog> tagged = snapshot.byTag().get(normalized);
+
+        if (tagged == null) {
+            throw new NotFoundException("Client tried to find the feed of an unknown tag!");
+        }
 
-        final String rssFeed = rss.data("lastBuildDate", lastBuildDate)
-                .data("items", items)
-                .render();
+        return serve(format, "/tag/" + normalized, "Blogs tagged " + normalized, snapshot, tagged);
+    }
 
-        final String etag = String.valueOf(rssFeed.hashCode());
+    /**
+     * Serves the feed of the provided blogs with conditional-request caching
+     * headers. The feed is taken from the {@link FeedCache}, rendered only
+     * when the blogs changed since it was last rendered, so a conditional
+     * request is answered before anything is rendered.
+     *
+     * @param format   The {@link FeedFormat} to serve.
+     * @param path     The path of the feed below the format's base path,
+     *                 empty for the recent blogs.
+     * @param subject  What the feed lists, shown as its description.
+     * @param snapshot The {@link ContentSnapshot} the blogs are taken from.
+     * @param blogs    The blogs to list, newest first.
+     * @return The feed {@link Response}, or a 304 if the client cache is
+     * current.
+     */
+    private Response serve(
+            final FeedFormat format,
+            final String path,
+            final String subject,
+            final ContentSnapshot snapshot,
+            final List<Blog> blogs
+    ) {
+        final String self = WEBSITE_URL + (format == FeedFormat.RSS ? "rss" : "rss/atom") + path;
 
-        final String lastModified = RequestContext.parseLastModifiedTime(LocalDateTime.parse(
-                lastBuildDate,
-                RSS_SPEC_FORMAT
-        ));
+        final RenderedFeed feed = feedCache.feed(
+                format.name() + path,
+                snapshot.version(),
+                () -> render(format, self, subject + " from Karlo Mijaljević.", snapshot, blogs)
+        );
 
-        final Response notModified = requestContext.notModified(etag, lastModified);
+        final Response conditional = requestContext.evaluatePreconditions(
+                feed.eTag(),
+                feed.lastModified(),
+                cacheControl,
+                true
+        );
 
-        if (notModified != null) return notModified;
+        if (conditional != null) return conditional;
 
-        return Response.ok()
-                .entity(rssFeed)
-                .header(HttpHeaders.ETAG, etag)
+        return requestContext.ok(feed.content())
+                .type(format == FeedFormat.RSS ? TEXT_XML_UTF_8 : ATOM_XML_UTF_8)
+                .tag(feed.eTag())
                 .header(HttpHeaders.CACHE_CONTROL, cacheControl)
-                .header(HttpHeaders.LAST_MODIFIED, lastModified)
+                .header(HttpHeaders.LAST_MODIFIED, feed.lastModified())
                 .build();
     }
+
+    /**
+     * Renders the feed of the provided blogs, splicing together the cached
+     * item fragments of the blogs and rendering only the missing ones.
+     *
+     * @param format      The {@link FeedFormat} to render.
+     * @param self        The public URL of the feed.
+     * @param description The description of the feed.
+     * @param snapshot    The {@link ContentSnapshot} the blogs are taken from.
+     * @param blogs       The blogs to list, newest first.
+     * @return The {@link RenderedFeed}.
+     */
+    private RenderedFeed render(
+            final FeedFormat format,
+            final String self,
+            final String description,
+            final ContentSnapshot snapshot,
+            final List<Blog> blogs
+    ) {
+        final StringBuilder items = new StringBuilder();
+
+        LocalDateTime updated = EPOCH;
+
+        for (Blog blog : blogs) {
+            if (!items.isEmpty()) {
+                items.append(format == FeedFormat.RSS ? "\n\t\t" : "\n\t");
+            }
+
+            items.append(feedCache.item(format, blog, format == FeedFormat.RSS
+                    ? this::renderRssItem
+                    : this::renderAtomEntry));
+
+            final LocalDateTime changed = blog.getUpdated() == null ? blog.getCreated() : blog.getUpdated();
+
+            if (changed.isAfter(updated)) {
+                updated = changed;
+            }
+        }
+
+        final LocalDateTime newest = blogs.isEmpty() ? EPOCH : blogs.getFirst().getCreated();
+
+        final String feed;
+
+        if (format == FeedFormat.RSS) {
+            feed = rss.data("description", description)
+                    .data("self", self)
+                    .data("lastBuildDate", blogs.isEmpty() ? DEFAULT_LAST_BUILD_DATE : rssDate(newest))
+                    .data("items", items.toString())
+                    .render();
+        } else {
+            feed = atom.data("subtitle", description)
+                    .data("self", self)
+                    .data("updated", atomDate(updated))
+                    .data("entries", items.toString())
+                    .render();
+        }
+
+        return FeedCache.build(snapshot.version(), feed, RequestContext.parseLastModifiedTime(newest));
+    }
+
+    /**
+     * Renders the RSS item fragment of the provided blog.
+     *
+     * @param blog The blog to render.
+     * @return The {@code <item>} fragment.
+     */
+    private String renderRssItem(final Blog blog) {
+        final String link = WEBSITE_URL + "blog/" + blog.getSlug();
+
+        return rssItem.data("item", new RssItem(
+                blog.getTitle(),
+                link,
+                link,
+                html(blog),
+                rssDate(blog.getCreated())
+        )).render();
+    }
+
+    /**
+     * Renders the Atom entry fragment of the provided blog.
+     *
+     * @param blog The blog to render.
+     * @return The {@code <entry>} fragment.
+     */
+    private String renderAtomEntry(final Blog blog) {
+        final LocalDateTime updated = blog.getUpdated() == null ? blog.getCreated() : blog.getUpdated();
+
+        return atomEntry.data("entry", new AtomEntry(
+                blog.getTitle(),
+                WEBSITE_URL + "blog/" + blog.getSlug(),
+                atomDate(blog.getCreated()),
+                atomDate(updated),
+                html(blog)
+        )).render();
+    }
+
+    /**
+     * Renders the HTML of the provided blog for a CDATA section, splitting
+     * any {@code ]]>} in it so it cannot end the section early.
+     *
+     * @param blog The blog to render.
+     * @return The HTML, empty if rendering failed.
+     */
+    private String html(final Blog blog) {
+        final String html = blogRenderer.render(blog.getFileName());
+
+        return html == null ? "" : html.replace("]]>", "]]]]><![CDATA[>");
+    }
+
+    /**
+     * @param time A time in the website time zone.
+     * @return The time formatted for RSS.
+     */
+    private static String rssDate(final LocalDateTime time) {
+        return time.atZone(Website.TIME_ZONE).format(RSS_SPEC_FORMAT);
+    }
+
+    /**
+     * @param time A time in the website time zone.
+     * @return The time formatted for Atom.
+     */
+    private static String atomDate(final LocalDateTime time) {
+        return time.atZone(Website.TIME_ZONE).format(ATOM_SPEC_FORMAT);
+    }
 }
@@ -1,6 +1,9 @@
 package xyz.mijaljevic.web;
 
+import io.quarkus.logging.Log;
 import io.smallrye.common.annotation.NonBlocking;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import io.vertx.core.json.JsonObject;
 import jakarta.annotation.security.PermitAll;
 import jakarta.inject.Inject;
@@ -9,25 +12,59 @@ import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.resteasy.reactive.PathPart;
 import xyz.mijaljevic.cache.StaticFileCache;
+import xyz.mijaljevic.domain.dto.ByteCacheStats;
+import xyz.mijaljevic.domain.dto.ByteRange;
+import xyz.mijaljevic.domain.dto.FileStamp;
 import xyz.mijaljevic.domain.entity.StaticFile;
 import xyz.mijaljevic.lifecycle.RequestContext;
+import xyz.mijaljevic.utils.ByteRanges;
+import xyz.mijaljevic.utils.Fingerprints;
 
-import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * The static file server. Serves CSS files, image files and any other future
- * static files.
+ * static files. Compressible files are served from their precompressed
+ * gzip/brotli variants, negotiated against the request's
+ * <i>Accept-Encoding</i> header; small images are served from their resident
+ * body (see {@link ByteBufferBodyWriter}) without touching the filesystem, or
+ * from the optional byte cache, which reloads a small image evicted from its
+ * budget. Large images are sent from their file, without a copy, as long as
+ * the file is still the version their <i>ETag</i> was computed for; the
+ * filesystem is only ever touched on a worker thread. The byte cache metrics
+ * are reported at {@code /static/byte-cache}.
+ *
+ * <p>
+ * Images served from their body or file honour <i>Range</i> and
+ * <i>If-Range</i>, so resumed and parallel downloads fetch only the bytes
+ * they miss. Precompressed files are always served whole.
+ * </p>
+ *
+ * <p>
+ * Every file is also served under a fingerprinted URL carrying a prefix of
+ * its content hash (see {@link StaticUrls}), with an immutable
+ * <i>Cache-Control</i>: the templates link those, so clients load each
+ * version of a file once and never revalidate it.
+ * </p>
  */
 @PermitAll
 @Path("/static")
@@ -52,6 +89,12 @@ public final class StaticFileServer {
      */
     private final String cacheControl;
 
+    /**
+     * Value of the HTTP <i>Cache-Control</i> header applied to files served
+     * under their current fingerprinted URL.
+     */
+    private final String immutableCacheControl;
+
     /**
      * The in-memory cache that is the single source of truth for static files.
      */
@@ -66,12 +109,14 @@ public final class StaticFileServer {
     /**
      * Creates the resource with its configuration and request headers.
      *
-     * @param cssPath             The path to the CSS file.
-     * @param scriptPath          The path to the JavaScript file.
-     * @param imagesDirectoryPath The path to the images' directory.
-     * @param cacheControl        The HTTP <i>Cache-Control</i> header value.
-     * @param staticFileCache     The in-memory static file cache.
-     * @param requestContext  The shared HTTP caching utilities.
+     * @param cssPath               The path to the CSS file.
+     * @param scriptPath            The path to the JavaScript file.
+     * @param imagesDirectoryPath   The path to the images' directory.
+     * @param cacheControl          The HTTP <i>Cache-Control</i> header value.
+     * @param immutableCacheControl The HTTP <i>Cache-Control</i> header value
+     *                              of fingerprinted URLs.
+     * @param staticFileCache       The in-memory static file cache.
+     * @param requestContext        The shared HTTP caching utilities.
      */
     @Inject
     public StaticFileServer(
@@ -88,6 +133,10 @@ public final class StaticFileServer {
                     defaultValue = "images"
             ) final String imagesDirectoryPath,
             @ConfigProperty(name = "application.cache-control") final String cacheControl,
+            @ConfigProperty(
+                    name = "application.cache-control-immutable",
+                    defaultValue = "public, max-age=31536000, immutable"
+            ) final String immutableCacheControl,
             final StaticFileCache staticFileCache,
             final RequestContext requestContext
     ) {
@@ -95,30 +144,55 @@ public final class StaticFileServer {
         this.scriptPath = scriptPath;
         this.imagesDirectoryPath = imagesDirectoryPath;
         this.cacheControl = cacheControl;
+        this.immutableCacheControl = immutableCacheControl;
         this.staticFileCache = staticFileCache;
         this.requestContext = requestContext;
     }
 
     /**
-     * {@link Pattern} of allowed image file names and extensions.
+     * {@link Pattern} of allowed image names: a file name and extension,
+     * optionally preceded by the subdirectories of the images directory it is
+     * in, e.g. {@code 2024/cover.png}. Dots are only allowed before the
+     * extension, so a name can never leave the images directory.
      */
-    private static final Pattern IMAGE_NAME_PATTERN = Pattern.compile("[A-Za-z0-9_\\-]+\\.(jpg|png|jpeg|gif|ico)");
+    private static final Pattern IMAGE_NAME_PATTERN = Pattern.compile(
+            "(?:[A-Za-z0-9_\\-]+/){0,16}[A-Za-z0-9_\\-]+\\.(jpg|png|jpeg|gif|ico)"
+    );
 
     /**
-     * Maximum length of the image name, includes the file extension as well.
+     * Maximum length of the image name, includes the subdirectories and the
+     * file extension as well.
      */
-    private static final int MAX_IMAGE_NAME_LENGTH = 80;
+    private static final int MAX_IMAGE_NAME_LENGTH = 200;
 
     /**
-     * HTTP <i>Last-Modified</i> header for the CSS file.
+     * {@link Pattern} of fingerprinted image names, an allowed image name with
+     * a fingerprint before its extension, e.g.
+     * {@code 2024/cover.0123456789abcdef.png}. The groups are the name without
+     * its extension, the fingerprint and the extension.
+     */
+    private static final Pattern FINGERPRINTED_IMAGE_NAME_PATTERN = Pattern.compile(
+            "((?:[A-Za-z0-9_\\-]+/){0,16}[A-Za-z0-9_\\-]+)\\.(" + Fingerprints.PATTERN + ")\\.(jpg|png|jpeg|gif|ico)"
+    );
+
+    /**
+     * HTTP <i>Last-Modified</i> header for an asset that failed to load and is
+     * served from disk.
      */
     private static final String LAST_MODIFIED = RequestContext.parseLastModifiedTime(LocalDateTime.now());
 
     /**
-     * HTTP <i>ETag</i> header for the CSS file.
+     * HTTP <i>ETag</i> header for an asset that failed to load and is served
+     * from disk.
      */
     private static final String E_TAG = RequestContext.generateEtagHash(Instant.now().toString());
 
+    /**
+     * Boundary of the {@code multipart/byteranges} bodies, random per process
+     * so it cannot be planted in an image.
+     */
+    private static final String MULTIPART_BOUNDARY = UUID.randomUUID().toString();
+
     /**
      * Serves the CSS file with caching headers.
      *
@@ -129,12 +203,22 @@ public final class StaticFileServer {
     @Path("/style.min.css")
     @Produces(value = "text/css")
     public Response getCss() {
-        return Response.ok()
-                .entity(Paths.get(cssPath))
-                .header(HttpHeaders.ETAG, E_TAG)
-                .header(HttpHeaders.CACHE_CONTROL, cacheControl)
-                .header(HttpHeaders.LAST_MODIFIED, LAST_MODIFIED)
-                .build();
+        return serveAsset(Paths.get(cssPath), null);
+    }
+
+    /**
+     * Serves the CSS file under its fingerprinted URL, immutable as long as
+     * the fingerprint is the current one.
+     *
+     * @param fingerprint The fingerprint in the URL.
+     * @return The CSS file {@link Response}.
+     */
+    @GET
+    @NonBlocking
+    @Path("/style.{fingerprint: " + Fingerprints.PATTERN + "}.min.css")
+    @Produces(value = "text/css")
+    public Response getFingerprintedCss(@PathParam(value = "fingerprint") final String fingerprint) {
+        return serveAsset(Paths.get(cssPath), fingerprint);
     }
 
     /**
@@ -147,25 +231,44 @@ public final class StaticFileServer {
     @Path("/script.min.js")
     @Produces(value = "application/javascript")
     public Response getJs() {
-        return Response.ok()
-                .entity(Paths.get(scriptPath))
-                .header(HttpHeaders.ETAG, E_TAG)
-                .header(HttpHeaders.CACHE_CONTROL, cacheControl)
-                .header(HttpHeaders.LAST_MODIFIED, LAST_MODIFIED)
-                .build();
+        return serveAsset(Paths.get(scriptPath), null);
+    }
+
+    /**
+     * Serves the JavaScript file under its fingerprinted URL, immutable as
+     * long as the fingerprint is the current one.
+     *
+     * @param fingerprint The fingerprint in the URL.
+     * @return The JavaScript file {@link Response}.
+     */
+    @GET
+    @NonBlocking
+    @Path("/script.{fingerprint: " + Fingerprints.PATTERN + "}.min.js")
+    @Produces(value = "application/javascript")
+    public Response getFingerprintedJs(@PathParam(value = "fingerprint") final String fingerprint) {
+        return serveAsset(Paths.get(scriptPath), fingerprint);
     }
 
     /**
      * Serves the requested image by name with caching headers, validating the
-     * name and falling back to a bad-request or not-found response.
+     * name and falling back to a bad-request or not-found response. A name
+     * carrying the current fingerprint of the image is served as immutable.
+     *
+     * <p>
+     * An image held in memory, as content, a resident body or a byte cache
+     * hit, is served right on the event loop. Anything that has to touch the
+     * filesystem, a large image or a byte cache miss, is served on a worker
+     * thread, see {@link #serveImageFile}.
+     * </p>
      *
-     * @param name The requested image file name.
+     * @param requestedName The requested image name: its path relative to the
+     *                      images directory, optionally fingerprinted.
      * @return The image {@link Response}, or an error response if invalid or
      * missing.
      */
     @GET
     @NonBlocking
-    @Path("/image/{name}")
+    @Path("/image/{name: .+}")
     @Produces(value = {
             "image/png",
             "image/jpeg",
@@ -173,46 +276,398 @@ public final class StaticFileServer {
             "image/x-icon",
             "application/json"
     })
-    public Response getImage(@PathParam(value = "name") final String name) {
-        if (name.isBlank() || name.contains(File.separator) || name.length() > MAX_IMAGE_NAME_LENGTH) {
-            return returnBadRequest("The requested image name is NOT valid! Provided name: " + name);
+    public Uni<Response> getImage(@PathParam(value = "name") final String requestedName) {
+        if (requestedName.isBlank() || requestedName.length() > MAX_IMAGE_NAME_LENGTH) {
+            return Uni.createFrom().item(
+                    returnBadRequest("The requested image name is NOT valid! Provided name: " + requestedName)
+            );
         }
 
-        final Matcher match = IMAGE_NAME_PATTERN.matcher(name);
+        final Matcher fingerprinted = FINGERPRINTED_IMAGE_NAME_PATTERN.matcher(requestedName);
 
-        if (!match.matches()) {
-            return returnBadRequest("The requested image name is NOT in proper format! Provided name: " + name);
+        final String name;
+        final String fingerprint;
+
+        if (fingerprinted.matches()) {
+            name = fingerprinted.group(1) + '.' + fingerprinted.group(3);
+            fingerprint = fingerprinted.group(2);
+        } else if (IMAGE_NAME_PATTERN.matcher(requestedName).matches()) {
+            name = requestedName;
+            fingerprint = null;
+        } else {
+            return Uni.createFrom().item(returnBadRequest(
+                    "The requested image name is NOT in proper format! Provided name: " + requestedName
+            ));
         }
 
         final StaticFile staticFile = staticFileCache.byName(name);
 
         if (staticFile == null) {
-            return returnBadRequest("Client tried to find a image with an unknown name!");
+            return Uni.createFrom().item(returnBadRequest("Client tried to find a image with an unknown name!"));
         }
 
+        final String imageCacheControl = cacheControl(staticFile.getHash(), fingerprint);
+
+        if (staticFile.getContent() != null || staticFile.getBody() != null) {
+            return Uni.createFrom().item(serveResident(name, staticFile, imageCacheControl, staticFile.getBody()));
+        }
+
+        final ByteBuffer cached = staticFileCache.isResident(staticFile.getStamp().size())
+                ? staticFileCache.cachedBody(staticFile.getHash())
+                : null;
+
+        if (cached != null) {
+            return Uni.createFrom().item(serveResident(name, staticFile, imageCacheControl, cached));
+        }
+
+        return Uni.createFrom().item(() -> serveImageFile(name, staticFile, imageCacheControl))
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+
+    /**
+     * Serves an image held in memory: from its precompressed content, or from
+     * a body holding the bytes its hash was computed from.
+     *
+     * @param name              The image name.
+     * @param staticFile        The cached image.
+     * @param imageCacheControl The <i>Cache-Control</i> of the image.
+     * @param body              The body of the image, or {@code null} to
+     *                          serve its content.
+     * @return The image {@link Response}.
+     */
+    private Response serveResident(
+            final String name,
+            final StaticFile staticFile,
+            final String imageCacheControl,
+            final ByteBuffer body
+    ) {
         final String etag = staticFile.getHash();
         final String lastModified = RequestContext.parseLastModifiedTime(staticFile.getModified());
 
-        final Response notModified = requestContext.notModified(etag, lastModified);
+        final Response conditional = requestContext.evaluatePreconditions(
+                etag,
+                lastModified,
+                imageCacheControl,
+                staticFile.getContent() != null
+        );
 
-        if (notModified != null) return notModified;
+        if (conditional != null) return conditional;
 
-        final String pathString = imagesDirectoryPath + File.separator + name;
+        if (staticFile.getContent() != null) {
+            return requestContext.ok(staticFile.getContent())
+                    .type(imageMediaType(name))
+                    .tag(etag)
+                    .header(HttpHeaders.CACHE_CONTROL, imageCacheControl)
+                    .header(HttpHeaders.LAST_MODIFIED, lastModified)
+                    .build();
+        }
 
-        final java.nio.file.Path path = Paths.get(pathString);
+        return serveImage(name, etag, lastModified, imageCacheControl, body.remaining(), body, null);
+    }
 
-        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+    /**
+     * Reports the metrics of the static file byte cache: hits, misses,
+     * evictions and the bytes held against the budget.
+     *
+     * @return The {@link ByteCacheStats}, or a <b>NOT_FOUND</b> response when
+     * the byte cache is disabled.
+     */
+    @GET
+    @NonBlocking
+    @Path("/byte-cache")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getByteCacheStats() {
+        return staticFileCache.byteCacheStats()
+                .map(stats -> Response.ok(stats).header(HttpHeaders.CACHE_CONTROL, "no-store").build())
+                .orElseGet(() -> Response.status(Status.NOT_FOUND).build());
+    }
+
+    /**
+     * Serves an image that is not held in memory, from the byte cache or from
+     * its file. Blocks on the filesystem, so it runs on a worker thread. Either
+     * way the file must still have the {@link FileStamp} its
+     * hash was computed for: a file changed since, which the scheduler has
+     * not caught up with yet, is served by {@link #serveUnvalidated}, never
+     * under the old <i>ETag</i>. A body reloaded into the byte cache is
+     * checked against the hash again, see {@link StaticFileCache#body}.
+     *
+     * @param name              The image name.
+     * @param staticFile        The cached image.
+     * @param imageCacheControl The <i>Cache-Control</i> of the image.
+     * @return The image {@link Response}.
+     */
+    private Response serveImageFile(
+            final String name,
+            final StaticFile staticFile,
+            final String imageCacheControl
+    ) {
+        final java.nio.file.Path path = Paths.get(imagesDirectoryPath, name);
+
+        final BasicFileAttributes attributes;
+
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return Response.status(Status.NOT_FOUND).build();
+        }
+
+        if (!attributes.isRegularFile()) {
             return Response.status(Status.NOT_FOUND).build();
         }
 
+        if (!FileStamp.of(attributes).equals(staticFile.getStamp())) {
+            return serveUnvalidated(name, path, attributes.size());
+        }
+
+        final String etag = staticFile.getHash();
+        final String lastModified = RequestContext.parseLastModifiedTime(staticFile.getModified());
+
+        final Response conditional = requestContext.evaluatePreconditions(
+                etag,
+                lastModified,
+                imageCacheControl,
+                false
+        );
+
+        if (conditional != null) return conditional;
+
+        if (staticFileCache.holdsBodies() && staticFileCache.isResident(attributes.size())) {
+            final ByteBuffer body = staticFileCache.body(etag, path);
+
+            if (body == null) {
+                return serveUnvalidated(name, path, attributes.size());
+            }
+
+            return serveImage(name, etag, lastModified, imageCacheControl, body.remaining(), body, null);
+        }
+
+        return serveImage(name, etag, lastModified, imageCacheControl, attributes.size(), null, path);
+    }
+
+    /**
+     * Serves an image whose preconditions passed, whole or the ranges asked
+     * for, from its body or its file. A whole file is sent as a
+     * {@link PathPart} of the length it was checked with, never as a plain
+     * path, which the server would answer ranges of on its own, disregarding
+     * <i>If-Range</i>.
+     *
+     * @param name              The image name.
+     * @param etag              The <i>ETag</i> of the image.
+     * @param lastModified      The <i>Last-Modified</i> of the image.
+     * @param imageCacheControl The <i>Cache-Control</i> of the image.
+     * @param length            The length of the image in bytes.
+     * @param body              The body of the image, or {@code null} to
+     *                          send the file.
+     * @param path              The image file, or {@code null} to send the
+     *                          body.
+     * @return A 200, 206 or 416 {@link Response}.
+     */
+    private Response serveImage(
+            final String name,
+            final String etag,
+            final String lastModified,
+            final String imageCacheControl,
+            final long length,
+            final ByteBuffer body,
+            final java.nio.file.Path path
+    ) {
+        final Response partial = servePartial(name, etag, lastModified, imageCacheControl, length, body, path);
+
+        if (partial != null) return partial;
+
         return Response.ok()
-                .entity(path)
-                .header(HttpHeaders.ETAG, etag)
+                .entity(body != null ? body : new PathPart(path, 0, length))
+                .type(imageMediaType(name))
+                .tag(etag)
+                .header(HttpHeaders.CACHE_CONTROL, imageCacheControl)
+                .header(HttpHeaders.LAST_MODIFIED, lastModified)
+                .header(ByteRanges.ACCEPT_RANGES, ByteRanges.UNIT)
+                .build();
+    }
+
+    /**
+     * Serves an image file that changed since it was hashed, before the
+     * scheduler caught up with it: whole and without validators, so a client
+     * neither keeps it under the old <i>ETag</i> nor resumes a range of the
+     * old version with it.
+     *
+     * @param name   The image name.
+     * @param path   The image file.
+     * @param length The current length of the file in bytes.
+     * @return A 200 {@link Response} sending the file.
+     */
+    private Response serveUnvalidated(final String name, final java.nio.file.Path path, final long length) {
+        return Response.ok()
+                .entity(new PathPart(path, 0, length))
+                .type(imageMediaType(name))
                 .header(HttpHeaders.CACHE_CONTROL, cacheControl)
+                .build();
+    }
+
+    /**
+     * Serves the ranges of an image asked for by the <i>Range</i> header of
+     * the request: a single range as a slice of the resident body or a region
+     * of the file, both written without a copy, and several ranges as a
+     * {@code multipart/byteranges} body.
+     *
+     * @param name              The image name.
+     * @param etag              The <i>ETag</i> of the image.
+     * @param lastModified      The <i>Last-Modified</i> of the image.
+     * @param imageCacheControl The <i>Cache-Control</i> of the image.
+     * @param length            The length of the image in bytes.
+     * @param body              The resident body of the image, or
+     *                          {@code null} to read the file.
+     * @param path              The image file, or {@code null} to read the
+     *                          body.
+     * @return A 206 or 416 {@link Response}, or {@code null} if the whole
+     * image should be served.
+     */
+    private Response servePartial(
+            final String name,
+            final String etag,
+            final String lastModified,
+            final String imageCacheControl,
+            final long length,
+            final ByteBuffer body,
+            final java.nio.file.Path path
+    ) {
+        final List<ByteRange> ranges = requestContext.ranges(etag, lastModified, length);
+
+        if (ranges == null) {
+            return null;
+        }
+
+        if (ranges.isEmpty()) {
+            return Response.status(Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(ByteRanges.CONTENT_RANGE, ByteRanges.UNIT + " */" + length)
+                    .build();
+        }
+
+        final String mediaType = imageMediaType(name);
+
+        final Response.ResponseBuilder builder;
+
+        if (ranges.size() == 1) {
+            final ByteRange range = ranges.getFirst();
+
+            builder = Response.status(Status.PARTIAL_CONTENT)
+                    .entity(body != null
+                            ? body.slice(body.position() + (int) range.start(), (int) range.length())
+                            : new PathPart(path, range.start(), range.length()))
+                    .type(mediaType)
+                    .header(ByteRanges.CONTENT_RANGE, range.contentRange(length));
+        } else {
+            if (ByteRanges.totalLength(ranges) > ByteRanges.MAX_MULTIPART_LENGTH) {
+                return null;
+            }
+
+            final ByteBuffer multipart;
+
+            if (body != null) {
+                multipart = ByteRanges.multipart(body, ranges, mediaType, MULTIPART_BOUNDARY);
+            } else {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    multipart = ByteRanges.multipart(channel, ranges, mediaType, MULTIPART_BOUNDARY);
+                } catch (IOException e) {
+                    Log.warnf(e, "Failed to read the ranges of image %s, serving it whole", name);
+
+                    return null;
+                }
+            }
+
+            builder = Response.status(Status.PARTIAL_CONTENT)
+                    .entity(multipart)
+                    .type("multipart/byteranges; boundary=" + MULTIPART_BOUNDARY);
+        }
+
+        return builder
+                .tag(etag)
+                .header(HttpHeaders.CACHE_CONTROL, imageCacheControl)
+                .header(HttpHeaders.LAST_MODIFIED, lastModified)
+                .header(ByteRanges.ACCEPT_RANGES, ByteRanges.UNIT)
+                .build();
+    }
+
+    /**
+     * Serves a site wide asset from its precompressed variants loaded by
+     * {@link xyz.mijaljevic.lifecycle.StaticAssetLoader}, falling back to the
+     * file on disk if the asset failed to load. A loaded asset is tagged with
+     * its content hash, so its <i>ETag</i> survives restarts.
+     *
+     * @param path        The path to the asset.
+     * @param fingerprint The fingerprint in the requested URL, or
+     *                    {@code null} for the plain URL.
+     * @return The asset {@link Response}.
+     */
+    private Response serveAsset(final java.nio.file.Path path, final String fingerprint) {
+        final StaticFile asset = staticFileCache.byName(path.getFileName().toString());
+
+        if (asset == null || asset.getContent() == null) {
+            return Response.ok()
+                    .entity(path)
+                    .tag(E_TAG)
+                    .header(HttpHeaders.CACHE_CONTROL, cacheControl)
+                    .header(HttpHeaders.LAST_MODIFIED, LAST_MODIFIED)
+                    .build();
+        }
+
+        final String etag = asset.getHash();
+        final String lastModified = RequestContext.parseLastModifiedTime(asset.getModified());
+
+        final String assetCacheControl = cacheControl(etag, fingerprint);
+
+        final Response conditional = requestContext.evaluatePreconditions(
+                etag,
+                lastModified,
+                assetCacheControl,
+                true
+        );
+
+        if (conditional != null) return conditional;
+
+        return requestContext.ok(asset.getContent())
+                .tag(etag)
+                .header(HttpHeaders.CACHE_CONTROL, assetCacheControl)
                 .header(HttpHeaders.LAST_MODIFIED, lastModified)
                 .build();
     }
 
+    /**
+     * Picks the <i>Cache-Control</i> of a file: immutable when it is requested
+     * under its current fingerprint, revalidated on every use otherwise. A
+     * stale fingerprint, left in a page rendered before the file changed,
+     * still gets the current file, just not as immutable.
+     *
+     * @param hash        The content hash of the file, may be {@code null}.
+     * @param fingerprint The fingerprint in the requested URL, or
+     *                    {@code null} for the plain URL.
+     * @return The <i>Cache-Control</i> header value.
+     */
+    private String cacheControl(final String hash, final String fingerprint) {
+        return fingerprint != null && hash != null && fingerprint.equals(Fingerprints.of(hash))
+                ? immutableCacheControl
+                : cacheControl;
+    }
+
+    /**
+     * Resolves the media type of an image served from memory, where it cannot
+     * be probed from the file.
+     *
+     * @param name The image file name, already validated against
+     *             {@link #IMAGE_NAME_PATTERN}.
+     * @return The image media type.
+     */
+    private static String imageMediaType(final String name) {
+        final String extension = name.substring(name.lastIndexOf('.') + 1);
+
+        return switch (extension) {
+            case "png" -> "image/png";
+            case "gif" -> "image/gif";
+            case "ico" -> "image/x-icon";
+            default -> "image/jpeg";
+        };
+    }
+
     /**
      * Creates a <b>BAD_REQUEST</b> {@link Response} instance with a
      * {@link JsonObject} entity.
@@ -0,0 +1,197 @@
+package xyz.mijaljevic.web;
+
+import io.quarkus.arc.Unremovable;
+import jakarta.annotation.Nonnull;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import xyz.mijaljevic.cache.StaticFileCache;
+import xyz.mijaljevic.domain.entity.StaticFile;
+import xyz.mijaljevic.lifecycle.RequestContext;
+import xyz.mijaljevic.utils.Fingerprints;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Builds the URLs of the files served by the {@link StaticFileServer}. A file
+ * whose content hash is known gets its fingerprinted URL, which the server
+ * answers with an immutable <i>Cache-Control</i>, so clients never revalidate
+ * it; any other file gets its plain URL. Exposed to the templates by the
+ * {@code asset:} template extensions, which look the bean up at render time,
+ * hence {@link Unremovable}.
+ *
+ * <p>
+ * A rendered page embeds these URLs, so it goes stale whenever one of the
+ * files it links changes, even though its own content did not. The pages
+ * therefore fold the {@link #version()} of the linked files into their
+ * <i>ETag</i> and cache entry: a changed or redeployed asset makes every
+ * client refetch the pages and with them the new URLs.
+ * </p>
+ */
+@Unremovable
+@ApplicationScoped
+public class StaticUrls {
+    /**
+     * The URL prefix of the site wide assets.
+     */
+    private static final String ASSET_PREFIX = "/static/";
+
+    /**
+     * The URL prefix of the images.
+     */
+    private static final String IMAGE_PREFIX = "/static/image/";
+
+    /**
+     * The name the CSS file is routed under.
+     */
+    private static final String CSS_ROUTE = "style.min.css";
+
+    /**
+     * The name the JavaScript file is routed under.
+     */
+    private static final String SCRIPT_ROUTE = "script.min.js";
+
+    /**
+     * The name of the icon linked by every page.
+     */
+    private static final String FAVICON = "favicon.ico";
+
+    /**
+     * The cache name of the CSS file, its configured file name.
+     */
+    private final String cssName;
+
+    /**
+     * The cache name of the JavaScript file, its configured file name.
+     */
+    private final String scriptName;
+
+    /**
+     * The in-memory cache that is the single source of truth for static files.
+     */
+    private final StaticFileCache staticFileCache;
+
+    /**
+     * The last computed version of the linked files, reused until one of
+     * their hashes changes.
+     */
+    private volatile Version version;
+
+    /**
+     * Creates the URL builder with the configured asset paths.
+     *
+     * @param cssPath         The path to the CSS file.
+     * @param scriptPath      The path to the JavaScript file.
+     * @param staticFileCache The in-memory static file cache.
+     */
+    @Inject
+    public StaticUrls(
+            @ConfigProperty(
+                    name = "application.css",
+                    defaultValue = "style.min.css"
+            ) final String cssPath,
+            @ConfigProperty(
+                    name = "application.javascript",
+                    defaultValue = "script.min.js"
+            ) final String scriptPath,
+            final StaticFileCache staticFileCache
+    ) {
+        this.cssName = Path.of(cssPath).getFileName().toString();
+        this.scriptName = Path.of(scriptPath).getFileName().toString();
+        this.staticFileCache = staticFileCache;
+    }
+
+    /**
+     * @return The URL of the CSS file.
+     */
+    @Nonnull
+    public String css() {
+        return url(ASSET_PREFIX, CSS_ROUTE, staticFileCache.byName(cssName));
+    }
+
+    /**
+     * @return The URL of the JavaScript file.
+     */
+    @Nonnull
+    public String script() {
+        return url(ASSET_PREFIX, SCRIPT_ROUTE, staticFileCache.byName(scriptName));
+    }
+
+    /**
+     * @return The URL of the icon.
+     */
+    @Nonnull
+    public String favicon() {
+        return url(IMAGE_PREFIX, FAVICON, staticFileCache.byName(FAVICON));
+    }
+
+    /**
+     * Derives the version of the files every page links: the CSS, the
+     * JavaScript and the icon. It changes whenever the content hash of any of
+     * them does, and is recomputed only then.
+     *
+     * @return The version, a fingerprint of the linked files' hashes.
+     */
+    @Nonnull
+    public String version() {
+        final String css = hashOf(cssName);
+        final String script = hashOf(scriptName);
+        final String favicon = hashOf(FAVICON);
+
+        final Version current = version;
+
+        if (current != null
+                && Objects.equals(current.css(), css)
+                && Objects.equals(current.script(), script)
+                && Objects.equals(current.favicon(), favicon)) {
+            return current.value();
+        }
+
+        final String value = Fingerprints.of(RequestContext.generateEtagHash(css + ':' + script + ':' + favicon));
+
+        version = new Version(css, script, favicon, value);
+
+        return value;
+    }
+
+    /**
+     * Looks up the content hash of a cached file.
+     *
+     * @param name The cache name of the file.
+     * @return The content hash, or {@code null} if the file is not cached or
+     * not hashed.
+     */
+    private String hashOf(final String name) {
+        final StaticFile staticFile = staticFileCache.byName(name);
+
+        return staticFile == null ? null : staticFile.getHash();
+    }
+
+    /**
+     * Builds the URL of a file, fingerprinted if its content hash is known.
+     *
+     * @param prefix     The URL prefix of the file.
+     * @param route      The name the file is routed under.
+     * @param staticFile The cached file, or {@code null} if it is not cached.
+     * @return The URL of the file.
+     */
+    private static String url(final String prefix, final String route, final StaticFile staticFile) {
+        if (staticFile == null || staticFile.getHash() == null) {
+            return prefix + route;
+        }
+
+        return prefix + Fingerprints.insert(route, staticFile.getHash());
+    }
+
+    /**
+     * A computed version together with the hashes it was computed from.
+     *
+     * @param css     The content hash of the CSS file.
+     * @param script  The content hash of the JavaScript file.
+     * @param favicon The content hash of the icon.
+     * @param value   The version.
+     */
+    private record Version(String css, String script, String favicon, String value) {
+    }
+}
@@ -1,7 +1,6 @@
 package xyz.mijaljevic.web;
 
 import io.quarkus.qute.Template;
-import io.quarkus.qute.TemplateInstance;
 import io.smallrye.common.annotation.NonBlocking;
 import jakarta.annotation.security.PermitAll;
 import jakarta.inject.Inject;
@@ -10,35 +9,70 @@ import jakarta.ws.rs.NotFoundException;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import xyz.mijaljevic.cache.BlogCache;
 import xyz.mijaljevic.cache.BlogRenderer;
+import xyz.mijaljevic.cache.PageCache;
+import xyz.mijaljevic.cache.SearchIndex;
 import xyz.mijaljevic.domain.dto.BlogLink;
+import xyz.mijaljevic.domain.dto.ContentSnapshot;
+import xyz.mijaljevic.domain.dto.EncodedContent;
 import xyz.mijaljevic.domain.entity.Blog;
 import xyz.mijaljevic.lifecycle.RequestContext;
 
-import java.time.Instant;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 /**
  * JAX-RS resource that serves the public HTML pages of the website (home, blog,
- * blog list, contact and error pages) rendered through Qute templates. Handles
- * HTTP caching via <i>ETag</i> and <i>Last-Modified</i> headers.
+ * blog list, tag list, tag, search, contact and error pages) rendered through
+ * Qute templates. Handles HTTP caching via <i>ETag</i> and
+ * <i>Last-Modified</i> headers. Each request reads one
+ * {@link ContentSnapshot} of the {@link BlogCache} and takes its headers and
+ * blogs from it. Pages are served from the {@link PageCache}, so their
+ * templates are only evaluated and compressed once per ETag. Every page ETag
+ * carries the version of the assets the pages link (see
+ * {@link StaticUrls#version()}), so a client holding a page that links an
+ * outdated asset URL gets the page again instead of a 304.
  */
 @PermitAll
 @Path("/")
 public final class WebPage {
+    /**
+     * Media type of the served pages. Set explicitly because cached pages are
+     * written as raw (possibly compressed) bytes rather than as a Qute
+     * template instance.
+     */
+    private static final MediaType TEXT_HTML_UTF_8 = MediaType.TEXT_HTML_TYPE.withCharset("UTF-8");
+
+    /**
+     * Maximum length of a search query; the rest of a longer query is
+     * ignored.
+     */
+    private static final int MAX_QUERY_LENGTH = 200;
+
     /**
      * Value of the HTTP <i>Cache-Control</i> header applied to served pages.
      */
     private final String cacheControl;
 
+    /**
+     * Number of blogs listed per page of the blog list.
+     */
+    private final int blogsPageSize;
+
+    /**
+     * Maximum number of blogs listed for a search query.
+     */
+    private final int searchMaxResults;
+
     /**
      * The in-memory cache that is the single source of truth for blogs.
      */
@@ -49,6 +83,21 @@ public final class WebPage {
      */
     private final BlogRenderer blogRenderer;
 
+    /**
+     * Holds the rendered bytes of the pages that share the site wide ETag.
+     */
+    private final PageCache pageCache;
+
+    /**
+     * The full-text index the search page queries.
+     */
+    private final SearchIndex searchIndex;
+
+    /**
+     * Builds the asset URLs the pages link, and their version.
+     */
+    private final StaticUrls staticUrls;
+
     /**
      * Captures the request headers and provides the shared HTTP caching
      * utilities.
@@ -70,6 +119,21 @@ public final class WebPage {
      */
     private final Template allBlogsPage;
 
+    /**
+     * Qute template for the page listing all tags.
+     */
+    private final Template tagsPage;
+
+    /**
+     * Qute template for the page listing the blogs of a tag.
+     */
+    private final Template tagPage;
+
+    /**
+     * Qute template for the search page.
+     */
+    private final Template searchPage;
+
     /**
      * Qute template for the contact page.
      */
@@ -84,56 +148,68 @@ public final class WebPage {
      * Creates the resource with its configuration and injected Qute templates.
      *
      * @param cacheControl       The HTTP <i>Cache-Control</i> header value.
+     * @param blogsPageSize      The number of blogs per blog list page.
+     * @param searchMaxResults   The number of blogs listed for a search.
      * @param blogCache          The in-memory blog cache.
      * @param blogRenderer       The on-demand blog HTML renderer.
-     * @param requestContext The shared HTTP caching utilities.
+     * @param pageCache          The rendered page cache.
+     * @param searchIndex        The full-text search index.
+     * @param staticUrls         The asset URL builder.
+     * @param requestContext     The shared HTTP caching utilities.
      * @param homePage           The home page template.
      * @param blogPage           The single blog page template.
      * @param allBlogsPage       The all blogs listing template.
+     * @param tagsPage           The all tags listing template.
+     * @param tagPage            The blogs of a tag listing template.
+     * @param searchPage         The search page template.
      * @param contactPage        The contact page template.
      * @param errorPage          The error page template.
      */
     @Inject
     public WebPage(
             @ConfigProperty(name = "application.cache-control") final String cacheControl,
+            @ConfigProperty(
+                    name = "application.blogs.page-size",
+                    defaultValue = "20"
+            ) final int blogsPageSize,
+            @ConfigProperty(
+                    name = "application.search.max-results",
+                    defaultValue = "20"
+            ) final int searchMaxResults,
             final BlogCache blogCache,
             final BlogRenderer blogRenderer,
+            final PageCache pageCache,
+            final SearchIndex searchIndex,
+            final StaticUrls staticUrls,
             final RequestContext requestContext,
             final Template homePage,
             final Template blogPage,
             final Template allBlogsPage,
+            final Template tagsPage,
+            final Template tagPage,
+            final Template searchPage,
             final Template contactPage,
             final Template errorPage
     ) {
         this.cacheControl = cacheControl;
+        this.blogsPageSize = blogsPageSize;
+        this.searchMaxResults = searchMaxResults;
         this.blogCache = blogCache;
         this.blogRenderer = blogRenderer;
+        this.pageCache = pageCache;
+        this.searchIndex = searchIndex;
+        this.staticUrls = staticUrls;
         this.requestContext = requestContext;
         this.homePage = homePage;
         this.blogPage = blogPage;
         this.allBlogsPage = allBlogsPage;
+        this.tagsPage = tagsPage;
+        this.tagPage = tagPage;
+        this.searchPage = searchPage;
         this.contactPage = contactPage;
         this.errorPage = errorPage;
     }
 
-    /**
-     * HTTP <i>Last-Modified</i> header. Updated periodically when a blog gets
-     * updated or created. Used by pages which need be updated when a new blog
-     * is added, for example the home page.
-     */
-    private static final AtomicReference<String> LAST_MODIFIED = new AtomicReference<>(
-            RequestContext.parseLastModifiedTime(LocalDateTime.now())
-    );
-
-    /**
-     * HTTP <i>ETag</i> header. Updated periodically when a blog gets updated
-     * or created. Used by pages which need be updated when a new blog is
-     * added, for example the home page.
-     */
-    private static final AtomicReference<String> E_TAG = new AtomicReference<>(
-            RequestContext.generateEtagHash(Instant.now().toString())
-    );
-
     /**
      * Serves the home page, honoring conditional-request caching headers.
      *
@@ -143,31 +219,37 @@ public final class WebPage {
     @NonBlocking
     @Produces(MediaType.TEXT_HTML)
     public Response getHomePage() {
-        final String eTag = E_TAG.getOpaque();
-        final String lastModified = LAST_MODIFIED.getOpaque();
+        final ContentSnapshot snapshot = blogCache.snapshot();
+        final String eTag = pageETag(snapshot.eTag());
+        final String lastModified = snapshot.lastModified();
 
-        final Response notModified = requestContext.notModified(eTag, lastModified);
+        final Response conditional = requestContext.evaluatePreconditions(eTag, lastModified, cacheControl, true);
 
-        if (notModified != null) return notModified;
+        if (conditional != null) return conditional;
 
-        final List<BlogLink> blogs = new ArrayList<>();
+        final EncodedContent page = pageCache.page("home", eTag, () -> {
+            final List<BlogLink> blogs = new ArrayList<>();
 
-        blogCache.recent()
-                .forEach(blog -> blogs.add(BlogLink.generateBlogLinkFromBlog(blog)));
+            snapshot.recent()
+                    .forEach(blog -> blogs.add(BlogLink.generateBlogLinkFromBlog(blog)));
 
-        final TemplateInstance template = homePage.data("title", "Karlo Mijaljevic")
-                .data("blogs", blogs);
+            return homePage.data("title", "Karlo Mijaljevic")
+                    .data("blogs", blogs)
+                    .render();
+        });
 
-        return Response.ok()
-                .entity(template)
-                .header(HttpHeaders.ETAG, eTag)
+        return requestContext.ok(page)
+                .type(TEXT_HTML_UTF_8)
+                .tag(eTag)
                 .header(HttpHeaders.CACHE_CONTROL, cacheControl)
                 .header(HttpHeaders.LAST_MODIFIED, lastModified)
                 .build();
     }
 
     /**
-     * Serves a single blog page for the requested blog slug.
+     * Serves a single blog page for the requested blog slug. The page is served
+     * from the {@link PageCache}, keyed by the blog content hash and tagged by
+     * it together with the version of the linked assets.
      *
      * @param slug The slug of the blog to render.
      * @return The rendered blog page, or a 304 if the client cache is current.
@@ -186,60 +268,246 @@ public final class WebPage {
                 ? blog.getCreated()
                 : blog.getUpdated();
 
-        final String etag = blog.getHash();
+        final String etag = pageETag(blog.getHash());
         final String lastModified = RequestContext.parseLastModifiedTime(lastUpdated);
 
-        final Response notModified = requestContext.notModified(etag, lastModified);
+        final Response conditional = requestContext.evaluatePreconditions(etag, lastModified, cacheControl, true);
+
+        if (conditional != null) return conditional;
+
+        final EncodedContent page = pageCache.blogPage(blog.getHash(), etag, () -> blogPage.data("blog", blog)
+                .data("data", blogRenderer.render(blog.getFileName()))
+                .data("title", blog.getTitle())
+                .render());
+
+        return requestContext.ok(page)
+                .type(TEXT_HTML_UTF_8)
+                .tag(etag)
+                .header(HttpHeaders.CACHE_CONTROL, cacheControl)
+                .header(HttpHeaders.LAST_MODIFIED, lastModified)
+                .build();
+    }
+
+    /**
+     * Serves one page of the list of all blogs, sorted, honoring caching
+     * headers. The page is picked by its number or by a cursor: the slug of
+     * the blog the page continues after or precedes, which keeps a reader on
+     * track while new blogs are published. Either way the page is a
+     * {@link List#subList} view of the pre-sorted snapshot listing, so serving
+     * it neither sorts nor copies the listing. Each page carries its own ETag,
+     * derived from its position and the content hashes of its blogs. Only the
+     * pages starting at a multiple of the page size are cached; a cursor can
+     * name any blog, so a page starting in between is rendered per request
+     * rather than letting a crawler fill the cache with every offset.
+     *
+     * @param number The 1-based page number, the first page by default.
+     * @param after  The slug of the blog the page starts after; takes
+     *               precedence over {@code before} and {@code number}.
+     * @param before The slug of the blog the page ends before; takes
+     *               precedence over {@code number}.
+     * @return The rendered blog list page, or a 304 if the client cache is
+     * current.
+     */
+    @GET
+    @NonBlocking
+    @Path("/blogs")
+    @Produces(MediaType.TEXT_HTML)
+    public Response getBlogsPage(
+            @QueryParam("page") final Integer number,
+            @QueryParam("after") final String after,
+            @QueryParam("before") final String before
+    ) {
+        final ContentSnapshot snapshot = blogCache.snapshot();
+        final List<Blog> sorted = snapshot.sorted();
+
+        final int offset;
+
+        if (after != null) {
+            offset = positionOf(snapshot, after) + 1;
+        } else if (before != null) {
+            offset = Math.max(0, positionOf(snapshot, before) - blogsPageSize);
+        } else if (number == null) {
+            offset = 0;
+        } else if (number < 1 || number > Integer.MAX_VALUE / blogsPageSize) {
+            throw new NotFoundException("Client tried to find a blog list page out of range!");
+        } else {
+            offset = (number - 1) * blogsPageSize;
+        }
+
+        if (offset > 0 && offset >= sorted.size()) {
+            throw new NotFoundException("Client tried to find a blog list page out of range!");
+        }
+
+        final List<Blog> blogsOnPage = sorted.subList(offset, Math.min(sorted.size(), offset + blogsPageSize));
+
+        final String newer = offset == 0
+                ? null
+                : offset <= blogsPageSize ? "/blogs" : "/blogs?before=" + blogsOnPage.getFirst().getSlug();
+
+        final String older = offset + blogsPageSize < sorted.size()
+                ? "/blogs?after=" + blogsOnPage.getLast().getSlug()
+                : null;
+
+        final StringBuilder pageIdentity = new StringBuilder()
+                .append(offset)
+                .append(older == null ? ":last" : ":more");
 
-        if (notModified != null) return notModified;
+        for (Blog blog : blogsOnPage) {
+            pageIdentity.append(':').append(blog.getHash());
+        }
+
+        final String eTag = pageETag(RequestContext.generateEtagHash(pageIdentity.toString()));
+        final String lastModified = snapshot.lastModified();
 
-        final String data = blogRenderer.render(blog.getFileName());
+        final Response conditional = requestContext.evaluatePreconditions(eTag, lastModified, cacheControl, true);
 
-        final TemplateInstance template = blogPage.data("blog", blog)
-                .data("data", data)
-                .data("title", blog.getTitle());
+        if (conditional != null) return conditional;
 
-        return Response.ok()
-                .entity(template)
-                .header(HttpHeaders.ETAG, etag)
+        final Supplier<String> renderer = () -> {
+            final List<BlogLink> blogs = blogsOnPage.stream()
+                    .map(BlogLink::generateBlogLinkFromBlog)
+                    .toList();
+
+            return allBlogsPage.data("blogs", blogs)
+                    .data("newer", newer)
+                    .data("older", older)
+                    .data("title", "My Blogs")
+                    .render();
+        };
+
+        final EncodedContent page = offset % blogsPageSize == 0
+                ? pageCache.page("blogs:" + offset, eTag, renderer)
+                : new EncodedContent(renderer.get().getBytes(StandardCharsets.UTF_8), null, null);
+
+        return requestContext.ok(page)
+                .type(TEXT_HTML_UTF_8)
+                .tag(eTag)
                 .header(HttpHeaders.CACHE_CONTROL, cacheControl)
                 .header(HttpHeaders.LAST_MODIFIED, lastModified)
                 .build();
     }
 
     /**
-     * Serves the page listing all blogs, sorted, honoring caching headers.
+     * Serves the page listing every tag in use with its blog count, honoring
+     * caching headers.
      *
+     * @return The rendered tag list, or a 304 if the client cache is current.
+     */
+    @GET
+    @NonBlocking
+    @Path("/tags")
+    @Produces(MediaType.TEXT_HTML)
+    public Response getTagsPage() {
+        final ContentSnapshot snapshot = blogCache.snapshot();
+        final String eTag = pageETag(snapshot.eTag());
+        final String lastModified = snapshot.lastModified();
+
+        final Response conditional = requestContext.evaluatePreconditions(eTag, lastModified, cacheControl, true);
+
+        if (conditional != null) return conditional;
+
+        final EncodedContent page = pageCache.page("tags", eTag, () -> tagsPage.data("tags", snapshot.tags())
+                .data("title", "Tags")
+                .render());
+
+        return requestContext.ok(page)
+                .type(TEXT_HTML_UTF_8)
+                .tag(eTag)
+                .header(HttpHeaders.CACHE_CONTROL, cacheControl)
+                .header(HttpHeaders.LAST_MODIFIED, lastModified)
+                .build();
+    }
+
+    /**
+     * Serves the page listing the blogs of the requested tag, sorted, honoring
+     * caching headers. The tag is normalized first, so it may be requested as
+     * written in a blog.
+     *
+     * @param tag The tag whose blogs to list.
      * @return The rendered blog list, or a 304 if the client cache is current.
      */
     @GET
     @NonBlocking
-    @Path("/blogs")
+    @Path("/tag/{tag}")
     @Produces(MediaType.TEXT_HTML)
-    public Response getBlogsPage() {
-        final String eTag = E_TAG.getOpaque();
-        final String lastModified = LAST_MODIFIED.getOpaque();
+    public Response getTagPage(@PathParam("tag") final String tag) {
+        final ContentSnapshot snapshot = blogCache.snapshot();
+        final String normalized = BlogCache.normalizeTag(tag);
+        final List<Blog> tagged = snapshot.byTag().get(normalized);
+
+        if (tagged == null) {
+            throw new NotFoundException("Client tried to find blogs with an unknown tag!");
+        }
+
+        final String eTag = pageETag(snapshot.eTag());
+        final String lastModified = snapshot.lastModified();
 
-        final Response notModified = requestContext.notModified(eTag, lastModified);
+        final Response conditional = requestContext.evaluatePreconditions(eTag, lastModified, cacheControl, true);
 
-        if (notModified != null) return notModified;
+        if (conditional != null) return conditional;
 
-        final List<BlogLink> blogs = blogCache.all()
-                .stream()
-                .map(BlogLink::generateBlogLinkFromBlog)
-                .toList();
+        final EncodedContent page = pageCache.page("tag:" + normalized, eTag, () -> {
+            final List<BlogLink> blogs = tagged.stream()
+                    .map(BlogLink::generateBlogLinkFromBlog)
+                    .toList();
 
-        final TemplateInstance template = allBlogsPage.data("blogs", blogs)
-                .data("title", "My Blogs");
+            return tagPage.data("blogs", blogs)
+                    .data("tag", normalized)
+                    .data("title", "Tag: " + normalized)
+                    .render();
+        });
 
-        return Response.ok()
-                .entity(template)
-                .header(HttpHeaders.ETAG, eTag)
+        return requestContext.ok(page)
+                .type(TEXT_HTML_UTF_8)
+                .tag(eTag)
                 .header(HttpHeaders.CACHE_CONTROL, cacheControl)
                 .header(HttpHeaders.LAST_MODIFIED, lastModified)
                 .build();
     }
 
+    /**
+     * Serves the search page, listing the blogs best matching the query as
+     * ranked by the {@link SearchIndex}. Results are rendered per query and
+     * not cached; an empty query serves just the search form.
+     *
+     * @param query The search query; queries longer than
+     *              {@value #MAX_QUERY_LENGTH} characters are cut short.
+     * @return The rendered search page.
+     */
+    @GET
+    @NonBlocking
+    @Path("/search")
+    @Produces(MediaType.TEXT_HTML)
+    public Response getSearchPage(@QueryParam("q") final String query) {
+        final ContentSnapshot snapshot = blogCache.snapshot();
+
+        final String terms = query == null
+                ? ""
+                : query.substring(0, Math.min(query.length(), MAX_QUERY_LENGTH)).strip();
+
+        final List<BlogLink> blogs = new ArrayList<>();
+
+        if (!terms.isEmpty()) {
+            for (String fileName : searchIndex.search(terms, searchMaxResults)) {
+                final Blog blog = snapshot.byFileName().get(fileName);
+
+                if (blog != null) {
+                    blogs.add(BlogLink.generateBlogLinkFromBlog(blog));
+                }
+            }
+        }
+
+        final String page = searchPage.data("blogs", blogs)
+                .data("query", terms)
+                .data("title", "Search")
+                .render();
+
+        return Response.ok(page)
+                .type(TEXT_HTML_UTF_8)
+                .header(HttpHeaders.CACHE_CONTROL, cacheControl)
+                .build();
+    }
+
     /**
      * Serves the contact page, honoring conditional-request caching headers.
      *
@@ -251,18 +519,20 @@ public final class WebPage {
     @Path("/contact")
     @Produces(MediaType.TEXT_HTML)
     public Response getContactsPage() {
-        final String eTag = E_TAG.getOpaque();
-        final String lastModified = LAST_MODIFIED.getOpaque();
+        final ContentSnapshot snapshot = blogCache.snapshot();
+        final String eTag = pageETag(snapshot.eTag());
+        final String lastModified = snapshot.lastModified();
 
-        final Response notModified = requestContext.notModified(eTag, lastModified);
+        final Response conditional = requestContext.evaluatePreconditions(eTag, lastModified, cacheControl, true);
 
-        if (notModified != null) return notModified;
+        if (conditional != null) return conditional;
 
-        final TemplateInstance template = contactPage.data("title", "Contact");
+        final EncodedContent page = pageCache.page("contact", eTag, () -> contactPage.data("title", "Contact")
+                .render());
 
-        return Response.ok()
-                .entity(template)
-                .header(HttpHeaders.ETAG, eTag)
+        return requestContext.ok(page)
+                .type(TEXT_HTML_UTF_8)
+                .tag(eTag)
                 .header(HttpHeaders.CACHE_CONTROL, cacheControl)
                 .header(HttpHeaders.LAST_MODIFIED, lastModified)
                 .build();
@@ -279,12 +549,13 @@ public final class WebPage {
     @Path("/error/{reason}")
     @Produces(MediaType.TEXT_HTML)
     public Response getErrorPage(@PathParam("reason") final String reason) {
-        final String eTag = E_TAG.getOpaque();
-        final String lastModified = LAST_MODIFIED.getOpaque();
+        final ContentSnapshot snapshot = blogCache.snapshot();
+        final String eTag = pageETag(snapshot.eTag());
+        final String lastModified = snapshot.lastModified();
 
-        final Response notModified = requestContext.notModified(eTag, lastModified);
+        final Response conditional = requestContext.evaluatePreconditions(eTag, lastModified, cacheControl, true);
 
-        if (notModified != null) return notModified;
+        if (conditional != null) return conditional;
 
         final String status = switch (reason) {
             case "not-found" -> "404 Not Found";
@@ -293,23 +564,47 @@ public final class WebPage {
             case null, default -> "418 I'm a teapot";
         };
 
-        final TemplateInstance template = errorPage.data("status", status)
-                .data("title", status);
+        final EncodedContent page = pageCache.page("error:" + status, eTag, () -> errorPage.data("status", status)
+                .data("title", status)
+                .render());
 
-        return Response.ok()
-                .entity(template)
-                .header(HttpHeaders.ETAG, eTag)
+        return requestContext.ok(page)
+                .type(TEXT_HTML_UTF_8)
+                .tag(eTag)
                 .header(HttpHeaders.CACHE_CONTROL, cacheControl)
                 .header(HttpHeaders.LAST_MODIFIED, lastModified)
                 .build();
     }
 
     /**
-     * Updates the <i>Etag</i> and <i>Last-Modified</i> headers used by pages
-     * which monitor new blogs.
+     * Derives the <i>ETag</i> of a page from the ETag of its content and the
+     * version of the assets it links.
+     *
+     * @param contentETag The ETag of the page content.
+     * @return The page ETag.
+     */
+    private String pageETag(final String contentETag) {
+        return contentETag + '.' + staticUrls.version();
+    }
+
+    /**
+     * Resolves a blog list cursor to the position of its blog in the sorted
+     * listing of the provided snapshot, see {@link BlogCache#positionOf}.
+     *
+     * @param snapshot The snapshot serving the request.
+     * @param slug     The slug of the cursor blog.
+     * @return The position of the blog in the sorted listing.
+     * @throws NotFoundException if no blog has the provided slug.
      */
-    public static void updateCacheControlHeaders() {
-        E_TAG.set(RequestContext.generateEtagHash(Instant.now().toString()));
-        LAST_MODIFIED.set(RequestContext.parseLastModifiedTime(LocalDateTime.now()));
+    private static int positionOf(final ContentSnapshot snapshot, final String slug) {
+        final Blog blog = snapshot.bySlug().get(slug);
+
+        final int position = blog == null ? -1 : BlogCache.positionOf(snapshot.sorted(), blog);
+
+        if (position < 0) {
+            throw new NotFoundException("Client tried to continue the blog list from an unknown blog!");
+        }
+
+        return position;
     }
 }
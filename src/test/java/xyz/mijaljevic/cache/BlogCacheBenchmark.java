@@ -0,0 +1,114 @@
+package xyz.mijaljevic.cache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import xyz.mijaljevic.Website;
+import xyz.mijaljevic.domain.dto.ContentSnapshot;
+import xyz.mijaljevic.domain.entity.Blog;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for the {@link BlogCache} read path: {@code recent()} and
+ * {@code all()} served from the pre-sorted snapshot, against the previous
+ * stream-and-sort over the file name index ({@code baseline*}), from 10 to 100k
+ * blogs. {@code put} measures the write-side cost of storing a blog and
+ * publishing the next snapshot.
+ *
+ * <p>
+ * Run with {@code mvn -Pbench test -Dbench.include=BlogCacheBenchmark}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlogCacheBenchmark {
+    @Param({"10", "1000", "10000", "100000"})
+    int blogs;
+
+    private BlogCache cache;
+
+    private Map<String, Blog> byFileName;
+
+    private Blog updated;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cache = new BlogCache();
+        byFileName = new ConcurrentHashMap<>();
+
+        LocalDateTime base = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+        for (int i = 0; i < blogs; i++) {
+            Blog blog = blog(i, base.plusHours(i));
+            cache.put(blog);
+            byFileName.put(blog.getFileName(), blog);
+        }
+
+        cache.publish();
+
+        // Re-putting an existing file keeps the size stable across invocations.
+        updated = blog(blogs / 2, base.plusHours(blogs / 2));
+    }
+
+    @Benchmark
+    public List<Blog> recent() {
+        return cache.recent();
+    }
+
+    @Benchmark
+    public List<Blog> all() {
+        return cache.all();
+    }
+
+    @Benchmark
+    public List<Blog> baselineRecent() {
+        return byFileName.values()
+                .stream()
+                .sorted()
+                .limit(Website.NUMBER_OF_BLOGS_TO_DISPLAY)
+                .toList();
+    }
+
+    @Benchmark
+    public List<Blog> baselineAll() {
+        return byFileName.values()
+                .stream()
+                .sorted()
+                .toList();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public ContentSnapshot put() {
+        cache.put(updated);
+        return cache.publish();
+    }
+
+    private static Blog blog(final int index, final LocalDateTime created) {
+        Blog blog = new Blog();
+        blog.setTitle("Post " + index);
+        blog.setSlug("post-" + index);
+        blog.setFileName("post-" + index + ".md");
+        blog.setHash("hash-" + index);
+        blog.setCreated(created);
+        return blog;
+    }
+}
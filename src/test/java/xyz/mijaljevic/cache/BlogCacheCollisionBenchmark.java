@@ -0,0 +1,107 @@
+package xyz.mijaljevic.cache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import xyz.mijaljevic.domain.entity.Blog;
+import xyz.mijaljevic.utils.Slugs;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for handing a colliding slug over when its owner goes away:
+ * {@code removeOwner} removes the owning file from the {@link BlogCache} and
+ * stores it again, against the previous scan of the file name index for the
+ * next blog with the same slug ({@code baselineScan}), with two colliding
+ * files among 10 to 100k blogs.
+ *
+ * <p>
+ * Run with {@code mvn -Pbench test -Dbench.include=BlogCacheCollisionBenchmark}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlogCacheCollisionBenchmark {
+    @Param({"10", "1000", "10000", "100000"})
+    int blogs;
+
+    private BlogCache cache;
+
+    private Map<String, Blog> byFileName;
+
+    private Blog[] colliding;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cache = new BlogCache();
+        byFileName = new ConcurrentHashMap<>();
+        colliding = new Blog[2];
+
+        LocalDateTime base = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+        for (int i = 0; i < blogs; i++) {
+            // The first and last blog share a title, the rest are unique.
+            String title = i == 0 || i == blogs - 1 ? "Same Title" : "Post " + i;
+            Blog blog = blog(i, title, base.plusHours(i));
+            cache.put(blog);
+            byFileName.put(blog.getFileName(), blog);
+
+            if (i == 0) {
+                colliding[0] = blog;
+            } else if (i == blogs - 1) {
+                colliding[1] = blog;
+            }
+        }
+
+        cache.publish();
+    }
+
+    @Benchmark
+    public BlogCache removeOwner() {
+        // The re-stored owner queues up last, so the files take turns owning.
+        Blog owner = colliding[next];
+        next = 1 - next;
+        cache.removeByFileName(owner.getFileName());
+        cache.put(owner);
+        return cache;
+    }
+
+    @Benchmark
+    public Optional<Blog> baselineScan() {
+        // Skips the owner itself, as the old removal had already dropped it.
+        Blog owner = colliding[0];
+        return byFileName.values()
+                .stream()
+                .filter(blog -> blog != owner && blog.getSlug().equals(owner.getSlug()))
+                .findFirst();
+    }
+
+    private static Blog blog(final int index, final String title, final LocalDateTime created) {
+        Blog blog = new Blog();
+        blog.setTitle(title);
+        blog.setSlug(Slugs.slugify(title));
+        blog.setFileName("post-" + index + ".md");
+        blog.setHash("hash-" + index);
+        blog.setCreated(created);
+        return blog;
+    }
+}
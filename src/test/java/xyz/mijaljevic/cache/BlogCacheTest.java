@@ -3,18 +3,31 @@ package xyz.mijaljevic.cache;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import xyz.mijaljevic.Website;
+import xyz.mijaljevic.domain.dto.ContentSnapshot;
+import xyz.mijaljevic.domain.dto.FileStamp;
+import xyz.mijaljevic.domain.dto.TagLink;
 import xyz.mijaljevic.domain.entity.Blog;
 import xyz.mijaljevic.utils.Slugs;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * Unit tests for {@link BlogCache}: the create / update / delete semantics, the
  * dual file-name and slug indexes staying consistent across title changes and
- * slug collisions, and the ordering and limit guarantees of {@code recent()}.
+ * slug collisions, the ordering and limit guarantees of {@code recent()}, the
+ * immutable sorted snapshot behind {@code recent()} and {@code all()}, and
+ * staged changes only becoming visible once they are published, and the
+ * incrementally maintained tag index. A seeded stress test checks slug
+ * ownership across many colliding titles.
  */
 class BlogCacheTest {
     @Test
@@ -24,6 +37,7 @@ class BlogCacheTest {
         Blog blog = blog("First Post", "first.md", baseTime());
 
         cache.put(blog);
+        cache.publish();
 
         assertThat(cache.byFileName("first.md")).isSameAs(blog);
         assertThat(cache.bySlug("first-post")).isSameAs(blog);
@@ -45,6 +59,7 @@ class BlogCacheTest {
         cache.put(blog("Old Title", "post.md", baseTime()));
 
         cache.put(blog("New Title", "post.md", baseTime()));
+        cache.publish();
 
         assertThat(cache.bySlug("old-title")).isNull();
         assertThat(cache.bySlug("new-title")).isNotNull();
@@ -58,6 +73,7 @@ class BlogCacheTest {
         cache.put(blog("Doomed Post", "doomed.md", baseTime()));
 
         cache.removeByFileName("doomed.md");
+        cache.publish();
 
         assertThat(cache.byFileName("doomed.md")).isNull();
         assertThat(cache.bySlug("doomed-post")).isNull();
@@ -83,6 +99,7 @@ class BlogCacheTest {
 
         cache.put(first);
         cache.put(second);
+        cache.publish();
 
         // Both files are still indexed primarily, but the slug keeps the first.
         assertThat(cache.byFileName("one.md")).isSameAs(first);
@@ -90,6 +107,80 @@ class BlogCacheTest {
         assertThat(cache.bySlug("same-title")).isSameAs(first);
     }
 
+    @Test
+    @DisplayName("when the owner of a colliding slug is removed or retitled the next file in store order takes over")
+    void slugCollision_promotesNextCandidateInStoreOrder() {
+        BlogCache cache = new BlogCache();
+        cache.put(blog("Same Title", "one.md", baseTime()));
+        cache.put(blog("Same Title", "two.md", baseTime()));
+        cache.put(blog("Same Title", "three.md", baseTime()));
+
+        cache.removeByFileName("one.md");
+        cache.publish();
+
+        assertThat(cache.bySlug("same-title").getFileName()).isEqualTo("two.md");
+
+        cache.put(blog("Other Title", "two.md", baseTime()));
+        cache.publish();
+
+        assertThat(cache.bySlug("same-title").getFileName()).isEqualTo("three.md");
+        assertThat(cache.bySlug("other-title").getFileName()).isEqualTo("two.md");
+
+        cache.removeByFileName("three.md");
+        cache.publish();
+
+        assertThat(cache.bySlug("same-title")).isNull();
+    }
+
+    @Test
+    @DisplayName("under random stores, retitles and removals of colliding titles each slug is owned by its oldest file")
+    void slugCollision_stress_ownerIsOldestRemainingFile() {
+        BlogCache cache = new BlogCache();
+        Random random = new Random(42);
+        // The files using each slug, in the order they took it; the first owns it.
+        Map<String, Set<String>> expected = new HashMap<>();
+        Map<String, String> slugOfFile = new HashMap<>();
+
+        for (int i = 1; i <= 300; i++) {
+            String fileName = "post-" + random.nextInt(20) + ".md";
+
+            if (random.nextInt(4) == 0) {
+                cache.removeByFileName(fileName);
+
+                String slug = slugOfFile.remove(fileName);
+                if (slug != null) {
+                    expected.get(slug).remove(fileName);
+                }
+            } else {
+                String title = "Title " + random.nextInt(5);
+                cache.put(blog(title, fileName, baseTime()));
+
+                String slug = Slugs.slugify(title);
+                String oldSlug = slugOfFile.put(fileName, slug);
+                if (oldSlug != null && !oldSlug.equals(slug)) {
+                    expected.get(oldSlug).remove(fileName);
+                }
+                expected.computeIfAbsent(slug, key -> new LinkedHashSet<>()).add(fileName);
+            }
+
+            if (i % 10 == 0) {
+                cache.publish();
+
+                expected.forEach((slug, files) -> {
+                    Blog owner = cache.bySlug(slug);
+
+                    if (files.isEmpty()) {
+                        assertThat(owner).isNull();
+                    } else {
+                        assertThat(owner.getFileName()).isEqualTo(files.iterator().next());
+                        assertThat(owner.getSlug()).isEqualTo(slug);
+                        assertThat(cache.byFileName(owner.getFileName())).isSameAs(owner);
+                    }
+                });
+            }
+        }
+    }
+
     @Test
     @DisplayName("recent orders blogs newest first and caps at the display limit")
     void recent_ordersNewestFirstAndCaps() {
@@ -101,6 +192,8 @@ class BlogCacheTest {
             cache.put(blog("Post " + i, "post-" + i + ".md", baseTime().plusDays(i)));
         }
 
+        cache.publish();
+
         List<Blog> recent = cache.recent();
 
         assertThat(recent).hasSize(Website.NUMBER_OF_BLOGS_TO_DISPLAY);
@@ -116,6 +209,7 @@ class BlogCacheTest {
         BlogCache cache = new BlogCache();
         cache.put(blog("Oldest", "old.md", baseTime()));
         cache.put(blog("Newest", "new.md", baseTime().plusDays(1)));
+        cache.publish();
 
         List<Blog> all = cache.all();
 
@@ -124,6 +218,198 @@ class BlogCacheTest {
         assertThat(all.get(1).getTitle()).isEqualTo("Oldest");
     }
 
+    @Test
+    @DisplayName("recent and all return the same immutable snapshot until the cache changes")
+    void snapshot_isSharedAndImmutableUntilChanged() {
+        BlogCache cache = new BlogCache();
+        cache.put(blog("First", "first.md", baseTime()));
+        cache.publish();
+
+        List<Blog> all = cache.all();
+        List<Blog> recent = cache.recent();
+
+        // Reads are served from the snapshot, not rebuilt per call.
+        assertThat(cache.all()).isSameAs(all);
+        assertThat(cache.recent()).isSameAs(recent);
+        assertThatThrownBy(() -> all.add(blog("Sneaky", "sneaky.md", baseTime())))
+                .isInstanceOf(UnsupportedOperationException.class);
+
+        cache.put(blog("Second", "second.md", baseTime().plusDays(1)));
+        cache.publish();
+
+        assertThat(cache.all()).isNotSameAs(all);
+        assertThat(all).hasSize(1);
+        assertThat(cache.all()).extracting(Blog::getTitle).containsExactly("Second", "First");
+    }
+
+    @Test
+    @DisplayName("the snapshot re-sorts a blog whose created date changed and drops removed blogs")
+    void snapshot_tracksUpdatesAndRemovals() {
+        BlogCache cache = new BlogCache();
+        cache.put(blog("Old", "old.md", baseTime()));
+        cache.put(blog("Mid", "mid.md", baseTime().plusDays(1)));
+        cache.put(blog("New", "new.md", baseTime().plusDays(2)));
+        cache.publish();
+
+        // Move the oldest blog to the front, the way a Date metadata edit would.
+        Blog moved = cache.byFileName("old.md");
+        moved.setCreated(baseTime().plusDays(3));
+        cache.put(moved);
+        cache.publish();
+
+        assertThat(cache.all()).extracting(Blog::getFileName)
+                .containsExactly("old.md", "new.md", "mid.md");
+
+        cache.removeByFileName("new.md");
+        cache.publish();
+
+        assertThat(cache.all()).extracting(Blog::getFileName)
+                .containsExactly("old.md", "mid.md");
+        assertThat(cache.recent()).extracting(Blog::getFileName)
+                .containsExactly("old.md", "mid.md");
+    }
+
+    @Test
+    @DisplayName("staged changes stay invisible to readers until they are published")
+    void publish_exposesStagedChangesAtOnce() {
+        BlogCache cache = new BlogCache();
+        cache.put(blog("Old", "old.md", baseTime()));
+        cache.publish();
+
+        cache.put(blog("New", "new.md", baseTime().plusDays(1)));
+        cache.removeByFileName("old.md");
+
+        // The scheduler sees its own staged changes, readers the last publish.
+        assertThat(cache.byFileName("new.md")).isNotNull();
+        assertThat(cache.bySlug("new")).isNull();
+        assertThat(cache.bySlug("old")).isNotNull();
+        assertThat(cache.all()).extracting(Blog::getFileName).containsExactly("old.md");
+
+        cache.publish();
+
+        assertThat(cache.bySlug("new")).isNotNull();
+        assertThat(cache.bySlug("old")).isNull();
+        assertThat(cache.all()).extracting(Blog::getFileName).containsExactly("new.md");
+    }
+
+    @Test
+    @DisplayName("each publish swaps in a new versioned snapshot with its own ETag, leaving the previous one intact")
+    void publish_swapsInNewVersionedSnapshot() {
+        BlogCache cache = new BlogCache();
+        ContentSnapshot empty = cache.snapshot();
+
+        cache.put(blog("First", "first.md", baseTime()));
+        ContentSnapshot published = cache.publish();
+
+        assertThat(cache.snapshot()).isSameAs(published);
+        assertThat(published.version()).isEqualTo(empty.version() + 1);
+        assertThat(published.eTag()).isNotEqualTo(empty.eTag());
+        assertThat(published.byFileName()).containsOnlyKeys("first.md");
+        assertThat(published.bySlug()).containsOnlyKeys("first");
+        assertThat(published.recent()).extracting(Blog::getFileName).containsExactly("first.md");
+
+        // A request still holding the old snapshot keeps a consistent view.
+        assertThat(empty.byFileName()).isEmpty();
+        assertThat(empty.bySlug()).isEmpty();
+        assertThat(empty.sorted()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("a publish without staged changes keeps the published snapshot and its ETag")
+    void publish_withoutChanges_keepsSnapshot() {
+        BlogCache cache = new BlogCache();
+        cache.put(blog("First", "first.md", baseTime()));
+        ContentSnapshot published = cache.publish();
+
+        assertThat(cache.publish()).isSameAs(published);
+        assertThat(cache.snapshot()).isSameAs(published);
+    }
+
+    @Test
+    @DisplayName("restamping records the new stamp without touching the blog or staging a change")
+    void restamp_keepsBlogAndSnapshot() {
+        BlogCache cache = new BlogCache();
+        Blog blog = blog("First", "first.md", baseTime());
+        FileStamp original = new FileStamp(1, 1, null);
+        FileStamp touched = new FileStamp(1, 2, null);
+        blog.setStamp(original);
+        cache.put(blog);
+        ContentSnapshot published = cache.publish();
+
+        cache.restamp("first.md", touched);
+
+        assertThat(cache.stampOf(blog)).isEqualTo(touched);
+        assertThat(blog.getStamp()).isEqualTo(original);
+        assertThat(cache.publish()).isSameAs(published);
+
+        Blog updated = blog("First", "first.md", baseTime());
+        updated.setStamp(touched);
+        cache.put(updated);
+
+        assertThat(cache.stampOf(updated)).isSameAs(touched);
+        cache.removeByFileName("first.md");
+        assertThat(cache.stampOf(blog)).isEqualTo(original);
+    }
+
+    @Test
+    @DisplayName("the tag index lists the blogs of each normalized tag newest first")
+    void byTag_listsBlogsOfNormalizedTagNewestFirst() {
+        BlogCache cache = new BlogCache();
+        cache.put(tagged(blog("Old", "old.md", baseTime()), "Java", "Perf"));
+        cache.put(tagged(blog("New", "new.md", baseTime().plusDays(1)), "java"));
+        cache.put(blog("Untagged", "untagged.md", baseTime()));
+        cache.publish();
+
+        assertThat(cache.byTag("JAVA")).extracting(Blog::getFileName).containsExactly("new.md", "old.md");
+        assertThat(cache.byTag("perf")).extracting(Blog::getFileName).containsExactly("old.md");
+        assertThat(cache.byTag("rust")).isNull();
+        assertThat(cache.tags()).containsExactly(new TagLink("java", 2), new TagLink("perf", 1));
+    }
+
+    @Test
+    @DisplayName("retagging and removing blogs updates only the affected tag listings")
+    void byTag_tracksRetagsAndRemovals() {
+        BlogCache cache = new BlogCache();
+        cache.put(tagged(blog("One", "one.md", baseTime()), "a", "b"));
+        cache.put(tagged(blog("Two", "two.md", baseTime().plusDays(1)), "b", "c"));
+        cache.publish();
+
+        List<Blog> untouched = cache.byTag("c");
+
+        cache.put(tagged(blog("One", "one.md", baseTime().plusDays(2)), "b"));
+        cache.publish();
+
+        assertThat(cache.byTag("a")).isNull();
+        assertThat(cache.byTag("b")).extracting(Blog::getFileName).containsExactly("one.md", "two.md");
+        // A tag the batch did not touch keeps its published listing.
+        assertThat(cache.byTag("c")).isSameAs(untouched);
+
+        cache.removeByFileName("two.md");
+        cache.publish();
+
+        assertThat(cache.byTag("b")).extracting(Blog::getFileName).containsExactly("one.md");
+        assertThat(cache.byTag("c")).isNull();
+        assertThat(cache.tags()).containsExactly(new TagLink("b", 1));
+    }
+
+    @Test
+    @DisplayName("positionOf finds a blog in the sorted listing, also among blogs created at the same time")
+    void positionOf_findsBlogAmongTies() {
+        BlogCache cache = new BlogCache();
+        for (int i = 0; i < 10; i++) {
+            // Pairs of blogs share a created timestamp.
+            cache.put(blog("Post " + i, "post-" + i + ".md", baseTime().plusDays(i / 2)));
+        }
+        cache.publish();
+
+        List<Blog> sorted = cache.all();
+
+        for (int i = 0; i < sorted.size(); i++) {
+            assertThat(BlogCache.positionOf(sorted, sorted.get(i))).isEqualTo(i);
+        }
+        assertThat(BlogCache.positionOf(sorted, blog("Ghost", "ghost.md", baseTime()))).isEqualTo(-1);
+    }
+
     @Test
     @DisplayName("missing returns the cached blogs whose file is absent from the provided set")
     void missing_returnsAbsentBackedBlogs() {
@@ -138,6 +424,18 @@ class BlogCacheTest {
                 .containsExactly("gone.md");
     }
 
+    /**
+     * Sets the provided tags on the provided blog.
+     *
+     * @param blog The blog to tag.
+     * @param tags The tags, as written in the blog metadata.
+     * @return The provided blog.
+     */
+    private static Blog tagged(final Blog blog, final String... tags) {
+        blog.setTags(List.of(tags));
+        return blog;
+    }
+
     /**
      * @return A fixed base creation timestamp shared by the test blogs.
      */
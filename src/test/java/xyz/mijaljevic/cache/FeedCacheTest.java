@@ -0,0 +1,83 @@
+package xyz.mijaljevic.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import xyz.mijaljevic.domain.dto.RenderedFeed;
+import xyz.mijaljevic.domain.entity.Blog;
+import xyz.mijaljevic.domain.entity.FeedFormat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link FeedCache}: a feed is rendered once per route and
+ * snapshot version, its ETag is derived from its bytes alone, and an item
+ * fragment is rendered once per format and blog hash until evicted.
+ */
+class FeedCacheTest {
+    private final FeedCache cache = new FeedCache();
+
+    private final AtomicInteger renders = new AtomicInteger();
+
+    private RenderedFeed feed(String route, long version, String body) {
+        return cache.feed(route, version, () -> {
+            renders.incrementAndGet();
+            return FeedCache.build(version, body, "Thu, 01 Jan 1970 00:00:00 UTC");
+        });
+    }
+
+    @Test
+    @DisplayName("a feed is rendered once per snapshot version")
+    void feed_rendersOncePerVersion() {
+        RenderedFeed first = feed("rss", 1, "<rss/>");
+        RenderedFeed second = feed("rss", 1, "<rss/>");
+
+        assertThat(second).isSameAs(first);
+        assertThat(renders).hasValue(1);
+
+        feed("rss", 2, "<rss/>");
+
+        assertThat(renders).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("routes are cached apart")
+    void feed_cachesRoutesApart() {
+        feed("rss", 1, "<rss/>");
+        feed("atom", 1, "<feed/>");
+
+        assertThat(renders).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("the ETag is the SHA-256 of the feed bytes, unchanged across versions for the same bytes")
+    void build_etagFollowsTheBytes() {
+        RenderedFeed first = FeedCache.build(1, "<rss/>", "lm");
+        RenderedFeed same = FeedCache.build(2, "<rss/>", "lm");
+        RenderedFeed other = FeedCache.build(3, "<rss></rss>", "lm");
+
+        assertThat(first.eTag()).matches("[0-9a-f]{64}").isEqualTo(same.eTag()).isNotEqualTo(other.eTag());
+        assertThat(first.content().identity()).isEqualTo("<rss/>".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("an item fragment is rendered once per format and blog hash until its hash is evicted")
+    void item_rendersOncePerFormatAndHash() {
+        Blog blog = new Blog();
+        blog.setHash("h1");
+
+        String first = cache.item(FeedFormat.RSS, blog, b -> "<item>" + renders.incrementAndGet() + "</item>");
+        String again = cache.item(FeedFormat.RSS, blog, b -> "<item>" + renders.incrementAndGet() + "</item>");
+        cache.item(FeedFormat.ATOM, blog, b -> "<entry>" + renders.incrementAndGet() + "</entry>");
+
+        assertThat(again).isEqualTo(first);
+        assertThat(renders).hasValue(2);
+
+        cache.invalidateItems("h1");
+
+        assertThat(cache.item(FeedFormat.RSS, blog, b -> "<item>" + renders.incrementAndGet() + "</item>"))
+                .isEqualTo("<item>3</item>");
+    }
+}
@@ -0,0 +1,205 @@
+package xyz.mijaljevic.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import xyz.mijaljevic.domain.dto.EncodedContent;
+import xyz.mijaljevic.domain.dto.VisitorCount;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link PageCache}: a page is rendered once per route and
+ * ETag, rotating the ETag or clearing the cache forces a re-render, changed
+ * visitor counts only do so once the refresh window has elapsed, and blog pages
+ * are cached per content hash until evicted.
+ */
+class PageCacheTest {
+    /**
+     * The visitor counts refresh window used by the tests.
+     */
+    private static final Duration REFRESH = Duration.ofSeconds(10);
+
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+
+    private final AtomicReference<VisitorCount> visitors = new AtomicReference<>(new VisitorCount(1, 2, 3));
+
+    private final AtomicInteger renders = new AtomicInteger();
+
+    /**
+     * Compressions handed to the cache's executor, run by the tests on demand.
+     */
+    private final List<Runnable> compressions = new ArrayList<>();
+
+    private PageCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new PageCache(visitors::get, REFRESH, now::get, compressions::add, 100, Duration.ofHours(4));
+    }
+
+    @Test
+    @DisplayName("a page is rendered once and then served from the cache")
+    void page_rendersOncePerEtag() {
+        EncodedContent first = cache.page("home", "etag-1", renderer("home"));
+        EncodedContent second = cache.page("home", "etag-1", renderer("home"));
+
+        assertThat(renders).hasValue(1);
+        assertThat(second).isSameAs(first);
+        assertThat(new String(first.identity(), StandardCharsets.UTF_8)).isEqualTo("home");
+    }
+
+    @Test
+    @DisplayName("a page is cached uncompressed and its variants are swapped in once built off the request path")
+    void page_compressedVariantsSwappedInLater() {
+        String body = "<p>" + "compressible ".repeat(100) + "</p>";
+        EncodedContent rendered = cache.page("home", "etag-1", renderer(body));
+
+        assertThat(rendered.gzip()).isNull();
+        assertThat(rendered.brotli()).isNull();
+        assertThat(compressions).hasSize(1);
+
+        compressions.removeFirst().run();
+        EncodedContent compressed = cache.page("home", "etag-1", renderer(body));
+
+        assertThat(renders).hasValue(1);
+        assertThat(compressed.identity()).isSameAs(rendered.identity());
+        assertThat(compressed.gzip()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("variants built for a replaced entry are dropped")
+    void page_staleCompression_isDropped() {
+        cache.page("home", "etag-1", renderer("home ".repeat(100)));
+        cache.page("home", "etag-2", renderer("home ".repeat(100)));
+
+        compressions.removeFirst().run();
+
+        assertThat(cache.page("home", "etag-2", renderer("home")).gzip()).isNull();
+        assertThat(renders).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("routes are cached independently")
+    void page_cachesRoutesIndependently() {
+        cache.page("home", "etag-1", renderer("home"));
+        EncodedContent contact = cache.page("contact", "etag-1", renderer("contact"));
+
+        assertThat(renders).hasValue(2);
+        assertThat(new String(contact.identity(), StandardCharsets.UTF_8)).isEqualTo("contact");
+    }
+
+    @Test
+    @DisplayName("a rotated ETag re-renders the page")
+    void page_rotatedEtag_reRenders() {
+        cache.page("home", "etag-1", renderer("home"));
+        cache.page("home", "etag-2", renderer("home"));
+
+        assertThat(renders).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("invalidateAll drops every cached page")
+    void invalidateAll_reRenders() {
+        cache.page("home", "etag-1", renderer("home"));
+
+        cache.invalidateAll();
+        cache.page("home", "etag-1", renderer("home"));
+
+        assertThat(renders).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("changed visitor counts re-render only once the refresh window elapsed")
+    void page_changedVisitors_reRendersAfterRefreshWindow() {
+        cache.page("home", "etag-1", renderer("home"));
+
+        visitors.set(new VisitorCount(2, 2, 3));
+        now.addAndGet(REFRESH.toMillis() - 1);
+        cache.page("home", "etag-1", renderer("home"));
+
+        assertThat(renders).hasValue(1);
+
+        now.incrementAndGet();
+        cache.page("home", "etag-1", renderer("home"));
+
+        assertThat(renders).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("unchanged visitor counts keep a page fresh past the refresh window")
+    void page_unchangedVisitors_staysFresh() {
+        cache.page("home", "etag-1", renderer("home"));
+
+        now.addAndGet(REFRESH.toMillis() * 10);
+        cache.page("home", "etag-1", renderer("home"));
+
+        assertThat(renders).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("a blog page is rendered once per content hash")
+    void blogPage_rendersOncePerHash() {
+        EncodedContent first = cache.blogPage("hash-1", "hash-1.v1", renderer("blog"));
+        EncodedContent second = cache.blogPage("hash-1", "hash-1.v1", renderer("blog"));
+        cache.blogPage("hash-2", "hash-2.v1", renderer("blog v2"));
+
+        assertThat(second).isSameAs(first);
+        assertThat(renders).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("a blog page is re-rendered when its ETag moves on with the same content hash")
+    void blogPage_newEtag_rerenders() {
+        cache.blogPage("hash-1", "hash-1.v1", renderer("blog"));
+        cache.blogPage("hash-1", "hash-1.v2", renderer("blog"));
+        cache.blogPage("hash-1", "hash-1.v2", renderer("blog"));
+
+        assertThat(renders).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("invalidateBlogPage evicts only the page of the provided hash")
+    void invalidateBlogPage_evictsByHash() {
+        cache.blogPage("hash-1", "hash-1.v1", renderer("one"));
+        cache.blogPage("hash-2", "hash-2.v1", renderer("two"));
+
+        cache.invalidateBlogPage("hash-1");
+        cache.invalidateBlogPage(null);
+        cache.blogPage("hash-1", "hash-1.v1", renderer("one"));
+        cache.blogPage("hash-2", "hash-2.v1", renderer("two"));
+
+        assertThat(renders).hasValue(3);
+    }
+
+    @Test
+    @DisplayName("invalidateAll leaves the blog pages cached")
+    void invalidateAll_keepsBlogPages() {
+        cache.blogPage("hash-1", "hash-1.v1", renderer("one"));
+
+        cache.invalidateAll();
+        cache.blogPage("hash-1", "hash-1.v1", renderer("one"));
+
+        assertThat(renders).hasValue(1);
+    }
+
+    /**
+     * @param body The page body to render.
+     * @return A renderer counting its invocations in {@link #renders}.
+     */
+    private Supplier<String> renderer(final String body) {
+        return () -> {
+            renders.incrementAndGet();
+            return body;
+        };
+    }
+}
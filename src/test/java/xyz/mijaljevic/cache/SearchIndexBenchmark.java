@@ -0,0 +1,99 @@
+package xyz.mijaljevic.cache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for {@link SearchIndex} queries over 1k and 10k synthetic
+ * posts of 300 to 1500 words, drawn from a 20k word vocabulary with a Zipf
+ * like distribution so the postings of common words are long. Each call runs
+ * the next of a fixed set of one to three word queries mixing common and rare
+ * words. Reported both as throughput and as a latency distribution, whose
+ * p0.99 line is the query p99.
+ *
+ * <p>
+ * Run with {@code mvn -Pbench test -Dbench.include=SearchIndexBenchmark}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchIndexBenchmark {
+    @Param({"1000", "10000"})
+    int posts;
+
+    private static final int VOCABULARY = 20_000;
+
+    private SearchIndex index;
+
+    private String[] queries;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        index = new SearchIndex();
+
+        for (int i = 0; i < posts; i++) {
+            int length = 300 + random.nextInt(1200);
+            StringBuilder text = new StringBuilder(length * 8);
+
+            for (int j = 0; j < length; j++) {
+                text.append(word(zipf(random))).append(' ');
+            }
+
+            index.put("post-" + i + ".md", text.toString());
+        }
+
+        index.publish();
+
+        queries = new String[256];
+
+        for (int i = 0; i < queries.length; i++) {
+            StringBuilder query = new StringBuilder();
+            int terms = 1 + random.nextInt(3);
+
+            for (int j = 0; j < terms; j++) {
+                query.append(word(zipf(random))).append(' ');
+            }
+
+            queries[i] = query.toString();
+        }
+    }
+
+    @Benchmark
+    public List<String> search() {
+        String query = queries[next];
+        next = (next + 1) & (queries.length - 1);
+        return index.search(query, 20);
+    }
+
+    /**
+     * @return A word rank skewed towards the most common words.
+     */
+    private static int zipf(final Random random) {
+        return (int) Math.min(VOCABULARY - 1, Math.floor(Math.pow(VOCABULARY, random.nextDouble())) - 1);
+    }
+
+    private static String word(final int rank) {
+        return "w" + Integer.toString(rank, 36);
+    }
+}
@@ -0,0 +1,140 @@
+package xyz.mijaljevic.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link SearchIndex}: tokenization, BM25 ranking, the result
+ * limit and tie order, staged updates and removals only becoming visible once
+ * they are published, and handing term frequencies over to another index.
+ */
+class SearchIndexTest {
+    @Test
+    @DisplayName("tokenize lowercases, strips diacritics and splits on anything but letters and digits")
+    void tokenize_normalizesAndSplits() {
+        assertThat(SearchIndex.tokenize("Ćevapi, JAVA-21 & naïve_code!"))
+                .containsExactly("cevapi", "java", "21", "naive", "code");
+    }
+
+    @Test
+    @DisplayName("a document using the query term more often, in a shorter text, ranks first")
+    void search_ranksByBm25() {
+        SearchIndex index = new SearchIndex();
+        index.put("once.md", "java is a language with a long history and many many users");
+        index.put("twice.md", "java java performance");
+        index.put("none.md", "rust ownership");
+        index.publish();
+
+        assertThat(index.search("Java", 10)).containsExactly("twice.md", "once.md");
+    }
+
+    @Test
+    @DisplayName("a rare query term weighs more than a common one")
+    void search_rareTermsWeighMore() {
+        SearchIndex index = new SearchIndex();
+        index.put("common.md", "blog blog post");
+        index.put("rare.md", "blog quaternion");
+        index.put("other-1.md", "blog");
+        index.put("other-2.md", "blog");
+        index.publish();
+
+        assertThat(index.search("blog quaternion", 1)).containsExactly("rare.md");
+    }
+
+    @Test
+    @DisplayName("results are capped at the limit, equal scores ordered by file name")
+    void search_limitAndTieOrder() {
+        SearchIndex index = new SearchIndex();
+        index.put("c.md", "same words");
+        index.put("a.md", "same words");
+        index.put("b.md", "same words");
+        index.publish();
+
+        assertThat(index.search("same", 2)).containsExactly("a.md", "b.md");
+    }
+
+    @Test
+    @DisplayName("staged documents are only searchable once published")
+    void search_seesOnlyPublishedDocuments() {
+        SearchIndex index = new SearchIndex();
+        index.put("post.md", "hello world");
+
+        assertThat(index.search("hello", 10)).isEmpty();
+
+        index.publish();
+
+        assertThat(index.search("hello", 10)).containsExactly("post.md");
+    }
+
+    @Test
+    @DisplayName("re-indexing a file replaces its terms and removing it prunes them")
+    void putAndRemove_replaceAndPruneTerms() {
+        SearchIndex index = new SearchIndex();
+        index.put("post.md", "old words");
+        index.put("kept.md", "kept words");
+        index.publish();
+
+        index.put("post.md", "new words");
+        index.publish();
+
+        assertThat(index.search("old", 10)).isEmpty();
+        assertThat(index.search("new", 10)).containsExactly("post.md");
+
+        index.remove("post.md");
+        // The freed id is reused by the next document without reviving the old one.
+        index.put("fresh.md", "fresh");
+        index.publish();
+
+        assertThat(index.search("new", 10)).isEmpty();
+        assertThat(index.search("words", 10)).containsExactly("kept.md");
+        assertThat(index.search("fresh", 10)).containsExactly("fresh.md");
+    }
+
+    @Test
+    @DisplayName("publishing only the changed terms keeps the others searchable, and a dropped term can come back")
+    void publish_onlyChangedTerms() {
+        SearchIndex index = new SearchIndex();
+        index.put("a.md", "shared alpha");
+        index.put("b.md", "shared beta");
+        index.publish();
+
+        index.remove("a.md");
+        index.publish();
+
+        assertThat(index.search("alpha", 10)).isEmpty();
+        assertThat(index.search("shared", 10)).containsExactly("b.md");
+
+        index.put("c.md", "unrelated");
+        index.publish();
+
+        index.put("a.md", "shared alpha alpha");
+        index.put("d.md", "alpha");
+        index.publish();
+
+        assertThat(index.search("alpha", 10)).containsExactly("d.md", "a.md");
+        assertThat(index.search("shared", 10)).containsExactlyInAnyOrder("a.md", "b.md");
+        assertThat(index.terms("a.md")).isEqualTo(Map.of("shared", 1, "alpha", 2));
+    }
+
+    @Test
+    @DisplayName("term frequencies read from one index rank the same when put into another")
+    void terms_roundTripThroughPutTerms() {
+        SearchIndex source = new SearchIndex();
+        source.put("a.md", "java java streams");
+        source.put("b.md", "java records");
+
+        SearchIndex restored = new SearchIndex();
+        restored.putTerms("a.md", source.terms("a.md"));
+        restored.putTerms("b.md", source.terms("b.md"));
+        source.publish();
+        restored.publish();
+
+        assertThat(source.terms("a.md")).isEqualTo(Map.of("java", 2, "streams", 1));
+        assertThat(source.terms("missing.md")).isEmpty();
+        assertThat(restored.search("java records", 10)).isEqualTo(source.search("java records", 10));
+    }
+}
@@ -0,0 +1,159 @@
+package xyz.mijaljevic.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xyz.mijaljevic.domain.dto.ByteCacheStats;
+import xyz.mijaljevic.domain.entity.StaticFile;
+import xyz.mijaljevic.domain.entity.StaticFileType;
+import xyz.mijaljevic.utils.FileUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the {@link StaticFileCache} byte cache: bodies are served
+ * from direct buffers, reloaded from disk once evicted, kept within the byte
+ * budget, keyed by content hash and dropped together with their static
+ * file.
+ */
+class StaticFileCacheTest {
+    /**
+     * The content hash the bodies are cached under.
+     */
+    private static final String HASH = "hash-1";
+
+    /**
+     * The resident threshold the caches are created with.
+     */
+    private static final long THRESHOLD = 4096L;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("a disabled byte cache holds no bodies and reports no stats")
+    void disabled_holdsNoBodies() throws IOException {
+        StaticFileCache cache = new StaticFileCache(0L, THRESHOLD);
+        Path file = write("a.png", 10);
+
+        cache.putBody(HASH, ByteBuffer.allocate(10));
+
+        assertThat(cache.holdsBodies()).isFalse();
+        assertThat(cache.body(HASH, file)).isNull();
+        assertThat(cache.byteCacheStats()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("a put body is served as is and counted as a hit")
+    void putBody_isServedAsHit() throws IOException {
+        StaticFileCache cache = new StaticFileCache(1024L, THRESHOLD);
+        ByteBuffer body = ByteBuffer.allocateDirect(10);
+
+        cache.putBody(HASH, body);
+
+        assertThat(cache.cachedBody(HASH)).isSameAs(body);
+        assertThat(cache.byteCacheStats()).get()
+                .extracting(ByteCacheStats::hits, ByteCacheStats::misses, ByteCacheStats::bytes)
+                .containsExactly(1L, 0L, 10L);
+    }
+
+    @Test
+    @DisplayName("a missing body is loaded from disk into a direct buffer")
+    void body_miss_loadsFromDisk() throws Exception {
+        StaticFileCache cache = new StaticFileCache(1024L, THRESHOLD);
+        Path file = write("a.png", 100);
+        String hash = FileUtils.hashFile(file.toFile());
+
+        assertThat(cache.cachedBody(hash)).isNull();
+
+        ByteBuffer body = cache.body(hash, file);
+
+        assertThat(body).isNotNull();
+        assertThat(body.isDirect()).isTrue();
+        assertThat(body.isReadOnly()).isTrue();
+        assertThat(body.remaining()).isEqualTo(100);
+        assertThat(cache.cachedBody(hash)).isSameAs(body);
+        assertThat(cache.byteCacheStats()).get()
+                .extracting(ByteCacheStats::hits, ByteCacheStats::misses)
+                .containsExactly(1L, 1L);
+    }
+
+    @Test
+    @DisplayName("a file that no longer has the requested hash is not loaded")
+    void body_miss_changedFile_isNotLoaded() throws IOException {
+        StaticFileCache cache = new StaticFileCache(1024L, THRESHOLD);
+        Path file = write("a.png", 100);
+
+        assertThat(cache.body(HASH, file)).isNull();
+        assertThat(cache.byteCacheStats().orElseThrow().bytes()).isZero();
+    }
+
+    @Test
+    @DisplayName("only files below the resident threshold are held in memory")
+    void isResident_belowThreshold() {
+        StaticFileCache cache = new StaticFileCache(0L, THRESHOLD);
+
+        assertThat(cache.isResident(THRESHOLD - 1)).isTrue();
+        assertThat(cache.isResident(THRESHOLD)).isFalse();
+    }
+
+    @Test
+    @DisplayName("bodies beyond the byte budget are evicted")
+    void putBody_overBudget_evicts() {
+        StaticFileCache cache = new StaticFileCache(1000L, THRESHOLD);
+
+        for (int i = 0; i < 20; i++) {
+            cache.putBody("hash-" + i, ByteBuffer.allocateDirect(100));
+        }
+
+        ByteCacheStats stats = cache.byteCacheStats().orElseThrow();
+
+        assertThat(stats.bytes()).isLessThanOrEqualTo(1000L);
+        assertThat(stats.evictions()).isPositive();
+        assertThat(stats.budget()).isEqualTo(1000L);
+    }
+
+    @Test
+    @DisplayName("removing a static file drops its body")
+    void removeByName_dropsBody() {
+        StaticFileCache cache = new StaticFileCache(1024L, THRESHOLD);
+        cache.put(image(HASH));
+        cache.putBody(HASH, ByteBuffer.allocateDirect(10));
+
+        cache.removeByName("a.png");
+
+        assertThat(cache.byName("a.png")).isNull();
+        assertThat(cache.byteCacheStats().orElseThrow().bytes()).isZero();
+    }
+
+    @Test
+    @DisplayName("publishing a new version of a static file drops the body of the old one only")
+    void put_newHash_dropsOldBody() {
+        StaticFileCache cache = new StaticFileCache(1024L, THRESHOLD);
+        cache.put(image(HASH));
+        cache.putBody(HASH, ByteBuffer.allocateDirect(10));
+        cache.putBody("hash-2", ByteBuffer.allocateDirect(20));
+
+        cache.put(image("hash-2"));
+
+        assertThat(cache.byName("a.png").getHash()).isEqualTo("hash-2");
+        assertThat(cache.byteCacheStats().orElseThrow().bytes()).isEqualTo(20L);
+    }
+
+    private static StaticFile image(final String hash) {
+        StaticFile file = new StaticFile();
+        file.setName("a.png");
+        file.setType(StaticFileType.IMAGE);
+        file.setHash(hash);
+        return file;
+    }
+
+    private Path write(final String name, final int size) throws IOException {
+        return Files.write(dir.resolve(name), new byte[size]);
+    }
+}
@@ -0,0 +1,75 @@
+package xyz.mijaljevic.domain.dto;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assumptions.assumeThat;
+
+class FileStampTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("an untouched file keeps the same stamp")
+    void read_untouchedFile_isStable() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("a.md"), "body", StandardCharsets.UTF_8);
+
+        assertThat(FileStamp.read(file)).isEqualTo(FileStamp.read(file));
+    }
+
+    @Test
+    @DisplayName("a changed size or modified time changes the stamp")
+    void read_changedSizeOrTime_differs() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("a.md"), "body", StandardCharsets.UTF_8);
+        FileStamp before = FileStamp.read(file);
+
+        Files.setLastModifiedTime(file, FileTime.from(Instant.parse("2020-01-01T00:00:00Z")));
+        FileStamp touched = FileStamp.read(file);
+
+        Files.writeString(file, "longer body", StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(file, FileTime.from(Instant.parse("2020-01-01T00:00:00Z")));
+        FileStamp resized = FileStamp.read(file);
+
+        assertThat(touched).isNotEqualTo(before);
+        assertThat(resized).isNotEqualTo(touched);
+        assertThat(resized.size()).isEqualTo(11);
+    }
+
+    @Test
+    @DisplayName("a file replaced by a rename with equal size and time changes the stamp through its file key")
+    void read_replacedByRename_differs() throws Exception {
+        FileTime time = FileTime.from(Instant.parse("2020-01-01T00:00:00Z"));
+        Path file = Files.writeString(tempDir.resolve("a.md"), "body", StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(file, time);
+        FileStamp before = FileStamp.read(file);
+
+        assumeThat(before.fileKey()).as("filesystem file key").isNotNull();
+
+        Path replacement = Files.writeString(tempDir.resolve("a.md.tmp"), "BODY", StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(replacement, time);
+        Files.move(replacement, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        assertThat(FileStamp.read(file)).isNotEqualTo(before);
+    }
+
+    @Test
+    @DisplayName("a stamp matches its stored form, whose file key is kept as a string")
+    void matches_storedStampWithStringFileKey() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("a.md"), "body", StandardCharsets.UTF_8);
+        FileStamp stamp = FileStamp.read(file);
+        String fileKey = stamp.fileKey() == null ? null : stamp.fileKey().toString();
+
+        assertThat(stamp.matches(new FileStamp(stamp.size(), stamp.modifiedNanos(), fileKey))).isTrue();
+        assertThat(stamp.matches(new FileStamp(stamp.size() + 1, stamp.modifiedNanos(), fileKey))).isFalse();
+        assertThat(stamp.matches(new FileStamp(stamp.size(), stamp.modifiedNanos() + 1, fileKey))).isFalse();
+    }
+}
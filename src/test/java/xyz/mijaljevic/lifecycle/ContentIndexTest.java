@@ -0,0 +1,131 @@
+package xyz.mijaljevic.lifecycle;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xyz.mijaljevic.domain.dto.EncodedContent;
+import xyz.mijaljevic.domain.dto.FileStamp;
+import xyz.mijaljevic.domain.dto.StoredBlog;
+import xyz.mijaljevic.domain.entity.Blog;
+import xyz.mijaljevic.domain.entity.StaticFile;
+import xyz.mijaljevic.domain.entity.StaticFileType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ContentIndexTest {
+    @TempDir
+    Path tempDir;
+
+    private static Blog blog(String fileName, LocalDateTime updated, String author) {
+        Blog blog = new Blog();
+        blog.setFileName(fileName);
+        blog.setTitle("Title of " + fileName);
+        blog.setSlug("title-of-" + fileName);
+        blog.setAuthor(author);
+        blog.setTags(List.of("java", "Ćevapi"));
+        blog.setHash("hash-" + fileName);
+        blog.setStamp(new FileStamp(42, 1_700_000_000_123_456_789L, "(dev=803,ino=1234)"));
+        blog.setCreated(LocalDateTime.of(2024, 5, 1, 0, 0));
+        blog.setUpdated(updated);
+        return blog;
+    }
+
+    private static StaticFile image(String name, FileStamp stamp) {
+        StaticFile image = new StaticFile();
+        image.setName(name);
+        image.setHash(stamp == null ? null : "hash-" + name);
+        image.setStamp(stamp);
+        image.setType(StaticFileType.IMAGE);
+        return image;
+    }
+
+    @Test
+    @DisplayName("blogs and images read back exactly as written; unstamped images are skipped")
+    void writeThenRead_roundTrips() throws Exception {
+        Path file = tempDir.resolve("data/content-index.bin");
+        Blog full = blog("a.md", LocalDateTime.of(2024, 6, 2, 0, 0), "Author");
+        Blog sparse = blog("2024/b.md", null, null);
+        FileStamp imageStamp = new FileStamp(7, 8, null);
+        StaticFile icon = image("favicon.ico", imageStamp);
+        icon.setContent(new EncodedContent(new byte[]{1, 2, 3}, new byte[]{4}, null));
+
+        ContentIndex.write(file, List.of(
+                new StoredBlog(full, Map.of("java", 2, "cevapi", 1), "<p>html</p>"),
+                new StoredBlog(sparse, Map.of(), null)
+        ), List.of(image("cover.png", imageStamp), image("loading.png", null), icon));
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        Map<String, Integer> blogs = new HashMap<>();
+        Map<String, StaticFile> images = new HashMap<>();
+        ContentIndex.read(buffer, blogs, images);
+
+        assertThat(blogs).containsOnlyKeys("a.md", "2024/b.md");
+
+        StoredBlog readFull = ContentIndex.readBlog(buffer, blogs.get("a.md"), "a.md", full.getStamp());
+        StoredBlog readSparse = ContentIndex.readBlog(buffer, blogs.get("2024/b.md"), "2024/b.md", sparse.getStamp());
+
+        assertThat(readFull.blog()).isEqualTo(full);
+        assertThat(readFull.terms()).isEqualTo(Map.of("java", 2, "cevapi", 1));
+        assertThat(readFull.html()).isEqualTo("<p>html</p>");
+        assertThat(readSparse.blog()).isEqualTo(sparse);
+        assertThat(readSparse.html()).isNull();
+
+        assertThat(images).containsOnlyKeys("cover.png", "favicon.ico");
+        assertThat(images.get("cover.png").getHash()).isEqualTo("hash-cover.png");
+        assertThat(images.get("cover.png").getStamp()).isEqualTo(imageStamp);
+        assertThat(images.get("cover.png").getContent()).isNull();
+
+        EncodedContent content = images.get("favicon.ico").getContent();
+
+        assertThat(content.identity()).containsExactly(1, 2, 3);
+        assertThat(content.gzip()).containsExactly(4);
+        assertThat(content.brotli()).isNull();
+    }
+
+    @Test
+    @DisplayName("a blog is only taken while its stamp matches and until the blog entries are released")
+    void takeBlog_matchingStampUntilReleased() throws Exception {
+        Path file = tempDir.resolve("content-index.bin");
+        Blog kept = blog("kept.md", null, "Author");
+        Blog changed = blog("changed.md", null, "Author");
+        Blog deleted = blog("deleted.md", null, "Author");
+
+        ContentIndex.write(file, List.of(
+                new StoredBlog(kept, Map.of("java", 1), null),
+                new StoredBlog(changed, Map.of(), null),
+                new StoredBlog(deleted, Map.of(), null)
+        ), List.of());
+
+        ContentIndex index = new ContentIndex(file.toString(), null, null, null, null);
+        index.load();
+
+        FileStamp newer = new FileStamp(43, changed.getStamp().modifiedNanos(), changed.getStamp().fileKey());
+
+        assertThat(index.takeBlog("kept.md", kept.getStamp()).blog()).isEqualTo(kept);
+        assertThat(index.takeBlog("kept.md", kept.getStamp())).isNull();
+        assertThat(index.takeBlog("changed.md", newer)).isNull();
+
+        index.releaseBlogs();
+
+        assertThat(index.takeBlog("deleted.md", deleted.getStamp())).isNull();
+    }
+
+    @Test
+    @DisplayName("a file that is not a content index is rejected")
+    void read_foreignFile_isRejected() {
+        ByteBuffer buffer = ByteBuffer.wrap("humans=1".getBytes());
+
+        assertThatThrownBy(() -> ContentIndex.read(buffer, new HashMap<>(), new HashMap<>()))
+                .isInstanceOf(IOException.class);
+    }
+}
@@ -6,6 +6,7 @@ import jakarta.inject.Inject;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import xyz.mijaljevic.cache.BlogCache;
+import xyz.mijaljevic.domain.dto.ContentSnapshot;
 import xyz.mijaljevic.domain.entity.Blog;
 import xyz.mijaljevic.test.BlogsDirectoryTestResource;
 
@@ -30,6 +31,12 @@ class BlogSchedulerReconcileTest {
     @Inject
     BlogCache blogCache;
 
+    /**
+     * The scheduler, rescanned directly to check a pass that finds nothing.
+     */
+    @Inject
+    BlogScheduler blogScheduler;
+
     @Test
     @DisplayName("Startup reconcile indexes every seeded blog by slug")
     void startupReconcile_indexesSeededBlogsBySlug() {
@@ -100,4 +107,14 @@ class BlogSchedulerReconcileTest {
         assertThat(byFile).isNotNull();
         assertThat(byFile.getSlug()).isEqualTo(BlogsDirectoryTestResource.BETA_SLUG);
     }
+
+    @Test
+    @DisplayName("A rescan that finds no changed file keeps the published snapshot and its ETag")
+    void rescan_withoutChanges_keepsSnapshot() {
+        ContentSnapshot before = blogCache.snapshot();
+
+        blogScheduler.rescan();
+
+        assertThat(blogCache.snapshot()).isSameAs(before);
+    }
 }
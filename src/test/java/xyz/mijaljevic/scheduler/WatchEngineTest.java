@@ -0,0 +1,280 @@
+package xyz.mijaljevic.scheduler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xyz.mijaljevic.domain.dto.FileChange;
+import xyz.mijaljevic.domain.entity.FileChangeType;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WatchEngineTest {
+    @TempDir
+    Path tempDir;
+
+    private final RecordingHandler handler = new RecordingHandler();
+
+    private WatchEngine engine;
+
+    @AfterEach
+    void closeEngine() {
+        if (engine != null) {
+            engine.close();
+        }
+    }
+
+    private WatchEngine.Registration watch(int maxDirectories, int queueCapacity) throws Exception {
+        engine = new WatchEngine(Duration.ofMillis(100), maxDirectories, queueCapacity);
+        return engine.watch("TEST", tempDir, handler);
+    }
+
+    private void start() throws Exception {
+        watch(16, 16).start();
+    }
+
+    @Test
+    @DisplayName("A burst of writes to one file is delivered as a single change")
+    void burstOfWrites_isCoalescedPerFile() throws Exception {
+        start();
+
+        Path file = tempDir.resolve("post.md");
+
+        for (int i = 0; i < 5; i++) {
+            Files.writeString(file, "version " + i);
+        }
+
+        assertThat(handler.nextBatch()).containsExactly(
+                new FileChange("post.md", file, FileChangeType.MODIFIED)
+        );
+    }
+
+    @Test
+    @DisplayName("A file deleted last is reported as deleted")
+    void deletedFile_isReportedAsDeleted() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("image.png"), "png");
+
+        start();
+
+        Files.delete(file);
+
+        assertThat(handler.nextBatch()).containsExactly(
+                new FileChange("image.png", file, FileChangeType.DELETED)
+        );
+    }
+
+    @Test
+    @DisplayName("Changes made before start() are delivered once the registration starts")
+    void changesBeforeStart_areDeliveredAfterStart() throws Exception {
+        WatchEngine.Registration registration = watch(16, 16);
+
+        Files.writeString(tempDir.resolve("early.md"), "# Early");
+
+        assertThat(handler.batches.poll(300, TimeUnit.MILLISECONDS)).isNull();
+
+        registration.start();
+
+        assertThat(handler.nextBatch()).extracting(FileChange::name).containsExactly("early.md");
+    }
+
+    @Test
+    @DisplayName("A handler that throws keeps receiving later changes")
+    void failingHandler_keepsReceivingChanges() throws Exception {
+        handler.failOn = "first.md";
+        start();
+
+        Files.writeString(tempDir.resolve("first.md"), "# First");
+        assertThat(handler.nextBatch()).extracting(FileChange::name).containsExactly("first.md");
+
+        Files.writeString(tempDir.resolve("second.md"), "# Second");
+        assertThat(handler.nextBatch()).extracting(FileChange::name).containsExactly("second.md");
+    }
+
+    @Test
+    @DisplayName("A file in a subdirectory is reported by its path relative to the content directory")
+    void nestedFile_isReportedByRelativeName() throws Exception {
+        Files.createDirectories(tempDir.resolve("2024/01"));
+
+        start();
+
+        Files.writeString(tempDir.resolve("2024/01/post.md"), "# Nested");
+
+        assertThat(handler.nextBatch()).containsExactly(new FileChange(
+                "2024/01/post.md",
+                tempDir.resolve("2024/01/post.md"),
+                FileChangeType.MODIFIED
+        ));
+    }
+
+    @Test
+    @DisplayName("A directory moved in with files is watched and its files reported")
+    void movedInDirectory_isWatchedAndItsFilesReported() throws Exception {
+        start();
+
+        // Built aside and moved in, so its files exist before it is watched.
+        Path staged = Files.createDirectories(tempDir.resolveSibling(tempDir.getFileName() + "-staged"));
+        Files.writeString(staged.resolve("moved.md"), "# Moved");
+        Files.move(staged, tempDir.resolve("2025"));
+
+        assertThat(handler.nextBatch()).extracting(FileChange::name).contains("2025/moved.md");
+
+        Files.writeString(tempDir.resolve("2025/later.md"), "# Later");
+
+        assertThat(handler.nextBatch()).extracting(FileChange::name).contains("2025/later.md");
+    }
+
+    @Test
+    @DisplayName("A deleted subdirectory asks the handler to rescan")
+    void deletedDirectory_rescans() throws Exception {
+        Path year = Files.createDirectories(tempDir.resolve("2023"));
+        Files.writeString(year.resolve("old.md"), "# Old");
+
+        start();
+
+        Files.delete(year.resolve("old.md"));
+        Files.delete(year);
+
+        assertThat(handler.rescans.await(15, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Directories past the maximum are not watched")
+    void maxDirectories_boundsWatchedDirectories() throws Exception {
+        Files.createDirectories(tempDir.resolve("a"));
+        Files.createDirectories(tempDir.resolve("b"));
+
+        // The content directory itself counts, so only one of a and b fits.
+        watch(2, 16).start();
+
+        Files.writeString(tempDir.resolve("a/post.md"), "# A");
+        Files.writeString(tempDir.resolve("b/post.md"), "# B");
+        Files.writeString(tempDir.resolve("top.md"), "# Top");
+
+        assertThat(handler.nextBatch())
+                .extracting(FileChange::name)
+                .contains("top.md")
+                .filteredOn(name -> name.contains("/"))
+                .hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Every content directory on one engine gets its own changes")
+    void twoDirectories_dispatchToTheirOwnHandlers() throws Exception {
+        Path blogs = Files.createDirectories(tempDir.resolve("blogs"));
+        Path images = Files.createDirectories(tempDir.resolve("images"));
+        RecordingHandler blogHandler = new RecordingHandler();
+        RecordingHandler imageHandler = new RecordingHandler();
+
+        engine = new WatchEngine(Duration.ofMillis(100), 16, 16);
+        engine.watch("BLOG", blogs, blogHandler).start();
+        engine.watch("IMAGE", images, imageHandler).start();
+
+        Files.writeString(blogs.resolve("post.md"), "# Post");
+        Files.writeString(images.resolve("cover.png"), "png");
+
+        assertThat(blogHandler.nextBatch()).extracting(FileChange::name).containsExactly("post.md");
+        assertThat(imageHandler.nextBatch()).extracting(FileChange::name).containsExactly("cover.png");
+    }
+
+    @Test
+    @DisplayName("Batches piling up behind a slow handler collapse into a rescan")
+    void fullQueue_collapsesIntoRescan() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        handler.blockOn = release;
+        watch(16, 1).start();
+
+        // The first batch blocks the handler, the second fills the queue and
+        // the third overflows it.
+        for (int i = 0; i < 3; i++) {
+            Files.writeString(tempDir.resolve("post-" + i + ".md"), "# Post " + i);
+            Thread.sleep(400);
+        }
+
+        release.countDown();
+
+        assertThat(handler.rescans.await(15, TimeUnit.SECONDS)).isTrue();
+        assertThat(handler.nextBatch()).extracting(FileChange::name).containsExactly("post-0.md");
+        assertThat(handler.batches).isEmpty();
+    }
+
+    @Test
+    @DisplayName("close waits for the batches already queued for a handler")
+    void close_appliesQueuedBatches() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        handler.blockOn = release;
+        start();
+
+        Files.writeString(tempDir.resolve("first.md"), "# First");
+        assertThat(handler.nextBatch()).extracting(FileChange::name).containsExactly("first.md");
+
+        Files.writeString(tempDir.resolve("second.md"), "# Second");
+        Thread.sleep(400);
+
+        Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            release.countDown();
+        });
+
+        engine.close();
+
+        assertThat(handler.batches.poll()).extracting(FileChange::name).containsExactly("second.md");
+    }
+
+    /**
+     * Records the batches and rescans it is handed.
+     */
+    private static final class RecordingHandler implements ContentHandler {
+        private final BlockingQueue<List<FileChange>> batches = new LinkedBlockingQueue<>();
+
+        private final CountDownLatch rescans = new CountDownLatch(1);
+
+        private volatile String failOn;
+
+        private volatile CountDownLatch blockOn;
+
+        @Override
+        public void apply(List<FileChange> changes) {
+            batches.add(changes);
+
+            CountDownLatch latch = blockOn;
+
+            if (latch != null) {
+                blockOn = null;
+
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            if (changes.stream().anyMatch(change -> change.name().equals(failOn))) {
+                throw new IllegalStateException("boom");
+            }
+        }
+
+        @Override
+        public void rescan() {
+            rescans.countDown();
+        }
+
+        List<FileChange> nextBatch() throws InterruptedException {
+            // Generous, as some platforms poll for changes instead of being notified.
+            return batches.poll(15, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package xyz.mijaljevic.test;
+
+import io.quarkus.test.common.QuarkusTestResourceLifecycleManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Seeds a throwaway images directory with known image files <b>before</b> the
+ * Quarkus application starts and points {@code application.images-directory}
+ * at it, so the static file server integration tests serve deterministic
+ * bodies. The resident threshold is pinned so one image lands on each side
+ * of it.
+ */
+public final class ImagesDirectoryTestResource implements QuarkusTestResourceLifecycleManager {
+    /**
+     * Name of the image held in a heap buffer.
+     */
+    public static final String SMALL_IMAGE = "small.png";
+
+    /**
+     * Name of the image that is served from its file.
+     */
+    public static final String LARGE_IMAGE = "large.jpg";
+
+    /**
+     * Name of the compressible icon.
+     */
+    public static final String ICON = "favicon.ico";
+
+    /**
+     * An image in a subdirectory, addressed by its relative path.
+     */
+    public static final String NESTED_IMAGE = "2024/nested.png";
+
+    /**
+     * An image served from its file that a test rewrites in place.
+     */
+    public static final String REWRITTEN_IMAGE = "rewritten.jpg";
+
+    /**
+     * The resident threshold in bytes the application is started with.
+     */
+    public static final int RESIDENT_THRESHOLD = 4096;
+
+    /**
+     * The temporary images directory created in {@link #start()}.
+     */
+    private Path imagesDir;
+
+    @Override
+    public Map<String, String> start() {
+        try {
+            imagesDir = Files.createTempDirectory("website-test-images");
+
+            Files.write(imagesDir.resolve(SMALL_IMAGE), bytes(SMALL_IMAGE));
+            Files.write(imagesDir.resolve(LARGE_IMAGE), bytes(LARGE_IMAGE));
+            Files.write(imagesDir.resolve(ICON), bytes(ICON));
+            Files.write(imagesDir.resolve(REWRITTEN_IMAGE), bytes(REWRITTEN_IMAGE));
+            Files.createDirectories(imagesDir.resolve(NESTED_IMAGE).getParent());
+            Files.write(imagesDir.resolve(NESTED_IMAGE), bytes(NESTED_IMAGE));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to seed test images directory", e);
+        }
+
+        return Map.of(
+                "application.images-directory", imagesDir.toString(),
+                "application.static.resident-threshold", String.valueOf(RESIDENT_THRESHOLD)
+        );
+    }
+
+    @Override
+    public void stop() {
+        if (imagesDir == null) {
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(imagesDir)) {
+            paths.sorted(Comparator.reverseOrder())
+                    .forEach(path -> {
+                        try {
+                            Files.deleteIfExists(path);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException("Failed to delete " + path, e);
+                        }
+                    });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to clean up test images directory", e);
+        }
+    }
+
+    /**
+     * Returns the deterministic content of a seeded image: a few hundred bytes
+     * for the small image and the icon, several times the resident threshold
+     * for the large images.
+     *
+     * @param name The seeded image name.
+     * @return The image bytes.
+     */
+    public static byte[] bytes(final String name) {
+        final int size = LARGE_IMAGE.equals(name) || REWRITTEN_IMAGE.equals(name)
+                ? RESIDENT_THRESHOLD * 5 + 17
+                : 600;
+        final byte[] data = new byte[size];
+
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i % 251 + name.length());
+        }
+
+        return data;
+    }
+}
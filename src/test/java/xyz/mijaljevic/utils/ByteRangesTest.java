@@ -0,0 +1,121 @@
+package xyz.mijaljevic.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xyz.mijaljevic.domain.dto.ByteRange;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ByteRangesTest {
+    /**
+     * {@code Sun, 06 Nov 1994 08:49:37 GMT} in epoch seconds.
+     */
+    private static final long DATE = 784111777L;
+
+    /**
+     * The representation the multipart tests take their ranges of.
+     */
+    private static final byte[] BODY = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    @DisplayName("parse resolves closed, open and suffix ranges, clamped to the length")
+    void parse_rangeForms() {
+        assertThat(ByteRanges.parse("bytes=0-499", 1000)).containsExactly(new ByteRange(0, 499));
+        assertThat(ByteRanges.parse("bytes=500-", 1000)).containsExactly(new ByteRange(500, 999));
+        assertThat(ByteRanges.parse("bytes=-200", 1000)).containsExactly(new ByteRange(800, 999));
+        assertThat(ByteRanges.parse("bytes=-5000", 1000)).containsExactly(new ByteRange(0, 999));
+        assertThat(ByteRanges.parse("bytes=900-5000", 1000)).containsExactly(new ByteRange(900, 999));
+        assertThat(ByteRanges.parse("Bytes= 0-0 ,", 1000)).containsExactly(new ByteRange(0, 0));
+    }
+
+    @Test
+    @DisplayName("parse sorts ranges and coalesces overlapping and adjacent ones")
+    void parse_coalesces() {
+        assertThat(ByteRanges.parse("bytes=500-599, 0-99, 50-149, 150-199", 1000))
+                .containsExactly(new ByteRange(0, 199), new ByteRange(500, 599));
+    }
+
+    @Test
+    @DisplayName("parse drops unsatisfiable ranges and yields an empty list when none is left")
+    void parse_unsatisfiable() {
+        assertThat(ByteRanges.parse("bytes=1000-1100, 0-9", 1000)).containsExactly(new ByteRange(0, 9));
+        assertThat(ByteRanges.parse("bytes=1000-", 1000)).isEmpty();
+        assertThat(ByteRanges.parse("bytes=-0", 1000)).isEmpty();
+        assertThat(ByteRanges.parse("bytes=0-", 0)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("parse ignores other units, malformed ranges and too many ranges")
+    void parse_ignored() {
+        assertThat(ByteRanges.parse("items=0-9", 1000)).isNull();
+        assertThat(ByteRanges.parse("bytes=", 1000)).isNull();
+        assertThat(ByteRanges.parse("bytes=9-0", 1000)).isNull();
+        assertThat(ByteRanges.parse("bytes=a-9", 1000)).isNull();
+        assertThat(ByteRanges.parse("bytes=-", 1000)).isNull();
+        assertThat(ByteRanges.parse("bytes=" + "0-0,".repeat(ByteRanges.MAX_RANGES + 1), 1000)).isNull();
+    }
+
+    @Test
+    @DisplayName("If-Range holds for the strong ETag or the exact Last-Modified only")
+    void ifRangeHolds() {
+        assertThat(ByteRanges.ifRangeHolds(null, "abc", DATE)).isTrue();
+        assertThat(ByteRanges.ifRangeHolds("\"abc\"", "abc", DATE)).isTrue();
+        assertThat(ByteRanges.ifRangeHolds("W/\"abc\"", "abc", DATE)).isFalse();
+        assertThat(ByteRanges.ifRangeHolds("\"stale\"", "abc", DATE)).isFalse();
+        assertThat(ByteRanges.ifRangeHolds("Sun, 06 Nov 1994 08:49:37 GMT", "abc", DATE)).isTrue();
+        assertThat(ByteRanges.ifRangeHolds("Sun, 06 Nov 1994 08:49:36 GMT", "abc", DATE)).isFalse();
+        assertThat(ByteRanges.ifRangeHolds("yesterday", "abc", DATE)).isFalse();
+    }
+
+    @Test
+    @DisplayName("multipart assembles the parts of a resident body without repositioning it")
+    void multipart_fromBuffer() {
+        final ByteBuffer body = ByteBuffer.wrap(BODY);
+
+        final ByteBuffer multipart = ByteRanges.multipart(
+                body,
+                ByteRanges.parse("bytes=0-1,-3", BODY.length),
+                "image/png",
+                "B"
+        );
+
+        assertThat(body.position()).isZero();
+        assertThat(StandardCharsets.US_ASCII.decode(multipart).toString()).isEqualTo(expectedMultipart());
+    }
+
+    @Test
+    @DisplayName("multipart reads the parts of a file by positional reads")
+    void multipart_fromChannel(@TempDir final Path directory) throws IOException {
+        final Path file = Files.write(directory.resolve("image.png"), BODY);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer multipart = ByteRanges.multipart(
+                    channel,
+                    ByteRanges.parse("bytes=0-1,-3", BODY.length),
+                    "image/png",
+                    "B"
+            );
+
+            assertThat(StandardCharsets.US_ASCII.decode(multipart).toString()).isEqualTo(expectedMultipart());
+        }
+    }
+
+    /**
+     * @return The multipart body of the ranges {@code 0-1} and {@code -3} of
+     * {@link #BODY} with the boundary {@code B}.
+     */
+    private static String expectedMultipart() {
+        return "\r\n--B\r\nContent-Type: image/png\r\nContent-Range: bytes 0-1/20\r\n\r\n01"
+                + "\r\n--B\r\nContent-Type: image/png\r\nContent-Range: bytes 17-19/20\r\n\r\nhij"
+                + "\r\n--B--\r\n";
+    }
+}
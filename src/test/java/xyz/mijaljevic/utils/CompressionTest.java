@@ -0,0 +1,85 @@
+package xyz.mijaljevic.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import xyz.mijaljevic.domain.dto.EncodedContent;
+import xyz.mijaljevic.domain.entity.ContentEncoding;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatNullPointerException;
+
+class CompressionTest {
+    private static final byte[] BODY = "<p>compressible</p>".repeat(200).getBytes(StandardCharsets.UTF_8);
+
+    private static final EncodedContent BOTH = new EncodedContent(BODY, new byte[1], new byte[1]);
+
+    private static final EncodedContent GZIP_ONLY = new EncodedContent(BODY, new byte[1], null);
+
+    @Test
+    @DisplayName("encode builds a gzip variant that round-trips to the original body")
+    void encode_gzipRoundTrips() throws IOException {
+        EncodedContent content = Compression.encode(BODY);
+
+        assertThat(content.identity()).isSameAs(BODY);
+        assertThat(content.gzip()).isNotNull().hasSizeLessThan(BODY.length);
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(content.gzip()))) {
+            assertThat(in.readAllBytes()).isEqualTo(BODY);
+        }
+    }
+
+    @Test
+    @DisplayName("encode leaves out variants that are not smaller than the body")
+    void encode_tinyBody_keepsIdentityOnly() {
+        EncodedContent content = Compression.encode(new byte[]{'a'});
+
+        assertThat(content.gzip()).isNull();
+        assertThat(content.brotli()).isNull();
+        assertThat(content.variant(ContentEncoding.IDENTITY)).containsExactly('a');
+    }
+
+    @Test
+    @DisplayName("encode rejects a null body")
+    void encode_null_throws() {
+        assertThatNullPointerException().isThrownBy(() -> Compression.encode(null));
+    }
+
+    @Test
+    @DisplayName("negotiate prefers brotli on a quality tie and identity without a header")
+    void negotiate_prefersBrotli() {
+        assertThat(Compression.negotiate("gzip, deflate, br", BOTH)).isEqualTo(ContentEncoding.BROTLI);
+        assertThat(Compression.negotiate(null, BOTH)).isEqualTo(ContentEncoding.IDENTITY);
+        assertThat(Compression.negotiate(" ", BOTH)).isEqualTo(ContentEncoding.IDENTITY);
+    }
+
+    @Test
+    @DisplayName("negotiate honours quality values, including q=0 and the wildcard")
+    void negotiate_honoursQualityValues() {
+        assertThat(Compression.negotiate("br;q=0.5, gzip;q=0.8", BOTH)).isEqualTo(ContentEncoding.GZIP);
+        assertThat(Compression.negotiate("br;q=0, gzip;q=0", BOTH)).isEqualTo(ContentEncoding.IDENTITY);
+        assertThat(Compression.negotiate("*", BOTH)).isEqualTo(ContentEncoding.BROTLI);
+        assertThat(Compression.negotiate("br;q=0, *", BOTH)).isEqualTo(ContentEncoding.GZIP);
+        assertThat(Compression.negotiate("gzip;q=abc", BOTH)).isEqualTo(ContentEncoding.IDENTITY);
+    }
+
+    @Test
+    @DisplayName("negotiate only picks variants the content holds")
+    void negotiate_missingVariant_fallsBack() {
+        assertThat(Compression.negotiate("br", GZIP_ONLY)).isEqualTo(ContentEncoding.IDENTITY);
+        assertThat(Compression.negotiate("br, gzip;q=0.1", GZIP_ONLY)).isEqualTo(ContentEncoding.GZIP);
+    }
+
+    @Test
+    @DisplayName("isCompressible accepts text formats and icons, rejects compressed images")
+    void isCompressible_byExtension() {
+        assertThat(Compression.isCompressible("style.min.css")).isTrue();
+        assertThat(Compression.isCompressible("favicon.ICO")).isTrue();
+        assertThat(Compression.isCompressible("photo.jpg")).isFalse();
+        assertThat(Compression.isCompressible("README")).isFalse();
+    }
+}
@@ -0,0 +1,77 @@
+package xyz.mijaljevic.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import xyz.mijaljevic.Website;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for {@link FileUtils#hashFile(File)}: the streaming hasher
+ * against the previous read-everything-then-{@code BigInteger} approach
+ * ({@code baseline}), from 1 KB to 20 MB files. Run with the GC profiler to
+ * compare allocation rates as well:
+ * {@code mvn -Pbench test -Dbench.include="FileUtilsBenchmark -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileUtilsBenchmark {
+    @Param({"1024", "65536", "1048576", "20971520"})
+    int size;
+
+    private Path path;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+
+        path = Files.createTempFile("hash-benchmark", ".bin");
+        Files.write(path, data);
+        file = path.toFile();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Benchmark
+    public String streaming() throws IOException, NoSuchAlgorithmException {
+        return FileUtils.hashFile(file);
+    }
+
+    @Benchmark
+    public String baseline() throws IOException, NoSuchAlgorithmException {
+        byte[] data = Files.readAllBytes(file.toPath());
+
+        byte[] hash = MessageDigest.getInstance(Website.HASH_ALGORITHM).digest(data);
+
+        return new BigInteger(1, hash).toString(16);
+    }
+}
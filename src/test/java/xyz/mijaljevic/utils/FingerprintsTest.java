@@ -0,0 +1,33 @@
+package xyz.mijaljevic.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FingerprintsTest {
+    /**
+     * A SHA-256 content hash in hex.
+     */
+    private static final String HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    @Test
+    @DisplayName("of keeps a fixed length prefix of the content hash")
+    void of_prefixOfHash() {
+        assertThat(Fingerprints.of(HASH)).isEqualTo("9f86d081884c7d65").matches(Fingerprints.PATTERN);
+    }
+
+    @Test
+    @DisplayName("insert places the fingerprint after the base name, before every extension")
+    void insert_afterBaseName() {
+        assertThat(Fingerprints.insert("style.min.css", HASH)).isEqualTo("style.9f86d081884c7d65.min.css");
+        assertThat(Fingerprints.insert("favicon.ico", HASH)).isEqualTo("favicon.9f86d081884c7d65.ico");
+    }
+
+    @Test
+    @DisplayName("insert leaves the directories of a name untouched")
+    void insert_keepsDirectories() {
+        assertThat(Fingerprints.insert("2024/cover.png", HASH)).isEqualTo("2024/cover.9f86d081884c7d65.png");
+        assertThat(Fingerprints.insert("v1.2/readme", HASH)).isEqualTo("v1.2/readme.9f86d081884c7d65");
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import xyz.mijaljevic.domain.dto.BlogMetadata;
+import xyz.mijaljevic.domain.dto.ParsedMarkdown;
 
 import java.io.File;
 import java.nio.charset.StandardCharsets;
@@ -180,6 +181,85 @@ class MarkdownParserTest {
         assertThat(MarkdownParser.getTitleFromFile(file)).isEqualTo("Heading Title");
     }
 
+    @Test
+    @DisplayName("parse reads the metadata, title and body from one string")
+    void parse_readsMetadataTitleAndBody() {
+        ParsedMarkdown parsed = MarkdownParser.parse("""
+                ---
+                Title: Best blog ever
+                Author: Donald Trump
+                Date: 27-Jan-2026
+                ---
+                # Heading Title
+
+                Body paragraph.
+                """);
+
+        assertThat(parsed.metadata().author()).isEqualTo("Donald Trump");
+        assertThat(parsed.metadata().date()).isEqualTo(LocalDate.of(2026, 1, 27));
+        // The front-matter title wins over the heading.
+        assertThat(parsed.title()).isEqualTo("Best blog ever");
+
+        String html = MarkdownParser.render(parsed.document());
+
+        assertThat(html).contains("class=\"page-title\"");
+        assertThat(html).contains("Body paragraph.");
+        assertThat(html).doesNotContain("Donald Trump");
+    }
+
+    @Test
+    @DisplayName("parse falls back to the first heading when the metadata has no title")
+    void parse_noMetadataTitle_usesHeading() {
+        ParsedMarkdown parsed = MarkdownParser.parse("""
+                # Hello World
+
+                Body paragraph.
+                """);
+
+        assertThat(parsed.metadata()).isEqualTo(BlogMetadata.EMPTY);
+        assertThat(parsed.title()).isEqualTo("Hello World");
+    }
+
+    @Test
+    @DisplayName("parse renders the same HTML as renderMarkdownToHtml")
+    void parse_rendersSameHtmlAsFile() throws Exception {
+        String content = """
+                ---
+                Title: Same
+                ---
+                # Same
+
+                Some text with a [link](https://example.com).
+                """;
+        File file = writeMarkdown(content);
+
+        assertThat(MarkdownParser.render(MarkdownParser.parse(content).document()))
+                .isEqualTo(MarkdownParser.renderMarkdownToHtml(file));
+    }
+
+    @Test
+    @DisplayName("plainText keeps the text and code of a document without its markup or metadata")
+    void plainText_keepsTextAndCodeWithoutMarkup() {
+        String content = """
+                ---
+                Title: Hidden
+                ---
+                # Heading
+
+                Some **bold** text with a [link](https://example.com) and `inline`.
+
+                ```java
+                int answer;
+                ```
+                """;
+
+        String text = MarkdownParser.plainText(MarkdownParser.parse(content).document());
+
+        assertThat(text)
+                .contains("Heading", "bold", "link", "inline", "int answer;")
+                .doesNotContain("Hidden", "**", "https://example.com", "```");
+    }
+
     @Test
     @DisplayName("parseMetadata rejects a null file")
     void parseMetadata_null_throwsNpe() {
@@ -0,0 +1,81 @@
+package xyz.mijaljevic.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import xyz.mijaljevic.domain.entity.PreconditionResult;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for the 304 path of {@link Preconditions#evaluate}: a browser
+ * revalidating with its quoted ETag, a feed reader sending an entity-tag list
+ * with weak tags, and a client revalidating by date only, which parses both
+ * the request and the resource dates. {@code baseline} is the previous exact
+ * string comparison. Run with the GC profiler to confirm the path does not
+ * allocate: {@code mvn -Pbench test -Dbench.include="PreconditionsBenchmark -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreconditionsBenchmark {
+    private final String etag = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    private final String ifNoneMatch = '"' + etag + '"';
+
+    private final String ifNoneMatchList = "W/\"0123456789abcdef\", \"fedcba9876543210\", W/\"" + etag + '"';
+
+    private final String lastModified = "Tue, 20 Sep 2022 08:49:37 GMT";
+
+    private final String ifModifiedSince = "Tue, 20 Sep 2022 08:49:37 GMT";
+
+    @Benchmark
+    public PreconditionResult ifNoneMatch() {
+        return Preconditions.evaluate(
+                null,
+                Preconditions.NO_DATE,
+                ifNoneMatch,
+                Preconditions.parseHttpDate(ifModifiedSince),
+                etag,
+                Preconditions.parseHttpDate(lastModified)
+        );
+    }
+
+    @Benchmark
+    public PreconditionResult ifNoneMatchList() {
+        return Preconditions.evaluate(
+                null,
+                Preconditions.NO_DATE,
+                ifNoneMatchList,
+                Preconditions.NO_DATE,
+                etag,
+                Preconditions.parseHttpDate(lastModified)
+        );
+    }
+
+    @Benchmark
+    public PreconditionResult ifModifiedSince() {
+        return Preconditions.evaluate(
+                null,
+                Preconditions.NO_DATE,
+                null,
+                Preconditions.parseHttpDate(ifModifiedSince),
+                etag,
+                Preconditions.parseHttpDate(lastModified)
+        );
+    }
+
+    @Benchmark
+    public boolean baseline() {
+        return ifNoneMatch.equals(etag) || ifModifiedSince.equals(lastModified);
+    }
+}
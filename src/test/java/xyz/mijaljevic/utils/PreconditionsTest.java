@@ -0,0 +1,124 @@
+package xyz.mijaljevic.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import xyz.mijaljevic.domain.entity.PreconditionResult;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PreconditionsTest {
+    /**
+     * The opaque entity tag of the resource under test.
+     */
+    private static final String ETAG = "abc123";
+
+    /**
+     * {@code Sun, 06 Nov 1994 08:49:37 GMT} in epoch seconds.
+     */
+    private static final long DATE = ZonedDateTime.of(1994, 11, 6, 8, 49, 37, 0, ZoneOffset.UTC).toEpochSecond();
+
+    @Test
+    @DisplayName("matches finds a quoted tag anywhere in a list, with or without whitespace")
+    void matches_list() {
+        assertThat(Preconditions.matches("\"abc123\"", ETAG, true)).isTrue();
+        assertThat(Preconditions.matches("\"x\", \"abc123\"", ETAG, true)).isTrue();
+        assertThat(Preconditions.matches("\"x\",\"abc123\" ,\"y\"", ETAG, true)).isTrue();
+        assertThat(Preconditions.matches("\"x\", \"abc1234\", \"abc12\"", ETAG, true)).isFalse();
+    }
+
+    @Test
+    @DisplayName("matches accepts weak tags only under the weak comparison")
+    void matches_weakTags() {
+        assertThat(Preconditions.matches("W/\"abc123\"", ETAG, true)).isTrue();
+        assertThat(Preconditions.matches("W/\"abc123\"", ETAG, false)).isFalse();
+        assertThat(Preconditions.matches("W/\"abc123\", \"abc123\"", ETAG, false)).isTrue();
+    }
+
+    @Test
+    @DisplayName("matches treats * as matching any current representation")
+    void matches_wildcard() {
+        assertThat(Preconditions.matches("*", ETAG, true)).isTrue();
+        assertThat(Preconditions.matches(" * ", ETAG, false)).isTrue();
+    }
+
+    @Test
+    @DisplayName("matches still accepts the bare tags sent before ETags were quoted")
+    void matches_unquotedLegacyTag() {
+        assertThat(Preconditions.matches("abc123", ETAG, true)).isTrue();
+        assertThat(Preconditions.matches("x, abc123 ", ETAG, true)).isTrue();
+    }
+
+    @Test
+    @DisplayName("matches rejects an unterminated quoted tag")
+    void matches_unterminatedTag() {
+        assertThat(Preconditions.matches("\"abc123", ETAG, true)).isFalse();
+    }
+
+    @Test
+    @DisplayName("parseHttpDate reads the IMF-fixdate and both obsolete formats")
+    void parseHttpDate_allFormats() {
+        assertThat(Preconditions.parseHttpDate("Sun, 06 Nov 1994 08:49:37 GMT")).isEqualTo(DATE);
+        assertThat(Preconditions.parseHttpDate("Sunday, 06-Nov-94 08:49:37 GMT")).isEqualTo(DATE);
+        assertThat(Preconditions.parseHttpDate("Sun Nov  6 08:49:37 1994")).isEqualTo(DATE);
+    }
+
+    @Test
+    @DisplayName("parseHttpDate yields NO_DATE for absent and invalid dates")
+    void parseHttpDate_invalid() {
+        assertThat(Preconditions.parseHttpDate(null)).isEqualTo(Preconditions.NO_DATE);
+        assertThat(Preconditions.parseHttpDate("yesterday")).isEqualTo(Preconditions.NO_DATE);
+        assertThat(Preconditions.parseHttpDate("Sun, 31 Feb 1994 08:49:37 GMT")).isEqualTo(Preconditions.NO_DATE);
+        assertThat(Preconditions.parseHttpDate("Sun, 06 Nov 1994 08:49:37 UTC")).isEqualTo(Preconditions.NO_DATE);
+    }
+
+    @Test
+    @DisplayName("If-None-Match takes precedence over If-Modified-Since")
+    void evaluate_ifNoneMatchWins() {
+        assertThat(evaluate(null, "\"stale\"", DATE + 60, DATE)).isEqualTo(PreconditionResult.PASSED);
+        assertThat(evaluate(null, "\"abc123\"", DATE - 60, DATE)).isEqualTo(PreconditionResult.NOT_MODIFIED);
+    }
+
+    @Test
+    @DisplayName("If-Modified-Since compares dates: not modified unless the resource is newer")
+    void evaluate_ifModifiedSinceOrdering() {
+        assertThat(evaluate(null, null, DATE, DATE)).isEqualTo(PreconditionResult.NOT_MODIFIED);
+        assertThat(evaluate(null, null, DATE + 60, DATE)).isEqualTo(PreconditionResult.NOT_MODIFIED);
+        assertThat(evaluate(null, null, DATE - 60, DATE)).isEqualTo(PreconditionResult.PASSED);
+        assertThat(evaluate(null, null, Preconditions.NO_DATE, DATE)).isEqualTo(PreconditionResult.PASSED);
+    }
+
+    @Test
+    @DisplayName("A non-matching If-Match fails, and it overrides If-Unmodified-Since")
+    void evaluate_ifMatch() {
+        assertThat(evaluate("\"stale\"", null, Preconditions.NO_DATE, DATE)).isEqualTo(PreconditionResult.FAILED);
+        assertThat(evaluate("W/\"abc123\"", null, Preconditions.NO_DATE, DATE))
+                .isEqualTo(PreconditionResult.FAILED);
+        assertThat(Preconditions.evaluate("\"abc123\"", DATE - 60, null, Preconditions.NO_DATE, ETAG, DATE))
+                .isEqualTo(PreconditionResult.PASSED);
+    }
+
+    @Test
+    @DisplayName("If-Unmodified-Since fails only for a resource modified after it")
+    void evaluate_ifUnmodifiedSince() {
+        assertThat(Preconditions.evaluate(null, DATE - 60, null, Preconditions.NO_DATE, ETAG, DATE))
+                .isEqualTo(PreconditionResult.FAILED);
+        assertThat(Preconditions.evaluate(null, DATE, null, Preconditions.NO_DATE, ETAG, DATE))
+                .isEqualTo(PreconditionResult.PASSED);
+    }
+
+    /**
+     * Evaluates the preconditions without an <i>If-Unmodified-Since</i>
+     * header against {@link #ETAG}.
+     */
+    private static PreconditionResult evaluate(
+            final String ifMatch,
+            final String ifNoneMatch,
+            final long ifModifiedSince,
+            final long lastModified
+    ) {
+        return Preconditions.evaluate(ifMatch, Preconditions.NO_DATE, ifNoneMatch, ifModifiedSince, ETAG, lastModified);
+    }
+}
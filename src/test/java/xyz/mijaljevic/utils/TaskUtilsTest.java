@@ -8,6 +8,15 @@ import java.io.File;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatNullPointerException;
@@ -51,10 +60,111 @@ class TaskUtilsTest {
                 .isEqualTo(FileUtils.hashFile(b.toFile()));
     }
 
+    @Test
+    @DisplayName("hashFile of a file larger than its stream buffer matches a one-shot digest")
+    void hashFile_largeFile_matchesOneShotDigest() throws Exception {
+        byte[] data = new byte[200_000];
+        new Random(42).nextBytes(data);
+        Path path = Files.write(tempDir.resolve("large.bin"), data);
+
+        String expected = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+
+        assertThat(FileUtils.hashFile(path.toFile())).isEqualTo(expected);
+    }
+
+    @Test
+    @DisplayName("hashFile keeps leading zeros, so every hash is 64 characters")
+    void hashFile_leadingZero_isFixedWidth() throws Exception {
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        byte[] data;
+        int i = 0;
+
+        // Find content whose digest starts with a zero byte (1 in 256 inputs).
+        do {
+            data = ("payload-" + i++).getBytes(StandardCharsets.UTF_8);
+        } while (sha256.digest(data)[0] != 0);
+
+        Path path = Files.write(tempDir.resolve("zero.bin"), data);
+
+        assertThat(FileUtils.hashFile(path.toFile()))
+                .hasSize(64)
+                .startsWith("00");
+    }
+
+    @Test
+    @DisplayName("hashBytes matches hashFile for the same content")
+    void hashBytes_matchesHashFile() throws Exception {
+        byte[] data = new byte[100_000];
+        new Random(7).nextBytes(data);
+        Path path = Files.write(tempDir.resolve("same.bin"), data);
+
+        assertThat(FileUtils.hashBytes(data)).isEqualTo(FileUtils.hashFile(path.toFile()));
+    }
+
     @Test
     @DisplayName("hashFile rejects a null file")
     void hashFile_null_throwsNpe() {
         assertThatNullPointerException()
                 .isThrownBy(() -> FileUtils.hashFile(null));
     }
+
+    @Test
+    @DisplayName("listFiles finds the regular files of nested directories")
+    void listFiles_findsNestedFiles() throws Exception {
+        Files.createDirectories(tempDir.resolve("2024/01"));
+        Files.writeString(tempDir.resolve("top.md"), "top");
+        Files.writeString(tempDir.resolve("2024/01/nested.md"), "nested");
+
+        assertThat(FileUtils.listFiles(tempDir))
+                .containsExactlyInAnyOrder(tempDir.resolve("top.md"), tempDir.resolve("2024/01/nested.md"));
+    }
+
+    @Test
+    @DisplayName("relativeName joins the path elements with a forward slash")
+    void relativeName_joinsWithSlash() {
+        assertThat(FileUtils.relativeName(Path.of("2024", "01", "post.md"))).isEqualTo("2024/01/post.md");
+        assertThat(FileUtils.relativeName(Path.of("post.md"))).isEqualTo("post.md");
+    }
+
+    @Test
+    @DisplayName("runInParallel applies the action to every item before returning")
+    void runInParallel_processesEveryItem() {
+        List<Integer> items = IntStream.range(0, 1000).boxed().toList();
+        Set<Integer> seen = ConcurrentHashMap.newKeySet();
+
+        TaskUtils.runInParallel("test", items, 4, seen::add);
+
+        assertThat(seen).hasSize(1000);
+    }
+
+    @Test
+    @DisplayName("runInParallel keeps going when an action throws")
+    void runInParallel_failingItem_doesNotStopBatch() {
+        AtomicInteger processed = new AtomicInteger();
+
+        TaskUtils.runInParallel("test", List.of(1, 2, 3, 4), 2, item -> {
+            if (item == 2) {
+                throw new IllegalStateException("boom");
+            }
+
+            processed.incrementAndGet();
+        });
+
+        assertThat(processed).hasValue(3);
+    }
+
+    @Test
+    @DisplayName("runInParallel runs items concurrently, up to the parallelism")
+    void runInParallel_runsConcurrently() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+
+        TaskUtils.runInParallel("test", IntStream.range(0, 16).boxed().toList(), 4, item -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            LockSupport.parkNanos(5_000_000L);
+            running.decrementAndGet();
+        });
+
+        assertThat(peak.get()).isBetween(2, 4);
+    }
 }
@@ -24,7 +24,9 @@ import static org.hamcrest.Matchers.containsString;
  * Integration tests for {@link RssFeed}: the rendered feed must be well-formed
  * RSS 2.0 XML (a golden-file guard for Task 5), every seeded blog must appear as
  * a complete item with a CDATA description carrying the rendered HTML, and the
- * conditional {@code If-None-Match} request must yield a 304.
+ * conditional {@code If-None-Match} request must yield a 304 against a stable,
+ * content derived ETag. The full archive, tag and Atom variants list the
+ * matching blogs.
  */
 @QuarkusTest
 @QuarkusTestResource(value = BlogsDirectoryTestResource.class, restrictToAnnotatedClass = true)
@@ -107,6 +109,74 @@ class RssFeedTest {
                 .statusCode(304);
     }
 
+    @Test
+    @DisplayName("The feed ETag is a SHA-256 of the feed and stays put while the blogs do")
+    void getRss_etagIsStableContentHash() {
+        String first = given()
+                .when().get("/rss")
+                .then().statusCode(200)
+                .extract().header("ETag");
+
+        String second = given()
+                .when().get("/rss")
+                .then().statusCode(200)
+                .extract().header("ETag");
+
+        assertThat(first).matches("\"[0-9a-f]{64}\"").isEqualTo(second);
+    }
+
+    @Test
+    @DisplayName("GET /rss/all lists every blog and GET /rss/tag/{tag} only the blogs carrying the tag")
+    void getRssAllAndTag_listTheirBlogs() throws Exception {
+        Element all = parse(given().when().get("/rss/all").then().statusCode(200).extract().asString())
+                .getDocumentElement();
+        Element tagged = parse(given().when().get("/rss/tag/Alpha").then().statusCode(200).extract().asString())
+                .getDocumentElement();
+
+        assertThat(all.getElementsByTagName("item").getLength())
+                .isEqualTo(BlogsDirectoryTestResource.SEEDED_BLOG_COUNT);
+        assertThat(tagged.getElementsByTagName("item").getLength()).isEqualTo(1);
+        assertThat(textOf((Element) tagged.getElementsByTagName("item").item(0), "title"))
+                .isEqualTo(BlogsDirectoryTestResource.ALPHA_TITLE);
+    }
+
+    @Test
+    @DisplayName("GET /rss/tag/{tag} for an unknown tag redirects to the not-found error page")
+    void getRssTag_unknown_redirectsToNotFound() {
+        given()
+                .redirects().follow(false)
+                .when().get("/rss/tag/does-not-exist")
+                .then()
+                .statusCode(303)
+                .header("Location", containsString("/error/not-found"));
+    }
+
+    @Test
+    @DisplayName("GET /rss/atom/all serves a well-formed Atom feed with one entry per seeded blog")
+    void getAtomAll_servesWellFormedFeed() throws Exception {
+        String body = given()
+                .when().get("/rss/atom/all")
+                .then()
+                .statusCode(200)
+                .contentType(containsString("application/atom+xml"))
+                .header("ETag", org.hamcrest.Matchers.notNullValue())
+                .extract().body().asString();
+
+        Element feed = parse(body).getDocumentElement();
+
+        assertThat(feed.getTagName()).isEqualTo("feed");
+        assertThat(feed.getNamespaceURI()).isEqualTo("http://www.w3.org/2005/Atom");
+        assertThat(textOf(feed, "id")).isEqualTo("https://mijaljevic.xyz/rss/atom/all");
+
+        NodeList entries = feed.getElementsByTagName("entry");
+        assertThat(entries.getLength()).isEqualTo(BlogsDirectoryTestResource.SEEDED_BLOG_COUNT);
+
+        Element newest = (Element) entries.item(0);
+        assertThat(textOf(newest, "title")).isEqualTo(BlogsDirectoryTestResource.GAMMA_TITLE);
+        assertThat(textOf(newest, "published")).isEqualTo("2022-09-20T00:00:00Z");
+        assertThat(textOf(newest, "content")).contains("<code>inline code</code>");
+    }
+
     /**
      * Parses the provided XML into a DOM document, failing the test if the XML
      * is not well-formed.
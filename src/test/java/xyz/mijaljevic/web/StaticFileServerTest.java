@@ -0,0 +1,310 @@
+package xyz.mijaljevic.web;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.config.DecoderConfig;
+import io.restassured.config.RestAssuredConfig;
+import io.restassured.response.ExtractableResponse;
+import io.restassured.response.Response;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import xyz.mijaljevic.test.BlogsDirectoryTestResource;
+import xyz.mijaljevic.test.ImagesDirectoryTestResource;
+import xyz.mijaljevic.utils.FileUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static xyz.mijaljevic.test.ImagesDirectoryTestResource.ICON;
+import static xyz.mijaljevic.test.ImagesDirectoryTestResource.LARGE_IMAGE;
+import static xyz.mijaljevic.test.ImagesDirectoryTestResource.NESTED_IMAGE;
+import static xyz.mijaljevic.test.ImagesDirectoryTestResource.REWRITTEN_IMAGE;
+import static xyz.mijaljevic.test.ImagesDirectoryTestResource.SMALL_IMAGE;
+
+/**
+ * Integration tests for {@link StaticFileServer}: images are served byte for
+ * byte from their heap bodies or, when large, from their files, in whole or
+ * by range and never under the ETag of another version of the file, icons from their precompressed variants, the site CSS from the
+ * assets loaded at startup, and fingerprinted URLs as immutable.
+ */
+@QuarkusTest
+@QuarkusTestResource(value = BlogsDirectoryTestResource.class, restrictToAnnotatedClass = true)
+@QuarkusTestResource(value = ImagesDirectoryTestResource.class, restrictToAnnotatedClass = true)
+class StaticFileServerTest {
+    @Test
+    @DisplayName("A small image is served from its heap body with its media type and ETag")
+    void getImage_small_servesExactBytes() {
+        byte[] body = given()
+                .when().get("/static/image/" + SMALL_IMAGE)
+                .then()
+                .statusCode(200)
+                .contentType("image/png")
+                .header("ETag", org.hamcrest.Matchers.notNullValue())
+                .extract().asByteArray();
+
+        assertThat(body).isEqualTo(ImagesDirectoryTestResource.bytes(SMALL_IMAGE));
+    }
+
+    @Test
+    @DisplayName("A large image is served from its file")
+    void getImage_large_servesExactBytes() {
+        byte[] body = given()
+                .when().get("/static/image/" + LARGE_IMAGE)
+                .then()
+                .statusCode(200)
+                .contentType("image/jpeg")
+                .header("Content-Length", String.valueOf(ImagesDirectoryTestResource.bytes(LARGE_IMAGE).length))
+                .extract().asByteArray();
+
+        assertThat(body).isEqualTo(ImagesDirectoryTestResource.bytes(LARGE_IMAGE));
+    }
+
+    @Test
+    @DisplayName("A large image rewritten in place is never served under the ETag of its old content")
+    void getImage_rewrittenInPlace_neverServesStaleEtag() throws Exception {
+        String etag = given()
+                .when().get("/static/image/" + REWRITTEN_IMAGE)
+                .then().statusCode(200)
+                .extract().header("ETag");
+
+        byte[] rewritten = ImagesDirectoryTestResource.bytes(REWRITTEN_IMAGE);
+        rewritten[0]++;
+
+        String imagesDirectory = ConfigProvider.getConfig().getValue("application.images-directory", String.class);
+
+        Files.write(Path.of(imagesDirectory, REWRITTEN_IMAGE), rewritten);
+
+        ExtractableResponse<Response> response = given()
+                .when().get("/static/image/" + REWRITTEN_IMAGE)
+                .then().statusCode(200)
+                .extract();
+
+        assertThat(response.asByteArray()).isEqualTo(rewritten);
+        assertThat(response.header("ETag"))
+                .satisfiesAnyOf(
+                        served -> assertThat(served).isNull(),
+                        served -> assertThat(served)
+                                .isNotEqualTo(etag)
+                                .isEqualTo('"' + FileUtils.hashBytes(rewritten) + '"')
+                );
+    }
+
+    @Test
+    @DisplayName("An icon is served from its gzip variant to a gzip-accepting client")
+    void getImage_icon_servesGzipVariant() {
+        given()
+                .config(RestAssuredConfig.config().decoderConfig(DecoderConfig.decoderConfig().noContentDecoders()))
+                .header("Accept-Encoding", "gzip")
+                .when().get("/static/image/" + ICON)
+                .then()
+                .statusCode(200)
+                .contentType("image/x-icon")
+                .header("Content-Encoding", "gzip");
+    }
+
+    @Test
+    @DisplayName("An image in a subdirectory is served by its relative path")
+    void getImage_nested_servesByRelativePath() {
+        byte[] body = given()
+                .when().get("/static/image/" + NESTED_IMAGE)
+                .then()
+                .statusCode(200)
+                .contentType("image/png")
+                .extract().asByteArray();
+
+        assertThat(body).isEqualTo(ImagesDirectoryTestResource.bytes(NESTED_IMAGE));
+    }
+
+    @Test
+    @DisplayName("An image name climbing out of the images directory is rejected")
+    void getImage_parentSegment_isRejected() {
+        given()
+                .urlEncodingEnabled(false)
+                .when().get("/static/image/2024/..%2F..%2Fsecret.png")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    @DisplayName("A conditional image request with the served ETag yields a 304")
+    void getImage_ifNoneMatch_returns304() {
+        String etag = given()
+                .when().get("/static/image/" + LARGE_IMAGE)
+                .then().statusCode(200)
+                .extract().header("ETag");
+
+        given()
+                .header("If-None-Match", etag)
+                .when().get("/static/image/" + LARGE_IMAGE)
+                .then()
+                .statusCode(304)
+                .header("Cache-Control", notNullValue())
+                .header("Vary", nullValue());
+    }
+
+    @Test
+    @DisplayName("A single range of an image served from its file is served as 206 with its Content-Range")
+    void getImage_singleRange_returns206() {
+        byte[] image = ImagesDirectoryTestResource.bytes(LARGE_IMAGE);
+
+        byte[] body = given()
+                .header("Range", "bytes=100-1099")
+                .when().get("/static/image/" + LARGE_IMAGE)
+                .then()
+                .statusCode(206)
+                .contentType("image/jpeg")
+                .header("Content-Range", "bytes 100-1099/" + image.length)
+                .header("Content-Length", "1000")
+                .extract().asByteArray();
+
+        assertThat(body).isEqualTo(java.util.Arrays.copyOfRange(image, 100, 1100));
+    }
+
+    @Test
+    @DisplayName("Several ranges are served as a multipart/byteranges body")
+    void getImage_multipleRanges_returnsMultipart() {
+        byte[] image = ImagesDirectoryTestResource.bytes(SMALL_IMAGE);
+
+        String body = given()
+                .header("Range", "bytes=0-9, -10")
+                .when().get("/static/image/" + SMALL_IMAGE)
+                .then()
+                .statusCode(206)
+                .contentType(containsString("multipart/byteranges; boundary="))
+                .extract().body().asString();
+
+        assertThat(body)
+                .contains("Content-Range: bytes 0-9/" + image.length)
+                .contains("Content-Range: bytes " + (image.length - 10) + '-' + (image.length - 1) + '/' + image.length);
+    }
+
+    @Test
+    @DisplayName("An unsatisfiable range yields a 416 with the complete length")
+    void getImage_unsatisfiableRange_returns416() {
+        int length = ImagesDirectoryTestResource.bytes(SMALL_IMAGE).length;
+
+        given()
+                .header("Range", "bytes=" + length + '-')
+                .when().get("/static/image/" + SMALL_IMAGE)
+                .then()
+                .statusCode(416)
+                .header("Content-Range", "bytes */" + length);
+    }
+
+    @Test
+    @DisplayName("If-Range serves the range for the current ETag and the whole image for a stale one")
+    void getImage_ifRange() {
+        String etag = given()
+                .when().get("/static/image/" + LARGE_IMAGE)
+                .then().statusCode(200)
+                .header("Accept-Ranges", "bytes")
+                .extract().header("ETag");
+
+        given()
+                .header("Range", "bytes=0-9")
+                .header("If-Range", etag)
+                .when().get("/static/image/" + LARGE_IMAGE)
+                .then()
+                .statusCode(206);
+
+        given()
+                .header("Range", "bytes=0-9")
+                .header("If-Range", "\"stale\"")
+                .when().get("/static/image/" + LARGE_IMAGE)
+                .then()
+                .statusCode(200)
+                .header("Content-Length", String.valueOf(ImagesDirectoryTestResource.bytes(LARGE_IMAGE).length));
+    }
+
+    @Test
+    @DisplayName("The site CSS is served from the asset loaded at startup")
+    void getCss_servesLoadedAsset() {
+        given()
+                .when().get("/static/style.min.css")
+                .then()
+                .statusCode(200)
+                .contentType(containsString("text/css"))
+                .header("Vary", "Accept-Encoding");
+    }
+
+    @Test
+    @DisplayName("The pages link the CSS under its fingerprint, served as immutable")
+    void getCss_fingerprintedUrl_isImmutable() {
+        String cssUrl = linkedUrl("/static/style\\.[0-9a-f]{16}\\.min\\.css");
+
+        given()
+                .when().get(cssUrl)
+                .then()
+                .statusCode(200)
+                .contentType(containsString("text/css"))
+                .header("Cache-Control", "public, max-age=31536000, immutable")
+                .header("ETag", org.hamcrest.Matchers.matchesRegex("\"[0-9a-f]{64}\""));
+    }
+
+    @Test
+    @DisplayName("A stale fingerprint still gets the current CSS, but not as immutable")
+    void getCss_staleFingerprint_isRevalidated() {
+        given()
+                .when().get("/static/style.0000000000000000.min.css")
+                .then()
+                .statusCode(200)
+                .header("Cache-Control", "public, max-age=0, must-revalidate");
+    }
+
+    @Test
+    @DisplayName("The pages link the icon under its fingerprint, served as immutable")
+    void getImage_fingerprintedUrl_isImmutable() {
+        String iconUrl = linkedUrl("/static/image/favicon\\.[0-9a-f]{16}\\.ico");
+
+        given()
+                .when().get(iconUrl)
+                .then()
+                .statusCode(200)
+                .contentType("image/x-icon")
+                .header("Cache-Control", "public, max-age=31536000, immutable");
+    }
+
+    @Test
+    @DisplayName("An unknown image fingerprint still gets the current image, but not as immutable")
+    void getImage_staleFingerprint_isRevalidated() {
+        given()
+                .when().get("/static/image/favicon.0000000000000000.ico")
+                .then()
+                .statusCode(200)
+                .header("Cache-Control", "public, max-age=0, must-revalidate");
+    }
+
+    @Test
+    @DisplayName("The byte cache metrics are not found while the byte cache is disabled")
+    void getByteCacheStats_disabled_returns404() {
+        given()
+                .when().get("/static/byte-cache")
+                .then()
+                .statusCode(404);
+    }
+
+    /**
+     * Finds the URL matching the provided pattern in the home page.
+     *
+     * @param pattern The regular expression of the URL.
+     * @return The linked URL.
+     */
+    private static String linkedUrl(final String pattern) {
+        String home = given()
+                .when().get("/")
+                .then().statusCode(200)
+                .extract().body().asString();
+
+        java.util.regex.Matcher matcher = java.util.regex.Pattern.compile(pattern).matcher(home);
+
+        assertThat(matcher.find()).as("home page links %s", pattern).isTrue();
+
+        return matcher.group();
+    }
+}
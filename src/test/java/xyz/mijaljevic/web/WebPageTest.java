@@ -2,18 +2,26 @@ package xyz.mijaljevic.web;
 
 import io.quarkus.test.common.QuarkusTestResource;
 import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.config.DecoderConfig;
+import io.restassured.config.RestAssuredConfig;
+import io.restassured.http.Headers;
+import jakarta.inject.Inject;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import xyz.mijaljevic.cache.StaticFileCache;
+import xyz.mijaljevic.domain.entity.StaticFile;
 import xyz.mijaljevic.test.BlogsDirectoryTestResource;
 
 import static io.restassured.RestAssured.given;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
 
 /**
  * Integration tests for {@link WebPage}: the public HTML pages, their HTTP
  * caching headers (ETag / Last-Modified with conditional requests), unknown
- * slug handling, and the error page header regression from Task 1.
+ * slug and tag handling, the tag pages, blog list pagination, search, and the
+ * error page header regression from Task 1.
  */
 @QuarkusTest
 @QuarkusTestResource(value = BlogsDirectoryTestResource.class, restrictToAnnotatedClass = true)
@@ -24,12 +32,20 @@ class WebPageTest {
     private static final String EXPECTED_CACHE_CONTROL = "public, max-age=0, must-revalidate";
 
     /**
-     * A SHA-256 hash rendered as a lowercase hex string. Up to 64 characters:
-     * the blog hash is not zero-padded, so a leading-zero byte yields a shorter
-     * string. Crucially it never matches the old {@code AtomicReference@hash}
-     * bug output (Task 1), which carried uppercase letters and an {@code @}.
+     * A SHA-256 hash rendered as a fixed width, lowercase hex string, followed
+     * by the version of the linked assets, quoted as an RFC 9110 entity tag.
+     * Crucially it never matches the old {@code AtomicReference@hash} bug
+     * output (Task 1), which carried uppercase letters and an {@code @}.
      */
-    private static final String HEX_HASH = "[0-9a-f]{1,64}";
+    private static final String HEX_HASH = "\"[0-9a-f]{64}\\.[0-9a-f]{16}\"";
+
+    /**
+     * The cache name of the CSS file linked by every page.
+     */
+    private static final String CSS = "style.min.css";
+
+    @Inject
+    StaticFileCache staticFileCache;
 
     @Test
     @DisplayName("GET / serves the home page with caching headers")
@@ -58,6 +74,66 @@ class WebPageTest {
                 .body(containsString(BlogsDirectoryTestResource.GAMMA_TITLE));
     }
 
+    @Test
+    @DisplayName("GET /blogs?after={slug} continues the list after the cursor blog with its own ETag")
+    void getBlogs_afterCursor_continuesAfterCursorBlog() {
+        String firstPageETag = given()
+                .when().get("/blogs")
+                .then().statusCode(200)
+                .extract().header("ETag");
+
+        String cursorPageETag = given()
+                .when().get("/blogs?after=" + BlogsDirectoryTestResource.GAMMA_SLUG)
+                .then()
+                .statusCode(200)
+                .header("ETag", matchesHex())
+                .body(not(containsString(BlogsDirectoryTestResource.GAMMA_TITLE)))
+                .body(containsString(BlogsDirectoryTestResource.BETA_TITLE))
+                .body(containsString(BlogsDirectoryTestResource.ALPHA_TITLE))
+                .extract().header("ETag");
+
+        assertThat(cursorPageETag).isNotEqualTo(firstPageETag);
+    }
+
+    @Test
+    @DisplayName("GET /blogs for a page past the last one or an unknown cursor redirects to the not-found error page")
+    void getBlogs_outOfRange_redirectsToNotFound() {
+        given()
+                .redirects().follow(false)
+                .when().get("/blogs?page=2")
+                .then()
+                .statusCode(303)
+                .header("Location", containsString("/error/not-found"));
+
+        given()
+                .redirects().follow(false)
+                .when().get("/blogs?after=does-not-exist")
+                .then()
+                .statusCode(303)
+                .header("Location", containsString("/error/not-found"));
+    }
+
+    @Test
+    @DisplayName("GET /search?q= lists the blogs matching the query and only those")
+    void getSearch_listsMatchingBlogs() {
+        given()
+                .queryParam("q", "AMPERSAND")
+                .when().get("/search")
+                .then()
+                .statusCode(200)
+                .contentType(containsString("text/html"))
+                .body(containsString(BlogsDirectoryTestResource.BETA_TITLE))
+                .body(not(containsString(BlogsDirectoryTestResource.ALPHA_TITLE)))
+                .body(not(containsString(BlogsDirectoryTestResource.GAMMA_TITLE)));
+
+        given()
+                .queryParam("q", "nothing-matches-this")
+                .when().get("/search")
+                .then()
+                .statusCode(200)
+                .body(containsString("No blogs found."));
+    }
+
     @Test
     @DisplayName("GET /contact serves the contact page")
     void getContact_returnsOk() {
@@ -94,6 +170,40 @@ class WebPageTest {
                 .header("Location", containsString("/error/not-found"));
     }
 
+    @Test
+    @DisplayName("GET /tags lists the seeded tags and GET /tag/{tag} the blogs carrying one")
+    void getTags_listsTagsAndTheirBlogs() {
+        given()
+                .when().get("/tags")
+                .then()
+                .statusCode(200)
+                .contentType(containsString("text/html"))
+                .header("ETag", matchesHex())
+                .body(containsString("/tag/alpha"))
+                .body(containsString("/tag/test"));
+
+        given()
+                .when().get("/tag/Alpha")
+                .then()
+                .statusCode(200)
+                .contentType(containsString("text/html"))
+                .header("ETag", matchesHex())
+                .header("Cache-Control", EXPECTED_CACHE_CONTROL)
+                .body(containsString(BlogsDirectoryTestResource.ALPHA_TITLE))
+                .body(not(containsString(BlogsDirectoryTestResource.BETA_TITLE)));
+    }
+
+    @Test
+    @DisplayName("GET /tag/{tag} for an unknown tag redirects to the not-found error page")
+    void getTag_unknown_redirectsToNotFound() {
+        given()
+                .redirects().follow(false)
+                .when().get("/tag/does-not-exist")
+                .then()
+                .statusCode(303)
+                .header("Location", containsString("/error/not-found"));
+    }
+
     @Test
     @DisplayName("A matching If-None-Match returns 304 Not Modified")
     void conditionalRequest_ifNoneMatch_returns304() {
@@ -109,6 +219,60 @@ class WebPageTest {
                 .statusCode(304);
     }
 
+    @Test
+    @DisplayName("A 304 carries the Cache-Control and Vary headers of the 200 it stands in for")
+    void conditionalRequest_notModified_carriesCachingHeaders() {
+        Headers headers = given()
+                .when().get("/")
+                .then().statusCode(200)
+                .header("Vary", "Accept-Encoding")
+                .extract().headers();
+
+        String etag = headers.getValue("ETag");
+        String cacheControl = headers.getValue("Cache-Control");
+
+        given()
+                .header("If-None-Match", etag)
+                .when().get("/")
+                .then()
+                .statusCode(304)
+                .header("ETag", etag)
+                .header("Cache-Control", cacheControl)
+                .header("Vary", "Accept-Encoding");
+    }
+
+    @Test
+    @DisplayName("A changed linked asset changes the page ETag, so a client holding the page refetches it")
+    void conditionalRequest_changedAsset_servesPage() {
+        String etag = given()
+                .when().get("/")
+                .then().statusCode(200)
+                .extract().header("ETag");
+
+        StaticFile original = staticFileCache.byName(CSS);
+
+        StaticFile changed = new StaticFile();
+        changed.setName(original.getName());
+        changed.setType(original.getType());
+        changed.setModified(original.getModified());
+        changed.setContent(original.getContent());
+        changed.setHash("0".repeat(64));
+
+        try {
+            staticFileCache.put(changed);
+
+            given()
+                    .header("If-None-Match", etag)
+                    .when().get("/")
+                    .then()
+                    .statusCode(200)
+                    .header("ETag", not(etag))
+                    .body(containsString("/static/style.0000000000000000.min.css"));
+        } finally {
+            staticFileCache.put(original);
+        }
+    }
+
     @Test
     @DisplayName("A matching If-Modified-Since returns 304 Not Modified")
     void conditionalRequest_ifModifiedSince_returns304() {
@@ -124,6 +288,48 @@ class WebPageTest {
                 .statusCode(304);
     }
 
+    @Test
+    @DisplayName("An If-None-Match list holding the ETag as a weak tag returns 304 with the ETag")
+    void conditionalRequest_weakTagInList_returns304() {
+        String etag = given()
+                .when().get("/")
+                .then().statusCode(200)
+                .extract().header("ETag");
+
+        given()
+                .header("If-None-Match", "\"stale\", W/" + etag)
+                .when().get("/")
+                .then()
+                .statusCode(304)
+                .header("ETag", etag);
+    }
+
+    @Test
+    @DisplayName("An older If-Modified-Since serves the page, a later one returns 304")
+    void conditionalRequest_ifModifiedSince_comparesDates() {
+        given()
+                .header("If-Modified-Since", "Thu, 01 Jan 1970 00:00:00 GMT")
+                .when().get("/")
+                .then()
+                .statusCode(200);
+
+        given()
+                .header("If-Modified-Since", "Fri, 31 Dec 9999 23:59:59 GMT")
+                .when().get("/")
+                .then()
+                .statusCode(304);
+    }
+
+    @Test
+    @DisplayName("A non-matching If-Match returns 412 Precondition Failed")
+    void conditionalRequest_ifMatchMismatch_returns412() {
+        given()
+                .header("If-Match", "\"stale\"")
+                .when().get("/")
+                .then()
+                .statusCode(412);
+    }
+
     @Test
     @DisplayName("The ETag is stable across repeated requests to the same page")
     void eTag_isStableAcrossRequests() {
@@ -159,8 +365,53 @@ class WebPageTest {
                 .doesNotContain("@");
     }
 
+    @Test
+    @DisplayName("GET / serves the precompressed gzip variant to a gzip-accepting client")
+    void getHome_acceptsGzip_servesGzipVariant() throws InterruptedException {
+        // NOTE: The variants are built off the event loop after the first render, so wait for them.
+        for (int attempt = 0; attempt < 50 && given()
+                .config(identityDecoding())
+                .header("Accept-Encoding", "gzip")
+                .when().get("/")
+                .header("Content-Encoding") == null; attempt++) {
+            Thread.sleep(100);
+        }
+
+        given()
+                .config(identityDecoding())
+                .header("Accept-Encoding", "gzip")
+                .when().get("/")
+                .then()
+                .statusCode(200)
+                .header("Content-Encoding", "gzip")
+                .header("Vary", "Accept-Encoding");
+    }
+
+    @Test
+    @DisplayName("GET / serves the uncompressed page when no coding is accepted")
+    void getHome_acceptsIdentity_servesUncompressed() {
+        given()
+                .config(identityDecoding())
+                .header("Accept-Encoding", "identity")
+                .when().get("/")
+                .then()
+                .statusCode(200)
+                .header("Content-Encoding", org.hamcrest.Matchers.nullValue())
+                .header("Vary", "Accept-Encoding")
+                .body(containsString("<html"));
+    }
+
+    /**
+     * @return A RestAssured config that neither advertises nor decodes any
+     * content coding on its own, so the test controls {@code Accept-Encoding}.
+     */
+    private static RestAssuredConfig identityDecoding() {
+        return RestAssuredConfig.config().decoderConfig(DecoderConfig.decoderConfig().noContentDecoders());
+    }
+
     /**
-     * @return A Hamcrest matcher asserting a header is a 64-char hex SHA-256 hash.
+     * @return A Hamcrest matcher asserting a header is a 64-char hex SHA-256
+     * hash followed by the asset version.
      */
     private static org.hamcrest.Matcher<String> matchesHex() {
         return org.hamcrest.Matchers.matchesRegex(HEX_HASH);